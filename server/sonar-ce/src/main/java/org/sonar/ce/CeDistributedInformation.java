@@ -22,6 +22,7 @@ package org.sonar.ce;
 
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.function.IntConsumer;
 
 /**
  * CeDistributedInformation is the interface to be implemented in order
@@ -40,4 +41,20 @@ public interface CeDistributedInformation {
    * Acquire a lock among all the Compute Engines
    */
   Lock acquireCleanJobLock();
+
+  /**
+   * Whether the current Compute Engine node is in charge of watching the queue in database
+   * for all the Compute Engine nodes. A single node is in charge at a time.
+   */
+  boolean isQueueWatcher();
+
+  /**
+   * Notifies all the Compute Engine nodes, including the current one, that tasks are pending in the queue
+   */
+  void broadcastPendingTasks(int pendingTaskCount);
+
+  /**
+   * Registers a listener of the notifications sent by {@link #broadcastPendingTasks(int)}
+   */
+  void addPendingTasksListener(IntConsumer listener);
 }
@@ -23,12 +23,14 @@ package org.sonar.ce;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.function.IntConsumer;
 import org.picocontainer.Startable;
 import org.sonar.ce.cluster.HazelcastClientWrapper;
 import org.sonar.ce.taskprocessor.CeWorkerFactory;
 import org.sonar.process.cluster.ClusterObjectKeys;
 
 import static org.sonar.core.util.stream.MoreCollectors.toSet;
+import static org.sonar.process.cluster.ClusterObjectKeys.CE_PENDING_TASKS;
 import static org.sonar.process.cluster.ClusterObjectKeys.WORKER_UUIDS;
 
 /**
@@ -64,6 +66,27 @@ public class CeDistributedInformationImpl implements CeDistributedInformation, S
     return hazelcastClientWrapper.getLock(ClusterObjectKeys.CE_CLEANING_JOB_LOCK);
   }
 
+  /**
+   * The connected Compute Engine with the lowest client UUID is in charge. When it leaves the cluster,
+   * the next one takes over.
+   */
+  @Override
+  public boolean isQueueWatcher() {
+    String clientUUID = hazelcastClientWrapper.getClientUUID();
+    return hazelcastClientWrapper.getConnectedClients().stream()
+      .noneMatch(uuid -> uuid.compareTo(clientUUID) < 0);
+  }
+
+  @Override
+  public void broadcastPendingTasks(int pendingTaskCount) {
+    hazelcastClientWrapper.publish(CE_PENDING_TASKS, pendingTaskCount);
+  }
+
+  @Override
+  public void addPendingTasksListener(IntConsumer listener) {
+    hazelcastClientWrapper.<Integer>subscribe(CE_PENDING_TASKS, listener::accept);
+  }
+
   @Override
   public void start() {
     // Nothing to do here
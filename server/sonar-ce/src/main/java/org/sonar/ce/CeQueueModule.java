@@ -21,8 +21,11 @@ package org.sonar.ce;
 
 import org.sonar.ce.monitoring.CEQueueStatusImpl;
 import org.sonar.ce.monitoring.CeTasksMBeanImpl;
+import org.sonar.ce.queue.CeQueueDispatcherExecutorServiceImpl;
+import org.sonar.ce.queue.CeQueueDispatcherImpl;
 import org.sonar.ce.queue.CeQueueInitializer;
 import org.sonar.ce.queue.InternalCeQueueImpl;
+import org.sonar.ce.queue.ReportSpoolProvider;
 import org.sonar.core.platform.Module;
 
 public class CeQueueModule extends Module {
@@ -31,6 +34,11 @@ public class CeQueueModule extends Module {
     add(
       // queue state
       InternalCeQueueImpl.class,
+      new ReportSpoolProvider(),
+
+      // wake up of idle workers
+      CeQueueDispatcherExecutorServiceImpl.class,
+      CeQueueDispatcherImpl.class,
 
       // queue monitoring
       CEQueueStatusImpl.class,
@@ -20,10 +20,13 @@
 
 package org.sonar.ce;
 
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.function.IntConsumer;
 import org.sonar.ce.taskprocessor.CeWorkerFactory;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -36,6 +39,7 @@ public class StandaloneCeDistributedInformation implements CeDistributedInformat
   private Set<String> workerUUIDs;
 
   private Lock cleanJobLock = new NonConcurrentLock();
+  private final List<IntConsumer> pendingTasksListeners = new CopyOnWriteArrayList<>();
 
   public StandaloneCeDistributedInformation(CeWorkerFactory ceCeWorkerFactory) {
     this.ceCeWorkerFactory = ceCeWorkerFactory;
@@ -61,6 +65,24 @@ public class StandaloneCeDistributedInformation implements CeDistributedInformat
     return cleanJobLock;
   }
 
+  /**
+   * The current Compute Engine is the only one, it's always in charge of watching the queue.
+   */
+  @Override
+  public boolean isQueueWatcher() {
+    return true;
+  }
+
+  @Override
+  public void broadcastPendingTasks(int pendingTaskCount) {
+    pendingTasksListeners.forEach(listener -> listener.accept(pendingTaskCount));
+  }
+
+  @Override
+  public void addPendingTasksListener(IntConsumer listener) {
+    pendingTasksListeners.add(listener);
+  }
+
   private static class NonConcurrentLock implements Lock {
     @Override
     public void lock() {
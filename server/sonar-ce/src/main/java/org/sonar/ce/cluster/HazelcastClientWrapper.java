@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 /**
  * The interface Hazelcast client wrapper.
@@ -66,4 +67,14 @@ public interface HazelcastClientWrapper {
    * Gets lock among the cluster, identified by name
    */
   Lock getLock(String name);
+
+  /**
+   * Publishes a message to all the listeners of the topic shared by the cluster and identified by name
+   */
+  <E> void publish(String topicName, E message);
+
+  /**
+   * Registers a listener of the messages published on the topic shared by the cluster and identified by name
+   */
+  <E> void subscribe(String topicName, Consumer<E> listener);
 }
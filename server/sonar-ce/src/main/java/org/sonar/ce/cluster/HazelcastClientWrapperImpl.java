@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import org.picocontainer.Startable;
 import org.sonar.api.config.Configuration;
 import org.sonar.process.ProcessProperties;
@@ -103,6 +104,16 @@ public class HazelcastClientWrapperImpl implements Startable, HazelcastClientWra
     return hzInstance.getLock(name);
   }
 
+  @Override
+  public <E> void publish(String topicName, E message) {
+    hzInstance.<E>getTopic(topicName).publish(message);
+  }
+
+  @Override
+  public <E> void subscribe(String topicName, Consumer<E> listener) {
+    hzInstance.<E>getTopic(topicName).addMessageListener(message -> listener.accept(message.getMessageObject()));
+  }
+
   @Override
   public void start() {
     this.hzInstance = HazelcastClient.newHazelcastClient(hzConfig);
@@ -20,20 +20,20 @@
 package org.sonar.ce.container;
 
 import java.io.File;
-import org.apache.commons.io.FileUtils;
+import java.util.Set;
 import org.sonar.server.platform.ServerFileSystem;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.core.platform.ExplodedPlugin;
 import org.sonar.core.platform.PluginInfo;
 import org.sonar.core.platform.PluginJarExploder;
 
 /**
- * Explodes the plugin JARs of extensions/plugins/ into a temporary directory
- * dedicated to compute engine.
+ * Explodes the plugin JARs of extensions/plugins/ into a directory of data dir
+ * dedicated to compute engine. Plugins which did not change since the previous
+ * startup are reused as-is.
  */
 public class CePluginJarExploder extends PluginJarExploder {
 
-  private static final String TEMP_RELATIVE_PATH = "ce-exploded-plugins";
+  private static final String CACHE_RELATIVE_PATH = "ce/exploded-plugins";
   private final ServerFileSystem fs;
 
   public CePluginJarExploder(ServerFileSystem fs) {
@@ -42,19 +42,17 @@ public class CePluginJarExploder extends PluginJarExploder {
 
   @Override
   public ExplodedPlugin explode(PluginInfo pluginInfo) {
-    File tempDir = new File(fs.getTempDir(), TEMP_RELATIVE_PATH);
-    File toDir = new File(tempDir, pluginInfo.getKey());
+    File cacheDir = new File(fs.getDataDir(), CACHE_RELATIVE_PATH);
     try {
-      org.sonar.core.util.FileUtils.cleanDirectory(toDir);
-
-      File jarSource = pluginInfo.getNonNullJarFile();
-      File jarTarget = new File(toDir, jarSource.getName());
-      FileUtils.copyFile(jarSource, jarTarget);
-      ZipUtils.unzip(jarSource, toDir, newLibFilter());
-      return explodeFromUnzippedDir(pluginInfo.getKey(), jarTarget, toDir);
+      return explodeToCache(pluginInfo, cacheDir);
     } catch (Exception e) {
       throw new IllegalStateException(String.format(
-        "Fail to unzip plugin [%s] %s to %s", pluginInfo.getKey(), pluginInfo.getNonNullJarFile().getAbsolutePath(), toDir.getAbsolutePath()), e);
+        "Fail to unzip plugin [%s] %s to %s", pluginInfo.getKey(), pluginInfo.getNonNullJarFile().getAbsolutePath(), cacheDir.getAbsolutePath()), e);
     }
   }
+
+  @Override
+  public void deleteUnused(Set<String> installedPluginKeys) {
+    deleteUnusedFromCache(new File(fs.getDataDir(), CACHE_RELATIVE_PATH), installedPluginKeys);
+  }
 }
@@ -19,7 +19,6 @@
  */
 package org.sonar.ce.queue;
 
-import java.util.List;
 import org.picocontainer.Startable;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.platform.ServerUpgradeStatus;
@@ -40,11 +39,13 @@ public class CeQueueCleaner implements Startable {
   private final DbClient dbClient;
   private final ServerUpgradeStatus serverUpgradeStatus;
   private final InternalCeQueue queue;
+  private final ReportSpool reportSpool;
 
-  public CeQueueCleaner(DbClient dbClient, ServerUpgradeStatus serverUpgradeStatus, InternalCeQueue queue) {
+  public CeQueueCleaner(DbClient dbClient, ServerUpgradeStatus serverUpgradeStatus, InternalCeQueue queue, ReportSpool reportSpool) {
     this.dbClient = dbClient;
     this.serverUpgradeStatus = serverUpgradeStatus;
     this.queue = queue;
+    this.reportSpool = reportSpool;
   }
 
   @Override
@@ -73,8 +74,7 @@ public class CeQueueCleaner implements Startable {
     // Reports that have been processed are not kept in database yet.
     // They are supposed to be systematically dropped.
     // Let's clean-up orphans if any.
-    List<String> uuids = dbClient.ceTaskInputDao().selectUuidsNotInQueue(dbSession);
-    dbClient.ceTaskInputDao().deleteByUuids(dbSession, uuids);
+    reportSpool.deleteOrphans(dbSession);
     dbSession.commit();
   }
 
@@ -0,0 +1,35 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+/**
+ * Wakes up the workers which are idle when tasks are pending in the queue, so that each worker does not have
+ * to poll the database. The database stays the source of truth: a worker which is woken up still has to
+ * {@link InternalCeQueue#peek(String) peek} a task, and may find none.
+ */
+public interface CeQueueDispatcher {
+
+  /**
+   * Registers a worker which found no task to process. {@code wakeUp} is called once, as soon as tasks may be
+   * pending in the queue.
+   */
+  void awaitTasks(Runnable wakeUp);
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.CeDistributedInformation;
+import org.sonar.ce.configuration.CeConfiguration;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A single Compute Engine node of the cluster, the {@link CeDistributedInformation#isQueueWatcher() queue watcher},
+ * counts the pending tasks in database every {@link CeConfiguration#getQueuePollingDelay() polling delay} and
+ * broadcasts this count to all the nodes. Each node then wakes up as many idle workers as there are pending tasks.
+ * <p>
+ * When the queue is empty, this replaces the peek (a select and an optimistic update of the table CE_QUEUE) done by
+ * every worker of every node by a single count.
+ * </p>
+ */
+public class CeQueueDispatcherImpl implements CeQueueDispatcher, Startable {
+  private static final Logger LOG = Loggers.get(CeQueueDispatcherImpl.class);
+
+  private final CeQueueDispatcherExecutorService executorService;
+  private final DbClient dbClient;
+  private final CeConfiguration ceConfiguration;
+  private final CeDistributedInformation ceDistributedInformation;
+  // guarded by this
+  private final Deque<Runnable> idleWorkers = new ArrayDeque<>();
+
+  public CeQueueDispatcherImpl(CeQueueDispatcherExecutorService executorService, DbClient dbClient, CeConfiguration ceConfiguration,
+    CeDistributedInformation ceDistributedInformation) {
+    this.executorService = executorService;
+    this.dbClient = dbClient;
+    this.ceConfiguration = ceConfiguration;
+    this.ceDistributedInformation = ceDistributedInformation;
+  }
+
+  @Override
+  public void start() {
+    ceDistributedInformation.addPendingTasksListener(this::wakeUpIdleWorkers);
+    long delay = ceConfiguration.getQueuePollingDelay();
+    executorService.scheduleWithFixedDelay(this::watchQueue, delay, delay, MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    synchronized (this) {
+      idleWorkers.clear();
+    }
+  }
+
+  @Override
+  public void awaitTasks(Runnable wakeUp) {
+    synchronized (this) {
+      idleWorkers.addLast(wakeUp);
+    }
+  }
+
+  private void watchQueue() {
+    try {
+      if (!ceDistributedInformation.isQueueWatcher()) {
+        return;
+      }
+      int pendingTaskCount = countPendingTasks();
+      if (pendingTaskCount > 0) {
+        ceDistributedInformation.broadcastPendingTasks(pendingTaskCount);
+      }
+    } catch (Exception e) {
+      LOG.warn("Failed to watch the queue of tasks. Idle workers are woken up.", e);
+      wakeUpIdleWorkers(Integer.MAX_VALUE);
+    }
+  }
+
+  private int countPendingTasks() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.ceQueueDao().countByStatus(dbSession, CeQueueDto.Status.PENDING);
+    }
+  }
+
+  private void wakeUpIdleWorkers(int pendingTaskCount) {
+    List<Runnable> wakeUps = new ArrayList<>();
+    synchronized (this) {
+      while (wakeUps.size() < pendingTaskCount && !idleWorkers.isEmpty()) {
+        wakeUps.add(idleWorkers.pollFirst());
+      }
+    }
+    wakeUps.forEach(CeQueueDispatcherImpl::wakeUp);
+  }
+
+  private static void wakeUp(Runnable wakeUp) {
+    try {
+      wakeUp.run();
+    } catch (Exception e) {
+      LOG.error("Failed to wake up worker", e);
+    }
+  }
+}
@@ -57,8 +57,8 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   private final ComputeEngineStatus computeEngineStatus;
 
   public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
-    DefaultOrganizationProvider defaultOrganizationProvider, ComputeEngineStatus computeEngineStatus) {
-    super(dbClient, uuidFactory, defaultOrganizationProvider);
+    DefaultOrganizationProvider defaultOrganizationProvider, ComputeEngineStatus computeEngineStatus, ReportSpool reportSpool) {
+    super(dbClient, uuidFactory, defaultOrganizationProvider, reportSpool);
     this.system2 = system2;
     this.dbClient = dbClient;
     this.queueStatus = queueStatus;
@@ -30,6 +30,7 @@ import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.ce.configuration.CeConfiguration;
+import org.sonar.ce.queue.CeQueueDispatcher;
 
 import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -43,11 +44,13 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
   private final TimeUnit timeUnit;
   private final ChainingCallback[] chainingCallbacks;
   private final EnabledCeWorkerController ceWorkerController;
+  private final CeQueueDispatcher queueDispatcher;
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
     CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerFactory ceCeWorkerFactory,
-    EnabledCeWorkerController ceWorkerController) {
+    EnabledCeWorkerController ceWorkerController, CeQueueDispatcher queueDispatcher) {
     this.executorService = processingExecutorService;
+    this.queueDispatcher = queueDispatcher;
 
     this.delayBetweenEnabledTasks = ceConfiguration.getQueuePollingDelay();
     this.ceWorkerController = ceWorkerController;
@@ -108,7 +111,7 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
     private final CeWorker worker;
 
     @CheckForNull
-    private ListenableFuture<CeWorker.Result> workerFuture;
+    private volatile ListenableFuture<CeWorker.Result> workerFuture;
 
     public ChainingCallback(CeWorker worker) {
       this.worker = worker;
@@ -117,14 +120,14 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
     @Override
     public void onSuccess(@Nullable CeWorker.Result result) {
       if (result == null) {
-        chainWithEnabledTaskDelay();
+        chainWhenTasksPending();
       } else {
         switch (result) {
           case DISABLED:
             chainWithDisabledTaskDelay();
             break;
           case NO_TASK:
-            chainWithEnabledTaskDelay();
+            chainWhenTasksPending();
             break;
           case TASK_PROCESSED:
           default:
@@ -149,11 +152,14 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
       addCallback();
     }
 
-    private void chainWithEnabledTaskDelay() {
+    /**
+     * Instead of polling the queue after a delay, the worker is idle until {@link CeQueueDispatcher} notifies
+     * that tasks are pending.
+     */
+    private void chainWhenTasksPending() {
       if (keepRunning()) {
-        workerFuture = executorService.schedule(worker, delayBetweenEnabledTasks, timeUnit);
+        queueDispatcher.awaitTasks(this::chainWithoutDelay);
       }
-      addCallback();
     }
 
     private void chainWithDisabledTaskDelay() {
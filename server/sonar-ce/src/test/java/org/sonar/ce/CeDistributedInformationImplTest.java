@@ -32,7 +32,9 @@ import org.sonar.ce.taskprocessor.CeWorkerFactory;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.MapEntry.entry;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.sonar.process.cluster.ClusterObjectKeys.CE_PENDING_TASKS;
 import static org.sonar.process.cluster.ClusterObjectKeys.WORKER_UUIDS;
 
 public class CeDistributedInformationImplTest {
@@ -112,4 +114,29 @@ public class CeDistributedInformationImplTest {
       entry(clientUUID3, ImmutableSet.of("4", "5", "6"))
     );
   }
+
+  @Test
+  public void connected_client_with_lowest_uuid_is_the_queue_watcher() {
+    when(hzClientWrapper.getConnectedClients()).thenReturn(ImmutableSet.of(clientUUID1, clientUUID2, clientUUID3));
+    CeDistributedInformation ceDistributedInformation = new CeDistributedInformationImpl(hzClientWrapper, mock(CeWorkerFactory.class));
+
+    when(hzClientWrapper.getClientUUID()).thenReturn(clientUUID1);
+    assertThat(ceDistributedInformation.isQueueWatcher()).isTrue();
+
+    when(hzClientWrapper.getClientUUID()).thenReturn(clientUUID2);
+    assertThat(ceDistributedInformation.isQueueWatcher()).isFalse();
+
+    // client 1 left the cluster
+    when(hzClientWrapper.getConnectedClients()).thenReturn(ImmutableSet.of(clientUUID2, clientUUID3));
+    assertThat(ceDistributedInformation.isQueueWatcher()).isTrue();
+  }
+
+  @Test
+  public void broadcastPendingTasks_publishes_count_on_cluster_topic() {
+    CeDistributedInformation ceDistributedInformation = new CeDistributedInformationImpl(hzClientWrapper, mock(CeWorkerFactory.class));
+
+    ceDistributedInformation.broadcastPendingTasks(5);
+
+    verify(hzClientWrapper).publish(CE_PENDING_TASKS, 5);
+  }
 }
@@ -20,6 +20,8 @@
 package org.sonar.ce;
 
 import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -98,4 +100,23 @@ public class StandaloneCeDistributedInformationTest {
         }
       });
   }
+
+  @Test
+  public void standalone_compute_engine_is_always_the_queue_watcher() {
+    StandaloneCeDistributedInformation ceCluster = new StandaloneCeDistributedInformation(mock(CeWorkerFactory.class));
+
+    assertThat(ceCluster.isQueueWatcher()).isTrue();
+  }
+
+  @Test
+  public void broadcastPendingTasks_notifies_local_listeners() {
+    StandaloneCeDistributedInformation ceCluster = new StandaloneCeDistributedInformation(mock(CeWorkerFactory.class));
+    List<Integer> notifications = new ArrayList<>();
+    ceCluster.addPendingTasksListener(notifications::add);
+    ceCluster.addPendingTasksListener(notifications::add);
+
+    ceCluster.broadcastPendingTasks(3);
+
+    assertThat(notifications).containsExactly(3, 3);
+  }
 }
@@ -37,6 +37,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang.RandomStringUtils;
@@ -226,6 +227,27 @@ public class HazelcastClientWrapperImplTest {
     }
   }
 
+  @Test
+  public void client_must_receive_messages_published_on_topics() throws InterruptedException {
+    hzClient.start();
+    try {
+      CountDownLatch received = new CountDownLatch(2);
+      List<Integer> messages = new CopyOnWriteArrayList<>();
+      hzClient.<Integer>subscribe("TEST_TOPIC", message -> {
+        messages.add(message);
+        received.countDown();
+      });
+
+      hzClient.publish("TEST_TOPIC", 1);
+      hzCluster.getTopic("TEST_TOPIC").publish(2);
+
+      assertThat(received.await(10, TimeUnit.SECONDS)).isTrue();
+      assertThat(messages).containsOnly(1, 2);
+    } finally {
+      hzClient.stop();
+    }
+  }
+
   @Test
   public void configuration_tweaks_of_hazelcast_must_be_present() {
     hzClient.start();
@@ -21,6 +21,7 @@ package org.sonar.ce.container;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -40,18 +41,20 @@ public class CePluginJarExploderTest {
   CePluginJarExploder underTest = new CePluginJarExploder(fs);
 
   @Test
-  public void explode_jar_to_temp_directory() throws Exception {
+  public void explode_jar_to_data_directory() throws Exception {
     PluginInfo info = PluginInfo.create(plugin1Jar());
 
     ExplodedPlugin exploded = underTest.explode(info);
 
-    // all the files loaded by classloaders (JAR + META-INF/libs/*.jar) are copied to a dedicated temp directory
+    // all the files loaded by classloaders (JAR + META-INF/libs/*.jar) are copied to a dedicated directory,
+    // identified by the hash of the JAR
     File copiedJar = exploded.getMain();
 
     assertThat(exploded.getKey()).isEqualTo("test");
     assertThat(copiedJar).isFile().exists();
-    assertThat(copiedJar.getParentFile()).isDirectory().hasName("test");
-    assertThat(copiedJar.getParentFile().getParentFile()).isDirectory().hasName("ce-exploded-plugins");
+    assertThat(copiedJar.getParentFile().getParentFile()).isDirectory().hasName("test");
+    assertThat(copiedJar.getParentFile().getParentFile().getParentFile()).isDirectory().hasName("exploded-plugins");
+    assertThat(copiedJar.getCanonicalPath()).startsWith(fs.getDataDir().getCanonicalPath());
   }
 
   @Test
@@ -81,6 +84,17 @@ public class CePluginJarExploderTest {
     assertThat(dirSize1).isEqualTo(dirSize2);
   }
 
+  @Test
+  public void delete_plugins_which_are_not_installed() throws Exception {
+    ExplodedPlugin exploded1 = underTest.explode(PluginInfo.create(plugin1Jar()));
+    ExplodedPlugin exploded2 = underTest.explode(PluginInfo.create(plugin2Jar()));
+
+    underTest.deleteUnused(Collections.singleton("test2"));
+
+    assertThat(exploded1.getMain()).doesNotExist();
+    assertThat(exploded2.getMain()).exists();
+  }
+
   private File plugin1Jar() {
     return new File("src/test/plugins/sonar-test-plugin/target/sonar-test-plugin-0.1-SNAPSHOT.jar");
   }
@@ -91,7 +105,7 @@ public class CePluginJarExploderTest {
 
   private class DumbFileSystem implements ServerFileSystem {
     private final TemporaryFolder temp;
-    private File tempDir;
+    private File dataDir;
 
     public DumbFileSystem(TemporaryFolder temp) {
       this.temp = temp;
@@ -99,7 +113,14 @@ public class CePluginJarExploderTest {
 
     @Override
     public File getDataDir() {
-      throw new UnsupportedOperationException();
+      if (dataDir == null) {
+        try {
+          this.dataDir = temp.newFolder();
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      return dataDir;
     }
 
     @Override
@@ -114,14 +135,7 @@ public class CePluginJarExploderTest {
 
     @Override
     public File getTempDir() {
-      if (tempDir == null) {
-        try {
-          this.tempDir = temp.newFolder();
-        } catch (IOException e) {
-          throw new IllegalStateException(e);
-        }
-      }
-      return tempDir;
+      throw new UnsupportedOperationException();
     }
 
     @Override
@@ -126,9 +126,9 @@ public class ComputeEngineContainerImplTest {
           CONTAINER_ITSELF
             + 72 // level 4
             + 4 // content of CeConfigurationModule
-            + 4 // content of CeQueueModule
+            + 7 // content of CeQueueModule
             + 4 // content of CeHttpModule
-            + 3 // content of CeTaskCommonsModule
+            + 4 // content of CeTaskCommonsModule
             + 4 // content of ProjectAnalysisTaskModule
             + 5 // content of CeTaskProcessorModule
             + 3 // CeCleaningModule + its content
@@ -43,7 +43,7 @@ public class CeQueueCleanerTest {
 
   private ServerUpgradeStatus serverUpgradeStatus = mock(ServerUpgradeStatus.class);
   private InternalCeQueue queue = mock(InternalCeQueue.class);
-  private CeQueueCleaner underTest = new CeQueueCleaner(dbTester.getDbClient(), serverUpgradeStatus, queue);
+  private CeQueueCleaner underTest = new CeQueueCleaner(dbTester.getDbClient(), serverUpgradeStatus, queue, new DbReportSpool(dbTester.getDbClient()));
 
   @Test
   public void start_resets_in_progress_tasks_to_pending() throws IOException {
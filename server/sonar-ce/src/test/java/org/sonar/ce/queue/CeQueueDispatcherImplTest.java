@@ -0,0 +1,172 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.utils.System2;
+import org.sonar.ce.CeDistributedInformation;
+import org.sonar.ce.StandaloneCeDistributedInformation;
+import org.sonar.ce.configuration.CeConfigurationRule;
+import org.sonar.ce.taskprocessor.CeWorkerFactory;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbTester;
+import org.sonar.db.ce.CeQueueDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CeQueueDispatcherImplTest {
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
+
+  private CeQueueDispatcherExecutorService executorService;
+  private CeDistributedInformation ceDistributedInformation = new StandaloneCeDistributedInformation(mock(CeWorkerFactory.class));
+  private AtomicInteger wakeUps = new AtomicInteger();
+  private Runnable watchQueue;
+
+  private CeQueueDispatcherImpl underTest;
+
+  @Before
+  public void setUp() {
+    ceConfiguration.setQueuePollingDelay(500);
+    startDispatcher(dbTester.getDbClient(), ceDistributedInformation);
+  }
+
+  @Test
+  public void idle_workers_are_not_woken_up_when_queue_is_empty() {
+    underTest.awaitTasks(wakeUps::incrementAndGet);
+
+    watchQueue.run();
+
+    assertThat(wakeUps.get()).isZero();
+  }
+
+  @Test
+  public void wake_up_as_many_idle_workers_as_pending_tasks() {
+    insertPendingTask("T1");
+    insertPendingTask("T2");
+    for (int i = 0; i < 3; i++) {
+      underTest.awaitTasks(wakeUps::incrementAndGet);
+    }
+
+    watchQueue.run();
+    assertThat(wakeUps.get()).isEqualTo(2);
+
+    // the remaining idle worker is woken up at next watch if tasks are still pending
+    watchQueue.run();
+    assertThat(wakeUps.get()).isEqualTo(3);
+
+    // each worker is woken up only once
+    watchQueue.run();
+    assertThat(wakeUps.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void idle_workers_are_woken_up_by_notifications_of_other_nodes() {
+    underTest.awaitTasks(wakeUps::incrementAndGet);
+    underTest.awaitTasks(wakeUps::incrementAndGet);
+
+    ceDistributedInformation.broadcastPendingTasks(1);
+
+    assertThat(wakeUps.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void only_the_queue_watcher_counts_pending_tasks() {
+    CeDistributedInformation clusteredInformation = mock(CeDistributedInformation.class);
+    when(clusteredInformation.isQueueWatcher()).thenReturn(false);
+    startDispatcher(dbTester.getDbClient(), clusteredInformation);
+    insertPendingTask("T1");
+
+    watchQueue.run();
+    verify(clusteredInformation, never()).broadcastPendingTasks(anyInt());
+
+    when(clusteredInformation.isQueueWatcher()).thenReturn(true);
+    watchQueue.run();
+    verify(clusteredInformation).broadcastPendingTasks(1);
+  }
+
+  @Test
+  public void idle_workers_are_woken_up_if_queue_can_not_be_watched() {
+    DbClient dbClient = mock(DbClient.class);
+    when(dbClient.openSession(false)).thenThrow(new IllegalStateException("Faking a database failure"));
+    startDispatcher(dbClient, ceDistributedInformation);
+    underTest.awaitTasks(wakeUps::incrementAndGet);
+    underTest.awaitTasks(wakeUps::incrementAndGet);
+
+    watchQueue.run();
+
+    assertThat(wakeUps.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void stop_forgets_idle_workers() {
+    insertPendingTask("T1");
+    underTest.awaitTasks(wakeUps::incrementAndGet);
+
+    underTest.stop();
+    watchQueue.run();
+
+    assertThat(wakeUps.get()).isZero();
+  }
+
+  @Test
+  public void failure_of_a_wake_up_does_not_prevent_other_workers_from_being_woken_up() {
+    underTest.awaitTasks(() -> {
+      throw new IllegalStateException("Faking a failure of worker");
+    });
+    underTest.awaitTasks(wakeUps::incrementAndGet);
+
+    ceDistributedInformation.broadcastPendingTasks(2);
+
+    assertThat(wakeUps.get()).isEqualTo(1);
+  }
+
+  private void startDispatcher(DbClient dbClient, CeDistributedInformation distributedInformation) {
+    executorService = mock(CeQueueDispatcherExecutorService.class);
+    underTest = new CeQueueDispatcherImpl(executorService, dbClient, ceConfiguration, distributedInformation);
+    underTest.start();
+
+    ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+    verify(executorService).scheduleWithFixedDelay(captor.capture(), eq(500L), eq(500L), eq(TimeUnit.MILLISECONDS));
+    watchQueue = captor.getValue();
+  }
+
+  private void insertPendingTask(String uuid) {
+    dbTester.getDbClient().ceQueueDao().insert(dbTester.getSession(), new CeQueueDto()
+      .setUuid(uuid)
+      .setTaskType("foo")
+      .setStatus(CeQueueDto.Status.PENDING));
+    dbTester.commit();
+  }
+}
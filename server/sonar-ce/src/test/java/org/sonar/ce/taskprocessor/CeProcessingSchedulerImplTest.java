@@ -48,6 +48,7 @@ import org.junit.rules.DisableOnDebug;
 import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
 import org.sonar.ce.configuration.CeConfigurationRule;
+import org.sonar.ce.queue.CeQueueDispatcher;
 
 import static com.google.common.collect.ImmutableList.copyOf;
 import static java.util.Collections.emptySet;
@@ -79,8 +80,10 @@ public class CeProcessingSchedulerImplTest {
   private SchedulerCall extendedDelayedPoll = new SchedulerCall(ceWorker, 30000L, MILLISECONDS);
   private SchedulerCall notDelayedPoll = new SchedulerCall(ceWorker);
   private EnabledCeWorkerController ceWorkerController = new EnabledCeWorkerControllerImpl(ceConfiguration);
+  private StubCeQueueDispatcher queueDispatcher = new StubCeQueueDispatcher();
 
-  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController);
+  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController,
+    queueDispatcher);
 
   @Test
   public void polls_without_delay_when_CeWorkerCallable_returns_TASK_PROCESSED() throws Exception {
@@ -109,16 +112,24 @@ public class CeProcessingSchedulerImplTest {
   }
 
   @Test
-  public void polls_with_regular_delay_when_CeWorkerCallable_returns_NO_TASK() throws Exception {
+  public void waits_for_pending_tasks_when_CeWorkerCallable_returns_NO_TASK() throws Exception {
     when(ceWorker.call())
       .thenReturn(NO_TASK)
       .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    queueDispatcher.wakeUpImmediately = false;
 
     startSchedulingAndRun();
 
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(regularDelayedPoll);
+    assertThat(queueDispatcher.idleWorkers).hasSize(1);
+
+    queueDispatcher.wakeUpIdleWorkers();
+    processingExecutorService.runFutures();
+
     assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
-      regularDelayedPoll);
+      notDelayedPoll);
+    assertThat(queueDispatcher.idleWorkers).isEmpty();
   }
 
   @Test
@@ -154,25 +165,23 @@ public class CeProcessingSchedulerImplTest {
       regularDelayedPoll,
       notDelayedPoll,
       notDelayedPoll,
-      regularDelayedPoll,
       notDelayedPoll,
-      regularDelayedPoll,
       notDelayedPoll,
-      regularDelayedPoll,
-      regularDelayedPoll,
-      regularDelayedPoll);
+      notDelayedPoll,
+      notDelayedPoll,
+      notDelayedPoll,
+      notDelayedPoll,
+      notDelayedPoll);
+    assertThat(queueDispatcher.awaitCount).isEqualTo(5);
   }
 
   @Test
   public void stopScheduling_cancels_next_polling_and_does_not_add_any_new_one() throws Exception {
     when(ceWorker.call())
-      .thenReturn(NO_TASK)
-      .thenReturn(TASK_PROCESSED)
-      .thenReturn(NO_TASK)
-      .thenReturn(NO_TASK)
-      .thenReturn(NO_TASK)
-      .thenReturn(NO_TASK)
-      .thenReturn(NO_TASK)
+      .thenReturn(DISABLED)
+      .thenReturn(DISABLED)
+      .thenReturn(DISABLED)
+      .thenReturn(DISABLED)
       .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
 
     underTest.startScheduling();
@@ -196,9 +205,23 @@ public class CeProcessingSchedulerImplTest {
     assertThat(cancelledTaskFutureCount).isEqualTo(1);
     assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
-      regularDelayedPoll,
-      notDelayedPoll,
-      regularDelayedPoll);
+      extendedDelayedPoll,
+      extendedDelayedPoll);
+  }
+
+  @Test
+  public void stopScheduling_prevents_idle_worker_from_polling_when_tasks_are_pending() throws Exception {
+    when(ceWorker.call())
+      .thenReturn(NO_TASK)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    queueDispatcher.wakeUpImmediately = false;
+    startSchedulingAndRun();
+
+    underTest.stopScheduling();
+    queueDispatcher.wakeUpIdleWorkers();
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(regularDelayedPoll);
   }
 
   @Test
@@ -219,7 +242,8 @@ public class CeProcessingSchedulerImplTest {
     when(processingExecutorService.schedule(any(CeWorker.class), any(Long.class), any(TimeUnit.class))).thenReturn(listenableScheduledFuture);
 
     CeWorkerFactory ceWorkerFactory = spy(new TestCeWorkerFactory(workers));
-    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController);
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController,
+      queueDispatcher);
     when(processingExecutorService.schedule(ceWorker, ceConfiguration.getQueuePollingDelay(), MILLISECONDS))
       .thenReturn(listenableScheduledFuture);
 
@@ -268,6 +292,28 @@ public class CeProcessingSchedulerImplTest {
    * {@link CeProcessingSchedulerExecutorService#schedule(Callable, long, TimeUnit)} which is used by
    * {@link CeProcessingSchedulerImpl}.
    */
+  private static class StubCeQueueDispatcher implements CeQueueDispatcher {
+    private final List<Runnable> idleWorkers = new ArrayList<>();
+    private boolean wakeUpImmediately = true;
+    private int awaitCount = 0;
+
+    @Override
+    public void awaitTasks(Runnable wakeUp) {
+      awaitCount++;
+      if (wakeUpImmediately) {
+        wakeUp.run();
+      } else {
+        idleWorkers.add(wakeUp);
+      }
+    }
+
+    void wakeUpIdleWorkers() {
+      List<Runnable> wakeUps = new ArrayList<>(idleWorkers);
+      idleWorkers.clear();
+      wakeUps.forEach(Runnable::run);
+    }
+  }
+
   private static class StubCeProcessingSchedulerExecutorService implements CeProcessingSchedulerExecutorService {
 
     private final Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
@@ -0,0 +1,301 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import org.apache.commons.dbutils.DbUtils;
+import org.sonar.api.config.Configuration;
+import org.sonar.db.dialect.Oracle;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Buffers rows to be inserted in a table and inserts them by batches, each batch with a single multi-row
+ * INSERT statement ({@code INSERT ALL} on Oracle).
+ * <p>
+ * Statements are executed on the JDBC connection of the {@link DbSession}, outside of MyBatis, which is much cheaper
+ * than binding the parameters of a dynamic MyBatis statement. The statement used for full batches is prepared once
+ * and re-used. The number of rows of a batch is limited so that the statement has at most
+ * {@link #MAX_PARAMETERS_PER_STATEMENT} parameters.
+ * </p>
+ * <p>
+ * Buffered rows are inserted when the batch is full, on {@link #flush()} and on {@link #close()}. They are part of
+ * the transaction of the session and are committed by {@link DbSession#commit()}.
+ * </p>
+ */
+public class BatchInserter<T> implements AutoCloseable {
+  /**
+   * Maximum number of rows inserted by a single statement. Default value is {@link #DEFAULT_BATCH_SIZE}.
+   */
+  public static final String BATCH_SIZE_PROPERTY = "sonar.db.insertBatchSize";
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /**
+   * Oracle does not support more than 1000 columns in INSERT ALL statements and MsSQL more than 2100 parameters
+   * per statement.
+   */
+  static final int MAX_PARAMETERS_PER_STATEMENT = 999;
+
+  private final DbSession session;
+  private final String table;
+  private final List<Column<T>> columns;
+  private final boolean oracle;
+  private final int batchSize;
+  private final long maxBatchWeight;
+  private final ToLongFunction<T> weigher;
+  private List<T> rows;
+  private long rowsWeight = 0;
+  private PreparedStatement fullBatchStatement;
+  private boolean closed = false;
+
+  private BatchInserter(Builder<T> builder) {
+    this.session = builder.session;
+    this.table = builder.table;
+    this.columns = builder.columns;
+    this.oracle = Oracle.ID.equals(builder.session.getConfiguration().getDatabaseId());
+    this.batchSize = Math.max(1, Math.min(builder.batchSize, MAX_PARAMETERS_PER_STATEMENT / columns.size()));
+    this.maxBatchWeight = builder.maxBatchWeight;
+    this.weigher = builder.weigher;
+    this.rows = new ArrayList<>(batchSize);
+  }
+
+  public static <T> Builder<T> builder(DbSession session, String table) {
+    return new Builder<>(session, table);
+  }
+
+  /**
+   * Batch size defined by property {@link #BATCH_SIZE_PROPERTY}, if any, else {@link #DEFAULT_BATCH_SIZE}.
+   */
+  public static int getBatchSize(Configuration configuration) {
+    return configuration.getInt(BATCH_SIZE_PROPERTY).orElse(DEFAULT_BATCH_SIZE);
+  }
+
+  public BatchInserter<T> add(T row) {
+    checkState(!closed, "Inserter is closed");
+    rows.add(row);
+    rowsWeight += weigher.applyAsLong(row);
+    if (rows.size() >= batchSize || rowsWeight >= maxBatchWeight) {
+      flush();
+    }
+    return this;
+  }
+
+  /**
+   * Inserts the buffered rows, if any.
+   */
+  public void flush() {
+    if (rows.isEmpty()) {
+      return;
+    }
+    try {
+      if (rows.size() == batchSize) {
+        if (fullBatchStatement == null) {
+          fullBatchStatement = prepareStatement(batchSize);
+        }
+        execute(fullBatchStatement);
+      } else {
+        try (PreparedStatement stmt = prepareStatement(rows.size())) {
+          execute(stmt);
+        }
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to insert rows in table " + table, e);
+    }
+    DbSessionImpl.markExecutedOutsideMyBatis(session);
+    rows.clear();
+    rowsWeight = 0;
+  }
+
+  /**
+   * Maximum number of rows inserted by a single statement.
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      closed = true;
+      DbUtils.closeQuietly(fullBatchStatement);
+    }
+  }
+
+  private PreparedStatement prepareStatement(int rowCount) throws SQLException {
+    Connection connection = session.getConnection();
+    return connection.prepareStatement(buildSql(rowCount));
+  }
+
+  String buildSql(int rowCount) {
+    StringBuilder columnNames = new StringBuilder();
+    StringBuilder placeholders = new StringBuilder("(");
+    for (Column<T> column : columns) {
+      if (columnNames.length() > 0) {
+        columnNames.append(", ");
+        placeholders.append(", ");
+      }
+      columnNames.append(column.name);
+      placeholders.append('?');
+    }
+    placeholders.append(')');
+
+    StringBuilder sql = new StringBuilder();
+    if (oracle) {
+      sql.append("INSERT ALL");
+      for (int i = 0; i < rowCount; i++) {
+        sql.append(" INTO ").append(table).append(" (").append(columnNames).append(") VALUES ").append(placeholders);
+      }
+      sql.append(" SELECT 1 FROM DUAL");
+    } else {
+      sql.append("INSERT INTO ").append(table).append(" (").append(columnNames).append(") VALUES ");
+      for (int i = 0; i < rowCount; i++) {
+        if (i > 0) {
+          sql.append(", ");
+        }
+        sql.append(placeholders);
+      }
+    }
+    return sql.toString();
+  }
+
+  private void execute(PreparedStatement stmt) throws SQLException {
+    int index = 1;
+    for (T row : rows) {
+      for (Column<T> column : columns) {
+        column.bind(stmt, index, row);
+        index++;
+      }
+    }
+    stmt.executeUpdate();
+  }
+
+  public static class Builder<T> {
+    private final DbSession session;
+    private final String table;
+    private final List<Column<T>> columns = new ArrayList<>();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long maxBatchWeight = Long.MAX_VALUE;
+    private ToLongFunction<T> weigher = row -> 0L;
+
+    private Builder(DbSession session, String table) {
+      this.session = session;
+      this.table = table;
+    }
+
+    /**
+     * @param sqlType one of {@link Types}, used to bind {@code null} values and to stream values of
+     *                {@link Types#BLOB} and {@link Types#CLOB} columns
+     * @param getter value of column, can be {@code null}. Supported types are String, Integer, Long, Double, Boolean
+     *               and byte[].
+     */
+    public Builder<T> addColumn(String name, int sqlType, Function<T, Object> getter) {
+      columns.add(new Column<>(name, sqlType, getter));
+      return this;
+    }
+
+    public Builder<T> setBatchSize(int batchSize) {
+      checkArgument(batchSize > 0, "Batch size must be strictly positive: %s", batchSize);
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Batch is inserted as soon as the total weight of its rows reaches {@code maxBatchWeight}, whatever its number
+     * of rows, so that large rows are not kept in memory.
+     *
+     * @param weigher weight of a row, usually its approximate size in bytes
+     */
+    public Builder<T> setMaxBatchWeight(long maxBatchWeight, ToLongFunction<T> weigher) {
+      checkArgument(maxBatchWeight > 0, "Maximum weight of batch must be strictly positive: %s", maxBatchWeight);
+      this.maxBatchWeight = maxBatchWeight;
+      this.weigher = weigher;
+      return this;
+    }
+
+    public BatchInserter<T> build() {
+      checkArgument(!columns.isEmpty(), "At least one column must be defined");
+      return new BatchInserter<>(this);
+    }
+  }
+
+  private static class Column<T> {
+    private final String name;
+    private final int sqlType;
+    private final Function<T, Object> getter;
+
+    private Column(String name, int sqlType, Function<T, Object> getter) {
+      this.name = name;
+      this.sqlType = sqlType;
+      this.getter = getter;
+    }
+
+    private void bind(PreparedStatement stmt, int index, T row) throws SQLException {
+      Object value = getter.apply(row);
+      if (value == null) {
+        stmt.setNull(index, sqlType);
+      } else if (value instanceof String) {
+        bindString(stmt, index, (String) value);
+      } else if (value instanceof Integer) {
+        stmt.setInt(index, (Integer) value);
+      } else if (value instanceof Long) {
+        stmt.setLong(index, (Long) value);
+      } else if (value instanceof Double) {
+        stmt.setDouble(index, (Double) value);
+      } else if (value instanceof Boolean) {
+        stmt.setBoolean(index, (Boolean) value);
+      } else if (value instanceof byte[]) {
+        bindBytes(stmt, index, (byte[]) value);
+      } else {
+        throw new IllegalArgumentException(String.format("Unsupported type %s of column %s", value.getClass().getName(), name));
+      }
+    }
+
+    private void bindString(PreparedStatement stmt, int index, String value) throws SQLException {
+      if (sqlType == Types.CLOB) {
+        stmt.setCharacterStream(index, new StringReader(value), value.length());
+      } else {
+        stmt.setString(index, value);
+      }
+    }
+
+    private void bindBytes(PreparedStatement stmt, int index, byte[] value) throws SQLException {
+      if (sqlType == Types.BLOB) {
+        stmt.setBinaryStream(index, new ByteArrayInputStream(value), value.length);
+      } else {
+        stmt.setBytes(index, value);
+      }
+    }
+  }
+}
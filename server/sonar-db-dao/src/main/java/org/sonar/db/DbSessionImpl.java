@@ -32,19 +32,39 @@ import org.apache.ibatis.session.SqlSession;
 public class DbSessionImpl implements DbSession {
 
   private SqlSession session;
+  /**
+   * MyBatis commits or rolls back the transaction only if statements were executed through the session. This flag
+   * is raised when statements are executed directly on the JDBC connection, for example by {@link BatchInserter}.
+   */
+  private boolean executedOutsideMyBatis = false;
 
   public DbSessionImpl(SqlSession session) {
     this.session = session;
   }
 
+  static void markExecutedOutsideMyBatis(DbSession dbSession) {
+    DbSession unwrapped = dbSession;
+    while (unwrapped instanceof DelegatingDbSession) {
+      unwrapped = ((DelegatingDbSession) unwrapped).getDelegate();
+    }
+    if (unwrapped instanceof DbSessionImpl) {
+      ((DbSessionImpl) unwrapped).executedOutsideMyBatis = true;
+    }
+  }
+
   @Override
   public void commit() {
-    session.commit();
+    if (executedOutsideMyBatis) {
+      commit(true);
+    } else {
+      session.commit();
+    }
   }
 
   @Override
   public void commit(boolean force) {
-    session.commit(force);
+    session.commit(force || executedOutsideMyBatis);
+    executedOutsideMyBatis = false;
   }
 
   /**
@@ -154,12 +174,17 @@ public class DbSessionImpl implements DbSession {
 
   @Override
   public void rollback() {
-    session.rollback();
+    if (executedOutsideMyBatis) {
+      rollback(true);
+    } else {
+      session.rollback();
+    }
   }
 
   @Override
   public void rollback(boolean force) {
-    session.rollback(force);
+    session.rollback(force || executedOutsideMyBatis);
+    executedOutsideMyBatis = false;
   }
 
   @Override
@@ -169,6 +194,9 @@ public class DbSessionImpl implements DbSession {
 
   @Override
   public void close() {
+    if (executedOutsideMyBatis) {
+      rollback(true);
+    }
     session.close();
   }
 
@@ -136,7 +136,11 @@ public class CeQueueDao implements Dao {
   }
 
   public Optional<CeQueueDto> peek(DbSession session, String workerUuid, int maxExecutionCount) {
-    List<EligibleTaskDto> eligibles = mapper(session).selectEligibleForPeek(maxExecutionCount, ONE_RESULT_PAGINATION);
+    // tasks of low priority are peeked only when no other task is eligible
+    List<EligibleTaskDto> eligibles = mapper(session).selectEligibleForPeek(maxExecutionCount, CeTaskTypes.PROJECT_PURGE, ONE_RESULT_PAGINATION);
+    if (eligibles.isEmpty()) {
+      eligibles = mapper(session).selectEligibleForPeek(maxExecutionCount, null, ONE_RESULT_PAGINATION);
+    }
     if (eligibles.isEmpty()) {
       return Optional.empty();
     }
@@ -23,6 +23,12 @@ public final class CeTaskTypes {
   
   public static final String REPORT = "REPORT";
 
+  /**
+   * Purge of the history of a project. Tasks of this type have a low priority: they are executed only when
+   * no other task is eligible.
+   */
+  public static final String PROJECT_PURGE = "PROJECT_PURGE";
+
   private CeTaskTypes() {
     // only statics
   }
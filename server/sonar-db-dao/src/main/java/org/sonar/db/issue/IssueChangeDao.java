@@ -19,11 +19,13 @@
  */
 package org.sonar.db.issue;
 
+import java.sql.Types;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.sonar.core.issue.FieldDiffs;
 import org.sonar.core.util.stream.MoreCollectors;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
@@ -56,6 +58,28 @@ public class IssueChangeDao implements Dao {
     mapper(session).insert(change);
   }
 
+  /**
+   * Changes added to the returned inserter are inserted with multi-row statements when batch is full or
+   * when inserter is flushed or closed.
+   */
+  public BatchInserter<IssueChangeDto> newBatchInserter(DbSession session) {
+    return newBatchInserter(session, BatchInserter.DEFAULT_BATCH_SIZE);
+  }
+
+  public BatchInserter<IssueChangeDto> newBatchInserter(DbSession session, int batchSize) {
+    return BatchInserter.<IssueChangeDto>builder(session, "issue_changes")
+      .addColumn("kee", Types.VARCHAR, IssueChangeDto::getKey)
+      .addColumn("issue_key", Types.VARCHAR, IssueChangeDto::getIssueKey)
+      .addColumn("user_login", Types.VARCHAR, IssueChangeDto::getUserLogin)
+      .addColumn("change_type", Types.VARCHAR, IssueChangeDto::getChangeType)
+      .addColumn("change_data", Types.VARCHAR, IssueChangeDto::getChangeData)
+      .addColumn("created_at", Types.BIGINT, IssueChangeDto::getCreatedAt)
+      .addColumn("updated_at", Types.BIGINT, IssueChangeDto::getUpdatedAt)
+      .addColumn("issue_change_creation_date", Types.BIGINT, IssueChangeDto::getIssueChangeCreationDate)
+      .setBatchSize(batchSize)
+      .build();
+  }
+
   public boolean delete(DbSession session, String key) {
     IssueChangeMapper mapper = mapper(session);
     int count = mapper.delete(key);
@@ -21,6 +21,7 @@ package org.sonar.db.issue;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicates;
+import java.sql.Types;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -29,6 +30,7 @@ import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.RowNotFoundException;
@@ -107,6 +109,44 @@ public class IssueDao implements Dao {
     mapper(session).insert(dto);
   }
 
+  /**
+   * Issues added to the returned inserter are inserted with multi-row statements when batch is full or
+   * when inserter is flushed or closed.
+   */
+  public BatchInserter<IssueDto> newBatchInserter(DbSession session) {
+    return newBatchInserter(session, BatchInserter.DEFAULT_BATCH_SIZE);
+  }
+
+  public BatchInserter<IssueDto> newBatchInserter(DbSession session, int batchSize) {
+    return BatchInserter.<IssueDto>builder(session, "issues")
+      .addColumn("kee", Types.VARCHAR, IssueDto::getKee)
+      .addColumn("rule_id", Types.INTEGER, IssueDto::getRuleId)
+      .addColumn("severity", Types.VARCHAR, IssueDto::getSeverity)
+      .addColumn("manual_severity", Types.BOOLEAN, IssueDto::isManualSeverity)
+      .addColumn("message", Types.VARCHAR, IssueDto::getMessage)
+      .addColumn("line", Types.INTEGER, IssueDto::getLine)
+      .addColumn("locations", Types.BINARY, IssueDto::getLocations)
+      .addColumn("gap", Types.DOUBLE, IssueDto::getGap)
+      .addColumn("effort", Types.INTEGER, IssueDto::getEffort)
+      .addColumn("status", Types.VARCHAR, IssueDto::getStatus)
+      .addColumn("tags", Types.VARCHAR, IssueDto::getTagsString)
+      .addColumn("resolution", Types.VARCHAR, IssueDto::getResolution)
+      .addColumn("checksum", Types.VARCHAR, IssueDto::getChecksum)
+      .addColumn("assignee", Types.VARCHAR, IssueDto::getAssignee)
+      .addColumn("author_login", Types.VARCHAR, IssueDto::getAuthorLogin)
+      .addColumn("issue_attributes", Types.VARCHAR, IssueDto::getIssueAttributes)
+      .addColumn("issue_creation_date", Types.BIGINT, IssueDto::getIssueCreationTime)
+      .addColumn("issue_update_date", Types.BIGINT, IssueDto::getIssueUpdateTime)
+      .addColumn("issue_close_date", Types.BIGINT, IssueDto::getIssueCloseTime)
+      .addColumn("created_at", Types.BIGINT, IssueDto::getCreatedAt)
+      .addColumn("updated_at", Types.BIGINT, IssueDto::getUpdatedAt)
+      .addColumn("component_uuid", Types.VARCHAR, IssueDto::getComponentUuid)
+      .addColumn("project_uuid", Types.VARCHAR, IssueDto::getProjectUuid)
+      .addColumn("issue_type", Types.INTEGER, IssueDto::getType)
+      .setBatchSize(batchSize)
+      .build();
+  }
+
   public void insert(DbSession session, IssueDto dto, IssueDto... others) {
     IssueMapper mapper = mapper(session);
     mapper.insert(dto);
@@ -21,16 +21,19 @@ package org.sonar.db.measure;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import java.sql.Types;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 
 import static java.util.Collections.emptyList;
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+import static org.sonar.db.DatabaseUtils.toUniqueAndSortedPartitions;
 
 public class MeasureDao implements Dao {
 
@@ -94,6 +97,24 @@ public class MeasureDao implements Dao {
       ids -> mapper(dbSession).selectPastMeasuresOnSingleAnalysis(componentUuid, analysisUuid, ids));
   }
 
+  /**
+   * Streams the measures of an analysis on a set of components. Components and metrics are partitioned,
+   * so that the number of queries is small even for large projects.
+   */
+  public void selectPastMeasures(DbSession dbSession, Collection<String> componentUuids, String analysisUuid, Collection<Integer> metricIds,
+    ResultHandler<PastMeasureDto> handler) {
+    if (componentUuids.isEmpty() || metricIds.isEmpty()) {
+      return;
+    }
+    MeasureMapper mapper = mapper(dbSession);
+    Iterable<List<Integer>> metricIdPartitions = toUniqueAndSortedPartitions(metricIds);
+    for (List<String> componentUuidPartition : toUniqueAndSortedPartitions(componentUuids)) {
+      for (List<Integer> metricIdPartition : metricIdPartitions) {
+        mapper.scrollPastMeasuresOnSingleAnalysis(componentUuidPartition, analysisUuid, metricIdPartition, handler);
+      }
+    }
+  }
+
   /**
    * Select measures of:
    * - one component
@@ -134,6 +155,30 @@ public class MeasureDao implements Dao {
     insert(session, Lists.asList(item, others));
   }
 
+  /**
+   * Measures added to the returned inserter are inserted with multi-row statements when batch is full or
+   * when inserter is flushed or closed.
+   */
+  public BatchInserter<MeasureDto> newBatchInserter(DbSession session) {
+    return newBatchInserter(session, BatchInserter.DEFAULT_BATCH_SIZE);
+  }
+
+  public BatchInserter<MeasureDto> newBatchInserter(DbSession session, int batchSize) {
+    return BatchInserter.<MeasureDto>builder(session, "project_measures")
+      .addColumn("value", Types.DOUBLE, MeasureDto::getValue)
+      .addColumn("metric_id", Types.INTEGER, MeasureDto::getMetricId)
+      .addColumn("component_uuid", Types.VARCHAR, MeasureDto::getComponentUuid)
+      .addColumn("analysis_uuid", Types.VARCHAR, MeasureDto::getAnalysisUuid)
+      .addColumn("text_value", Types.VARCHAR, MeasureDto::getTextValue)
+      .addColumn("alert_status", Types.VARCHAR, MeasureDto::getAlertStatus)
+      .addColumn("alert_text", Types.VARCHAR, MeasureDto::getAlertText)
+      .addColumn("person_id", Types.INTEGER, MeasureDto::getDeveloperId)
+      .addColumn("variation_value_1", Types.DOUBLE, MeasureDto::getVariation)
+      .addColumn("measure_data", Types.BINARY, MeasureDto::getDataValue)
+      .setBatchSize(batchSize)
+      .build();
+  }
+
   private static MeasureMapper mapper(DbSession session) {
     return session.getMapper(MeasureMapper.class);
   }
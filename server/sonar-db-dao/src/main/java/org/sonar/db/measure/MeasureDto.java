@@ -65,6 +65,16 @@ public class MeasureDto {
     return textValue;
   }
 
+  @CheckForNull
+  String getTextValue() {
+    return textValue;
+  }
+
+  @CheckForNull
+  byte[] getDataValue() {
+    return dataValue;
+  }
+
   public MeasureDto setData(@Nullable String data) {
     if (data == null) {
       this.textValue = null;
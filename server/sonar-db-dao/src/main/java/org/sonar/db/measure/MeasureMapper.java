@@ -39,6 +39,9 @@ public interface MeasureMapper {
   List<PastMeasureDto> selectPastMeasuresOnSingleAnalysis(@Param("componentUuid") String componentUuid, @Param("analysisUuid") String analysisUuid,
     @Param("metricIds") List<Integer> metricIds);
 
+  void scrollPastMeasuresOnSingleAnalysis(@Param("componentUuids") List<String> componentUuids, @Param("analysisUuid") String analysisUuid,
+    @Param("metricIds") List<Integer> metricIds, ResultHandler<PastMeasureDto> handler);
+
   List<MeasureDto> selectPastMeasuresOnSeveralAnalyses(@Param("query") PastMeasureQuery query);
 
   List<MeasureDto> selectProjectMeasuresOfDeveloper(@Param("developerId") long developerId, @Param("metricIds") Collection<Integer> metricIds);
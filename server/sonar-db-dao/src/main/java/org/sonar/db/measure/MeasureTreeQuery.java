@@ -50,12 +50,16 @@ public class MeasureTreeQuery {
   @CheckForNull
   private final Long personId;
 
+  @CheckForNull
+  private final Collection<String> componentUuids;
+
   private MeasureTreeQuery(Builder builder) {
     this.nameOrKeyQuery = builder.nameOrKeyQuery;
     this.qualifiers = builder.qualifiers == null ? null : newArrayList(builder.qualifiers);
     this.strategy = requireNonNull(builder.strategy);
     this.metricIds = builder.metricIds;
     this.personId = builder.personId;
+    this.componentUuids = builder.componentUuids == null ? null : newArrayList(builder.componentUuids);
   }
 
   @CheckForNull
@@ -90,6 +94,11 @@ public class MeasureTreeQuery {
     return personId;
   }
 
+  @CheckForNull
+  public Collection<String> getComponentUuids() {
+    return componentUuids;
+  }
+
   public String getUuidPath(ComponentDto component) {
     switch (strategy) {
       case CHILDREN:
@@ -102,7 +111,8 @@ public class MeasureTreeQuery {
   }
 
   public boolean returnsEmpty() {
-    return (metricIds != null && metricIds.isEmpty()) || (qualifiers != null && qualifiers.isEmpty());
+    return (metricIds != null && metricIds.isEmpty()) || (qualifiers != null && qualifiers.isEmpty())
+      || (componentUuids != null && componentUuids.isEmpty());
   }
 
   public static Builder builder() {
@@ -123,6 +133,9 @@ public class MeasureTreeQuery {
     @CheckForNull
     private Long personId;
 
+    @CheckForNull
+    private Collection<String> componentUuids;
+
     private Builder() {
     }
 
@@ -154,6 +167,15 @@ public class MeasureTreeQuery {
       return this;
     }
 
+    /**
+     * Restricts the tree to the given components, for example the page of components to be returned. All the components
+     * of the tree are selected if parameter is {@code null}.
+     */
+    public Builder setComponentUuids(@Nullable Collection<String> componentUuids) {
+      this.componentUuids = componentUuids;
+      return this;
+    }
+
     public MeasureTreeQuery build() {
       return new MeasureTreeQuery(this);
     }
@@ -26,6 +26,8 @@ import static java.util.Objects.requireNonNull;
 
 public class PastMeasureDto {
 
+  private String componentUuid;
+
   private int metricId;
 
   @CheckForNull
@@ -48,6 +50,19 @@ public class PastMeasureDto {
     return value != null;
   }
 
+  /**
+   * Only loaded when measures of several components are selected
+   */
+  @CheckForNull
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  PastMeasureDto setComponentUuid(@Nullable String componentUuid) {
+    this.componentUuid = componentUuid;
+    return this;
+  }
+
   public int getMetricId() {
     return metricId;
   }
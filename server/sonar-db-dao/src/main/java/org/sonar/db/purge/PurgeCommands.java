@@ -22,25 +22,43 @@ package org.sonar.db.purge;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.sonar.db.DbSession;
 
 import static com.google.common.collect.FluentIterable.from;
 import static java.util.Arrays.asList;
 
+/**
+ * Deletions of the purge. Rows are deleted by chunks of keys, each chunk being committed in its own
+ * transaction, so that locks are held for a bounded time. The {@link PurgeThrottler} can pause between chunks
+ * to leave room for the other transactions.
+ */
 class PurgeCommands {
 
   private static final int MAX_SNAPSHOTS_PER_QUERY = 1000;
   private static final int MAX_RESOURCES_PER_QUERY = 1000;
+  /**
+   * Each analysis has a measure per metric and component, so measures and duplications are deleted for fewer analyses at a time.
+   */
+  private static final int MAX_SNAPSHOTS_PER_MEASURES_QUERY = 100;
 
   private final DbSession session;
   private final PurgeMapper purgeMapper;
   private final PurgeProfiler profiler;
+  private final PurgeThrottler throttler;
 
-  PurgeCommands(DbSession session, PurgeMapper purgeMapper, PurgeProfiler profiler) {
+  PurgeCommands(DbSession session, PurgeMapper purgeMapper, PurgeProfiler profiler, PurgeThrottler throttler) {
     this.session = session;
     this.purgeMapper = purgeMapper;
     this.profiler = profiler;
+    this.throttler = throttler;
+  }
+
+  PurgeCommands(DbSession session, PurgeMapper purgeMapper, PurgeProfiler profiler) {
+    this(session, purgeMapper, profiler, PurgeThrottler.NONE);
   }
 
   @VisibleForTesting
@@ -57,25 +75,13 @@ class PurgeCommands {
   }
 
   void deleteAnalyses(String rootUuid) {
-    profiler.start("deleteAnalyses (events)");
-    purgeMapper.deleteEventsByComponentUuid(rootUuid);
-    session.commit();
-    profiler.stop();
-
-    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(purgeMapper.selectAnalysisIdsAndUuids(new PurgeSnapshotQuery().setComponentUuid(rootUuid))),
-        MAX_SNAPSHOTS_PER_QUERY);
+    execute("deleteAnalyses (events)", () -> purgeMapper.deleteEventsByComponentUuid(rootUuid));
 
-    deleteAnalysisDuplications(analysisUuidsPartitions);
-
-    profiler.start("deleteAnalyses (project_measures)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisMeasures);
-    session.commit();
-    profiler.stop();
+    List<String> analysisUuids = IdUuidPairs.uuids(purgeMapper.selectAnalysisIdsAndUuids(new PurgeSnapshotQuery().setComponentUuid(rootUuid)));
 
-    profiler.start("deleteAnalyses (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalyses);
-    session.commit();
-    profiler.stop();
+    deleteAnalysisDuplications(analysisUuids);
+    executeByChunks("deleteAnalyses (project_measures)", analysisUuids, MAX_SNAPSHOTS_PER_MEASURES_QUERY, purgeMapper::deleteAnalysisMeasures);
+    executeByChunks("deleteAnalyses (snapshots)", analysisUuids, MAX_SNAPSHOTS_PER_QUERY, purgeMapper::deleteAnalyses);
   }
 
   void deleteAnalyses(PurgeSnapshotQuery... queries) {
@@ -87,145 +93,73 @@ class PurgeCommands {
 
   @VisibleForTesting
   void deleteAnalyses(List<IdUuidPair> analysisIdUuids) {
-    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisIdUuids), MAX_SNAPSHOTS_PER_QUERY);
-
-    deleteAnalysisDuplications(analysisUuidsPartitions);
-
-    profiler.start("deleteAnalyses (events)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisEvents);
-    session.commit();
-    profiler.stop();
+    List<String> analysisUuids = IdUuidPairs.uuids(analysisIdUuids);
 
-    profiler.start("deleteAnalyses (project_measures)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisMeasures);
-    session.commit();
-    profiler.stop();
-
-    profiler.start("deleteAnalyses (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalyses);
-    session.commit();
-    profiler.stop();
+    deleteAnalysisDuplications(analysisUuids);
+    executeByChunks("deleteAnalyses (events)", analysisUuids, MAX_SNAPSHOTS_PER_QUERY, purgeMapper::deleteAnalysisEvents);
+    executeByChunks("deleteAnalyses (project_measures)", analysisUuids, MAX_SNAPSHOTS_PER_MEASURES_QUERY, purgeMapper::deleteAnalysisMeasures);
+    executeByChunks("deleteAnalyses (snapshots)", analysisUuids, MAX_SNAPSHOTS_PER_QUERY, purgeMapper::deleteAnalyses);
   }
 
-  void purgeAnalyses(List<IdUuidPair> analysisUuids) {
-    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisUuids), MAX_SNAPSHOTS_PER_QUERY);
+  void purgeAnalyses(List<IdUuidPair> analysisIdUuids) {
+    List<String> analysisUuids = IdUuidPairs.uuids(analysisIdUuids);
 
-    deleteAnalysisDuplications(analysisUuidsPartitions);
+    deleteAnalysisDuplications(analysisUuids);
 
-    profiler.start("deleteSnapshotWastedMeasures (project_measures)");
-    List<Long> metricIdsWithoutHistoricalData = purgeMapper.selectMetricIdsWithoutHistoricalData();
-    analysisUuidsPartitions
-        .forEach(analysisUuidsPartition -> purgeMapper.deleteAnalysisWastedMeasures(analysisUuidsPartition, metricIdsWithoutHistoricalData));
-    session.commit();
-    profiler.stop();
+    if (!analysisUuids.isEmpty()) {
+      List<Long> metricIdsWithoutHistoricalData = purgeMapper.selectMetricIdsWithoutHistoricalData();
+      executeByChunks("deleteSnapshotWastedMeasures (project_measures)", analysisUuids, MAX_SNAPSHOTS_PER_MEASURES_QUERY,
+        analysisUuidsChunk -> purgeMapper.deleteAnalysisWastedMeasures(analysisUuidsChunk, metricIdsWithoutHistoricalData));
+    }
 
-    profiler.start("updatePurgeStatusToOne (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::updatePurgeStatusToOne);
-    session.commit();
-    profiler.stop();
+    executeByChunks("updatePurgeStatusToOne (snapshots)", analysisUuids, MAX_SNAPSHOTS_PER_QUERY, purgeMapper::updatePurgeStatusToOne);
   }
 
-  private void deleteAnalysisDuplications(List<List<String>> snapshotUuidsPartitions) {
-    profiler.start("deleteAnalysisDuplications (duplications_index)");
-    snapshotUuidsPartitions.forEach(purgeMapper::deleteAnalysisDuplications);
-    session.commit();
-    profiler.stop();
+  private void deleteAnalysisDuplications(List<String> analysisUuids) {
+    executeByChunks("deleteAnalysisDuplications (duplications_index)", analysisUuids, MAX_SNAPSHOTS_PER_MEASURES_QUERY, purgeMapper::deleteAnalysisDuplications);
   }
 
   void deletePermissions(long rootId) {
-    profiler.start("deletePermissions (group_roles)");
-    purgeMapper.deleteGroupRolesByComponentId(rootId);
-    session.commit();
-    profiler.stop();
-
-    profiler.start("deletePermissions (user_roles)");
-    purgeMapper.deleteUserRolesByComponentId(rootId);
-    session.commit();
-    profiler.stop();
+    execute("deletePermissions (group_roles)", () -> purgeMapper.deleteGroupRolesByComponentId(rootId));
+    execute("deletePermissions (user_roles)", () -> purgeMapper.deleteUserRolesByComponentId(rootId));
   }
 
   void deleteIssues(String rootUuid) {
-    profiler.start("deleteIssues (issue_changes)");
-    purgeMapper.deleteIssueChangesByProjectUuid(rootUuid);
-    session.commit();
-    profiler.stop();
-
-    profiler.start("deleteIssues (issues)");
-    purgeMapper.deleteIssuesByProjectUuid(rootUuid);
-    session.commit();
-    profiler.stop();
+    execute("deleteIssues (issue_changes)", () -> purgeMapper.deleteIssueChangesByProjectUuid(rootUuid));
+    execute("deleteIssues (issues)", () -> purgeMapper.deleteIssuesByProjectUuid(rootUuid));
   }
 
   void deleteIssues(List<String> componentUuids) {
-    if (componentUuids.isEmpty()) {
-      return;
-    }
-
-    List<List<String>> uuidPartitions = Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY);
-
-    profiler.start("deleteIssues (issue_changes)");
-    uuidPartitions.forEach(purgeMapper::deleteIssueChangesByComponentUuids);
-    session.commit();
-    profiler.stop();
+    executeByChunks("deleteIssues (issue_changes)", componentUuids, MAX_RESOURCES_PER_QUERY, purgeMapper::deleteIssueChangesByComponentUuids);
+    executeByChunks("deleteIssues (issues)", componentUuids, MAX_RESOURCES_PER_QUERY, purgeMapper::deleteIssuesByComponentUuids);
+  }
 
-    profiler.start("deleteIssues (issues)");
-    uuidPartitions.forEach(purgeMapper::deleteIssuesByComponentUuids);
-    session.commit();
-    profiler.stop();
+  void deleteIssuesByKeys(List<String> issueKeys) {
+    executeByChunks("deleteIssuesByKeys (issue_changes)", issueKeys, MAX_RESOURCES_PER_QUERY, purgeMapper::deleteIssueChangesFromIssueKeys);
+    executeByChunks("deleteIssuesByKeys (issues)", issueKeys, MAX_RESOURCES_PER_QUERY, purgeMapper::deleteIssuesFromKeys);
   }
 
   void deleteLinks(String rootUuid) {
-    profiler.start("deleteLinks (project_links)");
-    purgeMapper.deleteProjectLinksByComponentUuid(rootUuid);
-    session.commit();
-    profiler.stop();
+    execute("deleteLinks (project_links)", () -> purgeMapper.deleteProjectLinksByComponentUuid(rootUuid));
   }
 
   void deleteByRootAndModulesOrSubviews(List<IdUuidPair> rootAndModulesOrSubviewsIds) {
-    if (rootAndModulesOrSubviewsIds.isEmpty()) {
-      return;
-    }
-    List<List<Long>> idPartitions = Lists.partition(IdUuidPairs.ids(rootAndModulesOrSubviewsIds), MAX_RESOURCES_PER_QUERY);
-    List<List<String>> uuidsPartitions = Lists.partition(IdUuidPairs.uuids(rootAndModulesOrSubviewsIds), MAX_RESOURCES_PER_QUERY);
-
-    profiler.start("deleteByRootAndModulesOrSubviews (properties)");
-    idPartitions.forEach(purgeMapper::deletePropertiesByComponentIds);
-    session.commit();
-    profiler.stop();
-
-    profiler.start("deleteByRootAndModulesOrSubviews (manual_measures)");
-    uuidsPartitions.forEach(purgeMapper::deleteManualMeasuresByComponentUuids);
-    session.commit();
-    profiler.stop();
+    executeByChunks("deleteByRootAndModulesOrSubviews (properties)", IdUuidPairs.ids(rootAndModulesOrSubviewsIds), MAX_RESOURCES_PER_QUERY,
+      purgeMapper::deletePropertiesByComponentIds);
+    executeByChunks("deleteByRootAndModulesOrSubviews (manual_measures)", IdUuidPairs.uuids(rootAndModulesOrSubviewsIds), MAX_RESOURCES_PER_QUERY,
+      purgeMapper::deleteManualMeasuresByComponentUuids);
   }
 
   void deleteComponents(String rootUuid) {
-    profiler.start("deleteComponents (projects)");
-    purgeMapper.deleteComponentsByProjectUuid(rootUuid);
-    session.commit();
-    profiler.stop();
+    execute("deleteComponents (projects)", () -> purgeMapper.deleteComponentsByProjectUuid(rootUuid));
   }
 
   void deleteComponents(List<String> componentUuids) {
-    if (componentUuids.isEmpty()) {
-      return;
-    }
-
-    profiler.start("deleteComponents (projects)");
-    Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY).forEach(purgeMapper::deleteComponentsByUuids);
-    session.commit();
-    profiler.stop();
+    executeByChunks("deleteComponents (projects)", componentUuids, MAX_RESOURCES_PER_QUERY, purgeMapper::deleteComponentsByUuids);
   }
 
   void deleteComponentMeasures(List<String> componentUuids) {
-    if (componentUuids.isEmpty()) {
-      return;
-    }
-
-    profiler.start("deleteComponentMeasures (project_measures)");
-    Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY).forEach(purgeMapper::fullDeleteComponentMeasures);
-    session.commit();
-    profiler.stop();
+    executeByChunks("deleteComponentMeasures (project_measures)", componentUuids, MAX_RESOURCES_PER_QUERY, purgeMapper::fullDeleteComponentMeasures);
   }
 
   void deleteComponentMeasures(List<String> analysisUuids, List<String> componentUuids) {
@@ -233,55 +167,60 @@ class PurgeCommands {
       return;
     }
 
-    List<List<String>> analysisUuidsPartitions = Lists.partition(analysisUuids, MAX_SNAPSHOTS_PER_QUERY);
-    List<List<String>> componentUuidsPartitions = Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY);
-
-    profiler.start("deleteComponentMeasures");
-    for (List<String> analysisUuidsPartition : analysisUuidsPartitions) {
-      for (List<String> componentUuidsPartition : componentUuidsPartitions) {
-        purgeMapper.deleteComponentMeasures(analysisUuidsPartition, componentUuidsPartition);
-      }
+    for (List<String> analysisUuidsPartition : Lists.partition(analysisUuids, MAX_SNAPSHOTS_PER_MEASURES_QUERY)) {
+      executeByChunks("deleteComponentMeasures", componentUuids, MAX_RESOURCES_PER_QUERY,
+        componentUuidsPartition -> purgeMapper.deleteComponentMeasures(analysisUuidsPartition, componentUuidsPartition));
     }
-    session.commit();
-    profiler.stop();
   }
 
   void deleteFileSources(List<String> componentUuids) {
-    if (componentUuids.isEmpty()) {
-      return;
-    }
-
-    profiler.start("deleteFileSources (file_sources)");
-    Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY).forEach(purgeMapper::deleteFileSourcesByFileUuid);
-    session.commit();
-    profiler.stop();
+    executeByChunks("deleteFileSources (file_sources)", componentUuids, MAX_RESOURCES_PER_QUERY, purgeMapper::deleteFileSourcesByFileUuid);
   }
 
   void deleteFileSources(String rootUuid) {
-    profiler.start("deleteFileSources (file_sources)");
-    purgeMapper.deleteFileSourcesByProjectUuid(rootUuid);
-    session.commit();
-    profiler.stop();
+    execute("deleteFileSources (file_sources)", () -> purgeMapper.deleteFileSourcesByProjectUuid(rootUuid));
+  }
+
+  void purgeDisabledComponents(List<String> componentUuids, long now) {
+    executeByChunks("purgeDisabledComponents (file_sources)", componentUuids, MAX_RESOURCES_PER_QUERY, purgeMapper::deleteFileSourcesByFileUuid);
+    executeByChunks("purgeDisabledComponents (issues)", componentUuids, MAX_RESOURCES_PER_QUERY,
+      componentUuidsPartition -> purgeMapper.resolveComponentIssuesNotAlreadyResolved(componentUuidsPartition, now));
   }
 
   void deleteCeActivity(String rootUuid) {
-    profiler.start("deleteCeActivity (ce_activity)");
-    purgeMapper.deleteCeActivityByProjectUuid(rootUuid);
-    session.commit();
-    profiler.stop();
+    execute("deleteCeActivity (ce_activity)", () -> purgeMapper.deleteCeActivityByProjectUuid(rootUuid));
   }
 
   void deleteCeQueue(String rootUuid) {
-    profiler.start("deleteCeQueue (ce_queue)");
-    purgeMapper.deleteCeQueueByProjectUuid(rootUuid);
-    session.commit();
-    profiler.stop();
+    execute("deleteCeQueue (ce_queue)", () -> purgeMapper.deleteCeQueueByProjectUuid(rootUuid));
   }
 
   void deleteWebhookDeliveries(String rootUuid) {
-    profiler.start("deleteWebhookDeliveries (webhook_deliveries)");
-    purgeMapper.deleteWebhookDeliveriesByProjectUuid(rootUuid);
+    execute("deleteWebhookDeliveries (webhook_deliveries)", () -> purgeMapper.deleteWebhookDeliveriesByProjectUuid(rootUuid));
+  }
+
+  private <T> void executeByChunks(String label, List<T> keys, int chunkSize, ToIntFunction<List<T>> statement) {
+    for (List<T> chunk : Lists.partition(keys, chunkSize)) {
+      execute(label, () -> statement.applyAsInt(chunk));
+    }
+  }
+
+  private void execute(String label, IntSupplier statement) {
+    profiler.start(label);
+    long rows = countRows(statement.getAsInt());
     session.commit();
-    profiler.stop();
+    throttler.pause(profiler.stop(rows));
+  }
+
+  private long countRows(int updateCount) {
+    if (updateCount >= 0) {
+      return updateCount;
+    }
+    // the statement is batched, its number of rows is known once executed
+    return session.flushStatements().stream()
+      .flatMapToInt(result -> IntStream.of(result.getUpdateCounts()))
+      .filter(count -> count > 0)
+      .asLongStream()
+      .sum();
   }
 }
@@ -36,14 +36,21 @@ public class PurgeConfiguration {
   private final int maxAgeInDaysOfClosedIssues;
   private final System2 system2;
   private final Collection<String> disabledComponentUuids;
+  private final double throttlingRatio;
 
   public PurgeConfiguration(IdUuidPair rootProjectId, String[] scopesWithoutHistoricalData, int maxAgeInDaysOfClosedIssues,
     System2 system2, Collection<String> disabledComponentUuids) {
+    this(rootProjectId, scopesWithoutHistoricalData, maxAgeInDaysOfClosedIssues, system2, disabledComponentUuids, 0.0);
+  }
+
+  public PurgeConfiguration(IdUuidPair rootProjectId, String[] scopesWithoutHistoricalData, int maxAgeInDaysOfClosedIssues,
+    System2 system2, Collection<String> disabledComponentUuids, double throttlingRatio) {
     this.rootProjectIdUuid = rootProjectId;
     this.scopesWithoutHistoricalData = scopesWithoutHistoricalData;
     this.maxAgeInDaysOfClosedIssues = maxAgeInDaysOfClosedIssues;
     this.system2 = system2;
     this.disabledComponentUuids = disabledComponentUuids;
+    this.throttlingRatio = throttlingRatio;
   }
 
   public static PurgeConfiguration newDefaultPurgeConfiguration(Configuration config, IdUuidPair idUuidPair, Collection<String> disabledComponentUuids) {
@@ -51,7 +58,8 @@ public class PurgeConfiguration {
     if (config.getBoolean(PurgeConstants.PROPERTY_CLEAN_DIRECTORY).orElse(false)) {
       scopes = new String[] {Scopes.DIRECTORY, Scopes.FILE};
     }
-    return new PurgeConfiguration(idUuidPair, scopes, config.getInt(PurgeConstants.DAYS_BEFORE_DELETING_CLOSED_ISSUES).get(), System2.INSTANCE, disabledComponentUuids);
+    return new PurgeConfiguration(idUuidPair, scopes, config.getInt(PurgeConstants.DAYS_BEFORE_DELETING_CLOSED_ISSUES).get(), System2.INSTANCE, disabledComponentUuids,
+      config.getDouble(PurgeConstants.THROTTLING_RATIO).orElse(0.0));
   }
 
   public IdUuidPair rootProjectIdUuid() {
@@ -66,6 +74,13 @@ public class PurgeConfiguration {
     return disabledComponentUuids;
   }
 
+  /**
+   * @see PurgeConstants#THROTTLING_RATIO
+   */
+  public double throttlingRatio() {
+    return throttlingRatio;
+  }
+
   @CheckForNull
   public Date maxLiveDateOfClosedIssues() {
     return maxLiveDateOfClosedIssues(new Date(system2.now()));
@@ -21,6 +21,7 @@ package org.sonar.db.purge;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -38,9 +39,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.ComponentTreeQuery.Strategy;
 
-import static java.util.Collections.emptyList;
 import static org.sonar.api.utils.DateUtils.dateToLong;
-import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 
 /**
  * @since 2.14
@@ -65,13 +64,22 @@ public class PurgeDao implements Dao {
 
   public void purge(DbSession session, PurgeConfiguration conf, PurgeListener listener, PurgeProfiler profiler) {
     PurgeMapper mapper = session.getMapper(PurgeMapper.class);
-    PurgeCommands commands = new PurgeCommands(session, mapper, profiler);
+    PurgeCommands commands = new PurgeCommands(session, mapper, profiler, new PurgeThrottler(conf.throttlingRatio()));
     String rootUuid = conf.rootProjectIdUuid().getUuid();
     deleteAbortedAnalyses(rootUuid, commands);
     deleteDataOfComponentsWithoutHistoricalData(session, rootUuid, conf.scopesWithoutHistoricalData(), commands);
     purgeAnalyses(commands, rootUuid);
-    purgeDisabledComponents(session, conf, listener);
-    deleteOldClosedIssues(conf, mapper, listener);
+    purgeDisabledComponents(commands, conf, listener);
+    deleteOldClosedIssues(conf, mapper, commands, listener);
+  }
+
+  /**
+   * Purges only the data of the components disabled by the analysis. The rest of the data is purged by
+   * {@link #purge(DbSession, PurgeConfiguration, PurgeListener, PurgeProfiler)}.
+   */
+  public void purgeDisabledComponents(DbSession session, PurgeConfiguration conf, PurgeListener listener, PurgeProfiler profiler) {
+    PurgeCommands commands = new PurgeCommands(session, mapper(session), profiler, new PurgeThrottler(conf.throttlingRatio()));
+    purgeDisabledComponents(commands, conf, listener);
   }
 
   private static void purgeAnalyses(PurgeCommands commands, String rootUuid) {
@@ -83,18 +91,11 @@ public class PurgeDao implements Dao {
     commands.purgeAnalyses(analysisUuids);
   }
 
-  private static void deleteOldClosedIssues(PurgeConfiguration conf, PurgeMapper mapper, PurgeListener listener) {
+  private static void deleteOldClosedIssues(PurgeConfiguration conf, PurgeMapper mapper, PurgeCommands commands, PurgeListener listener) {
     Date toDate = conf.maxLiveDateOfClosedIssues();
     String rootUuid = conf.rootProjectIdUuid().getUuid();
     List<String> issueKeys = mapper.selectOldClosedIssueKeys(rootUuid, dateToLong(toDate));
-    executeLargeInputs(issueKeys, input -> {
-      mapper.deleteIssueChangesFromIssueKeys(input);
-      return emptyList();
-    });
-    executeLargeInputs(issueKeys, input -> {
-      mapper.deleteIssuesFromKeys(input);
-      return emptyList();
-    });
+    commands.deleteIssuesByKeys(issueKeys);
     listener.onIssuesRemoval(rootUuid, issueKeys);
   }
 
@@ -131,18 +132,9 @@ public class PurgeDao implements Dao {
     purgeCommands.deleteComponentMeasures(analysisUuids, componentWithoutHistoricalDataUuids);
   }
 
-  private void purgeDisabledComponents(DbSession session, PurgeConfiguration conf, PurgeListener listener) {
-    PurgeMapper mapper = mapper(session);
-    executeLargeInputs(conf.getDisabledComponentUuids(),
-      input -> {
-        mapper.deleteFileSourcesByFileUuid(input);
-        mapper.resolveComponentIssuesNotAlreadyResolved(input, system2.now());
-        return emptyList();
-      });
-
+  private void purgeDisabledComponents(PurgeCommands commands, PurgeConfiguration conf, PurgeListener listener) {
+    commands.purgeDisabledComponents(new ArrayList<>(conf.getDisabledComponentUuids()), system2.now());
     listener.onComponentsDisabling(conf.rootProjectIdUuid().getUuid(), conf.getDisabledComponentUuids());
-
-    session.commit();
   }
 
   public List<PurgeableAnalysisDto> selectPurgeableAnalyses(String componentUuid, DbSession session) {
@@ -32,67 +32,67 @@ public interface PurgeMapper {
    */
   List<IdUuidPair> selectRootAndModulesOrSubviewsByProjectUuid(@Param("rootUuid") String rootUuid);
 
-  void deleteAnalyses(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalyses(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisDuplications(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisDuplications(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisEvents(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisEvents(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisMeasures(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisMeasures(@Param("analysisUuids") List<String> analysisUuids);
 
-  void fullDeleteComponentMeasures(@Param("componentUuids") List<String> componentUuids);
+  int fullDeleteComponentMeasures(@Param("componentUuids") List<String> componentUuids);
 
-  void deleteComponentMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("componentUuids") List<String> componentUuids);
+  int deleteComponentMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("componentUuids") List<String> componentUuids);
 
   List<Long> selectMetricIdsWithoutHistoricalData();
 
-  void deleteAnalysisWastedMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("metricIds") List<Long> metricIds);
+  int deleteAnalysisWastedMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("metricIds") List<Long> metricIds);
 
-  void updatePurgeStatusToOne(@Param("analysisUuids") List<String> analysisUuid);
+  int updatePurgeStatusToOne(@Param("analysisUuids") List<String> analysisUuid);
 
-  void resolveComponentIssuesNotAlreadyResolved(@Param("componentUuids") List<String> componentUuids, @Param("dateAsLong") Long dateAsLong);
+  int resolveComponentIssuesNotAlreadyResolved(@Param("componentUuids") List<String> componentUuids, @Param("dateAsLong") Long dateAsLong);
 
-  void deleteProjectLinksByComponentUuid(@Param("rootUuid") String rootUuid);
+  int deleteProjectLinksByComponentUuid(@Param("rootUuid") String rootUuid);
 
-  void deletePropertiesByComponentIds(@Param("componentIds") List<Long> componentIds);
+  int deletePropertiesByComponentIds(@Param("componentIds") List<Long> componentIds);
 
-  void deleteComponentsByProjectUuid(@Param("rootUuid") String rootUuid);
+  int deleteComponentsByProjectUuid(@Param("rootUuid") String rootUuid);
 
-  void deleteComponentsByUuids(@Param("componentUuids") List<String> componentUuids);
+  int deleteComponentsByUuids(@Param("componentUuids") List<String> componentUuids);
 
-  void deleteGroupRolesByComponentId(@Param("rootId") long rootId);
+  int deleteGroupRolesByComponentId(@Param("rootId") long rootId);
 
-  void deleteUserRolesByComponentId(@Param("rootId") long rootId);
+  int deleteUserRolesByComponentId(@Param("rootId") long rootId);
 
-  void deleteManualMeasuresByComponentUuids(@Param("componentUuids") List<String> componentUuids);
+  int deleteManualMeasuresByComponentUuids(@Param("componentUuids") List<String> componentUuids);
 
-  void deleteEventsByComponentUuid(@Param("componentUuid") String componentUuid);
+  int deleteEventsByComponentUuid(@Param("componentUuid") String componentUuid);
 
   List<PurgeableAnalysisDto> selectPurgeableAnalysesWithEvents(@Param("componentUuid") String componentUuid);
 
   List<PurgeableAnalysisDto> selectPurgeableAnalysesWithoutEvents(@Param("componentUuid") String componentUuid);
 
-  void deleteIssueChangesByProjectUuid(@Param("projectUuid") String projectUuid);
+  int deleteIssueChangesByProjectUuid(@Param("projectUuid") String projectUuid);
 
-  void deleteIssuesByProjectUuid(@Param("projectUuid") String projectUuid);
+  int deleteIssuesByProjectUuid(@Param("projectUuid") String projectUuid);
 
-  void deleteIssueChangesByComponentUuids(@Param("componentUuids") List<String> componentUuids);
+  int deleteIssueChangesByComponentUuids(@Param("componentUuids") List<String> componentUuids);
 
-  void deleteIssuesByComponentUuids(@Param("componentUuids") List<String> componentUuids);
+  int deleteIssuesByComponentUuids(@Param("componentUuids") List<String> componentUuids);
 
   List<String> selectOldClosedIssueKeys(@Param("projectUuid") String projectUuid, @Nullable @Param("toDate") Long toDate);
 
-  void deleteIssuesFromKeys(@Param("keys") List<String> keys);
+  int deleteIssuesFromKeys(@Param("keys") List<String> keys);
 
-  void deleteIssueChangesFromIssueKeys(@Param("issueKeys") List<String> issueKeys);
+  int deleteIssueChangesFromIssueKeys(@Param("issueKeys") List<String> issueKeys);
 
-  void deleteFileSourcesByProjectUuid(String rootProjectUuid);
+  int deleteFileSourcesByProjectUuid(String rootProjectUuid);
 
-  void deleteFileSourcesByFileUuid(@Param("fileUuids") List<String> fileUuids);
+  int deleteFileSourcesByFileUuid(@Param("fileUuids") List<String> fileUuids);
 
-  void deleteCeActivityByProjectUuid(@Param("projectUuid") String projectUuid);
+  int deleteCeActivityByProjectUuid(@Param("projectUuid") String projectUuid);
 
-  void deleteCeQueueByProjectUuid(@Param("projectUuid") String projectUuid);
+  int deleteCeQueueByProjectUuid(@Param("projectUuid") String projectUuid);
 
-  void deleteWebhookDeliveriesByProjectUuid(@Param("projectUuid") String projectUuid);
+  int deleteWebhookDeliveriesByProjectUuid(@Param("projectUuid") String projectUuid);
 }
@@ -32,6 +32,7 @@ import org.sonar.api.utils.log.Logger;
 public class PurgeProfiler {
 
   private Map<String, Long> durations = new HashMap<>();
+  private Map<String, Long> rows = new HashMap<>();
   private long startTime;
   private String currentTable;
   private final Clock clock;
@@ -47,6 +48,7 @@ public class PurgeProfiler {
 
   public void reset() {
     durations.clear();
+    rows.clear();
   }
 
   void start(String table) {
@@ -55,13 +57,20 @@ public class PurgeProfiler {
   }
 
   void stop() {
-    final Long cumulatedDuration;
-    if (durations.containsKey(currentTable)) {
-      cumulatedDuration = durations.get(currentTable);
-    } else {
-      cumulatedDuration = 0L;
+    stop(0L);
+  }
+
+  /**
+   * @param deletedRows number of rows deleted or updated since {@link #start(String)}
+   * @return the duration since {@link #start(String)}, in milliseconds
+   */
+  long stop(long deletedRows) {
+    long duration = clock.now() - startTime;
+    durations.merge(currentTable, duration, Long::sum);
+    if (deletedRows > 0) {
+      rows.merge(currentTable, deletedRows, Long::sum);
     }
-    durations.put(currentTable, cumulatedDuration + (clock.now() - startTime));
+    return duration;
   }
 
   public void dump(long totalTime, Logger logger) {
@@ -72,6 +81,10 @@ public class PurgeProfiler {
       StringBuilder sb = new StringBuilder();
       sb.append("   o ").append(entry.getKey()).append(": ").append(TimeUtils.formatDuration(entry.getValue()))
         .append(" (").append((int) (entry.getValue() / percent)).append("%)");
+      Long deletedRows = rows.get(entry.getKey());
+      if (deletedRows != null) {
+        sb.append(", ").append(deletedRows).append(" rows");
+      }
       logger.info(sb.toString());
     }
   }
@@ -0,0 +1,65 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.purge;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Pauses the purge after each chunk of deletions, for a duration proportional to the duration of the chunk.
+ * The slower the database, the longer the pauses, so that the purge does not use the database more than
+ * {@code 1 / (1 + ratio)} of its time.
+ */
+class PurgeThrottler {
+
+  static final PurgeThrottler NONE = new PurgeThrottler(0.0);
+
+  private final double ratio;
+  private final LongConsumer sleeper;
+
+  PurgeThrottler(double ratio) {
+    this(ratio, PurgeThrottler::sleep);
+  }
+
+  @VisibleForTesting
+  PurgeThrottler(double ratio, LongConsumer sleeper) {
+    checkArgument(ratio >= 0, "Throttling ratio must be positive or zero: %s", ratio);
+    this.ratio = ratio;
+    this.sleeper = sleeper;
+  }
+
+  void pause(long chunkDurationInMs) {
+    long pause = (long) (chunkDurationInMs * ratio);
+    if (pause > 0) {
+      sleeper.accept(pause);
+    }
+  }
+
+  private static void sleep(long durationInMs) {
+    try {
+      Thread.sleep(durationInMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Purge has been interrupted", e);
+    }
+  }
+}
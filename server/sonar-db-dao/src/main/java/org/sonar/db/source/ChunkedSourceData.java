@@ -0,0 +1,182 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHashFactory;
+import org.sonar.db.protobuf.DbFileSources;
+
+/**
+ * Layout of column FILE_SOURCES.BINARY_DATA that allows to decompress only some lines of a file.
+ * <p>
+ * The column is still a LZ4 stream of {@link DbFileSources.Data}, so it can be fully decoded as before. But:
+ * <ul>
+ *   <li>the first LZ4 block contains only the field {@link DbFileSources.Data#getChunkIndex()}</li>
+ *   <li>then lines are compressed by chunks of {@link #LINES_PER_CHUNK} lines. A chunk starts on a new LZ4 block,
+ *   so that it can be decompressed without the previous chunks.</li>
+ * </ul>
+ * Data written before 6.6 does not have the index. It must be fully decoded.
+ */
+class ChunkedSourceData {
+
+  static final int LINES_PER_CHUNK = 500;
+
+  // see net.jpountz.lz4.LZ4BlockOutputStream
+  private static final byte[] MAGIC = new byte[] {'L', 'Z', '4', 'B', 'l', 'o', 'c', 'k'};
+  private static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + 4 + 4;
+  private static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+  private static final int DEFAULT_SEED = 0x9747b28c;
+  private static final int COMPRESSION_METHOD_RAW = 0x10;
+  // empty block which marks the end of a LZ4 stream
+  private static final byte[] END_BLOCK = endBlock();
+  // tag of the field Data.chunk_index, which is a length-delimited message
+  private static final int CHUNK_INDEX_TAG = (DbFileSources.Data.CHUNK_INDEX_FIELD_NUMBER << 3) | 2;
+
+  private ChunkedSourceData() {
+    // only static methods
+  }
+
+  static byte[] encode(DbFileSources.Data data) throws IOException {
+    DbFileSources.ChunkIndex.Builder index = DbFileSources.ChunkIndex.newBuilder().setLinesPerChunk(LINES_PER_CHUNK);
+    ByteArrayOutputStream chunksOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream lz4Output = newLz4Output(chunksOutput)) {
+      CodedOutputStream codedOutput = CodedOutputStream.newInstance(lz4Output);
+      int chunkStart = 0;
+      List<DbFileSources.Line> lines = data.getLinesList();
+      for (int i = 0; i < lines.size(); i++) {
+        codedOutput.writeMessage(DbFileSources.Data.LINES_FIELD_NUMBER, lines.get(i));
+        if ((i + 1) % LINES_PER_CHUNK == 0 || i == lines.size() - 1) {
+          // flushing the LZ4 stream ends the current block
+          codedOutput.flush();
+          lz4Output.flush();
+          index.addChunkSizes(chunksOutput.size() - chunkStart);
+          chunkStart = chunksOutput.size();
+        }
+      }
+    }
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream(chunksOutput.size() + 64);
+    // the block of the index is not terminated by an end block, so that the stream continues with the chunks
+    LZ4BlockOutputStream indexOutput = newLz4Output(output);
+    DbFileSources.Data.newBuilder().setChunkIndex(index).build().writeTo(indexOutput);
+    indexOutput.flush();
+    chunksOutput.writeTo(output);
+    return output.toByteArray();
+  }
+
+  /**
+   * Lines at positions [{@code from}, {@code toInclusive}] of the file, starting from 1. Only the chunks
+   * containing these lines are decompressed.
+   *
+   * @return {@code null} if data does not have an index, so it must be fully decoded.
+   */
+  @CheckForNull
+  static List<DbFileSources.Line> decodeLines(byte[] binaryData, int from, int toInclusive) throws IOException {
+    if (binaryData.length < HEADER_LENGTH || !hasMagic(binaryData, 0)) {
+      return null;
+    }
+    int indexLength = HEADER_LENGTH + readIntLE(binaryData, MAGIC.length + 1);
+    DbFileSources.ChunkIndex index = readIndex(binaryData, indexLength);
+    if (index == null) {
+      return null;
+    }
+
+    int firstChunk = (from - 1) / index.getLinesPerChunk();
+    int lastChunk = Math.min((toInclusive - 1) / index.getLinesPerChunk(), index.getChunkSizesCount() - 1);
+    if (firstChunk > lastChunk) {
+      return Collections.emptyList();
+    }
+    int offset = indexLength;
+    for (int chunk = 0; chunk < firstChunk; chunk++) {
+      offset += index.getChunkSizes(chunk);
+    }
+    int length = 0;
+    for (int chunk = firstChunk; chunk <= lastChunk; chunk++) {
+      length += index.getChunkSizes(chunk);
+    }
+    List<DbFileSources.Line> lines;
+    try (InputStream input = openBlocks(binaryData, offset, length)) {
+      lines = DbFileSources.Data.parseFrom(input).getLinesList();
+    }
+
+    int fromIndex = from - 1 - firstChunk * index.getLinesPerChunk();
+    int toIndex = (int) Math.min((long) toInclusive - firstChunk * index.getLinesPerChunk(), lines.size());
+    return fromIndex >= toIndex ? Collections.emptyList() : new ArrayList<>(lines.subList(fromIndex, toIndex));
+  }
+
+  @CheckForNull
+  private static DbFileSources.ChunkIndex readIndex(byte[] binaryData, int indexLength) throws IOException {
+    if (indexLength > binaryData.length) {
+      return null;
+    }
+    try (InputStream input = openBlocks(binaryData, 0, indexLength)) {
+      if (input.read() != CHUNK_INDEX_TAG) {
+        return null;
+      }
+      return DbFileSources.ChunkIndex.parseDelimitedFrom(input);
+    }
+  }
+
+  private static InputStream openBlocks(byte[] binaryData, int offset, int length) {
+    InputStream blocks = new SequenceInputStream(new ByteArrayInputStream(binaryData, offset, length), new ByteArrayInputStream(END_BLOCK));
+    return new LZ4BlockInputStream(blocks);
+  }
+
+  private static LZ4BlockOutputStream newLz4Output(ByteArrayOutputStream output) {
+    // same settings as default constructor, but flush() must end the current block
+    return new LZ4BlockOutputStream(output, DEFAULT_BLOCK_SIZE, LZ4Factory.fastestInstance().fastCompressor(),
+      XXHashFactory.fastestInstance().newStreamingHash32(DEFAULT_SEED).asChecksum(), true);
+  }
+
+  private static boolean hasMagic(byte[] bytes, int offset) {
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (bytes[offset + i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int readIntLE(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF)
+      | ((bytes[offset + 1] & 0xFF) << 8)
+      | ((bytes[offset + 2] & 0xFF) << 16)
+      | ((bytes[offset + 3] & 0xFF) << 24);
+  }
+
+  private static byte[] endBlock() {
+    byte[] block = new byte[HEADER_LENGTH];
+    System.arraycopy(MAGIC, 0, block, 0, MAGIC.length);
+    block[MAGIC.length] = COMPRESSION_METHOD_RAW;
+    return block;
+  }
+}
@@ -25,18 +25,28 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.ibatis.session.ResultHandler;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static org.sonar.db.DatabaseUtils.toUniqueAndSortedPartitions;
+
 public class FileSourceDao implements Dao {
 
+  /**
+   * Maximum size of data of the file sources inserted by a single statement
+   */
+  public static final long MAX_BATCH_BYTES = 4L * 1024 * 1024;
   private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
 
   @CheckForNull
@@ -44,6 +54,14 @@ public class FileSourceDao implements Dao {
     return mapper(session).select(fileUuid, Type.SOURCE);
   }
 
+  /**
+   * Same as {@link #selectSourceByFileUuid(DbSession, String)}, but only the id and the hashes are loaded, not the data.
+   */
+  @CheckForNull
+  public FileSourceDto selectSourceHashesByFileUuid(DbSession session, String fileUuid) {
+    return mapper(session).selectHashes(fileUuid, Type.SOURCE);
+  }
+
   @CheckForNull
   public FileSourceDto selectTest(DbSession dbSession, String fileUuid) {
     return mapper(dbSession).select(fileUuid, Type.TEST);
@@ -74,6 +92,25 @@ public class FileSourceDao implements Dao {
     }
   }
 
+  /**
+   * Scroll line hashes of the sources of the specified files, with as few queries as possible. Files without source are ignored.
+   * The order of the results is not guaranteed.
+   */
+  public void scrollLineHashes(DbSession dbSession, Collection<String> fileUuids, ResultHandler<LineHashesWithUuidDto> rowHandler) {
+    FileSourceMapper mapper = mapper(dbSession);
+    for (List<String> partition : toUniqueAndSortedPartitions(fileUuids)) {
+      mapper.scrollLineHashes(partition, Type.SOURCE, rowHandler);
+    }
+  }
+
+  /**
+   * Scroll the sources of all the files of a project with a single query. Only the file uuid, the source hash and the
+   * binary data are loaded.
+   */
+  public void scrollSourcesOfProject(DbSession dbSession, String projectUuid, ResultHandler<FileSourceDto> rowHandler) {
+    mapper(dbSession).scrollSourcesOfProject(projectUuid, Type.SOURCE, rowHandler);
+  }
+
   public <T> void readLineHashesStream(DbSession dbSession, String fileUuid, Function<Reader, T> function) {
     Connection connection = dbSession.getConnection();
     PreparedStatement pstmt = null;
@@ -102,6 +139,38 @@ public class FileSourceDao implements Dao {
     mapper(session).insert(dto);
   }
 
+  /**
+   * File sources added to the returned inserter are inserted with multi-row statements when batch is full or
+   * when inserter is flushed or closed. As sources can be large, batch is also inserted as soon as its data
+   * exceeds {@link #MAX_BATCH_BYTES}.
+   */
+  public BatchInserter<FileSourceDto> newBatchInserter(DbSession session) {
+    return newBatchInserter(session, BatchInserter.DEFAULT_BATCH_SIZE);
+  }
+
+  public BatchInserter<FileSourceDto> newBatchInserter(DbSession session, int batchSize) {
+    return BatchInserter.<FileSourceDto>builder(session, "file_sources")
+      .addColumn("project_uuid", Types.VARCHAR, FileSourceDto::getProjectUuid)
+      .addColumn("file_uuid", Types.VARCHAR, FileSourceDto::getFileUuid)
+      .addColumn("created_at", Types.BIGINT, FileSourceDto::getCreatedAt)
+      .addColumn("updated_at", Types.BIGINT, FileSourceDto::getUpdatedAt)
+      .addColumn("binary_data", Types.BLOB, FileSourceDto::getBinaryData)
+      .addColumn("line_hashes", Types.CLOB, FileSourceDto::getLineHashes)
+      .addColumn("data_hash", Types.VARCHAR, FileSourceDto::getDataHash)
+      .addColumn("src_hash", Types.VARCHAR, FileSourceDto::getSrcHash)
+      .addColumn("data_type", Types.VARCHAR, FileSourceDto::getDataType)
+      .addColumn("revision", Types.VARCHAR, FileSourceDto::getRevision)
+      .setBatchSize(batchSize)
+      .setMaxBatchWeight(MAX_BATCH_BYTES, FileSourceDao::weight)
+      .build();
+  }
+
+  private static long weight(FileSourceDto dto) {
+    byte[] binaryData = dto.getBinaryData();
+    String lineHashes = dto.getLineHashes();
+    return (binaryData == null ? 0 : binaryData.length) + (lineHashes == null ? 0 : lineHashes.length());
+  }
+
   public void update(DbSession session, FileSourceDto dto) {
     mapper(session).update(dto);
   }
@@ -21,6 +21,7 @@ package org.sonar.db.source;
 
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -38,6 +39,15 @@ import static java.lang.String.format;
 
 public class FileSourceDto {
 
+  /**
+   * Lines of sources are compressed by chunks of this size, see {@link #getSourceLines(int, int)}
+   */
+  public static final int LINES_PER_CHUNK = ChunkedSourceData.LINES_PER_CHUNK;
+
+  private static final int LINES_TAG = tag(DbFileSources.Data.LINES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+  private static final int SCM_REVISION_TAG = tag(DbFileSources.Line.SCM_REVISION_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+  private static final int SCM_AUTHOR_TAG = tag(DbFileSources.Line.SCM_AUTHOR_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+  private static final int SCM_DATE_TAG = tag(DbFileSources.Line.SCM_DATE_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
   private static final String SIZE_LIMIT_EXCEEDED_EXCEPTION_MESSAGE = "Protocol message was too large.  May be malicious.  " +
     "Use CodedInputStream.setSizeLimit() to increase the size limit.";
 
@@ -122,21 +132,85 @@ public class FileSourceDto {
     }
   }
 
+  /**
+   * Lines at positions [{@code from}, {@code toInclusive}] of the source, starting from 1. Only the chunks of
+   * lines that contain the range are decompressed, unless data has been persisted before version 6.6.
+   */
+  public List<DbFileSources.Line> getSourceLines(int from, int toInclusive) {
+    try {
+      List<DbFileSources.Line> lines = ChunkedSourceData.decodeLines(binaryData, from, toInclusive);
+      if (lines != null) {
+        return lines;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(
+        format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
+        e);
+    }
+    List<DbFileSources.Line> allLines = getSourceData().getLinesList();
+    if (from > allLines.size()) {
+      return new ArrayList<>();
+    }
+    return new ArrayList<>(allLines.subList(from - 1, (int) Math.min(toInclusive, allLines.size())));
+  }
+
+  /**
+   * All the lines of the source, with only the SCM fields (revision, author and date) being set. The other fields
+   * are skipped without being decoded, which is much cheaper than {@link #getSourceData()} on large files.
+   */
+  public List<DbFileSources.Line> getScmOfLines() {
+    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
+      CodedInputStream input = CodedInputStream.newInstance(lz4Input);
+      input.setSizeLimit(Integer.MAX_VALUE);
+      List<DbFileSources.Line> lines = new ArrayList<>();
+      DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
+      int tag;
+      while ((tag = input.readTag()) != 0) {
+        if (tag == LINES_TAG) {
+          int limit = input.pushLimit(input.readRawVarint32());
+          lines.add(readScmOfLine(input, lineBuilder.clear()));
+          input.popLimit(limit);
+        } else {
+          input.skipField(tag);
+        }
+      }
+      return lines;
+    } catch (IOException e) {
+      throw new IllegalStateException(
+        format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
+        e);
+    }
+  }
+
+  private static DbFileSources.Line readScmOfLine(CodedInputStream input, DbFileSources.Line.Builder lineBuilder) throws IOException {
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (tag == SCM_REVISION_TAG) {
+        lineBuilder.setScmRevision(input.readString());
+      } else if (tag == SCM_AUTHOR_TAG) {
+        lineBuilder.setScmAuthor(input.readString());
+      } else if (tag == SCM_DATE_TAG) {
+        lineBuilder.setScmDate(input.readInt64());
+      } else {
+        input.skipField(tag);
+      }
+    }
+    return lineBuilder.build();
+  }
+
+  private static int tag(int fieldNumber, int wireType) {
+    return (fieldNumber << 3) | wireType;
+  }
+
   /**
    * Serialize and compress protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
-   * in the column BINARY_DATA.
+   * in the column BINARY_DATA. Lines are compressed by chunks of {@link #LINES_PER_CHUNK} lines.
    */
   public static byte[] encodeSourceData(DbFileSources.Data data) {
-    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-    LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput);
     try {
-      data.writeTo(compressedOutput);
-      compressedOutput.close();
-      return byteOutput.toByteArray();
+      return ChunkedSourceData.encode(data);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to serialize and compress source data", e);
-    } finally {
-      IOUtils.closeQuietly(compressedOutput);
     }
   }
 
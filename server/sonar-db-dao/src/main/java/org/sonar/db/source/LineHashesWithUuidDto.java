@@ -0,0 +1,65 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import com.google.common.base.Splitter;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Line hashes of the source of a file, as stored in column FILE_SOURCES.LINE_HASHES.
+ */
+public class LineHashesWithUuidDto {
+  private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
+
+  private String uuid;
+  private String rawLineHashes;
+
+  public String getUuid() {
+    return uuid;
+  }
+
+  public LineHashesWithUuidDto setUuid(String uuid) {
+    this.uuid = uuid;
+    return this;
+  }
+
+  @CheckForNull
+  public String getRawLineHashes() {
+    return rawLineHashes;
+  }
+
+  public LineHashesWithUuidDto setRawLineHashes(@Nullable String rawLineHashes) {
+    this.rawLineHashes = rawLineHashes;
+    return this;
+  }
+
+  /**
+   * Hash of each line of the file. An empty list is returned if the column is null.
+   */
+  public List<String> getLineHashes() {
+    if (rawLineHashes == null) {
+      return Collections.emptyList();
+    }
+    return END_OF_LINE_SPLITTER.splitToList(rawLineHashes);
+  }
+}
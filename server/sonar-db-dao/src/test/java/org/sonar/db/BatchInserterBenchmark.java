@@ -0,0 +1,124 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.utils.System2;
+import org.sonar.db.measure.MeasureDao;
+import org.sonar.db.measure.MeasureDto;
+
+/**
+ * Compares the number of rows inserted per second in table PROJECT_MEASURES with one INSERT statement per row
+ * executed by a {@link BatchSession} and with multi-row INSERT statements executed by a {@link BatchInserter}.
+ * <p>
+ * Embedded H2 database is used by default. Other databases can be benchmarked with the same properties
+ * as the DB tests (see {@link TestDb}).
+ * </p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=org.sonar.db.BatchInserterBenchmark -Dexec.classpathScope=test}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BatchInserterBenchmark.ROWS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchInserterBenchmark {
+
+  static final int ROWS = 10_000;
+
+  @Param({"10", "50", "99"})
+  public int batchSize;
+
+  private DbTester db;
+  private MeasureDao measureDao;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    db = DbTester.create(System2.INSTANCE);
+    db.before();
+    measureDao = db.getDbClient().measureDao();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    db.after();
+  }
+
+  @Setup(Level.Invocation)
+  public void deleteMeasures() {
+    db.executeUpdateSql("delete from project_measures");
+  }
+
+  @Benchmark
+  public void insert_one_row_per_statement() {
+    try (DbSession dbSession = db.getDbClient().openSession(true)) {
+      for (int i = 0; i < ROWS; i++) {
+        measureDao.insert(dbSession, newMeasure(i));
+      }
+      dbSession.commit();
+    }
+  }
+
+  @Benchmark
+  public void insert_multiple_rows_per_statement() {
+    try (DbSession dbSession = db.getDbClient().openSession(true)) {
+      try (BatchInserter<MeasureDto> inserter = measureDao.newBatchInserter(dbSession, batchSize)) {
+        for (int i = 0; i < ROWS; i++) {
+          inserter.add(newMeasure(i));
+        }
+      }
+      dbSession.commit();
+    }
+  }
+
+  private static MeasureDto newMeasure(int i) {
+    return new MeasureDto()
+      .setAnalysisUuid("ANALYSIS")
+      .setComponentUuid("COMPONENT_" + (i / 100))
+      .setMetricId(i % 100)
+      .setValue((double) i)
+      .setVariation(1d);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(BatchInserterBenchmark.class.getSimpleName())
+      .build())
+      .run();
+  }
+}
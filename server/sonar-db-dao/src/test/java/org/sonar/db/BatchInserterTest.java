@@ -0,0 +1,211 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BatchInserterTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private DbSession dbSession = db.getSession();
+
+  @Test
+  public void rows_are_inserted_when_batch_is_full() {
+    BatchInserter<Row> underTest = newInserter(dbSession, 2);
+
+    underTest.add(new Row("K1", 1L)).add(new Row("K2", 2L)).add(new Row("K3", 3L));
+
+    assertThat(db.countRowsOfTable(dbSession, "issue_changes")).isEqualTo(2);
+  }
+
+  @Test
+  public void close_inserts_remaining_rows() {
+    try (BatchInserter<Row> underTest = newInserter(dbSession, 2)) {
+      for (int i = 0; i < 5; i++) {
+        underTest.add(new Row("K" + i, (long) i));
+      }
+    }
+
+    assertThat(db.countRowsOfTable(dbSession, "issue_changes")).isEqualTo(5);
+    assertThat(selectRows()).extracting(row -> row.get("kee"), row -> row.get("createdAt"))
+      .containsExactlyInAnyOrder(
+        tuple("K0", 0L),
+        tuple("K1", 1L),
+        tuple("K2", 2L),
+        tuple("K3", 3L),
+        tuple("K4", 4L));
+  }
+
+  @Test
+  public void null_values_are_inserted() {
+    try (BatchInserter<Row> underTest = newInserter(dbSession, 2)) {
+      underTest.add(new Row("K1", null));
+    }
+
+    assertThat(db.countRowsOfTable(dbSession, "issue_changes")).isEqualTo(1);
+    assertThat(selectRows().get(0).get("createdAt")).isNull();
+  }
+
+  @Test
+  public void rows_are_committed_by_session() {
+    try (BatchInserter<Row> underTest = newInserter(dbSession, 2)) {
+      underTest.add(new Row("K1", 1L));
+    }
+    dbSession.commit();
+
+    assertThat(db.countRowsOfTable("issue_changes")).isEqualTo(1);
+  }
+
+  @Test
+  public void rows_are_rolled_back_by_session() {
+    try (BatchInserter<Row> underTest = newInserter(dbSession, 2)) {
+      underTest.add(new Row("K1", 1L));
+    }
+    dbSession.rollback();
+
+    assertThat(db.countRowsOfTable("issue_changes")).isEqualTo(0);
+  }
+
+  @Test
+  public void rows_are_inserted_when_max_weight_is_reached() {
+    BatchInserter<Row> underTest = BatchInserter.<Row>builder(dbSession, "issue_changes")
+      .addColumn("kee", Types.VARCHAR, row -> row.key)
+      .addColumn("issue_key", Types.VARCHAR, row -> "ISSUE")
+      .setBatchSize(100)
+      .setMaxBatchWeight(5, row -> row.key.length())
+      .build();
+
+    underTest.add(new Row("AB", 1L)).add(new Row("CD", 1L));
+    assertThat(db.countRowsOfTable(dbSession, "issue_changes")).isEqualTo(0);
+
+    underTest.add(new Row("EFG", 1L));
+    assertThat(db.countRowsOfTable(dbSession, "issue_changes")).isEqualTo(3);
+  }
+
+  @Test
+  public void batch_size_is_limited_by_number_of_parameters_per_statement() {
+    BatchInserter.Builder<Row> builder = BatchInserter.<Row>builder(dbSession, "issue_changes").setBatchSize(1_000);
+    for (int i = 0; i < 10; i++) {
+      builder.addColumn("c" + i, Types.VARCHAR, row -> row.key);
+    }
+
+    assertThat(builder.build().getBatchSize()).isEqualTo(BatchInserter.MAX_PARAMETERS_PER_STATEMENT / 10);
+    assertThat(newInserter(dbSession, 5).getBatchSize()).isEqualTo(5);
+  }
+
+  @Test
+  public void build_multi_rows_statement() {
+    BatchInserter<Row> underTest = newInserter(dbSession, 2);
+
+    assertThat(underTest.buildSql(2))
+      .isEqualTo("INSERT INTO issue_changes (kee, issue_key, created_at) VALUES (?, ?, ?), (?, ?, ?)");
+  }
+
+  @Test
+  public void build_insert_all_statement_on_oracle() {
+    Configuration configuration = new Configuration();
+    configuration.setDatabaseId("oracle");
+    DbSession oracleSession = mock(DbSession.class);
+    when(oracleSession.getConfiguration()).thenReturn(configuration);
+    BatchInserter<Row> underTest = newInserter(oracleSession, 2);
+
+    assertThat(underTest.buildSql(2)).isEqualTo("INSERT ALL" +
+      " INTO issue_changes (kee, issue_key, created_at) VALUES (?, ?, ?)" +
+      " INTO issue_changes (kee, issue_key, created_at) VALUES (?, ?, ?)" +
+      " SELECT 1 FROM DUAL");
+  }
+
+  @Test
+  public void getBatchSize_from_configuration() {
+    MapSettings settings = new MapSettings();
+    assertThat(BatchInserter.getBatchSize(settings.asConfig())).isEqualTo(BatchInserter.DEFAULT_BATCH_SIZE);
+
+    settings.setProperty(BatchInserter.BATCH_SIZE_PROPERTY, 42);
+    assertThat(BatchInserter.getBatchSize(settings.asConfig())).isEqualTo(42);
+  }
+
+  @Test
+  public void fail_if_batch_size_is_not_strictly_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Batch size must be strictly positive: 0");
+
+    newInserter(dbSession, 0);
+  }
+
+  @Test
+  public void fail_if_no_columns() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("At least one column must be defined");
+
+    BatchInserter.<Row>builder(dbSession, "issue_changes").build();
+  }
+
+  @Test
+  public void fail_to_add_rows_if_closed() {
+    BatchInserter<Row> underTest = newInserter(dbSession, 2);
+    underTest.close();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Inserter is closed");
+
+    underTest.add(new Row("K1", 1L));
+  }
+
+  private static BatchInserter<Row> newInserter(DbSession session, int batchSize) {
+    return BatchInserter.<Row>builder(session, "issue_changes")
+      .addColumn("kee", Types.VARCHAR, row -> row.key)
+      .addColumn("issue_key", Types.VARCHAR, row -> "ISSUE")
+      .addColumn("created_at", Types.BIGINT, row -> row.createdAt)
+      .setBatchSize(batchSize)
+      .build();
+  }
+
+  private List<Map<String, Object>> selectRows() {
+    return db.select(dbSession, "select kee as \"kee\", created_at as \"createdAt\" from issue_changes");
+  }
+
+  private static class Row {
+    private final String key;
+    private final Long createdAt;
+
+    private Row(String key, @Nullable Long createdAt) {
+      this.key = key;
+      this.createdAt = createdAt;
+    }
+  }
+}
@@ -244,6 +244,23 @@ public class DbSessionImplTest {
     assertThat(underTest.getSqlSession()).isSameAs(sqlSessionMock);
   }
 
+  @Test
+  public void commit_rollback_and_close_are_forced_if_statements_were_executed_outside_MyBatis() {
+    DbSessionImpl.markExecutedOutsideMyBatis(underTest);
+    verifyDelegation(DbSessionImpl::commit, s -> verify(s).commit(true));
+    verifyDelegation(DbSessionImpl::commit, s -> verify(s).commit());
+
+    DbSessionImpl.markExecutedOutsideMyBatis(underTest);
+    verifyDelegation(t -> t.rollback(false), s -> verify(s).rollback(true));
+    verifyDelegation(DbSessionImpl::rollback, s -> verify(s).rollback());
+
+    DbSessionImpl.markExecutedOutsideMyBatis(underTest);
+    verifyDelegation(DbSessionImpl::close, s -> {
+      verify(s).rollback(true);
+      verify(s).close();
+    });
+  }
+
   private void verifyDelegation(Consumer<DbSessionImpl> t, Consumer<SqlSession> s) {
     reset(sqlSessionMock);
     t.accept(underTest);
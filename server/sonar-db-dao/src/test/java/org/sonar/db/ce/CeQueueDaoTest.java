@@ -400,6 +400,20 @@ public class CeQueueDaoTest {
     assertThat(underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT).isPresent()).isFalse();
   }
 
+  @Test
+  public void peek_purge_tasks_only_when_no_other_task_is_eligible() {
+    insert(newPurgeTask(TASK_UUID_1, COMPONENT_UUID_1));
+    system2.setNow(INIT_TIME + 3_000_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+
+    Optional<CeQueueDto> peek = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT);
+    assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_2);
+
+    peek = underTest.peek(db.getSession(), WORKER_UUID_2, MAX_EXECUTION_COUNT);
+    assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_1);
+    assertThat(peek.get().getTaskType()).isEqualTo(CeTaskTypes.PROJECT_PURGE);
+  }
+
   @Test
   public void do_not_peek_multiple_tasks_on_same_project_at_the_same_time() throws Exception {
     // two pending tasks on the same project
@@ -602,6 +616,15 @@ public class CeQueueDaoTest {
     db.commit();
   }
 
+  private CeQueueDto newPurgeTask(String uuid, String componentUuid) {
+    CeQueueDto dto = new CeQueueDto();
+    dto.setUuid(uuid);
+    dto.setTaskType(CeTaskTypes.PROJECT_PURGE);
+    dto.setComponentUuid(componentUuid);
+    dto.setStatus(PENDING);
+    return dto;
+  }
+
   private CeQueueDto insert(String uuid, CeQueueDto.Status status, int executionCount) {
     CeQueueDto dto = new CeQueueDto();
     dto.setUuid(uuid);
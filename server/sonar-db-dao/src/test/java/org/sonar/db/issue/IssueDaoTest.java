@@ -29,6 +29,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.DbTester;
 import org.sonar.db.RowNotFoundException;
 import org.sonar.db.component.ComponentDto;
@@ -107,6 +108,35 @@ public class IssueDaoTest {
     underTest.selectOrFailByKey(db.getSession(), "DOES_NOT_EXIST");
   }
 
+  @Test
+  public void insert_with_batch_inserter() {
+    db.rules().insertRule(RULE);
+    OrganizationDto organizationDto = db.organizations().insert();
+    ComponentDto projectDto = db.components().insertPrivateProject(organizationDto, (t) -> t.setUuid(PROJECT_UUID).setDbKey(PROJECT_KEY));
+    db.components().insertComponent(newFileDto(projectDto).setUuid(FILE_UUID).setDbKey(FILE_KEY));
+
+    try (BatchInserter<IssueDto> inserter = underTest.newBatchInserter(db.getSession(), 2)) {
+      for (String key : asList("I1", "I2", "I3")) {
+        inserter.add(newIssueDto(key)
+          .setRuleId(RULE.getId())
+          .setComponentUuid(FILE_UUID)
+          .setProjectUuid(PROJECT_UUID));
+      }
+    }
+    db.getSession().commit();
+
+    List<IssueDto> issues = underTest.selectByKeys(db.getSession(), asList("I1", "I2", "I3"));
+    assertThat(issues).extracting("key").containsOnly("I1", "I2", "I3");
+    IssueDto issue = underTest.selectOrFailByKey(db.getSession(), "I3");
+    assertThat(issue.getComponentKey()).isEqualTo(FILE_KEY);
+    assertThat(issue.getRuleId()).isEqualTo(RULE.getId());
+    assertThat(issue.getSeverity()).isEqualTo("BLOCKER");
+    assertThat(issue.getLine()).isEqualTo(500);
+    assertThat(issue.getGap()).isEqualTo(3.14);
+    assertThat(issue.getIssueCloseDate()).isNotNull();
+    assertThat(issue.getUpdatedAt()).isEqualTo(1_440_000_000_000L);
+  }
+
   @Test
   public void selectByKeys() {
     // contains I1 and I2
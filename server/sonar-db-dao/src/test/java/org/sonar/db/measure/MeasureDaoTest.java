@@ -29,6 +29,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.UuidFactoryImpl;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
@@ -103,6 +104,35 @@ public class MeasureDaoTest {
     assertThat(selected.getAlertText()).isEqualTo(inserted.getAlertText());
   }
 
+  @Test
+  public void insert_with_batch_inserter() {
+    ComponentDto project = db.components().insertPrivateProject();
+    insertAnalysis(LAST_ANALYSIS_UUID, project.uuid(), true);
+
+    try (BatchInserter<MeasureDto> inserter = underTest.newBatchInserter(dbSession, 2)) {
+      for (int metricId = 1; metricId <= 5; metricId++) {
+        inserter.add(new MeasureDto()
+          .setAnalysisUuid(LAST_ANALYSIS_UUID)
+          .setMetricId(metricId)
+          .setComponentUuid(project.uuid())
+          .setValue(metricId * 10d)
+          .setData("data" + metricId)
+          .setVariation(1d));
+      }
+    }
+    db.commit();
+
+    assertThat(db.countRowsOfTable("project_measures")).isEqualTo(5);
+    MeasureDto selected = underTest.selectSingle(dbSession, MeasureQuery.builder()
+      .setComponentUuid(project.uuid())
+      .setMetricId(4)
+      .build()).get();
+    assertThat(selected.getAnalysisUuid()).isEqualTo(LAST_ANALYSIS_UUID);
+    assertThat(selected.getValue()).isEqualTo(40d);
+    assertThat(selected.getData()).isEqualTo("data4");
+    assertThat(selected.getVariation()).isEqualTo(1d);
+  }
+
   @Test
   public void selectByQuery() {
     ComponentDto project1 = db.components().insertPrivateProject();
@@ -268,6 +298,11 @@ public class MeasureDaoTest {
     // Leaves measures of project matching qualifiers
     verifyMeasures(project, MeasureTreeQuery.builder().setQualifiers(asList(FILE)).setStrategy(LEAVES), "M2", "M3");
     verifyMeasures(project, MeasureTreeQuery.builder().setQualifiers(asList(FILE, UNIT_TEST_FILE)).setStrategy(LEAVES), "M2", "M3", "M6");
+
+    // Leaves measures of project restricted to some components
+    verifyMeasures(project, MeasureTreeQuery.builder().setComponentUuids(asList(project.uuid(), "C2")).setStrategy(LEAVES), "PROJECT_M1", "M6");
+    verifyMeasures(project, MeasureTreeQuery.builder().setComponentUuids(asList("C1")).setMetricIds(asList(NCLOC_METRIC_ID)).setStrategy(LEAVES), "M2");
+    verifyMeasures(project, MeasureTreeQuery.builder().setComponentUuids(emptyList()).setStrategy(LEAVES));
   }
 
   @Test
@@ -303,6 +338,39 @@ public class MeasureDaoTest {
     verifyMeasures(file1, MeasureTreeQuery.builder().setStrategy(LEAVES), "M2", "M3");
   }
 
+  @Test
+  public void select_past_measures_of_several_components_on_single_analysis() {
+    ComponentDto project = db.components().insertPrivateProject();
+    insertAnalysis(LAST_ANALYSIS_UUID, project.uuid(), true);
+    insertAnalysis(OTHER_ANALYSIS_UUID, project.uuid(), false);
+    insertMeasure("PROJECT_M1", OTHER_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("PROJECT_M2", OTHER_ANALYSIS_UUID, project.uuid(), COVERAGE_METRIC_ID);
+    insertMeasure("PROJECT_M3", LAST_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("M1", OTHER_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID);
+    insertMeasure("M2", OTHER_ANALYSIS_UUID, "C2", NCLOC_METRIC_ID);
+    insertMeasure("M3", OTHER_ANALYSIS_UUID, "C3", NCLOC_METRIC_ID);
+    insertMeasureOnPerson("M4", OTHER_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID, 10L);
+    db.commit();
+
+    List<PastMeasureDto> result = new ArrayList<>();
+    underTest.selectPastMeasures(dbSession, asList(project.uuid(), "C1", "C2"), OTHER_ANALYSIS_UUID, singletonList(NCLOC_METRIC_ID),
+      context -> result.add(context.getResultObject()));
+
+    assertThat(result).extracting(PastMeasureDto::getComponentUuid).containsOnly(project.uuid(), "C1", "C2");
+    assertThat(result).extracting(PastMeasureDto::getMetricId).containsOnly(NCLOC_METRIC_ID);
+    assertThat(result).extracting(PastMeasureDto::getPersonId).containsOnly((Long) null);
+  }
+
+  @Test
+  public void select_past_measures_of_several_components_does_nothing_if_no_components_or_metrics() {
+    List<PastMeasureDto> result = new ArrayList<>();
+
+    underTest.selectPastMeasures(dbSession, emptyList(), OTHER_ANALYSIS_UUID, singletonList(NCLOC_METRIC_ID), context -> result.add(context.getResultObject()));
+    underTest.selectPastMeasures(dbSession, singletonList("C1"), OTHER_ANALYSIS_UUID, emptyList(), context -> result.add(context.getResultObject()));
+
+    assertThat(result).isEmpty();
+  }
+
   @Test
   public void select_past_measures_with_several_analyses() {
     ComponentDto project = db.components().insertPrivateProject();
@@ -44,12 +44,14 @@ public class MeasureTreeQueryTest {
       .setNameOrKeyQuery("teSt")
       .setMetricIds(asList(10, 11))
       .setPersonId(100L)
+      .setComponentUuids(asList("ABCD", "EFGH"))
       .build();
 
     assertThat(query.getStrategy()).isEqualTo(CHILDREN);
     assertThat(query.getQualifiers()).containsOnly("FIL", "DIR");
     assertThat(query.getNameOrKeyQuery()).isEqualTo("teSt");
     assertThat(query.getMetricIds()).containsOnly(10, 11);
+    assertThat(query.getComponentUuids()).containsOnly("ABCD", "EFGH");
     assertThat(query.getPersonId()).isEqualTo(100L);
   }
 
@@ -64,6 +66,7 @@ public class MeasureTreeQueryTest {
     assertThat(query.getNameOrKeyQuery()).isNull();
     assertThat(query.getMetricIds()).isNull();
     assertThat(query.getPersonId()).isNull();
+    assertThat(query.getComponentUuids()).isNull();
   }
 
   @Test
@@ -113,6 +116,19 @@ public class MeasureTreeQueryTest {
       .build().returnsEmpty()).isFalse();
   }
 
+  @Test
+  public void return_empty_when_component_uuids_is_empty() throws Exception {
+    assertThat(MeasureTreeQuery.builder()
+      .setStrategy(CHILDREN)
+      .setComponentUuids(Collections.emptyList())
+      .build().returnsEmpty()).isTrue();
+
+    assertThat(MeasureTreeQuery.builder()
+      .setStrategy(CHILDREN)
+      .setComponentUuids(asList("ABCD"))
+      .build().returnsEmpty()).isFalse();
+  }
+
   @Test
   public void fail_when_no_strategy() throws Exception {
     expectedException.expect(NullPointerException.class);
@@ -19,6 +19,7 @@
  */
 package org.sonar.db.purge;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
@@ -81,6 +82,28 @@ public class PurgeCommandsTest {
     // The goal of this test is only to check that the query do no fail, not to check result
   }
 
+  @Test
+  public void pause_after_each_chunk_of_deletions() {
+    List<Long> pauses = new ArrayList<>();
+    PurgeThrottler throttler = new PurgeThrottler(1.0, pauses::add);
+    PurgeProfiler.Clock clock = new PurgeProfiler.Clock() {
+      private long now = 0;
+
+      @Override
+      public long now() {
+        now += 10;
+        return now;
+      }
+    };
+    PurgeCommands underTest = new PurgeCommands(dbTester.getSession(), dbTester.getSession().getMapper(PurgeMapper.class), new PurgeProfiler(clock), throttler);
+
+    underTest.deleteComponents(newArrayList("UUID_1", "UUID_2"));
+    underTest.deletePermissions(1L);
+
+    // one chunk of components, two statements on permissions
+    assertThat(pauses).containsExactly(10L, 10L, 10L);
+  }
+
   @Test
   public void shouldDeleteComponentsAndChildrenTables() {
     dbTester.prepareDbUnit(getClass(), "shouldDeleteResource.xml");
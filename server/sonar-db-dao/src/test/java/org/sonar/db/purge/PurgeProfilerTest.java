@@ -23,6 +23,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.utils.log.Logger;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.contains;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -80,6 +81,25 @@ public class PurgeProfilerTest {
     verify(logger).info(contains("bar: 5ms"));
   }
 
+  @Test
+  public void dump_number_of_deleted_rows() {
+    profiler.start("foo");
+    clock.sleep(10);
+    assertThat(profiler.stop(100)).isEqualTo(10);
+
+    profiler.start("foo");
+    clock.sleep(5);
+    profiler.stop(20);
+
+    profiler.start("bar");
+    clock.sleep(5);
+    profiler.stop(0);
+
+    profiler.dump(20, logger);
+    verify(logger).info("   o foo: 15ms (75%), 120 rows");
+    verify(logger).info("   o bar: 5ms (25%)");
+  }
+
   private class MockedClock extends PurgeProfiler.Clock {
     private long now = 0;
 
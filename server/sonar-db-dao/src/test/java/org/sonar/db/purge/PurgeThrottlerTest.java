@@ -0,0 +1,63 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.purge;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PurgeThrottlerTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private List<Long> pauses = new ArrayList<>();
+
+  @Test
+  public void pause_proportionally_to_duration_of_chunk() {
+    PurgeThrottler underTest = new PurgeThrottler(1.5, pauses::add);
+
+    underTest.pause(100);
+    underTest.pause(10);
+
+    assertThat(pauses).containsExactly(150L, 15L);
+  }
+
+  @Test
+  public void do_not_pause_if_ratio_is_zero() {
+    PurgeThrottler underTest = new PurgeThrottler(0.0, pauses::add);
+
+    underTest.pause(100);
+
+    assertThat(pauses).isEmpty();
+  }
+
+  @Test
+  public void fail_if_ratio_is_negative() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Throttling ratio must be positive or zero: -1.0");
+
+    new PurgeThrottler(-1.0, pauses::add);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.junit.Test;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.source.ChunkedSourceData.LINES_PER_CHUNK;
+
+public class ChunkedSourceDataTest {
+
+  @Test
+  public void encoded_data_can_be_fully_decoded() throws IOException {
+    DbFileSources.Data data = newData(2 * LINES_PER_CHUNK + 10);
+
+    byte[] bytes = ChunkedSourceData.encode(data);
+
+    DbFileSources.Data decoded = new FileSourceDto().decodeSourceData(bytes);
+    assertThat(decoded.getLinesList()).isEqualTo(data.getLinesList());
+    assertThat(decoded.getChunkIndex().getLinesPerChunk()).isEqualTo(LINES_PER_CHUNK);
+    assertThat(decoded.getChunkIndex().getChunkSizesCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void decode_range_of_lines() throws IOException {
+    DbFileSources.Data data = newData(2 * LINES_PER_CHUNK + 10);
+    byte[] bytes = ChunkedSourceData.encode(data);
+
+    assertThat(lineNumbers(ChunkedSourceData.decodeLines(bytes, 1, 3))).containsExactly(1, 2, 3);
+    assertThat(lineNumbers(ChunkedSourceData.decodeLines(bytes, LINES_PER_CHUNK, LINES_PER_CHUNK + 1)))
+      .containsExactly(LINES_PER_CHUNK, LINES_PER_CHUNK + 1);
+    assertThat(lineNumbers(ChunkedSourceData.decodeLines(bytes, 2 * LINES_PER_CHUNK + 9, Integer.MAX_VALUE)))
+      .containsExactly(2 * LINES_PER_CHUNK + 9, 2 * LINES_PER_CHUNK + 10);
+    assertThat(ChunkedSourceData.decodeLines(bytes, 1, Integer.MAX_VALUE)).isEqualTo(data.getLinesList());
+  }
+
+  @Test
+  public void decode_range_out_of_file() throws IOException {
+    byte[] bytes = ChunkedSourceData.encode(newData(10));
+
+    assertThat(ChunkedSourceData.decodeLines(bytes, 11, 20)).isEmpty();
+    assertThat(ChunkedSourceData.decodeLines(bytes, 5 * LINES_PER_CHUNK, 6 * LINES_PER_CHUNK)).isEmpty();
+  }
+
+  @Test
+  public void encode_empty_data() throws IOException {
+    byte[] bytes = ChunkedSourceData.encode(DbFileSources.Data.getDefaultInstance());
+
+    assertThat(new FileSourceDto().decodeSourceData(bytes).getLinesCount()).isZero();
+    assertThat(ChunkedSourceData.decodeLines(bytes, 1, 10)).isEmpty();
+  }
+
+  @Test
+  public void decodeLines_returns_null_if_data_has_no_index() throws IOException {
+    assertThat(ChunkedSourceData.decodeLines(encodeWithoutIndex(newData(10)), 1, 10)).isNull();
+    assertThat(ChunkedSourceData.decodeLines(encodeWithoutIndex(DbFileSources.Data.getDefaultInstance()), 1, 10)).isNull();
+    assertThat(ChunkedSourceData.decodeLines(new byte[] {1, 2, 3}, 1, 10)).isNull();
+  }
+
+  @Test
+  public void getSourceLines_supports_data_without_index() {
+    DbFileSources.Data data = newData(10);
+    FileSourceDto dto = new FileSourceDto().setBinaryData(encodeWithoutIndex(data));
+
+    assertThat(lineNumbers(dto.getSourceLines(2, 4))).containsExactly(2, 3, 4);
+    assertThat(lineNumbers(dto.getSourceLines(9, 20))).containsExactly(9, 10);
+    assertThat(dto.getSourceLines(11, 20)).isEmpty();
+  }
+
+  @Test
+  public void getSourceLines_decodes_chunks() {
+    FileSourceDto dto = new FileSourceDto().setSourceData(newData(LINES_PER_CHUNK + 5));
+
+    assertThat(lineNumbers(dto.getSourceLines(LINES_PER_CHUNK + 4, LINES_PER_CHUNK + 10))).containsExactly(LINES_PER_CHUNK + 4, LINES_PER_CHUNK + 5);
+  }
+
+  private static List<Integer> lineNumbers(List<DbFileSources.Line> lines) {
+    return lines.stream().map(DbFileSources.Line::getLine).collect(toList());
+  }
+
+  private static DbFileSources.Data newData(int numberOfLines) {
+    DbFileSources.Data.Builder builder = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= numberOfLines; i++) {
+      builder.addLinesBuilder().setLine(i).setSource("line " + i).setScmAuthor("author");
+    }
+    return builder.build();
+  }
+
+  /**
+   * Layout of column BINARY_DATA before version 6.6
+   */
+  private static byte[] encodeWithoutIndex(DbFileSources.Data data) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream lz4Output = new LZ4BlockOutputStream(output)) {
+      data.writeTo(lz4Output);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return output.toByteArray();
+  }
+}
@@ -21,16 +21,21 @@ package org.sonar.db.source;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.utils.System2;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
@@ -59,6 +64,19 @@ public class FileSourceDaoTest {
     assertThat(fileSourceDto.getRevision()).isEqualTo("123456789");
   }
 
+  @Test
+  public void selectSourceHashesByFileUuid_does_not_load_data() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    FileSourceDto fileSourceDto = underTest.selectSourceHashesByFileUuid(session, "FILE1_UUID");
+
+    assertThat(fileSourceDto.getBinaryData()).isNull();
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("hash");
+    assertThat(fileSourceDto.getFileUuid()).isEqualTo("FILE1_UUID");
+    assertThat(fileSourceDto.getDataType()).isEqualTo(Type.SOURCE);
+    assertThat(underTest.selectSourceHashesByFileUuid(session, "unknown")).isNull();
+  }
+
   @Test
   public void select_line_hashes() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -89,6 +107,70 @@ public class FileSourceDaoTest {
     assertThat(fn.result).isNull();
   }
 
+  @Test
+  public void scrollLineHashes_returns_line_hashes_of_sources_of_specified_files() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    insertFileSource("FILE2_UUID", Type.SOURCE, "LINE1_HASH\nLINE2_HASH");
+    insertFileSource("FILE3_UUID", Type.TEST, "LINE1_HASH\nLINE2_HASH");
+    insertFileSource("FILE4_UUID", Type.SOURCE, null);
+    session.commit();
+
+    List<LineHashesWithUuidDto> dtos = new ArrayList<>();
+    underTest.scrollLineHashes(session, asList("FILE2_UUID", "FILE3_UUID", "FILE4_UUID", "unknown"), context -> dtos.add(context.getResultObject()));
+
+    assertThat(dtos).extracting(LineHashesWithUuidDto::getUuid).containsOnly("FILE2_UUID", "FILE4_UUID");
+    assertThat(dtos).filteredOn(dto -> dto.getUuid().equals("FILE2_UUID")).extracting(LineHashesWithUuidDto::getLineHashes)
+      .containsExactly(asList("LINE1_HASH", "LINE2_HASH"));
+    assertThat(dtos).filteredOn(dto -> dto.getUuid().equals("FILE4_UUID")).extracting(LineHashesWithUuidDto::getLineHashes)
+      .containsExactly(emptyList());
+  }
+
+  @Test
+  public void scrollLineHashes_does_nothing_if_no_file_is_specified() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    List<LineHashesWithUuidDto> dtos = new ArrayList<>();
+    underTest.scrollLineHashes(session, emptyList(), context -> dtos.add(context.getResultObject()));
+
+    assertThat(dtos).isEmpty();
+  }
+
+  @Test
+  public void scrollSourcesOfProject_returns_sources_of_files_of_specified_project() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    insertFileSource("FILE2_UUID", Type.SOURCE, "LINE1_HASH");
+    insertFileSource("FILE3_UUID", Type.TEST, "LINE1_HASH");
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("OTHER_PRJ_UUID")
+      .setFileUuid("FILE4_UUID")
+      .setBinaryData("BINARY_DATA".getBytes())
+      .setDataHash("DATA_HASH")
+      .setSrcHash("SRC_HASH")
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+    session.commit();
+
+    List<FileSourceDto> dtos = new ArrayList<>();
+    underTest.scrollSourcesOfProject(session, "PRJ_UUID", context -> dtos.add(context.getResultObject()));
+
+    assertThat(dtos).extracting(FileSourceDto::getFileUuid).containsOnly("FILE1_UUID", "FILE2_UUID");
+    FileSourceDto dto = dtos.stream().filter(d -> d.getFileUuid().equals("FILE2_UUID")).findFirst().get();
+    assertThat(dto.getSrcHash()).isEqualTo("SRC_HASH");
+    assertThat(dto.getBinaryData()).isEqualTo("BINARY_DATA".getBytes());
+    assertThat(dto.getLineHashes()).isNull();
+  }
+
+  @Test
+  public void scrollSourcesOfProject_does_nothing_on_unknown_project() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    List<FileSourceDto> dtos = new ArrayList<>();
+    underTest.scrollSourcesOfProject(session, "unknown", context -> dtos.add(context.getResultObject()));
+
+    assertThat(dtos).isEmpty();
+  }
+
   @Test
   public void insert() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -110,6 +192,52 @@ public class FileSourceDaoTest {
       "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
   }
 
+  @Test
+  public void insert_with_batch_inserter() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    try (BatchInserter<FileSourceDto> inserter = underTest.newBatchInserter(session)) {
+      inserter.add(new FileSourceDto()
+        .setProjectUuid("PRJ_UUID")
+        .setFileUuid("FILE2_UUID")
+        .setBinaryData("FILE2_BINARY_DATA".getBytes())
+        .setDataHash("FILE2_DATA_HASH")
+        .setLineHashes("LINE1_HASH\\nLINE2_HASH")
+        .setSrcHash("FILE2_HASH")
+        .setDataType(Type.SOURCE)
+        .setCreatedAt(1500000000000L)
+        .setUpdatedAt(1500000000001L)
+        .setRevision("123456789"));
+    }
+    session.commit();
+
+    dbTester.assertDbUnitTable(getClass(), "insert-result.xml", "file_sources",
+      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
+  }
+
+  @Test
+  public void batch_inserter_inserts_several_rows_per_statement() {
+    try (BatchInserter<FileSourceDto> inserter = underTest.newBatchInserter(session, 2)) {
+      for (int i = 0; i < 5; i++) {
+        inserter.add(new FileSourceDto()
+          .setProjectUuid("PRJ_UUID")
+          .setFileUuid("FILE" + i)
+          .setBinaryData(("BINARY_DATA" + i).getBytes())
+          .setDataHash("DATA_HASH")
+          .setLineHashes("HASH" + i)
+          .setSrcHash("SRC_HASH")
+          .setDataType(Type.SOURCE)
+          .setCreatedAt(1500000000000L)
+          .setUpdatedAt(1500000000001L));
+      }
+    }
+    session.commit();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(5);
+    assertThat(underTest.selectSourceByFileUuid(session, "FILE4").getBinaryData()).isEqualTo("BINARY_DATA4".getBytes());
+    assertThat(underTest.selectLineHashes(session, "FILE3")).containsExactly("HASH3");
+  }
+
   @Test
   public void selectLineHashes_does_not_fail_when_lineshashes_is_null() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -179,6 +307,19 @@ public class FileSourceDaoTest {
       "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
   }
 
+  private void insertFileSource(String fileUuid, String dataType, @Nullable String lineHashes) {
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid(fileUuid)
+      .setBinaryData("BINARY_DATA".getBytes())
+      .setDataHash("DATA_HASH")
+      .setLineHashes(lineHashes)
+      .setSrcHash("SRC_HASH")
+      .setDataType(dataType)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+  }
+
   private static class ReaderToStringFunction implements Function<Reader, String> {
 
     String result = null;
@@ -80,6 +80,56 @@ public class FileSourceDtoTest {
     assertThat(data.getLinesCount()).isEqualTo(build.getLinesCount());
   }
 
+  @Test
+  public void getScmOfLines_decodes_only_scm_fields_of_all_lines() {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    int lineCount = FileSourceDto.LINES_PER_CHUNK * 2 + 3;
+    for (int i = 1; i <= lineCount; i++) {
+      DbFileSources.Line.Builder line = dataBuilder.addLinesBuilder()
+        .setLine(i)
+        .setSource(LOREM_IPSUM)
+        .setHighlighting("1,2,k")
+        .setScmRevision("rev-" + (i % 3))
+        .setScmDate(1_500_000_000_000L + i);
+      if (i % 2 == 0) {
+        line.setScmAuthor("author-" + i);
+      }
+    }
+    dataBuilder.addLinesBuilder().setLine(lineCount + 1).setSource("no scm");
+    FileSourceDto underTest = new FileSourceDto().setSourceData(dataBuilder.build());
+
+    List<DbFileSources.Line> lines = underTest.getScmOfLines();
+
+    assertThat(lines).hasSize(lineCount + 1);
+    for (int i = 1; i <= lineCount; i++) {
+      DbFileSources.Line line = lines.get(i - 1);
+      assertThat(line.getScmRevision()).isEqualTo("rev-" + (i % 3));
+      assertThat(line.getScmDate()).isEqualTo(1_500_000_000_000L + i);
+      assertThat(line.hasScmAuthor()).isEqualTo(i % 2 == 0);
+      assertThat(line.hasSource()).isFalse();
+      assertThat(line.hasHighlighting()).isFalse();
+      assertThat(line.hasLine()).isFalse();
+    }
+    DbFileSources.Line last = lines.get(lineCount);
+    assertThat(last.hasScmRevision()).isFalse();
+    assertThat(last.hasScmAuthor()).isFalse();
+    assertThat(last.hasScmDate()).isFalse();
+  }
+
+  @Test
+  public void getScmOfLines_throws_ISE_with_id_fileUuid_and_projectUuid_in_message_when_data_cant_be_read() {
+    FileSourceDto underTest = new FileSourceDto()
+      .setBinaryData(new byte[] {1, 2, 3, 4, 5})
+      .setId(12L)
+      .setFileUuid("file uuid")
+      .setProjectUuid("project uuid");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to decompress and deserialize source data [id=12,fileUuid=file uuid,projectUuid=project uuid]");
+
+    underTest.getScmOfLines();
+  }
+
   private static DbFileSources.Data createOver64MBDataStructure() {
     DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
@@ -76,4 +76,9 @@ public final class ClusterObjectKeys {
    * {@link CeCleaningSchedulerImpl}
    */
   public static final String CE_CLEANING_JOB_LOCK = "CE_CLEANING_JOB_LOCK";
+
+  /**
+   * The key of the topic on which the number of pending CE tasks is published
+   */
+  public static final String CE_PENDING_TASKS = "CE_PENDING_TASKS";
 }
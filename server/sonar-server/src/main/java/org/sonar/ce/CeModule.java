@@ -22,6 +22,8 @@ package org.sonar.ce;
 import org.sonar.ce.http.CeHttpClientImpl;
 import org.sonar.ce.log.CeLogging;
 import org.sonar.ce.queue.CeQueueImpl;
+import org.sonar.ce.queue.ReportSpoolProvider;
+import org.sonar.ce.taskprocessor.ProjectPurgeTaskProcessorDeclaration;
 import org.sonar.ce.taskprocessor.ReportTaskProcessorDeclaration;
 import org.sonar.core.platform.Module;
 import org.sonar.server.computation.queue.ReportSubmitter;
@@ -34,9 +36,11 @@ public class CeModule extends Module {
 
       // Queue
       CeQueueImpl.class,
+      new ReportSpoolProvider(),
       ReportSubmitter.class,
 
       // Core tasks processors
-      ReportTaskProcessorDeclaration.class);
+      ReportTaskProcessorDeclaration.class,
+      ProjectPurgeTaskProcessorDeclaration.class);
   }
 }
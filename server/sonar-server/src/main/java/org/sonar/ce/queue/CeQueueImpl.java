@@ -51,14 +51,16 @@ public class CeQueueImpl implements CeQueue {
   private final DbClient dbClient;
   private final UuidFactory uuidFactory;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final ReportSpool reportSpool;
 
   // state
   private AtomicBoolean submitPaused = new AtomicBoolean(false);
 
-  public CeQueueImpl(DbClient dbClient, UuidFactory uuidFactory, DefaultOrganizationProvider defaultOrganizationProvider) {
+  public CeQueueImpl(DbClient dbClient, UuidFactory uuidFactory, DefaultOrganizationProvider defaultOrganizationProvider, ReportSpool reportSpool) {
     this.dbClient = dbClient;
     this.uuidFactory = uuidFactory;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.reportSpool = reportSpool;
   }
 
   @Override
@@ -160,7 +162,10 @@ public class CeQueueImpl implements CeQueue {
   protected void remove(DbSession dbSession, CeQueueDto queueDto, CeActivityDto activityDto) {
     dbClient.ceActivityDao().insert(dbSession, activityDto);
     dbClient.ceQueueDao().deleteByUuid(dbSession, queueDto.getUuid());
-    dbClient.ceTaskInputDao().deleteByUuids(dbSession, singleton(queueDto.getUuid()));
+    dbSession.commit();
+    // deletion of files is not transactional, so the report is deleted only once the task is removed
+    // from the queue. Reports left over by a failure are deleted by ReportSpool#deleteOrphans.
+    reportSpool.delete(dbSession, singleton(queueDto.getUuid()));
     dbSession.commit();
   }
 
@@ -0,0 +1,79 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeTaskInputDao;
+
+/**
+ * Stores the reports in the table CE_TASK_INPUT.
+ */
+public class DbReportSpool implements ReportSpool {
+
+  private final DbClient dbClient;
+
+  public DbReportSpool(DbClient dbClient) {
+    this.dbClient = dbClient;
+  }
+
+  @Override
+  public void write(DbSession dbSession, String taskUuid, InputStream report) {
+    dbClient.ceTaskInputDao().insert(dbSession, taskUuid, report);
+  }
+
+  @Override
+  public Optional<Report> read(DbSession dbSession, String taskUuid) {
+    return dbClient.ceTaskInputDao().selectData(dbSession, taskUuid).map(DbReport::new);
+  }
+
+  @Override
+  public void delete(DbSession dbSession, Collection<String> taskUuids) {
+    dbClient.ceTaskInputDao().deleteByUuids(dbSession, taskUuids);
+  }
+
+  @Override
+  public void deleteOrphans(DbSession dbSession) {
+    List<String> uuids = dbClient.ceTaskInputDao().selectUuidsNotInQueue(dbSession);
+    dbClient.ceTaskInputDao().deleteByUuids(dbSession, uuids);
+  }
+
+  private static class DbReport implements Report {
+    private final CeTaskInputDao.DataStream dataStream;
+
+    private DbReport(CeTaskInputDao.DataStream dataStream) {
+      this.dataStream = dataStream;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return dataStream.getInputStream();
+    }
+
+    @Override
+    public void close() {
+      dataStream.close();
+    }
+  }
+}
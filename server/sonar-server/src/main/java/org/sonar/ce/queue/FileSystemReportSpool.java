@@ -0,0 +1,171 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Stores the reports as files in a directory. A report is written to a temporary file, which is renamed
+ * when complete, so that a partially written report is never read.
+ * <p/>
+ * A report is written before its task is inserted in the queue. Orphan files which are modified
+ * recently can be reports which are still being submitted, so they are not deleted.
+ */
+public class FileSystemReportSpool implements ReportSpool {
+
+  private static final Logger LOG = Loggers.get(FileSystemReportSpool.class);
+  private static final String EXTENSION = ".zip";
+  private static final String TEMP_EXTENSION = ".tmp";
+  static final long ORPHAN_GRACE_PERIOD_MS = TimeUnit.HOURS.toMillis(1);
+
+  private final DbClient dbClient;
+  private final System2 system2;
+  private final Path dir;
+
+  public FileSystemReportSpool(DbClient dbClient, System2 system2, Path dir) {
+    this.dbClient = dbClient;
+    this.system2 = system2;
+    this.dir = dir;
+    try {
+      Files.createDirectories(dir);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create directory of analysis reports " + dir, e);
+    }
+  }
+
+  @Override
+  public void write(DbSession dbSession, String taskUuid, InputStream report) {
+    Path file = fileOf(taskUuid);
+    Path tempFile = dir.resolve(taskUuid + EXTENSION + TEMP_EXTENSION);
+    try {
+      Files.copy(report, tempFile, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      deleteQuietly(tempFile);
+      throw new IllegalStateException("Fail to write report of CE task " + taskUuid + " to " + file, e);
+    }
+  }
+
+  @Override
+  public Optional<Report> read(DbSession dbSession, String taskUuid) {
+    Path file = fileOf(taskUuid);
+    try {
+      return Optional.of(new FileReport(FileChannel.open(file, StandardOpenOption.READ)));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read report of CE task " + taskUuid + " from " + file, e);
+    }
+  }
+
+  @Override
+  public void delete(DbSession dbSession, Collection<String> taskUuids) {
+    taskUuids.forEach(taskUuid -> deleteQuietly(fileOf(taskUuid)));
+  }
+
+  @Override
+  public void deleteOrphans(DbSession dbSession) {
+    // the date is read before the queue, so that files of tasks submitted in-between are not deleted
+    long modifiedBefore = system2.now() - ORPHAN_GRACE_PERIOD_MS;
+    Set<String> uuidsInQueue = dbClient.ceQueueDao().selectAllInAscOrder(dbSession).stream()
+      .map(CeQueueDto::getUuid)
+      .collect(toSet());
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+      for (Path file : files) {
+        String fileName = file.getFileName().toString();
+        int extensionIndex = fileName.indexOf(EXTENSION);
+        if (extensionIndex > 0 && !uuidsInQueue.contains(fileName.substring(0, extensionIndex)) && isModifiedBefore(file, modifiedBefore)) {
+          deleteQuietly(file);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to list analysis reports of directory " + dir, e);
+    }
+  }
+
+  private static boolean isModifiedBefore(Path file, long date) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis() < date;
+    } catch (NoSuchFileException e) {
+      // moved or deleted in-between
+      return false;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read modification date of " + file, e);
+    }
+  }
+
+  Path fileOf(String taskUuid) {
+    return dir.resolve(taskUuid + EXTENSION);
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOG.warn("Fail to delete analysis report {}", file, e);
+    }
+  }
+
+  /**
+   * Reads the file through its channel, without any intermediary buffer.
+   */
+  private static class FileReport implements Report {
+    private final FileChannel channel;
+    private final InputStream stream;
+
+    private FileReport(FileChannel channel) {
+      this.channel = channel;
+      this.stream = Channels.newInputStream(channel);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return stream;
+    }
+
+    @Override
+    public void close() {
+      IOUtils.closeQuietly(stream);
+      IOUtils.closeQuietly(channel);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Optional;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.DbSession;
+
+/**
+ * Storage of the analysis reports, from their submission by the scanner to the removal of their task
+ * from the queue.
+ * <p>
+ * Reports are stored in database by default. The property {@link #TYPE_PROPERTY} can be set to {@link #TYPE_FILESYSTEM}
+ * to store them as files in the directory {@link #PATH_PROPERTY}, which must be shared by the Web Server and the
+ * Compute Engine.
+ * </p>
+ */
+@ServerSide
+@ComputeEngineSide
+public interface ReportSpool {
+
+  String TYPE_PROPERTY = "sonar.ce.reportSpool";
+  String TYPE_DATABASE = "database";
+  String TYPE_FILESYSTEM = "filesystem";
+  String PATH_PROPERTY = "sonar.ce.reportSpool.path";
+
+  /**
+   * Stores the report of the specified task. The stream is read until its end, but is not closed.
+   */
+  void write(DbSession dbSession, String taskUuid, InputStream report);
+
+  /**
+   * The report of the specified task, or empty if it has not been stored or has already been deleted.
+   * The returned {@link Report} must be closed.
+   */
+  Optional<Report> read(DbSession dbSession, String taskUuid);
+
+  /**
+   * Deletes the reports of the specified tasks. It's called once the tasks have been removed from the queue and
+   * committed, as the deletion may not be transactional.
+   */
+  void delete(DbSession dbSession, Collection<String> taskUuids);
+
+  /**
+   * Deletes the reports of the tasks which are not in the queue anymore.
+   */
+  void deleteOrphans(DbSession dbSession);
+
+  interface Report extends AutoCloseable {
+    InputStream getInputStream();
+
+    @Override
+    void close();
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.io.File;
+import org.picocontainer.injectors.ProviderAdapter;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.server.platform.ServerFileSystem;
+
+import static java.lang.String.format;
+import static org.sonar.ce.queue.ReportSpool.PATH_PROPERTY;
+import static org.sonar.ce.queue.ReportSpool.TYPE_DATABASE;
+import static org.sonar.ce.queue.ReportSpool.TYPE_FILESYSTEM;
+import static org.sonar.ce.queue.ReportSpool.TYPE_PROPERTY;
+
+/**
+ * Provides the implementation of {@link ReportSpool} defined by the property {@link ReportSpool#TYPE_PROPERTY}.
+ * When not set, the directory of reports stored on file system is {@code <data dir>/ce/reports}. A relative path
+ * is resolved from the home directory.
+ */
+public class ReportSpoolProvider extends ProviderAdapter {
+
+  private ReportSpool reportSpool;
+
+  public ReportSpool provide(Configuration config, DbClient dbClient, System2 system2, ServerFileSystem fs) {
+    if (reportSpool == null) {
+      String type = config.get(TYPE_PROPERTY).orElse(TYPE_DATABASE);
+      switch (type) {
+        case TYPE_DATABASE:
+          reportSpool = new DbReportSpool(dbClient);
+          break;
+        case TYPE_FILESYSTEM:
+          reportSpool = new FileSystemReportSpool(dbClient, system2, directoryOf(config, fs).toPath());
+          break;
+        default:
+          throw new IllegalArgumentException(format("Unsupported value of property %s: %s", TYPE_PROPERTY, type));
+      }
+    }
+    return reportSpool;
+  }
+
+  private static File directoryOf(Configuration config, ServerFileSystem fs) {
+    return config.get(PATH_PROPERTY)
+      .map(path -> {
+        File dir = new File(path);
+        return dir.isAbsolute() ? dir : new File(fs.getHomeDir(), path);
+      })
+      .orElseGet(() -> new File(fs.getDataDir(), "ce/reports"));
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.server.ce.ws;
 
 import java.util.List;
+import java.util.Optional;
 import org.sonar.api.server.ws.Change;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
@@ -31,11 +32,13 @@ import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.ce.CeTaskQuery;
+import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.user.UserSession;
 import org.sonar.server.ws.KeyExamples;
 
+import static java.util.stream.Collectors.toList;
 import static org.sonar.db.Pagination.forPage;
 import static org.sonar.server.component.ComponentFinder.ParamNames.COMPONENT_ID_AND_KEY;
 import static org.sonar.server.ws.WsUtils.writeProtobuf;
@@ -45,6 +48,10 @@ public class ComponentAction implements CeWsAction {
 
   public static final String PARAM_COMPONENT_ID = "componentId";
   public static final String PARAM_COMPONENT_KEY = "componentKey";
+  /**
+   * There is at most one current task per type of task of the component
+   */
+  private static final int MAX_CURRENT_TASKS = 10;
 
   private final UserSession userSession;
   private final DbClient dbClient;
@@ -86,18 +93,25 @@ public class ComponentAction implements CeWsAction {
     try (DbSession dbSession = dbClient.openSession(false)) {
       ComponentDto component = componentFinder.getByUuidOrKey(dbSession, wsRequest.param(PARAM_COMPONENT_ID), wsRequest.param(PARAM_COMPONENT_KEY), COMPONENT_ID_AND_KEY);
       userSession.checkComponentPermission(UserRole.USER, component);
-      List<CeQueueDto> queueDtos = dbClient.ceQueueDao().selectByComponentUuid(dbSession, component.uuid());
+      // purges deferred by the analysis are an implementation detail, which must not hide the status of analyses
+      List<CeQueueDto> queueDtos = dbClient.ceQueueDao().selectByComponentUuid(dbSession, component.uuid()).stream()
+        .filter(queueDto -> !isPurge(queueDto.getTaskType()))
+        .collect(toList());
       CeTaskQuery activityQuery = new CeTaskQuery()
         .setComponentUuid(component.uuid())
         .setOnlyCurrents(true);
-      List<CeActivityDto> activityDtos = dbClient.ceActivityDao().selectByQuery(dbSession, activityQuery, forPage(1).andSize(1));
+      Optional<CeActivityDto> currentDto = dbClient.ceActivityDao().selectByQuery(dbSession, activityQuery, forPage(1).andSize(MAX_CURRENT_TASKS)).stream()
+        .filter(activityDto -> !isPurge(activityDto.getTaskType()))
+        .findFirst();
 
       ProjectResponse.Builder wsResponseBuilder = ProjectResponse.newBuilder();
       wsResponseBuilder.addAllQueue(formatter.formatQueue(dbSession, queueDtos));
-      if (activityDtos.size() == 1) {
-        wsResponseBuilder.setCurrent(formatter.formatActivity(dbSession, activityDtos.get(0), null));
-      }
+      currentDto.ifPresent(activityDto -> wsResponseBuilder.setCurrent(formatter.formatActivity(dbSession, activityDto, null)));
       writeProtobuf(wsResponseBuilder.build(), wsRequest, wsResponse);
     }
   }
+
+  private static boolean isPurge(String taskType) {
+    return CeTaskTypes.PROJECT_PURGE.equals(taskType);
+  }
 }
@@ -129,7 +129,7 @@ public class ComponentIndex {
 
   private QueryBuilder createQuery(ComponentIndexQuery query, ComponentTextSearchFeature... features) {
     BoolQueryBuilder esQuery = boolQuery();
-    esQuery.filter(authorizationTypeSupport.createQueryFilter());
+    esQuery.filter(authorizationTypeSupport.createQueryFilter(INDEX_TYPE_COMPONENT));
     ComponentTextSearchQuery componentTextSearchQuery = ComponentTextSearchQuery.builder()
       .setQueryText(query.getQuery())
       .setFieldKey(FIELD_KEY)
@@ -68,6 +68,22 @@ public class ProjectCleaner {
     return this;
   }
 
+  /**
+   * Purges only the data of the components disabled by the analysis, when the rest of the purge
+   * is deferred to a task of type {@link org.sonar.db.ce.CeTaskTypes#PROJECT_PURGE}.
+   */
+  public ProjectCleaner purgeDisabledComponents(DbSession session, IdUuidPair idUuidPair, Configuration projectConfig, Collection<String> disabledComponentUuids) {
+    PurgeConfiguration configuration = newDefaultPurgeConfiguration(projectConfig, idUuidPair, disabledComponentUuids);
+    try {
+      purgeDao.purgeDisabledComponents(session, configuration, purgeListener, profiler);
+    } catch (Exception e) {
+      // purge errors must no fail the report analysis
+      LOG.error("Fail to purge disabled components [id=" + idUuidPair.getId() + "]", e);
+    }
+    session.commit();
+    return this;
+  }
+
   private void logProfiling(long start, Configuration config) {
     if (config.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY).orElse(false)) {
       long duration = System.currentTimeMillis() - start;
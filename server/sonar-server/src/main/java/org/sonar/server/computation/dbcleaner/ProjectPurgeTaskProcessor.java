@@ -0,0 +1,81 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.dbcleaner;
+
+import com.google.common.base.Optional;
+import java.util.Collections;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.CeTaskResult;
+import org.sonar.ce.settings.ProjectConfigurationFactory;
+import org.sonar.ce.taskprocessor.CeTaskProcessor;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.purge.IdUuidPair;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Purges the history of a project, when the purge is deferred by the analysis.
+ *
+ * @see org.sonar.core.config.PurgeConstants#DEFERRED_PURGE
+ */
+public class ProjectPurgeTaskProcessor implements CeTaskProcessor {
+
+  private static final Logger LOG = Loggers.get(ProjectPurgeTaskProcessor.class);
+  private static final Set<String> HANDLED_TYPES = Collections.singleton(CeTaskTypes.PROJECT_PURGE);
+
+  private final DbClient dbClient;
+  private final ProjectCleaner projectCleaner;
+  private final ProjectConfigurationFactory projectConfigurationFactory;
+
+  public ProjectPurgeTaskProcessor(DbClient dbClient, ProjectCleaner projectCleaner, ProjectConfigurationFactory projectConfigurationFactory) {
+    this.dbClient = dbClient;
+    this.projectCleaner = projectCleaner;
+    this.projectConfigurationFactory = projectConfigurationFactory;
+  }
+
+  @Override
+  public Set<String> getHandledCeTaskTypes() {
+    return HANDLED_TYPES;
+  }
+
+  @Override
+  @CheckForNull
+  public CeTaskResult process(CeTask task) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      Optional<ComponentDto> root = dbClient.componentDao().selectByUuid(dbSession, task.getComponentUuid());
+      if (root.isPresent()) {
+        ComponentDto component = root.get();
+        projectCleaner.purge(dbSession, new IdUuidPair(component.getId(), component.uuid()),
+          projectConfigurationFactory.newProjectConfiguration(component.getDbKey()), emptyList());
+        dbSession.commit();
+      } else {
+        LOG.info("Component {} does not exist anymore, purge is skipped", task.getComponentUuid());
+      }
+    }
+    return null;
+  }
+}
@@ -39,6 +39,7 @@ import org.sonar.api.server.ServerSide;
 import org.sonar.ce.queue.CeQueue;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.ce.queue.CeTaskSubmit;
+import org.sonar.ce.queue.ReportSpool;
 import org.sonar.core.component.ComponentKeys;
 import org.sonar.core.util.UuidFactory;
 import org.sonar.db.DbClient;
@@ -65,15 +66,17 @@ public class ReportSubmitter {
   private final PermissionTemplateService permissionTemplateService;
   private final DbClient dbClient;
   private final UuidFactory uuidFactory;
+  private final ReportSpool reportSpool;
 
   public ReportSubmitter(CeQueue queue, UserSession userSession, ComponentUpdater componentUpdater,
-    PermissionTemplateService permissionTemplateService, UuidFactory uuidFactory, DbClient dbClient) {
+    PermissionTemplateService permissionTemplateService, UuidFactory uuidFactory, DbClient dbClient, ReportSpool reportSpool) {
     this.queue = queue;
     this.userSession = userSession;
     this.componentUpdater = componentUpdater;
     this.permissionTemplateService = permissionTemplateService;
     this.uuidFactory = uuidFactory;
     this.dbClient = dbClient;
+    this.reportSpool = reportSpool;
   }
 
   public CeTask submit(String organizationKey, String projectKey, @Nullable String projectBranch, @Nullable String projectName, InputStream reportInput) {
@@ -151,7 +154,7 @@ public class ReportSubmitter {
       .map(e -> toDto(submit.getUuid(), e.getKey(), e.getValue())).collect(Collectors.toList());
 
     // the report file must be saved before submitting the task
-    dbClient.ceTaskInputDao().insert(dbSession, submit.getUuid(), reportInput);
+    reportSpool.write(dbSession, submit.getUuid(), reportInput);
     if (!characteristics.isEmpty()) {
       dbClient.ceTaskCharacteristicsDao().insert(dbSession, characteristics);
     }
@@ -51,4 +51,21 @@ public interface TreeRootHolder {
    * @throws IllegalStateException if the holder is empty (ie. there is not root  yet)
    */
   boolean hasComponentWithKey(String key);
+
+  /**
+   * Number of components in the tree.
+   *
+   * @throws IllegalStateException if the holder is empty (ie. there is not root  yet)
+   */
+  int getSize();
+
+  /**
+   * Dense index of the specified {@link Component} in the tree, between 0 (inclusive) and {@link #getSize()} (exclusive).
+   * Ordinals are assigned in pre-order, so the root has ordinal 0. They are intended to index arrays of data
+   * on components.
+   *
+   * @throws IllegalStateException if the holder is empty (ie. there is not root  yet)
+   * @throws IllegalArgumentException if the {@link Component} is not in the tree
+   */
+  int getComponentOrdinal(Component component);
 }
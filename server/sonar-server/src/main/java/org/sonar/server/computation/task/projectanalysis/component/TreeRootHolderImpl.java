@@ -27,6 +27,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 /**
  * Holds the reference to the root of the {@link Component} tree for the current CE run.
@@ -36,6 +37,8 @@ public class TreeRootHolderImpl implements MutableTreeRootHolder {
   private Map<Integer, Component> componentsByRef;
   @CheckForNull
   private Map<String, Component> componentsByKey;
+  @CheckForNull
+  private Map<Component, Integer> ordinalsByComponent;
 
   private Component root;
 
@@ -96,6 +99,25 @@ public class TreeRootHolderImpl implements MutableTreeRootHolder {
     return componentsByKey.containsKey(key);
   }
 
+  @Override
+  public int getSize() {
+    checkInitialized();
+    ensureOrdinalsArePopulated();
+
+    return ordinalsByComponent.size();
+  }
+
+  @Override
+  public int getComponentOrdinal(Component component) {
+    requireNonNull(component, "component can not be null");
+    checkInitialized();
+    ensureOrdinalsArePopulated();
+
+    Integer ordinal = ordinalsByComponent.get(component);
+    checkArgument(ordinal != null, "Component with key '%s' can't be found", component.getKey());
+    return ordinal;
+  }
+
   private void checkInitialized() {
     checkState(this.root != null, "Holder has not been initialized yet");
   }
@@ -119,4 +141,23 @@ public class TreeRootHolderImpl implements MutableTreeRootHolder {
       }).visit(this.root);
     this.componentsByKey = builder.build();
   }
+
+  private void ensureOrdinalsArePopulated() {
+    if (ordinalsByComponent != null) {
+      return;
+    }
+
+    final ImmutableMap.Builder<Component, Integer> builder = ImmutableMap.builder();
+    new DepthTraversalTypeAwareCrawler(
+      new TypeAwareVisitorAdapter(CrawlerDepthLimit.LEAVES, PRE_ORDER) {
+        private int ordinal = 0;
+
+        @Override
+        public void visitAny(Component component) {
+          builder.put(component, ordinal);
+          ordinal++;
+        }
+      }).visit(this.root);
+    this.ordinalsByComponent = builder.build();
+  }
 }
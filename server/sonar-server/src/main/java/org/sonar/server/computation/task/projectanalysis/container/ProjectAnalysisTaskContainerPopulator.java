@@ -49,6 +49,7 @@ import org.sonar.server.computation.task.projectanalysis.filesystem.ComputationT
 import org.sonar.server.computation.task.projectanalysis.issue.BaseIssuesLoader;
 import org.sonar.server.computation.task.projectanalysis.issue.CloseIssuesOnRemovedComponentsVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesRepositoryImpl;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolder;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentsWithUnprocessedIssues;
 import org.sonar.server.computation.task.projectanalysis.issue.DebtCalculator;
 import org.sonar.server.computation.task.projectanalysis.issue.DefaultAssignee;
@@ -187,6 +188,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       IssueVisitors.class,
       IssueLifecycle.class,
       ComponentsWithUnprocessedIssues.class,
+      ChangedIssuesHolder.class,
       ComponentIssuesRepositoryImpl.class,
       IssueFilter.class,
 
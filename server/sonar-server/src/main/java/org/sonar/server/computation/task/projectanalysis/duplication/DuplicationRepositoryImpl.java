@@ -30,13 +30,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Objects.requireNonNull;
 
 /**
- * In-memory implementation of {@link DuplicationRepository}.
+ * In-memory implementation of {@link DuplicationRepository}. Duplications of different files can be added concurrently.
  */
 public class DuplicationRepositoryImpl implements DuplicationRepository {
   private Multimap<String, Duplication> duplications = HashMultimap.create();
 
   @Override
-  public Iterable<Duplication> getDuplications(Component file) {
+  public synchronized Iterable<Duplication> getDuplications(Component file) {
     checkFileComponentArgument(file);
 
     Collection<Duplication> res = this.duplications.asMap().get(file.getKey());
@@ -47,7 +47,7 @@ public class DuplicationRepositoryImpl implements DuplicationRepository {
   }
 
   @Override
-  public void add(Component file, Duplication duplication) {
+  public synchronized void add(Component file, Duplication duplication) {
     checkFileComponentArgument(file);
     checkNotNull(duplication, "duplication can not be null");
 
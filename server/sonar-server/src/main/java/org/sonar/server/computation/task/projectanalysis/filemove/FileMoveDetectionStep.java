@@ -19,7 +19,6 @@
  */
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
-import com.google.common.base.Splitter;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -31,7 +30,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import org.sonar.api.resources.Qualifiers;
@@ -44,7 +42,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.ComponentTreeQuery.Strategy;
-import org.sonar.db.source.FileSourceDto;
+import org.sonar.db.source.LineHashesWithUuidDto;
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -56,17 +54,16 @@ import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
-import static com.google.common.base.MoreObjects.firstNonNull;
-import static com.google.common.base.Splitter.on;
 import static com.google.common.collect.FluentIterable.from;
 import static java.util.Arrays.asList;
+import static org.sonar.core.util.stream.MoreCollectors.toList;
+import static org.sonar.core.util.stream.MoreCollectors.uniqueIndex;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
 public class FileMoveDetectionStep implements ComputationStep {
   protected static final int MIN_REQUIRED_SCORE = 85;
   private static final Logger LOG = Loggers.get(FileMoveDetectionStep.class);
   private static final List<String> FILE_QUALIFIERS = asList(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
-  private static final Splitter LINES_HASHES_SPLITTER = on('\n');
 
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final TreeRootHolder rootHolder;
@@ -197,45 +194,29 @@ public class FileMoveDetectionStep implements ComputationStep {
   }
 
   private ScoreMatrix computeScoreMatrix(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys, Map<String, File> reportFileSourcesByKey) {
-    int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
-    int maxScore = 0;
+    List<String> reportFileKeys = new ArrayList<>(reportFileSourcesByKey.keySet());
+    LineHashesIndex reportFilesIndex = new LineHashesIndex(reportFileKeys.stream().map(reportFileSourcesByKey::get).collect(toList(reportFileKeys.size())));
+    Map<String, DbComponent> dbFilesByUuid = dbFileKeys.stream()
+      .map(dtosByKey::get)
+      .filter(dbComponent -> dbComponent.getPath() != null)
+      .collect(uniqueIndex(DbComponent::getUuid));
+    List<ScoreMatrix.Score> scores = new ArrayList<>();
 
     try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
-      for (String removedFileKey : dbFileKeys) {
-        File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
-        if (fileInDb == null) {
-          continue;
+      dbClient.fileSourceDao().scrollLineHashes(dbSession, dbFilesByUuid.keySet(), resultContext -> {
+        LineHashesWithUuidDto lineHashesDto = resultContext.getResultObject();
+        DbComponent dbComponent = dbFilesByUuid.get(lineHashesDto.getUuid());
+        File fileInDb = new File(dbComponent.getPath(), lineHashesDto.getLineHashes());
+        // only score report files which share enough lines with the file in DB to possibly reach MIN_REQUIRED_SCORE
+        for (int reportFileIndex : reportFilesIndex.getCandidates(fileInDb.getLineHashes())) {
+          String reportFileKey = reportFileKeys.get(reportFileIndex);
+          int score = fileSimilarity.score(fileInDb, reportFileSourcesByKey.get(reportFileKey));
+          scores.add(new ScoreMatrix.Score(dbComponent.getKey(), reportFileKey, score));
         }
-
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
-          scoreMatrix[dbFileIndex][reportFileIndex] = score;
-          if (score > maxScore) {
-            maxScore = score;
-          }
-          reportFileIndex++;
-        }
-        dbFileIndex++;
-      }
+      });
     }
 
-    return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
-  }
-
-  @CheckForNull
-  private File getFile(DbSession dbSession, DbComponent dbComponent) {
-    if (dbComponent.getPath() == null) {
-      return null;
-    }
-    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, dbComponent.getUuid());
-    if (fileSourceDto == null) {
-      return null;
-    }
-    String lineHashes = firstNonNull(fileSourceDto.getLineHashes(), "");
-    return new File(dbComponent.getPath(), LINES_HASHES_SPLITTER.splitToList(lineHashes));
+    return new ScoreMatrix(scores);
   }
 
   private static void printIfDebug(ScoreMatrix scoreMatrix) {
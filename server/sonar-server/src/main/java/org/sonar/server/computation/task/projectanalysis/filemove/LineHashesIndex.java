@@ -0,0 +1,192 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+/**
+ * Inverted index of the line hashes of a list of files, used to find which of these files may have a score greater than
+ * or equal to {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE} with another file without scoring every pair of files.
+ * <p>
+ * Score is based on the Levenshtein distance between the line hashes of the two files, therefore two files can reach
+ * {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE} only if they have the same number of lines within this percentage and
+ * if they share at least this percentage of the lines of the longest one.
+ * <p>
+ * Every occurrence of a line hash in a file is a token (the n-th occurrence of a given hash is a distinct token) and
+ * tokens are sorted from the rarest to the most frequent one. Two files sharing enough tokens necessarily share a token
+ * within the first tokens of each file ("prefix filtering"), so only these first tokens are indexed and looked up.
+ * Candidates returned by {@link #getCandidates(List)} must still be scored but no file which could reach the
+ * minimum score is left out.
+ */
+final class LineHashesIndex {
+  private static final int[] NO_POSTING = new int[0];
+
+  private final Map<String, int[]> tokensByLineHash = new HashMap<>();
+  private final int[] sizes;
+  private final int[] ranks;
+  private final int[][] postings;
+
+  LineHashesIndex(List<FileSimilarity.File> files) {
+    this.sizes = new int[files.size()];
+    int[] frequencies = new int[16];
+    int tokenCount = 0;
+    int[][] tokensByFile = new int[files.size()][];
+    for (int i = 0; i < files.size(); i++) {
+      List<String> lineHashes = files.get(i).getLineHashes();
+      int[] tokens = new int[lineHashes.size()];
+      Map<String, Integer> occurrences = new HashMap<>();
+      for (int j = 0; j < tokens.length; j++) {
+        String lineHash = lineHashes.get(j);
+        int occurrence = occurrences.merge(lineHash, 1, Integer::sum) - 1;
+        int[] tokensOfLineHash = tokensByLineHash.get(lineHash);
+        if (tokensOfLineHash == null || tokensOfLineHash.length == occurrence) {
+          tokensOfLineHash = tokensOfLineHash == null ? new int[1] : Arrays.copyOf(tokensOfLineHash, occurrence + 1);
+          tokensOfLineHash[occurrence] = tokenCount;
+          tokensByLineHash.put(lineHash, tokensOfLineHash);
+          tokenCount++;
+          if (frequencies.length < tokenCount) {
+            frequencies = Arrays.copyOf(frequencies, frequencies.length * 2);
+          }
+        }
+        tokens[j] = tokensOfLineHash[occurrence];
+        frequencies[tokens[j]]++;
+      }
+      tokensByFile[i] = tokens;
+      sizes[i] = tokens.length;
+    }
+
+    this.ranks = rankTokens(frequencies, tokenCount);
+    this.postings = indexPrefixes(tokensByFile, tokenCount);
+  }
+
+  /**
+   * Rank of each token: rarest tokens first, ties broken by token value.
+   */
+  private static int[] rankTokens(int[] frequencies, int tokenCount) {
+    long[] frequencyAndToken = new long[tokenCount];
+    for (int token = 0; token < tokenCount; token++) {
+      frequencyAndToken[token] = ((long) frequencies[token] << 32) | token;
+    }
+    Arrays.sort(frequencyAndToken);
+    int[] res = new int[tokenCount];
+    for (int rank = 0; rank < tokenCount; rank++) {
+      res[(int) frequencyAndToken[rank]] = rank;
+    }
+    return res;
+  }
+
+  private int[][] indexPrefixes(int[][] tokensByFile, int tokenCount) {
+    int[] postingSizes = new int[tokenCount];
+    for (int[] tokens : tokensByFile) {
+      toSortedRanks(tokens);
+      int prefixLength = prefixLength(tokens.length);
+      for (int j = 0; j < prefixLength; j++) {
+        postingSizes[tokens[j]]++;
+      }
+    }
+    int[][] res = new int[tokenCount][];
+    for (int rank = 0; rank < tokenCount; rank++) {
+      res[rank] = postingSizes[rank] == 0 ? NO_POSTING : new int[postingSizes[rank]];
+      postingSizes[rank] = 0;
+    }
+    for (int file = 0; file < tokensByFile.length; file++) {
+      int[] sortedRanks = tokensByFile[file];
+      int prefixLength = prefixLength(sortedRanks.length);
+      for (int j = 0; j < prefixLength; j++) {
+        int rank = sortedRanks[j];
+        res[rank][postingSizes[rank]] = file;
+        postingSizes[rank]++;
+      }
+    }
+    return res;
+  }
+
+  private void toSortedRanks(int[] tokens) {
+    for (int j = 0; j < tokens.length; j++) {
+      tokens[j] = ranks[tokens[j]];
+    }
+    Arrays.sort(tokens);
+  }
+
+  /**
+   * Indexes, in increasing order, of the files of the index which may have a score greater than or equal to
+   * {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE} with a file with the specified line hashes.
+   */
+  int[] getCandidates(List<String> lineHashes) {
+    int size = lineHashes.size();
+    if (size == 0) {
+      return NO_POSTING;
+    }
+
+    // tokens unknown to the index can't be shared with any indexed file. They are considered rarer than any other
+    // token and therefore come first in the prefix
+    int[] knownRanks = new int[size];
+    int knownCount = 0;
+    Map<String, Integer> occurrences = new HashMap<>();
+    for (String lineHash : lineHashes) {
+      int occurrence = occurrences.merge(lineHash, 1, Integer::sum) - 1;
+      int[] tokensOfLineHash = tokensByLineHash.get(lineHash);
+      if (tokensOfLineHash != null && occurrence < tokensOfLineHash.length) {
+        knownRanks[knownCount] = ranks[tokensOfLineHash[occurrence]];
+        knownCount++;
+      }
+    }
+    int probeLength = prefixLength(size) - (size - knownCount);
+    if (probeLength <= 0) {
+      return NO_POSTING;
+    }
+    Arrays.sort(knownRanks, 0, knownCount);
+
+    BitSet candidates = new BitSet(sizes.length);
+    for (int j = 0; j < probeLength; j++) {
+      for (int file : postings[knownRanks[j]]) {
+        if (haveCompatibleSizes(size, sizes[file])) {
+          candidates.set(file);
+        }
+      }
+    }
+    return candidates.stream().toArray();
+  }
+
+  /**
+   * Number of lines two files must at least share for the largest one to have {@code size} lines and the score to
+   * reach {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE}.
+   */
+  private static int minSharedLines(int size) {
+    return (int) ((MIN_REQUIRED_SCORE * (long) size + 99) / 100);
+  }
+
+  private static int prefixLength(int size) {
+    if (size == 0) {
+      return 0;
+    }
+    return size - minSharedLines(size) + 1;
+  }
+
+  private static boolean haveCompatibleSizes(int size1, int size2) {
+    return 100L * Math.min(size1, size2) >= MIN_REQUIRED_SCORE * (long) Math.max(size1, size2);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import org.sonar.db.es.EsQueueDto;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Items of table ES_QUEUE inserted along with the issues created, updated or closed by the analysis, so
+ * that only these issues are indexed instead of all the issues of the project.
+ */
+public class ChangedIssuesHolder {
+
+  @CheckForNull
+  private List<EsQueueDto> esQueueItems;
+
+  public void setEsQueueItems(Collection<EsQueueDto> items) {
+    requireNonNull(items, "Items cannot be null");
+    checkState(this.esQueueItems == null, "Items have already been initialized");
+    this.esQueueItems = unmodifiableList(new ArrayList<>(items));
+  }
+
+  public boolean isInitialized() {
+    return esQueueItems != null;
+  }
+
+  public List<EsQueueDto> getEsQueueItems() {
+    checkState(esQueueItems != null, "Items have not been initialized yet");
+    return esQueueItems;
+  }
+}
@@ -22,14 +22,13 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 import java.io.File;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.TempFolder;
-import org.sonar.core.issue.DefaultIssue;
-import org.sonar.server.util.cache.DiskCache;
+import org.sonar.server.util.cache.ProtobufIssueDiskCache;
 
 /**
  * Cache of all the issues involved in the analysis. Their state is as it will be
- * persisted in database (after issue tracking, auto-assignment, ...)
+ * persisted in database (after issue tracking, auto-assignment, ...).
  */
-public class IssueCache extends DiskCache<DefaultIssue> {
+public class IssueCache extends ProtobufIssueDiskCache {
 
   // this constructor is used by picocontainer
   public IssueCache(TempFolder tempFolder, System2 system2) {
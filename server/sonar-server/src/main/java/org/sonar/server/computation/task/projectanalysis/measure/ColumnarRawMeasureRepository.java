@@ -0,0 +1,281 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures, and stores them by columns: there is one
+ * column per metric, in which measures are indexed by the ordinal of their component in the {@link TreeRootHolder}.
+ * <p>
+ * Values of numeric measures (boolean, int, long and double) are stored in a primitive array, so that no
+ * {@link Measure} is kept for them. {@link Measure} objects are created when they are read. Variations, as well as
+ * measures which can not be represented by a single double (string, level, no value, with data, with a quality gate
+ * status or for a developer) are stored in sparse side tables.
+ * </p>
+ *
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class ColumnarRawMeasureRepository implements MeasureRepository {
+  private final TreeRootHolder treeRootHolder;
+  private final Map<String, MetricColumn> columnsByMetricKey = new LinkedHashMap<>();
+
+  public ColumnarRawMeasureRepository(TreeRootHolder treeRootHolder) {
+    this.treeRootHolder = requireNonNull(treeRootHolder);
+  }
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public int loadAsRawMeasures(Collection<Component> components, Collection<Metric> metrics) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    if (column == null) {
+      return Optional.absent();
+    }
+    return Optional.fromNullable(column.get(treeRootHolder.getComponentOrdinal(component), null));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (contains(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (!contains(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    // message is formatted only on failure, as this is called for each measure
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+      measure.getValueType(), metric.getType().getValueType());
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    if (column == null) {
+      return Collections.emptySet();
+    }
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    column.collect(treeRootHolder.getComponentOrdinal(component), builder::add);
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int ordinal = treeRootHolder.getComponentOrdinal(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (Map.Entry<String, MetricColumn> entry : columnsByMetricKey.entrySet()) {
+      String metricKey = entry.getKey();
+      entry.getValue().collect(ordinal, measure -> builder.put(metricKey, measure));
+    }
+    return builder.build();
+  }
+
+  private boolean contains(Component component, Metric metric, Measure measure) {
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    return column != null && column.contains(treeRootHolder.getComponentOrdinal(component), measure.getDeveloper());
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int ordinal = treeRootHolder.getComponentOrdinal(component);
+    MetricColumn column = columnsByMetricKey.computeIfAbsent(metric.getKey(), k -> new MetricColumn());
+    if (overridePolicy == OverridePolicy.OVERRIDE || !column.contains(ordinal, measure.getDeveloper())) {
+      column.put(ordinal, measure);
+    }
+  }
+
+  public enum OverridePolicy {
+    OVERRIDE, DO_NOT_OVERRIDE
+  }
+
+  /**
+   * Measures of a single metric, indexed by component ordinal.
+   */
+  private static final class MetricColumn {
+    private static final double[] NO_VALUES = new double[0];
+
+    private Measure.ValueType valueType;
+    private double[] values = NO_VALUES;
+    // components whose measure is stored in "values"
+    private final BitSet hasValue = new BitSet();
+    private final Map<Integer, Double> variations = new HashMap<>();
+    private final Map<Integer, Measure> otherMeasures = new HashMap<>();
+    private final Map<Integer, Map<Developer, Measure>> developerMeasures = new HashMap<>();
+
+    @CheckForNull
+    Measure get(int ordinal, @Nullable Developer developer) {
+      if (developer != null) {
+        Map<Developer, Measure> measures = developerMeasures.get(ordinal);
+        return measures == null ? null : measures.get(developer);
+      }
+      if (hasValue.get(ordinal)) {
+        return Measure.newNumericMeasure(valueType, values[ordinal], variations.get(ordinal));
+      }
+      return otherMeasures.get(ordinal);
+    }
+
+    /**
+     * Same as {@code get(ordinal, developer) != null}, without creating the measure
+     */
+    boolean contains(int ordinal, @Nullable Developer developer) {
+      if (developer != null) {
+        Map<Developer, Measure> measures = developerMeasures.get(ordinal);
+        return measures != null && measures.containsKey(developer);
+      }
+      return hasValue.get(ordinal) || otherMeasures.containsKey(ordinal);
+    }
+
+    void collect(int ordinal, Consumer<Measure> consumer) {
+      Measure measure = get(ordinal, null);
+      if (measure != null) {
+        consumer.accept(measure);
+      }
+      Map<Developer, Measure> measures = developerMeasures.get(ordinal);
+      if (measures != null) {
+        measures.values().forEach(consumer);
+      }
+    }
+
+    void put(int ordinal, Measure measure) {
+      Developer developer = measure.getDeveloper();
+      if (developer != null) {
+        developerMeasures.computeIfAbsent(ordinal, k -> new HashMap<>()).put(developer, measure);
+        return;
+      }
+      if (isStorableAsDouble(measure)) {
+        valueType = measure.getValueType();
+        ensureCapacity(ordinal + 1);
+        values[ordinal] = toDouble(measure);
+        hasValue.set(ordinal);
+        otherMeasures.remove(ordinal);
+        if (measure.hasVariation()) {
+          variations.put(ordinal, measure.getVariation());
+        } else {
+          variations.remove(ordinal);
+        }
+      } else {
+        hasValue.clear(ordinal);
+        variations.remove(ordinal);
+        otherMeasures.put(ordinal, measure);
+      }
+    }
+
+    private boolean isStorableAsDouble(Measure measure) {
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+        case INT:
+        case LONG:
+        case DOUBLE:
+          // all the numeric measures of a metric have the same value type, but NO_VALUE ones
+          return (valueType == null || valueType == measure.getValueType()) && measure.getData() == null && !measure.hasQualityGateStatus();
+        default:
+          return false;
+      }
+    }
+
+    private static double toDouble(Measure measure) {
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+          return measure.getBooleanValue() ? 1.0d : 0.0d;
+        case INT:
+          return measure.getIntValue();
+        case LONG:
+          return measure.getLongValue();
+        case DOUBLE:
+          return measure.getDoubleValue();
+        default:
+          throw new IllegalArgumentException("Unsupported value type " + measure.getValueType());
+      }
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (values.length < capacity) {
+        values = Arrays.copyOf(values, Math.max(capacity, values.length + (values.length >> 1)));
+      }
+    }
+  }
+}
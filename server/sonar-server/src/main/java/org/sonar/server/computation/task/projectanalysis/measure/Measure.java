@@ -92,6 +92,14 @@ public final class Measure {
     this.variation = variation;
   }
 
+  /**
+   * Creates a measure of type {@link ValueType#BOOLEAN}, {@link ValueType#INT}, {@link ValueType#LONG} or
+   * {@link ValueType#DOUBLE} from a value stored as a double by a repository, without scaling it.
+   */
+  static Measure newNumericMeasure(ValueType valueType, double value, @Nullable Double variation) {
+    return new Measure(valueType, null, value, null, null, null, variation);
+  }
+
   public static NewMeasureBuilder newMeasureBuilder() {
     return new NewMeasureBuilder();
   }
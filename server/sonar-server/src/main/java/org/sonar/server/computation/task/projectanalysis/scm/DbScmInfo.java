@@ -20,14 +20,13 @@
 package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.base.Optional;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.function.Function;
 import java.util.stream.StreamSupport;
-import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
+import javax.annotation.CheckForNull;
 import javax.annotation.concurrent.Immutable;
 import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.protobuf.DbFileSources;
@@ -48,15 +47,20 @@ class DbScmInfo implements ScmInfo {
   }
 
   static Optional<ScmInfo> create(Component component, Iterable<DbFileSources.Line> lines) {
-    LineToChangeset lineToChangeset = new LineToChangeset();
-    List<Changeset> lineChangesets = StreamSupport.stream(lines.spliterator(), false)
-      .map(lineToChangeset)
+    return create(component, toChangesets(lines));
+  }
+
+  /**
+   * @param changesetsByLine the changeset of each line, as returned by {@link #toChangesets(Iterable)}
+   */
+  static Optional<ScmInfo> create(Component component, Changeset[] changesetsByLine) {
+    List<Changeset> lineChangesets = Arrays.stream(changesetsByLine)
       .filter(Objects::nonNull)
-      .collect(MoreCollectors.toList());
+      .collect(MoreCollectors.toList(changesetsByLine.length));
     if (lineChangesets.isEmpty()) {
       return Optional.absent();
     }
-    checkState(!lineToChangeset.isEncounteredLineWithoutScmInfo(),
+    checkState(lineChangesets.size() == changesetsByLine.length,
       "Partial scm information stored in DB for component '%s'. Not all lines have SCM info. Can not proceed", component);
     return Optional.of(new DbScmInfo(new ScmInfoImpl(lineChangesets)));
   }
@@ -82,32 +86,26 @@ class DbScmInfo implements ScmInfo {
   }
 
   /**
-   * Transforms {@link org.sonar.db.protobuf.DbFileSources.Line} into {@link Changeset} and keep a flag if it encountered
-   * at least one which did not have any SCM information.
+   * Transforms {@link org.sonar.db.protobuf.DbFileSources.Line} into {@link Changeset}, the lines without any SCM
+   * information being {@code null}. Lines of the same revision share the same instance of {@link Changeset}.
    */
-  private static class LineToChangeset implements Function<DbFileSources.Line, Changeset> {
-    private boolean encounteredLineWithoutScmInfo = false;
-    private final Map<String, Changeset> cache = new HashMap<>();
-    private final Changeset.Builder builder = Changeset.newChangesetBuilder();
-
-    @Override
-    @Nullable
-    public Changeset apply(@Nonnull DbFileSources.Line input) {
-      if (input.hasScmRevision() && input.hasScmDate()) {
-        String revision = input.getScmRevision();
-        return cache.computeIfAbsent(revision, k -> builder
-          .setRevision(revision)
-          .setAuthor(input.hasScmAuthor() ? input.getScmAuthor() : null)
-          .setDate(input.getScmDate())
-          .build());
-      }
-
-      this.encounteredLineWithoutScmInfo = true;
-      return null;
-    }
+  static Changeset[] toChangesets(Iterable<DbFileSources.Line> lines) {
+    Map<String, Changeset> cache = new HashMap<>();
+    Changeset.Builder builder = Changeset.newChangesetBuilder();
+    return StreamSupport.stream(lines.spliterator(), false)
+      .map(line -> toChangeset(line, cache, builder))
+      .toArray(Changeset[]::new);
+  }
 
-    boolean isEncounteredLineWithoutScmInfo() {
-      return encounteredLineWithoutScmInfo;
+  @CheckForNull
+  private static Changeset toChangeset(DbFileSources.Line line, Map<String, Changeset> cache, Changeset.Builder builder) {
+    if (line.hasScmRevision() && line.hasScmDate()) {
+      return cache.computeIfAbsent(line.getScmRevision(), revision -> builder
+        .setRevision(revision)
+        .setAuthor(line.hasScmAuthor() ? line.getScmAuthor() : null)
+        .setDate(line.getScmDate())
+        .build());
     }
+    return null;
   }
 }
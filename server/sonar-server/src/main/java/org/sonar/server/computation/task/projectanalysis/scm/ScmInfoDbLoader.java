@@ -0,0 +1,120 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.scm;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.source.FileSourceDto;
+
+/**
+ * Loads with a single query the SCM information stored in DB of all the files of a project, instead of one query
+ * per file. Only the SCM fields of lines are decoded and kept in memory, as an array of {@link Changeset} per file
+ * in which changesets are shared by all the lines of the same revision.
+ * <p/>
+ * The files whose SCM information does not come from DB must be {@link #evict(String) evicted}, so that their data
+ * is not kept in memory during the whole task.
+ */
+class ScmInfoDbLoader {
+
+  private static final Logger LOGGER = Loggers.get(ScmInfoDbLoader.class);
+
+  private final DbClient dbClient;
+  @CheckForNull
+  private Map<String, DbFileScm> scmByFileUuid;
+  // files evicted before the project is loaded, which are not loaded
+  private final Set<String> evictedFileUuids = new HashSet<>();
+
+  ScmInfoDbLoader(DbClient dbClient) {
+    this.dbClient = dbClient;
+  }
+
+  /**
+   * SCM information of the specified file, or {@code null} if the file has no source in DB. The sources of all the
+   * files of the project are loaded on first call. The returned data is evicted from memory, so that it can be
+   * garbage collected once used.
+   */
+  @CheckForNull
+  DbFileScm load(String projectUuid, String fileUuid) {
+    if (scmByFileUuid == null) {
+      scmByFileUuid = loadProject(projectUuid);
+    }
+    return scmByFileUuid.remove(fileUuid);
+  }
+
+  /**
+   * Drops the SCM information of the specified file, which is not needed as it does not come from DB.
+   */
+  void evict(String fileUuid) {
+    if (scmByFileUuid == null) {
+      evictedFileUuids.add(fileUuid);
+    } else {
+      scmByFileUuid.remove(fileUuid);
+    }
+  }
+
+  private Map<String, DbFileScm> loadProject(String projectUuid) {
+    Profiler profiler = Profiler.create(LOGGER).startDebug("Load SCM info of files from db");
+    Map<String, DbFileScm> result = new HashMap<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.fileSourceDao().scrollSourcesOfProject(dbSession, projectUuid, context -> {
+        FileSourceDto dto = context.getResultObject();
+        if (evictedFileUuids.contains(dto.getFileUuid())) {
+          return;
+        }
+        result.put(dto.getFileUuid(), new DbFileScm(dto.getSrcHash(), DbScmInfo.toChangesets(dto.getScmOfLines())));
+      });
+    }
+    evictedFileUuids.clear();
+    profiler.stopDebug(String.format("SCM info of %d files loaded from db", result.size()));
+    return result;
+  }
+
+  static final class DbFileScm {
+    @CheckForNull
+    private final String srcHash;
+    private final Changeset[] changesetsByLine;
+
+    private DbFileScm(@Nullable String srcHash, Changeset[] changesetsByLine) {
+      this.srcHash = srcHash;
+      this.changesetsByLine = changesetsByLine;
+    }
+
+    @CheckForNull
+    String getSrcHash() {
+      return srcHash;
+    }
+
+    /**
+     * Changeset of each line, {@code null} for the lines without SCM information.
+     */
+    Changeset[] getChangesetsByLine() {
+      return changesetsByLine;
+    }
+  }
+}
@@ -25,13 +25,13 @@ import java.util.Map;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
-import org.sonar.db.DbSession;
-import org.sonar.db.source.FileSourceDto;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.Component.Status;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoDbLoader.DbFileScm;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 
 import static java.util.Objects.requireNonNull;
@@ -42,16 +42,19 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
 
   private final BatchReportReader batchReportReader;
   private final AnalysisMetadataHolder analysisMetadataHolder;
-  private final DbClient dbClient;
+  private final TreeRootHolder treeRootHolder;
   private final SourceHashRepository sourceHashRepository;
+  private final ScmInfoDbLoader dbLoader;
 
   private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
 
-  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository) {
+  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient,
+    TreeRootHolder treeRootHolder, SourceHashRepository sourceHashRepository) {
     this.batchReportReader = batchReportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
-    this.dbClient = dbClient;
+    this.treeRootHolder = treeRootHolder;
     this.sourceHashRepository = sourceHashRepository;
+    this.dbLoader = new ScmInfoDbLoader(dbClient);
   }
 
   @Override
@@ -83,13 +86,14 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
 
   private ScmInfo getScmInfoForComponent(Component component) {
     ScannerReport.Changesets changesets = batchReportReader.readChangesets(component.getReportAttributes().getRef());
+    if (changesets != null && changesets.getCopyFromPrevious()) {
+      return getScmInfoFromDb(component);
+    }
+    dbLoader.evict(component.getUuid());
     if (changesets == null) {
       LOGGER.trace("No SCM info for file '{}'", component.getKey());
       return NoScmInfo.INSTANCE;
     }
-    if (changesets.getCopyFromPrevious()) {
-      return getScmInfoFromDb(component);
-    }
     return getScmInfoFromReport(component, changesets);
   }
 
@@ -99,20 +103,18 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     }
 
     LOGGER.trace("Reading SCM info from db for file '{}'", file.getKey());
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, file.getUuid());
-      if (dto == null || !isDtoValid(file, dto)) {
-        return NoScmInfo.INSTANCE;
-      }
-      return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
+    DbFileScm dbFileScm = dbLoader.load(treeRootHolder.getRoot().getUuid(), file.getUuid());
+    if (dbFileScm == null || !isDbDataValid(file, dbFileScm)) {
+      return NoScmInfo.INSTANCE;
     }
+    return DbScmInfo.create(file, dbFileScm.getChangesetsByLine()).or(NoScmInfo.INSTANCE);
   }
 
-  private boolean isDtoValid(Component file, FileSourceDto dto) {
+  private boolean isDbDataValid(Component file, DbFileScm dbFileScm) {
     if (analysisMetadataHolder.isIncrementalAnalysis() && file.getStatus() == Status.SAME) {
       return true;
     }
-    return sourceHashRepository.getRawSourceHash(file).equals(dto.getSrcHash());
+    return sourceHashRepository.getRawSourceHash(file).equals(dbFileScm.getSrcHash());
   }
 
   private static ScmInfo getScmInfoFromReport(Component file, ScannerReport.Changesets changesets) {
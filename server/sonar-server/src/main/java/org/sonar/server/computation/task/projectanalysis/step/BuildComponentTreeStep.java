@@ -20,22 +20,28 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDao;
+import org.sonar.db.component.SnapshotDao;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.component.SnapshotQuery;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
+import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.analysis.MutableAnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentRootBuilder;
 import org.sonar.server.computation.task.projectanalysis.component.MutableTreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.UuidFactory;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
 import static com.google.common.base.Preconditions.checkState;
 import static org.sonar.core.component.ComponentKeys.createKey;
@@ -43,7 +49,7 @@ import static org.sonar.core.component.ComponentKeys.createKey;
 /**
  * Populates the {@link MutableTreeRootHolder} and {@link MutableAnalysisMetadataHolder} from the {@link BatchReportReader}
  */
-public class BuildComponentTreeStep implements ComputationStep {
+public class BuildComponentTreeStep implements ConcurrentComputationStep {
 
   private final DbClient dbClient;
   private final BatchReportReader reportReader;
@@ -57,6 +63,16 @@ public class BuildComponentTreeStep implements ComputationStep {
     this.analysisMetadataHolder = analysisMetadataHolder;
   }
 
+  @Override
+  public Set<Class<?>> getInputs() {
+    return ImmutableSet.of(BatchReportReader.class, AnalysisMetadataHolder.class, ComponentDao.class, SnapshotDao.class);
+  }
+
+  @Override
+  public Set<Class<?>> getOutputs() {
+    return ImmutableSet.of(TreeRootHolder.class, AnalysisMetadataHolder.class);
+  }
+
   @Override
   public String getDescription() {
     return "Build tree of components";
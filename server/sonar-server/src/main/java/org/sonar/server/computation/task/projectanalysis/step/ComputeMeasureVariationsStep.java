@@ -20,11 +20,12 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.StreamSupport;
 import javax.annotation.CheckForNull;
@@ -49,8 +50,6 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
-import static java.util.function.Function.identity;
-import static org.sonar.core.util.stream.MoreCollectors.uniqueIndex;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.SUBVIEW;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
@@ -63,6 +62,9 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  */
 public class ComputeMeasureVariationsStep implements ComputationStep {
 
+  // measures on files are currently purged, so past measures are not available on files
+  private static final CrawlerDepthLimit VISITOR_DEPTH_LIMIT = CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW);
+
   private final DbClient dbClient;
   private final TreeRootHolder treeRootHolder;
   private final PeriodHolder periodHolder;
@@ -82,23 +84,42 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
   public void execute() {
     try (DbSession dbSession = dbClient.openSession(false)) {
       List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(isNumeric()).collect(MoreCollectors.toList());
-      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(dbSession, metrics))
+      PastMeasures pastMeasures = periodHolder.hasPeriod() ? loadPastMeasures(dbSession, metrics, periodHolder.getPeriod()) : null;
+      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(metrics, pastMeasures))
         .visit(treeRootHolder.getRoot());
     }
   }
 
+  /**
+   * Loads at once the measures of the period's analysis on all the components which are visited, instead of
+   * executing one query per component.
+   */
+  private PastMeasures loadPastMeasures(DbSession dbSession, List<Metric> metrics, Period period) {
+    List<String> componentUuids = new ArrayList<>();
+    new DepthTraversalTypeAwareCrawler(new TypeAwareVisitorAdapter(VISITOR_DEPTH_LIMIT, PRE_ORDER) {
+      @Override
+      public void visitAny(Component component) {
+        componentUuids.add(component.getUuid());
+      }
+    }).visit(treeRootHolder.getRoot());
+
+    PastMeasures pastMeasures = new PastMeasures(metrics);
+    List<Integer> metricIds = metrics.stream().map(Metric::getId).collect(MoreCollectors.toList(metrics.size()));
+    dbClient.measureDao().selectPastMeasures(dbSession, componentUuids, period.getAnalysisUuid(), metricIds,
+      context -> pastMeasures.add(context.getResultObject()));
+    return pastMeasures;
+  }
+
   private class VariationMeasuresVisitor extends TypeAwareVisitorAdapter {
 
-    private final DbSession session;
-    private final Set<Integer> metricIds;
     private final List<Metric> metrics;
+    @CheckForNull
+    private final PastMeasures pastMeasures;
 
-    VariationMeasuresVisitor(DbSession session, List<Metric> metrics) {
-      // measures on files are currently purged, so past measures are not available on files
-      super(CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW), PRE_ORDER);
-      this.session = session;
-      this.metricIds = metrics.stream().map(Metric::getId).collect(MoreCollectors.toSet());
+    VariationMeasuresVisitor(List<Metric> metrics, @Nullable PastMeasures pastMeasures) {
+      super(VISITOR_DEPTH_LIMIT, PRE_ORDER);
       this.metrics = metrics;
+      this.pastMeasures = pastMeasures;
     }
 
     @Override
@@ -109,24 +130,18 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
 
     private MeasuresWithVariationRepository computeMeasuresWithVariations(Component component) {
       MeasuresWithVariationRepository measuresWithVariationRepository = new MeasuresWithVariationRepository();
-      if (periodHolder.hasPeriod()) {
-        Period period = periodHolder.getPeriod();
-        List<PastMeasureDto> pastMeasures = dbClient.measureDao()
-          .selectPastMeasures(session, component.getUuid(), period.getAnalysisUuid(), metricIds);
-        setVariationMeasures(component, pastMeasures, measuresWithVariationRepository);
+      if (pastMeasures != null) {
+        setVariationMeasures(component, measuresWithVariationRepository);
       }
       return measuresWithVariationRepository;
     }
 
-    private void setVariationMeasures(Component component, List<PastMeasureDto> pastMeasures, MeasuresWithVariationRepository measuresWithVariationRepository) {
-      Map<MeasureKey, PastMeasureDto> pastMeasuresByMeasureKey = pastMeasures
-        .stream()
-        .collect(uniqueIndex(m -> new MeasureKey(metricRepository.getById((long) m.getMetricId()).getKey(), null), identity()));
+    private void setVariationMeasures(Component component, MeasuresWithVariationRepository measuresWithVariationRepository) {
+      double[] pastValues = pastMeasures.getValues(component.getUuid());
       for (Metric metric : metrics) {
         Optional<Measure> measure = measureRepository.getRawMeasure(component, metric);
         if (measure.isPresent() && !measure.get().hasVariation()) {
-          PastMeasureDto pastMeasure = pastMeasuresByMeasureKey.get(new MeasureKey(metric.getKey(), null));
-          double pastValue = (pastMeasure != null && pastMeasure.hasValue()) ? pastMeasure.getValue() : 0d;
+          double pastValue = pastValues == null ? 0d : pastValues[pastMeasures.indexOf(metric.getId())];
           measuresWithVariationRepository.add(metric, measure.get(), computeVariation(measure.get(), pastValue));
         }
       }
@@ -158,6 +173,40 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
     }
   }
 
+  /**
+   * Past values of the numeric metrics, by component uuid. Values of a component are stored in a primitive array
+   * indexed by the position of the metric id in a sorted array, so that no boxing nor {@link MeasureKey} is required.
+   * Missing past measures, or past measures without value, are considered as 0.
+   */
+  private static final class PastMeasures {
+    private final int[] sortedMetricIds;
+    private final Map<String, double[]> valuesByComponentUuid = new HashMap<>();
+
+    PastMeasures(List<Metric> metrics) {
+      this.sortedMetricIds = metrics.stream().mapToInt(Metric::getId).sorted().toArray();
+    }
+
+    void add(PastMeasureDto dto) {
+      if (!dto.hasValue()) {
+        return;
+      }
+      int index = indexOf(dto.getMetricId());
+      if (index >= 0) {
+        double[] values = valuesByComponentUuid.computeIfAbsent(dto.getComponentUuid(), k -> new double[sortedMetricIds.length]);
+        values[index] = dto.getValue();
+      }
+    }
+
+    int indexOf(int metricId) {
+      return Arrays.binarySearch(sortedMetricIds, metricId);
+    }
+
+    @CheckForNull
+    double[] getValues(String componentUuid) {
+      return valuesByComponentUuid.get(componentUuid);
+    }
+  }
+
   private static final class MeasuresWithVariationRepository {
 
     private final Map<MeasureKey, MeasureWithVariation> measuresWithVariations = new HashMap<>();
@@ -28,9 +28,9 @@ import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.ZipUtils;
 import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.ReportSpool;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.ce.CeTaskInputDao;
 import org.sonar.server.computation.task.projectanalysis.batch.MutableBatchReportDirectoryHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
@@ -44,30 +44,32 @@ public class ExtractReportStep implements ComputationStep {
   private final CeTask task;
   private final TempFolder tempFolder;
   private final MutableBatchReportDirectoryHolder reportDirectoryHolder;
+  private final ReportSpool reportSpool;
 
   public ExtractReportStep(DbClient dbClient, CeTask task, TempFolder tempFolder,
-    MutableBatchReportDirectoryHolder reportDirectoryHolder) {
+    MutableBatchReportDirectoryHolder reportDirectoryHolder, ReportSpool reportSpool) {
     this.dbClient = dbClient;
     this.task = task;
     this.tempFolder = tempFolder;
     this.reportDirectoryHolder = reportDirectoryHolder;
+    this.reportSpool = reportSpool;
   }
 
   @Override
   public void execute() {
     try (DbSession dbSession = dbClient.openSession(false)) {
-      Optional<CeTaskInputDao.DataStream> opt = dbClient.ceTaskInputDao().selectData(dbSession, task.getUuid());
+      Optional<ReportSpool.Report> opt = reportSpool.read(dbSession, task.getUuid());
       if (opt.isPresent()) {
         File unzippedDir = tempFolder.newDir();
-        try (CeTaskInputDao.DataStream reportStream = opt.get();
-             InputStream zipStream = new BufferedInputStream(reportStream.getInputStream())) {
+        try (ReportSpool.Report report = opt.get();
+             InputStream zipStream = new BufferedInputStream(report.getInputStream())) {
           ZipUtils.unzip(zipStream, unzippedDir);
         } catch (IOException e) {
-          throw new IllegalStateException("Fail to extract report " + task.getUuid() + " from database", e);
+          throw new IllegalStateException("Fail to extract report " + task.getUuid(), e);
         }
         reportDirectoryHolder.setDirectory(unzippedDir);
       } else {
-        throw MessageException.of("Analysis report " + task.getUuid() + " is missing in database");
+        throw MessageException.of("Analysis report " + task.getUuid() + " is missing");
       }
     }
   }
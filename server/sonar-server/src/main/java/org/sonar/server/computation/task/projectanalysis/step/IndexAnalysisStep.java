@@ -21,19 +21,27 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.issue.index.IssueIndexer;
 
 public class IndexAnalysisStep implements ComputationStep {
 
   private static final Logger LOGGER = Loggers.get(IndexAnalysisStep.class);
 
   private final TreeRootHolder treeRootHolder;
+  private final DbClient dbClient;
+  private final ChangedIssuesHolder changedIssuesHolder;
   private final ProjectIndexer[] indexers;
 
-  public IndexAnalysisStep(TreeRootHolder treeRootHolder, ProjectIndexer... indexers) {
+  public IndexAnalysisStep(TreeRootHolder treeRootHolder, DbClient dbClient, ChangedIssuesHolder changedIssuesHolder, ProjectIndexer... indexers) {
     this.treeRootHolder = treeRootHolder;
+    this.dbClient = dbClient;
+    this.changedIssuesHolder = changedIssuesHolder;
     this.indexers = indexers;
   }
 
@@ -42,7 +50,21 @@ public class IndexAnalysisStep implements ComputationStep {
     String projectUuid = treeRootHolder.getRoot().getUuid();
     for (ProjectIndexer indexer : indexers) {
       LOGGER.debug("Call {}", indexer);
-      indexer.indexOnAnalysis(projectUuid);
+      if (indexer instanceof IssueIndexer && changedIssuesHolder.isInitialized()) {
+        indexChangedIssues((IssueIndexer) indexer);
+      } else {
+        indexer.indexOnAnalysis(projectUuid);
+      }
+    }
+  }
+
+  /**
+   * Only the issues created, updated or closed by the analysis are indexed. Items are removed from es_queue
+   * once indexed, the others are left to the recovery daemon.
+   */
+  private void indexChangedIssues(IssueIndexer issueIndexer) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      issueIndexer.index(dbSession, changedIssuesHolder.getEsQueueItems());
     }
   }
 
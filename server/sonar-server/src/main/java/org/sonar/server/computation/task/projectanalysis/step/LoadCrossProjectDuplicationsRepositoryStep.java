@@ -20,12 +20,27 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Function;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.slf4j.MDC;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.duplication.DuplicationUnitDto;
@@ -44,8 +59,10 @@ import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCr
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
 import org.sonar.server.computation.task.step.ComputationStep;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.emptyList;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 /**
@@ -57,6 +74,18 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  */
 public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationStep {
 
+  /**
+   * Number of threads computing the duplications of files from the blocks of the other projects. 1 means
+   * that duplications are computed by the thread executing the step.
+   */
+  public static final String THREADS_PROPERTY = "sonar.ce.crossProjectDuplications.threads";
+  private static final int DEFAULT_THREADS = 1;
+  /**
+   * Blocks of files are accumulated until this number of hashes is reached, then duplication candidates of all the
+   * files are loaded with the same DB session. The DAO splits the hashes in partitions of IN clauses.
+   */
+  private static final int MAX_HASHES_PER_BATCH = 10_000;
+
   private static final Logger LOGGER = Loggers.get(LoadCrossProjectDuplicationsRepositoryStep.class);
 
   private final TreeRootHolder treeRootHolder;
@@ -65,22 +94,38 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   private final IntegrateCrossProjectDuplications integrateCrossProjectDuplications;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
   private final DbClient dbClient;
+  private final int threads;
 
   public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
     AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
-    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient) {
+    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient, Configuration config) {
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.integrateCrossProjectDuplications = integrateCrossProjectDuplications;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
     this.dbClient = dbClient;
+    this.threads = config.getInt(THREADS_PROPERTY).orElse(DEFAULT_THREADS);
+    checkArgument(threads > 0, "Number of threads must be strictly positive: %s", threads);
   }
 
   @Override
   public void execute() {
-    if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+    if (!crossProjectDuplicationStatusHolder.isEnabled()) {
+      return;
+    }
+    ExecutorService executorService = threads > 1 ? Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("CE_CrossProjectDuplications-%d")
+      .build()) : null;
+    try {
+      CrossProjectDuplicationVisitor visitor = new CrossProjectDuplicationVisitor(executorService);
+      new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      visitor.flush();
+      visitor.waitForTasksToComplete();
+    } finally {
+      if (executorService != null) {
+        executorService.shutdownNow();
+      }
     }
   }
 
@@ -90,9 +135,17 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   }
 
   private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
+    @CheckForNull
+    private final ExecutorService executorService;
+    @CheckForNull
+    private final Map<String, String> loggingContext = MDC.getCopyOfContextMap();
+    private final Map<String, List<FileBlocks>> batchByLanguage = new HashMap<>();
+    private int batchHashes = 0;
+    private List<Future<?>> tasks = new ArrayList<>();
 
-    private CrossProjectDuplicationVisitor() {
+    private CrossProjectDuplicationVisitor(@Nullable ExecutorService executorService) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
+      this.executorService = executorService;
     }
 
     @Override
@@ -106,34 +159,108 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
         }
       }
 
-      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
+      batchByLanguage.computeIfAbsent(file.getFileAttributes().getLanguageKey(), k -> new ArrayList<>()).add(new FileBlocks(file, cpdTextBlocks));
+      batchHashes += cpdTextBlocks.size();
+      if (batchHashes >= MAX_HASHES_PER_BATCH) {
+        flush();
+      }
+    }
+
+    /**
+     * Loads the duplication candidates of the files of the batch, then routes them back to each file by hash.
+     * The integration of the files of the previous batch is waited for before submitting the files of this one, so
+     * that the blocks of at most two batches are kept in memory.
+     */
+    private void flush() {
+      if (batchByLanguage.isEmpty()) {
+        return;
+      }
+      List<Runnable> integrations = new ArrayList<>();
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
+        String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
+        for (Map.Entry<String, List<FileBlocks>> entry : batchByLanguage.entrySet()) {
+          Set<String> hashes = entry.getValue().stream()
+            .flatMap(fileBlocks -> fileBlocks.cpdTextBlocks.stream())
+            .map(CpdTextBlock::getHash)
+            .collect(MoreCollectors.toSet());
+          List<DuplicationUnitDto> dtos = dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, entry.getKey(), hashes);
+          LOGGER.debug("Found {} duplication candidates for {} hashes of {} files", dtos.size(), hashes.size(), entry.getValue().size());
+          if (!dtos.isEmpty()) {
+            Map<String, List<DuplicationUnitDto>> dtosByHash = dtos.stream().collect(Collectors.groupingBy(DuplicationUnitDto::getHash));
+            for (FileBlocks fileBlocks : entry.getValue()) {
+              addIntegration(integrations, fileBlocks, dtosByHash);
+            }
+          }
+        }
+      }
+      batchByLanguage.clear();
+      batchHashes = 0;
+
+      waitForTasksToComplete();
+      for (Runnable integration : integrations) {
+        submit(integration);
+      }
+    }
+
+    private void addIntegration(List<Runnable> integrations, FileBlocks fileBlocks, Map<String, List<DuplicationUnitDto>> dtosByHash) {
+      Component file = fileBlocks.file;
+      List<DuplicationUnitDto> dtos = fileBlocks.cpdTextBlocks.stream()
+        .map(CpdTextBlock::getHash)
+        .distinct()
+        .flatMap(hash -> dtosByHash.getOrDefault(hash, emptyList()).stream())
+        .collect(MoreCollectors.toList());
       if (dtos.isEmpty()) {
         return;
       }
 
       Collection<Block> duplicatedBlocks = from(dtos).transform(DtoToBlock.INSTANCE).toList();
-      Collection<Block> originBlocks = from(cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
+      Collection<Block> originBlocks = from(fileBlocks.cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
       LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
 
-      integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
+      integrations.add(() -> integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks));
     }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
-      try (DbSession dbSession = dbClient.openSession(false)) {
-        Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
-        String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
-        return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, file.getFileAttributes().getLanguageKey(), hashes);
+    private void submit(Runnable integration) {
+      if (executorService == null) {
+        integration.run();
+        return;
+      }
+      tasks.add(executorService.submit(() -> {
+        if (loggingContext != null) {
+          MDC.setContextMap(loggingContext);
+        }
+        try {
+          integration.run();
+        } finally {
+          MDC.clear();
+        }
+      }));
+    }
+
+    private void waitForTasksToComplete() {
+      for (Future<?> task : tasks) {
+        try {
+          task.get();
+        } catch (ExecutionException e) {
+          // Unwrap ExecutionException
+          throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while computing cross project duplications", e);
+        }
       }
+      tasks = new ArrayList<>();
     }
   }
 
-  private enum CpdTextBlockToHash implements Function<CpdTextBlock, String> {
-    INSTANCE;
+  private static final class FileBlocks {
+    private final Component file;
+    private final List<CpdTextBlock> cpdTextBlocks;
 
-    @Override
-    public String apply(@Nonnull CpdTextBlock duplicationBlock) {
-      return duplicationBlock.getHash();
+    private FileBlocks(Component file, List<CpdTextBlock> cpdTextBlocks) {
+      this.file = file;
+      this.cpdTextBlocks = cpdTextBlocks;
     }
   }
 
@@ -20,9 +20,11 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.MessageException;
@@ -32,16 +34,19 @@ import org.sonar.core.platform.PluginRepository;
 import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.organization.OrganizationDao;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.qualityprofile.QProfileDto;
+import org.sonar.db.qualityprofile.QualityProfileDao;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Metadata.Plugin;
 import org.sonar.scanner.protocol.output.ScannerReport.Metadata.QProfile;
+import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.analysis.MutableAnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.analysis.Organization;
 import org.sonar.server.computation.task.projectanalysis.analysis.ScannerPlugin;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 import org.sonar.server.organization.BillingValidations;
 import org.sonar.server.organization.BillingValidations.BillingValidationsException;
 import org.sonar.server.organization.BillingValidationsProxy;
@@ -57,7 +62,7 @@ import static org.sonar.core.util.stream.MoreCollectors.toList;
 /**
  * Feed analysis metadata holder with metadata from the analysis report.
  */
-public class LoadReportAnalysisMetadataHolderStep implements ComputationStep {
+public class LoadReportAnalysisMetadataHolderStep implements ConcurrentComputationStep {
 
   private final CeTask ceTask;
   private final BatchReportReader reportReader;
@@ -202,6 +207,16 @@ public class LoadReportAnalysisMetadataHolderStep implements ComputationStep {
     return reportMetadata.getProjectKey();
   }
 
+  @Override
+  public Set<Class<?>> getInputs() {
+    return ImmutableSet.of(BatchReportReader.class, OrganizationDao.class, QualityProfileDao.class);
+  }
+
+  @Override
+  public Set<Class<?>> getOutputs() {
+    return ImmutableSet.of(AnalysisMetadataHolder.class);
+  }
+
   @Override
   public String getDescription() {
     return "Load analysis metadata";
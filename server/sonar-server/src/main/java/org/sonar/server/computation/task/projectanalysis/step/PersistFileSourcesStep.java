@@ -21,19 +21,24 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDao;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.db.source.FileSourceDto.Type;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -58,11 +63,11 @@ import org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConve
 import org.sonar.server.computation.task.projectanalysis.source.ScmLineReader;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SymbolsLineReader;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
-public class PersistFileSourcesStep implements ComputationStep {
+public class PersistFileSourcesStep implements ConcurrentComputationStep {
 
   private final DbClient dbClient;
   private final System2 system2;
@@ -72,9 +77,11 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
   private final AnalysisMetadataHolder analysisMetadataHolder;
+  private final int batchSize;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, AnalysisMetadataHolder analysisMetadataHolder) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, AnalysisMetadataHolder analysisMetadataHolder,
+    Configuration configuration) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -83,27 +90,45 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
     this.analysisMetadataHolder = analysisMetadataHolder;
+    this.batchSize = BatchInserter.getBatchSize(configuration);
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
+    // Don't use batch session for file_sources since keeping all data in memory can produce OOM for big files.
+    // New sources are inserted by multi-row statements, whose size is bounded by FileSourceDao#MAX_BATCH_BYTES,
+    // and committed after each batch so that large projects do not hold a long transaction
     try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
-        .visit(treeRootHolder.getRoot());
+      try (BatchInserter<FileSourceDto> inserter = dbClient.fileSourceDao().newBatchInserter(dbSession, batchSize)) {
+        new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession, inserter))
+          .visit(treeRootHolder.getRoot());
+      }
+      dbSession.commit();
     }
   }
 
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final BatchInserter<FileSourceDto> inserter;
+    private int uncommittedInserts = 0;
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, BatchInserter<FileSourceDto> inserter) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.inserter = inserter;
+    }
+
+    private void commitIfBatchIsFull() {
+      uncommittedInserts++;
+      if (uncommittedInserts >= inserter.getBatchSize()) {
+        inserter.flush();
+        session.commit();
+        uncommittedInserts = 0;
+      }
     }
 
     @Override
@@ -153,8 +178,8 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
           .setRevision(computeRevision(latestChange));
-        dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
+        inserter.add(dto);
+        commitIfBatchIsFull();
       } else {
         // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
         boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
@@ -235,6 +260,16 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<Class<?>> getInputs() {
+    return ImmutableSet.of(BatchReportReader.class, TreeRootHolder.class, AnalysisMetadataHolder.class, SourceLinesRepository.class, ScmInfoRepository.class, DuplicationRepository.class);
+  }
+
+  @Override
+  public Set<Class<?>> getOutputs() {
+    return ImmutableSet.of(FileSourceDao.class);
+  }
+
   @Override
   public String getDescription() {
     return "Persist sources";
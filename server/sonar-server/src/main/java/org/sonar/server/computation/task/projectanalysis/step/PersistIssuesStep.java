@@ -19,38 +19,64 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.issue.IssueComment;
 import org.sonar.api.utils.System2;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.DefaultIssueComment;
 import org.sonar.core.issue.FieldDiffs;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.es.EsQueueDto;
 import org.sonar.db.issue.IssueChangeDto;
-import org.sonar.db.issue.IssueChangeMapper;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueMapper;
+import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolder;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
 import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.issue.index.IssueIndexer;
 
 public class PersistIssuesStep implements ComputationStep {
 
+  /**
+   * Above this number of created, updated or closed issues, all the issues of the project are
+   * reindexed instead of each of them.
+   */
+  static final int MAX_CHANGED_ISSUES_TO_INDEX = 10_000;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final UpdateConflictResolver conflictResolver;
   private final RuleRepository ruleRepository;
   private final IssueCache issueCache;
+  private final int batchSize;
+  private final TreeRootHolder treeRootHolder;
+  private final AnalysisMetadataHolder analysisMetadataHolder;
+  private final IssueIndexer issueIndexer;
+  private final ChangedIssuesHolder changedIssuesHolder;
 
   public PersistIssuesStep(DbClient dbClient, System2 system2, UpdateConflictResolver conflictResolver,
-    RuleRepository ruleRepository, IssueCache issueCache) {
+    RuleRepository ruleRepository, IssueCache issueCache, Configuration configuration, TreeRootHolder treeRootHolder,
+    AnalysisMetadataHolder analysisMetadataHolder, IssueIndexer issueIndexer, ChangedIssuesHolder changedIssuesHolder) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.conflictResolver = conflictResolver;
     this.ruleRepository = ruleRepository;
     this.issueCache = issueCache;
+    this.batchSize = BatchInserter.getBatchSize(configuration);
+    this.treeRootHolder = treeRootHolder;
+    this.analysisMetadataHolder = analysisMetadataHolder;
+    this.issueIndexer = issueIndexer;
+    this.changedIssuesHolder = changedIssuesHolder;
   }
 
   @Override
@@ -59,22 +85,37 @@ public class PersistIssuesStep implements ComputationStep {
       CloseableIterator<DefaultIssue> issues = issueCache.traverse()) {
 
       IssueMapper mapper = dbSession.getMapper(IssueMapper.class);
-      IssueChangeMapper changeMapper = dbSession.getMapper(IssueChangeMapper.class);
-      while (issues.hasNext()) {
-        DefaultIssue issue = issues.next();
-        boolean saved = persistIssueIfRequired(mapper, issue);
-        if (saved) {
-          insertChanges(changeMapper, issue);
+      ChangedIssueKeys changedIssueKeys = new ChangedIssueKeys(analysisMetadataHolder.isFirstAnalysis());
+      try (BatchInserter<IssueDto> issueInserter = dbClient.issueDao().newBatchInserter(dbSession, batchSize);
+        BatchInserter<IssueChangeDto> changeInserter = dbClient.issueChangeDao().newBatchInserter(dbSession, batchSize)) {
+        while (issues.hasNext()) {
+          DefaultIssue issue = issues.next();
+          boolean saved = persistIssueIfRequired(mapper, issueInserter, issue);
+          if (saved) {
+            insertChanges(changeInserter, issue);
+            changedIssueKeys.add(issue.key());
+          }
         }
       }
+      // items of es_queue are committed along with issues, so that the recovery daemon indexes
+      // them if the indexing of the analysis fails
+      changedIssuesHolder.setEsQueueItems(prepareForRecovery(dbSession, changedIssueKeys));
       dbSession.flushStatements();
       dbSession.commit();
     }
   }
 
-  private boolean persistIssueIfRequired(IssueMapper mapper, DefaultIssue issue) {
+  private Collection<EsQueueDto> prepareForRecovery(DbSession dbSession, ChangedIssueKeys changedIssueKeys) {
+    String projectUuid = treeRootHolder.getRoot().getUuid();
+    if (changedIssueKeys.tooMany) {
+      return issueIndexer.prepareForRecoveryOnProject(dbSession, projectUuid);
+    }
+    return issueIndexer.prepareForRecoveryOnIssues(dbSession, projectUuid, changedIssueKeys.keys);
+  }
+
+  private boolean persistIssueIfRequired(IssueMapper mapper, BatchInserter<IssueDto> issueInserter, DefaultIssue issue) {
     if (issue.isNew()) {
-      persistNewIssue(mapper, issue);
+      persistNewIssue(issueInserter, issue);
       return true;
     }
     if (issue.isChanged()) {
@@ -84,10 +125,10 @@ public class PersistIssuesStep implements ComputationStep {
     return false;
   }
 
-  private void persistNewIssue(IssueMapper mapper, DefaultIssue issue) {
+  private void persistNewIssue(BatchInserter<IssueDto> issueInserter, DefaultIssue issue) {
     Integer ruleId = ruleRepository.getByKey(issue.ruleKey()).getId();
     IssueDto dto = IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now());
-    mapper.insert(dto);
+    issueInserter.add(dto);
   }
 
   private void persistChangedIssue(IssueMapper mapper, DefaultIssue issue) {
@@ -100,18 +141,18 @@ public class PersistIssuesStep implements ComputationStep {
     }
   }
 
-  private static void insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
+  private static void insertChanges(BatchInserter<IssueChangeDto> changeInserter, DefaultIssue issue) {
     for (IssueComment comment : issue.comments()) {
       DefaultIssueComment c = (DefaultIssueComment) comment;
       if (c.isNew()) {
         IssueChangeDto changeDto = IssueChangeDto.of(c);
-        mapper.insert(changeDto);
+        changeInserter.add(changeDto);
       }
     }
     FieldDiffs diffs = issue.currentChange();
     if (!issue.isNew() && diffs != null) {
       IssueChangeDto changeDto = IssueChangeDto.of(issue.key(), diffs);
-      mapper.insert(changeDto);
+      changeInserter.add(changeDto);
     }
   }
 
@@ -119,4 +160,29 @@ public class PersistIssuesStep implements ComputationStep {
   public String getDescription() {
     return "Persist issues";
   }
+
+  /**
+   * Keys of the issues to be indexed, unless there are too many of them. On first analysis, all issues
+   * are new, so keys are not even kept.
+   */
+  private static final class ChangedIssueKeys {
+    private final List<String> keys = new ArrayList<>();
+    private boolean tooMany;
+
+    private ChangedIssueKeys(boolean firstAnalysis) {
+      this.tooMany = firstAnalysis;
+    }
+
+    private void add(String issueKey) {
+      if (tooMany) {
+        return;
+      }
+      if (keys.size() >= MAX_CHANGED_ISSUES_TO_INDEX) {
+        tooMany = true;
+        keys.clear();
+      } else {
+        keys.add(issueKey);
+      }
+    }
+  }
 }
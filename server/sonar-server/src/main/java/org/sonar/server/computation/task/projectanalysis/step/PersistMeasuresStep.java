@@ -27,9 +27,10 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nonnull;
+import org.sonar.api.config.Configuration;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.measure.MeasureDao;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
@@ -65,14 +66,16 @@ public class PersistMeasuresStep implements ComputationStep {
   private final MeasureToMeasureDto measureToMeasureDto;
   private final TreeRootHolder treeRootHolder;
   private final MeasureRepository measureRepository;
+  private final int batchSize;
 
   public PersistMeasuresStep(DbClient dbClient, MetricRepository metricRepository, MeasureToMeasureDto measureToMeasureDto,
-    TreeRootHolder treeRootHolder, MeasureRepository measureRepository) {
+    TreeRootHolder treeRootHolder, MeasureRepository measureRepository, Configuration configuration) {
     this.dbClient = dbClient;
     this.metricRepository = metricRepository;
     this.measureToMeasureDto = measureToMeasureDto;
     this.treeRootHolder = treeRootHolder;
     this.measureRepository = measureRepository;
+    this.batchSize = BatchInserter.getBatchSize(configuration);
   }
 
   @Override
@@ -82,21 +85,20 @@ public class PersistMeasuresStep implements ComputationStep {
 
   @Override
   public void execute() {
-    DbSession dbSession = dbClient.openSession(true);
-    try {
-      new DepthTraversalTypeAwareCrawler(new MeasureVisitor(dbSession)).visit(treeRootHolder.getRoot());
+    try (DbSession dbSession = dbClient.openSession(true);
+      BatchInserter<MeasureDto> inserter = dbClient.measureDao().newBatchInserter(dbSession, batchSize)) {
+      new DepthTraversalTypeAwareCrawler(new MeasureVisitor(inserter)).visit(treeRootHolder.getRoot());
+      inserter.flush();
       dbSession.commit();
-    } finally {
-      dbSession.close();
     }
   }
 
   private class MeasureVisitor extends TypeAwareVisitorAdapter {
-    private final DbSession session;
+    private final BatchInserter<MeasureDto> inserter;
 
-    private MeasureVisitor(DbSession session) {
+    private MeasureVisitor(BatchInserter<MeasureDto> inserter) {
       super(CrawlerDepthLimit.LEAVES, PRE_ORDER);
-      this.session = session;
+      this.inserter = inserter;
     }
 
     @Override
@@ -114,10 +116,9 @@ public class PersistMeasuresStep implements ComputationStep {
 
         Metric metric = metricRepository.getByKey(metricKey);
         Predicate<Measure> notBestValueOptimized = Predicates.not(BestValueOptimization.from(metric, component));
-        MeasureDao measureDao = dbClient.measureDao();
         for (Measure measure : from(measures.getValue()).filter(NonEmptyMeasure.INSTANCE).filter(notBestValueOptimized)) {
           MeasureDto measureDto = measureToMeasureDto.toMeasureDto(measure, metric, component);
-          measureDao.insert(session, measureDto);
+          inserter.add(measureDto);
         }
       }
     }
@@ -19,8 +19,14 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import org.sonar.api.config.Configuration;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTaskSubmit;
+import org.sonar.core.config.PurgeConstants;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.purge.IdUuidPair;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.DbIdsRepository;
@@ -45,15 +51,17 @@ public class PurgeDatastoresStep implements ComputationStep {
   private final TreeRootHolder treeRootHolder;
   private final ConfigurationRepository configRepository;
   private final DisabledComponentsHolder disabledComponentsHolder;
+  private final CeQueue ceQueue;
 
   public PurgeDatastoresStep(DbClient dbClient, ProjectCleaner projectCleaner, DbIdsRepository dbIdsRepository, TreeRootHolder treeRootHolder,
-    ConfigurationRepository configRepository, DisabledComponentsHolder disabledComponentsHolder) {
+    ConfigurationRepository configRepository, DisabledComponentsHolder disabledComponentsHolder, CeQueue ceQueue) {
     this.projectCleaner = projectCleaner;
     this.dbClient = dbClient;
     this.dbIdsRepository = dbIdsRepository;
     this.treeRootHolder = treeRootHolder;
     this.configRepository = configRepository;
     this.disabledComponentsHolder = disabledComponentsHolder;
+    this.ceQueue = ceQueue;
   }
 
   @Override
@@ -75,11 +83,28 @@ public class PurgeDatastoresStep implements ComputationStep {
   private void execute(Component root) {
     try (DbSession dbSession = dbClient.openSession(true)) {
       IdUuidPair idUuidPair = new IdUuidPair(dbIdsRepository.getComponentId(root), root.getUuid());
-      projectCleaner.purge(dbSession, idUuidPair, configRepository.getConfiguration(root), disabledComponentsHolder.getUuids());
+      Configuration config = configRepository.getConfiguration(root);
+      if (config.getBoolean(PurgeConstants.DEFERRED_PURGE).orElse(false)) {
+        projectCleaner.purgeDisabledComponents(dbSession, idUuidPair, config, disabledComponentsHolder.getUuids());
+        submitPurgeTask(dbSession, root.getUuid());
+      } else {
+        projectCleaner.purge(dbSession, idUuidPair, config, disabledComponentsHolder.getUuids());
+      }
       dbSession.commit();
     }
   }
 
+  private void submitPurgeTask(DbSession dbSession, String rootUuid) {
+    boolean alreadyPending = dbClient.ceQueueDao().selectByComponentUuid(dbSession, rootUuid).stream()
+      .anyMatch(task -> CeTaskTypes.PROJECT_PURGE.equals(task.getTaskType()) && task.getStatus() == CeQueueDto.Status.PENDING);
+    if (!alreadyPending) {
+      CeTaskSubmit.Builder submit = ceQueue.prepareSubmit();
+      submit.setType(CeTaskTypes.PROJECT_PURGE);
+      submit.setComponentUuid(rootUuid);
+      ceQueue.submit(submit.build());
+    }
+  }
+
   @Override
   public String getDescription() {
     return "Purge db";
@@ -95,8 +95,9 @@ public class ReportComputationSteps extends AbstractComputationSteps {
     PersistDevelopersStep.class,
     PersistMeasuresStep.class,
     PersistIssuesStep.class,
-    PersistProjectLinksStep.class,
     PersistEventsStep.class,
+    // next steps persist unrelated data and may be executed concurrently
+    PersistProjectLinksStep.class,
     PersistFileSourcesStep.class,
     PersistTestsStep.class,
     PersistCrossProjectDuplicationIndexStep.class,
@@ -19,30 +19,58 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.slf4j.MDC;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 public final class ComputationStepExecutor {
+  /**
+   * Maximum number of {@link ConcurrentComputationStep} executed at the same time. 1 means steps are
+   * executed sequentially.
+   */
+  public static final String THREADS_PROPERTY = "sonar.ce.computationSteps.threads";
+  private static final int DEFAULT_THREADS = 2;
   private static final Logger LOGGER = Loggers.get(ComputationStepExecutor.class);
 
   private final ComputationSteps steps;
   @CheckForNull
   private final Listener listener;
+  private final int threads;
 
   /**
    * Used when no {@link ComputationStepExecutor.Listener} is available in pico
    * container.
    */
-  public ComputationStepExecutor(ComputationSteps steps) {
-    this(steps, null);
+  public ComputationStepExecutor(ComputationSteps steps, Configuration config) {
+    this(steps, config, null);
+  }
+
+  public ComputationStepExecutor(ComputationSteps steps, Configuration config, @Nullable Listener listener) {
+    this(steps, listener, config.getInt(THREADS_PROPERTY).orElse(DEFAULT_THREADS));
   }
 
-  public ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener) {
+  @VisibleForTesting
+  ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener, int threads) {
+    checkArgument(threads > 0, "Number of threads must be strictly positive: %s", threads);
     this.steps = steps;
     this.listener = listener;
+    this.threads = threads;
   }
 
   public void execute() {
@@ -59,6 +87,13 @@ public final class ComputationStepExecutor {
   }
 
   private void executeSteps(Profiler stepProfiler) {
+    if (threads > 1) {
+      ComputationStepsGraph graph = new ComputationStepsGraph(ImmutableList.copyOf(steps.instances()));
+      if (graph.hasConcurrentSteps()) {
+        executeStepsConcurrently(graph);
+        return;
+      }
+    }
     for (ComputationStep step : steps.instances()) {
       stepProfiler.start();
       step.execute();
@@ -66,6 +101,76 @@ public final class ComputationStepExecutor {
     }
   }
 
+  /**
+   * Executes each step as soon as the steps it depends on are done. When a step fails, no other step is started,
+   * the ones being executed are waited for and the failure is propagated.
+   */
+  private void executeStepsConcurrently(ComputationStepsGraph graph) {
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("CE_Step-%d")
+      .build());
+    CompletionService<Integer> completionService = new ExecutorCompletionService<>(executorService);
+    Map<String, String> loggingContext = MDC.getCopyOfContextMap();
+    int[] predecessorCounts = new int[graph.size()];
+    int executingSteps = 0;
+    Throwable failure = null;
+    try {
+      for (int i = 0; i < graph.size(); i++) {
+        predecessorCounts[i] = graph.getPredecessorCount(i);
+        if (predecessorCounts[i] == 0) {
+          submit(completionService, graph, i, loggingContext);
+          executingSteps++;
+        }
+      }
+      while (executingSteps > 0) {
+        try {
+          int doneStep = completionService.take().get();
+          executingSteps--;
+          if (failure == null) {
+            for (int successor : graph.getSuccessors(doneStep)) {
+              predecessorCounts[successor]--;
+              if (predecessorCounts[successor] == 0) {
+                submit(completionService, graph, successor, loggingContext);
+                executingSteps++;
+              }
+            }
+          }
+        } catch (ExecutionException e) {
+          executingSteps--;
+          if (failure == null) {
+            failure = e.getCause();
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while executing computation steps", e);
+    } finally {
+      executorService.shutdownNow();
+    }
+    if (failure != null) {
+      Throwables.propagateIfPossible(failure);
+      throw new IllegalStateException(failure);
+    }
+  }
+
+  private static void submit(CompletionService<Integer> completionService, ComputationStepsGraph graph, int index,
+    @Nullable Map<String, String> loggingContext) {
+    ComputationStep step = graph.get(index);
+    completionService.submit(() -> {
+      if (loggingContext != null) {
+        MDC.setContextMap(loggingContext);
+      }
+      try {
+        Profiler stepProfiler = Profiler.create(LOGGER).start();
+        step.execute();
+        stepProfiler.stopDebug(step.getDescription());
+        return index;
+      } finally {
+        MDC.clear();
+      }
+    });
+  }
   private void executeListener(boolean allStepsExecuted) {
     try {
       listener.finished(allStepsExecuted);
@@ -0,0 +1,105 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dependencies between {@link ComputationStep}, computed from their execution sequence and, for
+ * {@link ConcurrentComputationStep}, from the data they read and write.
+ * <p>
+ * A step depends on every step before it in the sequence, unless both are {@link ConcurrentComputationStep} and none
+ * of them writes data the other one reads or writes.
+ * </p>
+ */
+final class ComputationStepsGraph {
+  private final List<ComputationStep> steps;
+  private final List<List<Integer>> successors;
+  private final int[] predecessorCounts;
+
+  ComputationStepsGraph(List<ComputationStep> steps) {
+    this.steps = steps;
+    this.successors = new ArrayList<>(steps.size());
+    this.predecessorCounts = new int[steps.size()];
+    for (int i = 0; i < steps.size(); i++) {
+      List<Integer> stepSuccessors = new ArrayList<>();
+      for (int j = i + 1; j < steps.size(); j++) {
+        if (dependsOn(steps.get(j), steps.get(i))) {
+          stepSuccessors.add(j);
+          predecessorCounts[j]++;
+        }
+      }
+      successors.add(stepSuccessors);
+    }
+  }
+
+  private static boolean dependsOn(ComputationStep step, ComputationStep previousStep) {
+    if (!(step instanceof ConcurrentComputationStep) || !(previousStep instanceof ConcurrentComputationStep)) {
+      return true;
+    }
+    ConcurrentComputationStep concurrentStep = (ConcurrentComputationStep) step;
+    ConcurrentComputationStep concurrentPreviousStep = (ConcurrentComputationStep) previousStep;
+    return intersect(concurrentPreviousStep.getOutputs(), concurrentStep.getInputs())
+      || intersect(concurrentPreviousStep.getOutputs(), concurrentStep.getOutputs())
+      || intersect(concurrentPreviousStep.getInputs(), concurrentStep.getOutputs());
+  }
+
+  private static boolean intersect(Set<Class<?>> data1, Set<Class<?>> data2) {
+    return !Collections.disjoint(data1, data2);
+  }
+
+  /**
+   * Whether at least one step can be executed concurrently with another one, ie. whether some step does not
+   * depend on the step right before it.
+   */
+  boolean hasConcurrentSteps() {
+    for (int i = 0; i < steps.size() - 1; i++) {
+      if (!successors.get(i).contains(i + 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  int size() {
+    return steps.size();
+  }
+
+  ComputationStep get(int index) {
+    return steps.get(index);
+  }
+
+  /**
+   * Indexes of the steps which can't be executed before the specified one is done.
+   */
+  List<Integer> getSuccessors(int index) {
+    return successors.get(index);
+  }
+
+  /**
+   * Number of steps which must be done before the specified one can be executed.
+   */
+  int getPredecessorCount(int index) {
+    return predecessorCounts[index];
+  }
+}
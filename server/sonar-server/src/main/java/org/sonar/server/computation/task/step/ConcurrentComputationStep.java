@@ -0,0 +1,46 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import java.util.Set;
+
+/**
+ * A {@link ComputationStep} which declares the data it reads and writes, so that {@link ComputationStepExecutor} can
+ * execute it concurrently with the steps it does not share any data with.
+ * <p>
+ * Data is identified by the type of the holder or repository it is read from or written to (eg. {@code TreeRootHolder.class})
+ * or, for data in DB, by the type of the DAO used to access it (eg. {@code FileSourceDao.class}).
+ * </p>
+ * <p>
+ * {@link ComputationStep} which do not implement this interface are never executed concurrently with any other step.
+ * </p>
+ */
+public interface ConcurrentComputationStep extends ComputationStep {
+
+  /**
+   * Data read by this step.
+   */
+  Set<Class<?>> getInputs();
+
+  /**
+   * Data written by this step.
+   */
+  Set<Class<?>> getOutputs();
+}
@@ -50,6 +50,7 @@ import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.sonar.server.es.DefaultIndexSettings.REFRESH_NONE;
@@ -127,6 +128,26 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
     }
   }
 
+  /**
+   * Inserts, without committing, the es_queue items required to index the given issues of a project.
+   * They are expected to be committed in the same transaction as the issues, then indexed with
+   * {@link #index(DbSession, Collection)}. If indexing fails, the recovery daemon retries later.
+   */
+  public Collection<EsQueueDto> prepareForRecoveryOnIssues(DbSession dbSession, String projectUuid, Collection<String> issueKeys) {
+    List<EsQueueDto> items = issueKeys.stream()
+      .map(issueKey -> createQueueDto(issueKey, ID_TYPE_ISSUE_KEY, projectUuid))
+      .collect(MoreCollectors.toArrayList(issueKeys.size()));
+    return dbClient.esQueueDao().insert(dbSession, items);
+  }
+
+  /**
+   * Same as {@link #prepareForRecoveryOnIssues(DbSession, String, Collection)}, but all the issues of the
+   * project are indexed.
+   */
+  public Collection<EsQueueDto> prepareForRecoveryOnProject(DbSession dbSession, String projectUuid) {
+    return dbClient.esQueueDao().insert(dbSession, singletonList(createQueueDto(projectUuid, ID_TYPE_PROJECT_UUID, projectUuid)));
+  }
+
   /**
    * Commits the DB transaction and adds the issues to Elasticsearch index.
    * <p>
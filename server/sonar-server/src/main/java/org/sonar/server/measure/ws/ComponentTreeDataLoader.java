@@ -71,6 +71,8 @@ import static org.sonar.api.utils.Paging.offset;
 import static org.sonar.server.component.ComponentFinder.ParamNames.BASE_COMPONENT_ID_AND_KEY;
 import static org.sonar.server.component.ComponentFinder.ParamNames.DEVELOPER_ID_AND_KEY;
 import static org.sonar.server.measure.ws.ComponentTreeAction.LEAVES_STRATEGY;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_PERIOD_SORT;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.STRATEGIES;
 import static org.sonar.server.measure.ws.ComponentTreeAction.WITH_MEASURES_ONLY_METRIC_SORT_FILTER;
 import static org.sonar.server.measure.ws.SnapshotDtoToWsPeriods.snapshotToWsPeriods;
@@ -106,15 +108,20 @@ public class ComponentTreeDataLoader {
       ComponentTreeQuery componentTreeQuery = toComponentTreeQuery(wsRequest, baseComponent);
       List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
       List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
-      Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery,
-        components,
-        metrics, developerId);
+      Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric = HashBasedTable.create();
 
-      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
-      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+      // only the measures required to filter and sort are loaded on the whole tree...
+      List<MetricDto> sortMetrics = searchMetricsToFilterOrSort(metrics, wsRequest);
+      searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery, null, components, sortMetrics, developerId,
+        measuresByComponentUuidAndMetric);
 
+      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
       int componentCount = components.size();
-      components = paginateComponents(components, wsRequest);
+      components = sortAndPaginateComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+
+      // ... then all the requested measures are loaded on the page only
+      searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery, pageComponentUuids(baseComponent, components), components, metrics,
+        developerId, measuresByComponentUuidAndMetric);
 
       return ComponentTreeData.builder()
         .setBaseComponent(baseComponent)
@@ -178,9 +185,35 @@ public class ComponentTreeDataLoader {
     return metrics;
   }
 
-  private Table<String, MetricDto, Measure> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent,
-    ComponentTreeQuery componentTreeQuery,
-    List<ComponentDto> components, List<MetricDto> metrics, @Nullable Long developerId) {
+  private static List<MetricDto> searchMetricsToFilterOrSort(List<MetricDto> metrics, ComponentTreeWsRequest wsRequest) {
+    String metricKeyToSort = wsRequest.getMetricSort();
+    List<String> sortParameters = wsRequest.getSort();
+    boolean sortedOnMetric = sortParameters != null && (sortParameters.contains(METRIC_SORT) || sortParameters.contains(METRIC_PERIOD_SORT));
+    if (metricKeyToSort == null || !(sortedOnMetric || componentWithMeasuresOnly(wsRequest))) {
+      return Collections.emptyList();
+    }
+    return metrics.stream()
+      .filter(m -> metricKeyToSort.equals(m.getKey()))
+      .collect(MoreCollectors.toList(1));
+  }
+
+  private static List<String> pageComponentUuids(ComponentDto baseComponent, List<ComponentDto> components) {
+    List<String> uuids = new ArrayList<>(components.size() + 1);
+    uuids.add(baseComponent.uuid());
+    components.forEach(c -> uuids.add(c.uuid()));
+    return uuids;
+  }
+
+  /**
+   * Adds the measures of the tree, restricted to the components {@code componentUuids} when not {@code null}, to
+   * {@code measuresByComponentUuidAndMetric}.
+   */
+  private void searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent, ComponentTreeQuery componentTreeQuery,
+    @Nullable List<String> componentUuids, List<ComponentDto> components, List<MetricDto> metrics, @Nullable Long developerId,
+    Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric) {
+    if (metrics.isEmpty()) {
+      return;
+    }
 
     Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDto::getId);
     MeasureTreeQuery measureQuery = MeasureTreeQuery.builder()
@@ -189,9 +222,9 @@ public class ComponentTreeDataLoader {
       .setQualifiers(componentTreeQuery.getQualifiers())
       .setPersonId(developerId)
       .setMetricIds(new ArrayList<>(metricsById.keySet()))
+      .setComponentUuids(componentUuids)
       .build();
 
-    Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric = HashBasedTable.create(components.size(), metrics.size());
     dbClient.measureDao().selectTreeByQuery(dbSession, baseComponent, measureQuery, result -> {
       MeasureDto measureDto = result.getResultObject();
       measuresByComponentUuidAndMetric.put(
@@ -201,8 +234,6 @@ public class ComponentTreeDataLoader {
     });
 
     addBestValuesToMeasures(measuresByComponentUuidAndMetric, components, metrics);
-
-    return measuresByComponentUuidAndMetric;
   }
 
   /**
@@ -253,16 +284,15 @@ public class ComponentTreeDataLoader {
     return WITH_MEASURES_ONLY_METRIC_SORT_FILTER.equals(wsRequest.getMetricSortFilter());
   }
 
-  private static List<ComponentDto> sortComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
+  private static List<ComponentDto> sortAndPaginateComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
     Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric) {
-    return ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
-  }
-
-  private static List<ComponentDto> paginateComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest) {
-    return components.stream()
-      .skip(offset(wsRequest.getPage(), wsRequest.getPageSize()))
-      .limit(wsRequest.getPageSize())
-      .collect(MoreCollectors.toList(wsRequest.getPageSize()));
+    int offset = offset(wsRequest.getPage(), wsRequest.getPageSize());
+    if (offset >= components.size()) {
+      return Collections.emptyList();
+    }
+    int limit = Math.min(offset + wsRequest.getPageSize(), components.size());
+    List<ComponentDto> sortedComponents = ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, limit);
+    return sortedComponents.subList(offset, limit);
   }
 
   @CheckForNull
@@ -24,19 +24,26 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Table;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.Metric.ValueType;
+import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.CASE_INSENSITIVE_ORDER;
 import static java.lang.String.format;
 import static org.sonar.api.measures.Metric.ValueType.BOOL;
@@ -63,10 +70,64 @@ public class ComponentTreeSort {
   }
 
   public static List<ComponentDto> sortComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
+    Table<String, MetricDto, ComponentTreeData.Measure> measuresByComponentUuidAndMetric) {
+    Ordering<ComponentDto> ordering = componentOrdering(wsRequest, metrics, measuresByComponentUuidAndMetric);
+    if (ordering == null) {
+      return components;
+    }
+    return ordering.immutableSortedCopy(components);
+  }
+
+  /**
+   * Same as {@link #sortComponents(List, ComponentTreeWsRequest, List, Table)} but returns only the {@code limit} first
+   * components. They are selected with a heap bounded to {@code limit} elements, so that the cost of the sort depends
+   * on the size of the requested page rather than on the size of the tree. Components which are equal according to the
+   * requested sort keep their original order.
+   */
+  public static List<ComponentDto> sortComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
+    Table<String, MetricDto, ComponentTreeData.Measure> measuresByComponentUuidAndMetric, int limit) {
+    checkArgument(limit >= 0, "Limit must be positive: %s", limit);
+    if (limit >= components.size()) {
+      return sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+    }
+    Ordering<ComponentDto> ordering = componentOrdering(wsRequest, metrics, measuresByComponentUuidAndMetric);
+    if (ordering == null) {
+      return components.subList(0, limit);
+    }
+    return topComponents(components, ordering, limit);
+  }
+
+  private static List<ComponentDto> topComponents(List<ComponentDto> components, Ordering<ComponentDto> ordering, int limit) {
+    if (limit == 0) {
+      return Collections.emptyList();
+    }
+    // original index breaks ties, as the sort of the whole list is stable
+    Comparator<IndexedComponent> comparator = Comparator.<IndexedComponent, ComponentDto>comparing(c -> c.component, ordering)
+      .thenComparingInt(c -> c.index);
+    // head of the heap is the greatest of the selected components, so that it's the first to be evicted
+    PriorityQueue<IndexedComponent> heap = new PriorityQueue<>(limit, comparator.reversed());
+    int index = 0;
+    for (ComponentDto component : components) {
+      IndexedComponent candidate = new IndexedComponent(component, index);
+      index++;
+      if (heap.size() < limit) {
+        heap.add(candidate);
+      } else if (comparator.compare(candidate, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(candidate);
+      }
+    }
+    List<IndexedComponent> selected = new ArrayList<>(heap);
+    selected.sort(comparator);
+    return selected.stream().map(c -> c.component).collect(MoreCollectors.toList(selected.size()));
+  }
+
+  @CheckForNull
+  private static Ordering<ComponentDto> componentOrdering(ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
     Table<String, MetricDto, ComponentTreeData.Measure> measuresByComponentUuidAndMetric) {
     List<String> sortParameters = wsRequest.getSort();
     if (sortParameters == null || sortParameters.isEmpty()) {
-      return components;
+      return null;
     }
     boolean isAscending = wsRequest.getAsc();
     Map<String, Ordering<ComponentDto>> orderingsBySortField = ImmutableMap.<String, Ordering<ComponentDto>>builder()
@@ -87,7 +148,7 @@ public class ComponentTreeSort {
       }
     }
 
-    return primaryOrdering.immutableSortedCopy(components);
+    return primaryOrdering;
   }
 
   private static Ordering<ComponentDto> componentNameOrdering(boolean isAscending) {
@@ -182,6 +243,16 @@ public class ComponentTreeSort {
     return ordering.nullsLast().onResultOf(new ComponentDtoToLevelIndex(metric, measuresByComponentUuidAndMetric));
   }
 
+  private static class IndexedComponent {
+    private final ComponentDto component;
+    private final int index;
+
+    private IndexedComponent(ComponentDto component, int index) {
+      this.component = component;
+      this.index = index;
+    }
+  }
+
   private static class ComponentDtoToNumericalMeasureValue implements Function<ComponentDto, Double> {
     private final MetricDto metric;
     private final Table<String, MetricDto, ComponentTreeData.Measure> measuresByComponentUuidAndMetric;
@@ -19,23 +19,42 @@
  */
 package org.sonar.server.permission.index;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.join.query.JoinQueryBuilders;
 import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.server.ServerSide;
 import org.sonar.db.user.GroupDto;
+import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsUtils;
 import org.sonar.server.es.IndexType;
 import org.sonar.server.es.NewIndex;
 import org.sonar.server.user.UserSession;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.joining;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
 
 @ServerSide
 @ComputeEngineSide
@@ -52,10 +71,73 @@ public class AuthorizationTypeSupport {
    */
   public static final String FIELD_ALLOW_ANYONE = "allowAnyone";
 
+  /**
+   * How {@link #createQueryFilter(IndexType)} restricts documents to the projects the user can browse:
+   * <ul>
+   *   <li>{@code join} (default): "has parent" query on the type "authorization"</li>
+   *   <li>{@code terms}: the uuids of the projects the user can browse are loaded from the type "authorization",
+   *   then cached for the user and the groups of the user, and documents are filtered by their routing. This avoids
+   *   the cost of the join on each search, but the permissions changed by another node can be ignored
+   *   until the cache expires. When the user can browse more than {@link #FILTER_MAX_TERMS_PROPERTY} projects,
+   *   the "has parent" query is used.</li>
+   * </ul>
+   */
+  public static final String FILTER_MODE_PROPERTY = "sonar.search.authorization.filterMode";
+  public static final String FILTER_MODE_JOIN = "join";
+  public static final String FILTER_MODE_TERMS = "terms";
+  /**
+   * Maximum number of project uuids in the terms query of the mode {@link #FILTER_MODE_TERMS}. Above, the terms query
+   * is larger and slower than the join.
+   */
+  public static final String FILTER_MAX_TERMS_PROPERTY = "sonar.search.authorization.maxTerms";
+  private static final int DEFAULT_FILTER_MAX_TERMS = 10_000;
+  /**
+   * Maximum number of project uuids in cache, all users included. Lists shared by several users are counted once per user.
+   */
+  private static final long CACHE_MAX_WEIGHT = 500_000L;
+  private static final int CACHE_EXPIRATION_IN_SECONDS = 60;
+  private static final int SCROLL_SIZE = 10_000;
+
   private final UserSession userSession;
+  @CheckForNull
+  private final EsClient esClient;
+  private final int maxTerms;
+  /**
+   * Sorted uuids of the projects that can be browsed, by index and user. The uuids are sorted so that the same
+   * terms query is sent for the same user, which lets Elasticsearch cache the related bitset. Absent if the user
+   * can browse more than {@link #maxTerms} projects.
+   */
+  @CheckForNull
+  private final Cache<String, Optional<List<String>>> authorizedProjectUuids;
+  /**
+   * Users with the same groups and without permissions of their own share the same list of uuids
+   */
+  private final Interner<List<String>> uuidLists = Interners.newWeakInterner();
 
   public AuthorizationTypeSupport(UserSession userSession) {
     this.userSession = userSession;
+    this.esClient = null;
+    this.maxTerms = 0;
+    this.authorizedProjectUuids = null;
+  }
+
+  public AuthorizationTypeSupport(UserSession userSession, EsClient esClient, Configuration config) {
+    this.userSession = userSession;
+    String filterMode = config.get(FILTER_MODE_PROPERTY).orElse(FILTER_MODE_JOIN);
+    checkArgument(FILTER_MODE_JOIN.equals(filterMode) || FILTER_MODE_TERMS.equals(filterMode),
+      "Unsupported value of property %s: %s", FILTER_MODE_PROPERTY, filterMode);
+    this.maxTerms = config.getInt(FILTER_MAX_TERMS_PROPERTY).orElse(DEFAULT_FILTER_MAX_TERMS);
+    if (FILTER_MODE_TERMS.equals(filterMode)) {
+      this.esClient = esClient;
+      this.authorizedProjectUuids = CacheBuilder.newBuilder()
+        .maximumWeight(CACHE_MAX_WEIGHT)
+        .weigher((String key, Optional<List<String>> uuids) -> 1 + uuids.map(List::size).orElse(0))
+        .expireAfterWrite(CACHE_EXPIRATION_IN_SECONDS, TimeUnit.SECONDS)
+        .build();
+    } else {
+      this.esClient = null;
+      this.authorizedProjectUuids = null;
+    }
   }
 
   /**
@@ -101,6 +183,67 @@ public class AuthorizationTypeSupport {
       return QueryBuilders.matchAllQuery();
     }
 
+    return JoinQueryBuilders.hasParentQuery(
+      TYPE_AUTHORIZATION,
+      QueryBuilders.boolQuery().filter(createAuthorizationFilter()),
+      false);
+  }
+
+  /**
+   * Same as {@link #createQueryFilter()}, but depending on the properties {@link #FILTER_MODE_PROPERTY} and
+   * {@link #FILTER_MAX_TERMS_PROPERTY} the documents of type {@code indexType} can be filtered without join.
+   */
+  public QueryBuilder createQueryFilter(IndexType indexType) {
+    if (authorizedProjectUuids == null || userSession.isRoot()) {
+      return createQueryFilter();
+    }
+    String cacheKey = indexType.getIndex() + "|" + userSession.getUserId() + "|" + userSession.getGroups().stream()
+      .map(GroupDto::getId)
+      .sorted()
+      .map(String::valueOf)
+      .collect(joining(","));
+    Optional<List<String>> uuids;
+    try {
+      uuids = authorizedProjectUuids.get(cacheKey, () -> loadAuthorizedProjectUuids(indexType));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to load the projects authorized to user", e.getCause());
+    }
+    if (uuids.isPresent()) {
+      return termsQuery("_routing", uuids.get());
+    }
+    return createQueryFilter();
+  }
+
+  /**
+   * Must be called when permissions are indexed, so that the filters created by {@link #createQueryFilter(IndexType)}
+   * take the changes into account.
+   */
+  public void invalidateCache() {
+    if (authorizedProjectUuids != null) {
+      authorizedProjectUuids.invalidateAll();
+    }
+  }
+
+  private Optional<List<String>> loadAuthorizedProjectUuids(IndexType indexType) {
+    SearchRequestBuilder esSearch = esClient.prepareSearch(getAuthorizationIndexType(indexType))
+      .setQuery(boolQuery().filter(createAuthorizationFilter()))
+      .setFetchSource(false)
+      .setSize(SCROLL_SIZE)
+      .setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES));
+    EsUtils.optimizeScrollRequest(esSearch);
+    SearchResponse response = esSearch.get();
+    if (response.getHits().getTotalHits() > maxTerms) {
+      esClient.nativeClient().prepareClearScroll().addScrollId(response.getScrollId()).get();
+      return Optional.empty();
+    }
+    Iterator<String> ids = EsUtils.scrollIds(esClient, response, id -> id);
+    List<String> uuids = new ArrayList<>();
+    ids.forEachRemaining(uuids::add);
+    uuids.sort(null);
+    return Optional.of(uuidLists.intern(ImmutableList.copyOf(uuids)));
+  }
+
+  private BoolQueryBuilder createAuthorizationFilter() {
     Integer userId = userSession.getUserId();
     BoolQueryBuilder filter = boolQuery();
 
@@ -118,9 +261,6 @@ public class AuthorizationTypeSupport {
       .map(GroupDto::getId)
       .forEach(groupId -> filter.should(termQuery(FIELD_GROUP_IDS, groupId)));
 
-    return JoinQueryBuilders.hasParentQuery(
-      TYPE_AUTHORIZATION,
-      QueryBuilders.boolQuery().filter(filter),
-      false);
+    return filter;
   }
 }
@@ -28,6 +28,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.elasticsearch.action.index.IndexRequest;
 import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
@@ -57,23 +59,41 @@ public class PermissionIndexer implements ProjectIndexer {
   private final EsClient esClient;
   private final Collection<AuthorizationScope> authorizationScopes;
   private final Set<IndexType> indexTypes;
+  @CheckForNull
+  private final AuthorizationTypeSupport authorizationTypeSupport;
 
+  public PermissionIndexer(DbClient dbClient, EsClient esClient, AuthorizationTypeSupport authorizationTypeSupport,
+    NeedAuthorizationIndexer... needAuthorizationIndexers) {
+    this(dbClient, esClient, authorizationTypeSupport, toScopes(needAuthorizationIndexers));
+  }
+
+  @VisibleForTesting
   public PermissionIndexer(DbClient dbClient, EsClient esClient, NeedAuthorizationIndexer... needAuthorizationIndexers) {
-    this(dbClient, esClient, Arrays.stream(needAuthorizationIndexers)
-      .map(NeedAuthorizationIndexer::getAuthorizationScope)
-      .collect(MoreCollectors.toList(needAuthorizationIndexers.length)));
+    this(dbClient, esClient, null, toScopes(needAuthorizationIndexers));
   }
 
   @VisibleForTesting
   public PermissionIndexer(DbClient dbClient, EsClient esClient, Collection<AuthorizationScope> authorizationScopes) {
+    this(dbClient, esClient, null, authorizationScopes);
+  }
+
+  private PermissionIndexer(DbClient dbClient, EsClient esClient, @Nullable AuthorizationTypeSupport authorizationTypeSupport,
+    Collection<AuthorizationScope> authorizationScopes) {
     this.dbClient = dbClient;
     this.esClient = esClient;
+    this.authorizationTypeSupport = authorizationTypeSupport;
     this.authorizationScopes = authorizationScopes;
     this.indexTypes = authorizationScopes.stream()
       .map(AuthorizationScope::getIndexType)
       .collect(toSet(authorizationScopes.size()));
   }
 
+  private static List<AuthorizationScope> toScopes(NeedAuthorizationIndexer... needAuthorizationIndexers) {
+    return Arrays.stream(needAuthorizationIndexers)
+      .map(NeedAuthorizationIndexer::getAuthorizationScope)
+      .collect(MoreCollectors.toList(needAuthorizationIndexers.length));
+  }
+
   @Override
   public Set<IndexType> getIndexTypes() {
     return indexTypes;
@@ -144,6 +164,7 @@ public class PermissionIndexer implements ProjectIndexer {
 
       bulkIndexer.stop();
     });
+    invalidateAuthorizationCache();
   }
 
   @Override
@@ -176,10 +197,17 @@ public class PermissionIndexer implements ProjectIndexer {
     remainingProjectUuids.forEach(projectUuid -> bulkIndexers.forEach(bi -> bi.addDeletion(bi.getIndexType(), projectUuid, projectUuid)));
 
     bulkIndexers.forEach(b -> result.add(b.stop()));
+    invalidateAuthorizationCache();
 
     return result;
   }
 
+  private void invalidateAuthorizationCache() {
+    if (authorizationTypeSupport != null) {
+      authorizationTypeSupport.invalidateCache();
+    }
+  }
+
   private static IndexRequest newIndexRequest(PermissionIndexerDao.Dto dto, IndexType indexType) {
     Map<String, Object> doc = new HashMap<>();
     if (dto.isAllowAnyone()) {
@@ -178,8 +178,10 @@ import org.sonar.server.rule.ws.TagsAction;
 import org.sonar.server.serverid.ws.ServerIdWsModule;
 import org.sonar.server.setting.ws.SettingsWsModule;
 import org.sonar.server.source.HtmlSourceDecorator;
+import org.sonar.server.source.SourceLinesCache;
 import org.sonar.server.source.SourceService;
 import org.sonar.server.source.ws.HashAction;
+import org.sonar.server.source.ws.HashesAction;
 import org.sonar.server.source.ws.IndexAction;
 import org.sonar.server.source.ws.LinesAction;
 import org.sonar.server.source.ws.RawAction;
@@ -422,10 +424,12 @@ public class PlatformLevel4 extends PlatformLevel {
       // source
       HtmlSourceDecorator.class,
       SourceService.class,
+      SourceLinesCache.class,
       SourcesWs.class,
       org.sonar.server.source.ws.ShowAction.class,
       LinesAction.class,
       HashAction.class,
+      HashesAction.class,
       RawAction.class,
       IndexAction.class,
       ScmAction.class,
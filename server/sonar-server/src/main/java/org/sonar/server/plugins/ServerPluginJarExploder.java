@@ -20,10 +20,10 @@
 package org.sonar.server.plugins;
 
 import java.io.File;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.server.ServerSide;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.core.platform.ExplodedPlugin;
 import org.sonar.core.platform.PluginInfo;
 import org.sonar.core.platform.PluginJarExploder;
@@ -35,6 +35,7 @@ import static org.apache.commons.io.FileUtils.forceMkdir;
 @ComputeEngineSide
 public class ServerPluginJarExploder extends PluginJarExploder {
 
+  private static final String CACHE_RELATIVE_PATH = "web/exploded-plugins";
   private final ServerFileSystem fs;
 
   public ServerPluginJarExploder(ServerFileSystem fs) {
@@ -44,7 +45,10 @@ public class ServerPluginJarExploder extends PluginJarExploder {
   /**
    * JAR files of directory extensions/plugins can be moved when server is up and plugins are uninstalled.
    * For this reason these files must not be locked by classloaders. They are copied to the directory
-   * web/deploy/plugins in order to be loaded by {@link org.sonar.core.platform.PluginLoader}.
+   * web/deploy/plugins in order to be downloaded by scanners.
+   * <p/>
+   * The files loaded by {@link org.sonar.core.platform.PluginLoader} are kept in the data directory, which
+   * is not cleaned-up on startup, so that unchanged plugins are not unzipped again.
    */
   @Override
   public ExplodedPlugin explode(PluginInfo pluginInfo) {
@@ -54,13 +58,16 @@ public class ServerPluginJarExploder extends PluginJarExploder {
       org.sonar.core.util.FileUtils.cleanDirectory(toDir);
 
       File jarSource = pluginInfo.getNonNullJarFile();
-      File jarTarget = new File(toDir, jarSource.getName());
-      FileUtils.copyFile(jarSource, jarTarget);
-      ZipUtils.unzip(jarSource, toDir, newLibFilter());
-      return explodeFromUnzippedDir(pluginInfo.getKey(), jarTarget, toDir);
+      FileUtils.copyFile(jarSource, new File(toDir, jarSource.getName()));
+      return explodeToCache(pluginInfo, new File(fs.getDataDir(), CACHE_RELATIVE_PATH));
     } catch (Exception e) {
       throw new IllegalStateException(String.format(
         "Fail to unzip plugin [%s] %s to %s", pluginInfo.getKey(), pluginInfo.getNonNullJarFile().getAbsolutePath(), toDir.getAbsolutePath()), e);
     }
   }
+
+  @Override
+  public void deleteUnused(Set<String> installedPluginKeys) {
+    deleteUnusedFromCache(new File(fs.getDataDir(), CACHE_RELATIVE_PATH), installedPluginKeys);
+  }
 }
@@ -0,0 +1,164 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
+
+/**
+ * Lines of the files recently displayed, by blocks of {@link FileSourceDto#LINES_PER_CHUNK} lines, so that
+ * browsing a file does not decompress its data again and again.
+ * <p>
+ * Blocks are identified by file uuid and data hash, so they are not used anymore once the file is analyzed again. The cache
+ * is bounded by the serialized size of lines.
+ */
+public class SourceLinesCache {
+
+  static final int LINES_PER_BLOCK = FileSourceDto.LINES_PER_CHUNK;
+  private static final long DEFAULT_MAX_SIZE_IN_BYTES = 32L * 1024 * 1024;
+
+  private final Cache<BlockKey, List<DbFileSources.Line>> cache;
+
+  public SourceLinesCache() {
+    this(DEFAULT_MAX_SIZE_IN_BYTES);
+  }
+
+  SourceLinesCache(long maxSizeInBytes) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxSizeInBytes)
+      .weigher(SourceLinesCache::weigh)
+      .build();
+  }
+
+  /**
+   * Lines at positions [{@code from}, {@code toInclusive}] of the file, starting from 1.
+   *
+   * @param dataHash the current hash of data of the file. Lines are not cached if {@code null}.
+   * @param loader loads the data of the file when some lines are missing in cache. It returns {@code null} if the file has no sources anymore.
+   * @return {@code null} if the file has no sources
+   */
+  @CheckForNull
+  public List<DbFileSources.Line> getLines(String fileUuid, @Nullable String dataHash, int from, int toInclusive, Supplier<FileSourceDto> loader) {
+    if (dataHash == null) {
+      FileSourceDto dto = loader.get();
+      return dto == null ? null : dto.getSourceLines(from, toInclusive);
+    }
+
+    List<DbFileSources.Line> result = new ArrayList<>();
+    int block = (from - 1) / LINES_PER_BLOCK;
+    int lastBlock = (toInclusive - 1) / LINES_PER_BLOCK;
+    while (block <= lastBlock) {
+      List<DbFileSources.Line> blockLines = cache.getIfPresent(new BlockKey(fileUuid, dataHash, block));
+      if (blockLines == null) {
+        FileSourceDto dto = loader.get();
+        if (dto == null) {
+          return null;
+        }
+        if (!dataHash.equals(dto.getDataHash())) {
+          // file has been analyzed in the meantime. Lines of the previous version must not be mixed with the new ones.
+          return dto.getSourceLines(from, toInclusive);
+        }
+        loadBlocks(fileUuid, dto, block, lastBlock);
+        blockLines = cache.getIfPresent(new BlockKey(fileUuid, dataHash, block));
+        if (blockLines == null) {
+          // evicted immediately, cache is too small
+          return dto.getSourceLines(from, toInclusive);
+        }
+      }
+      addLinesInRange(blockLines, block, from, toInclusive, result);
+      if (blockLines.size() < LINES_PER_BLOCK) {
+        // end of file
+        break;
+      }
+      block++;
+    }
+    return result;
+  }
+
+  private void loadBlocks(String fileUuid, FileSourceDto dto, int firstBlock, int lastBlock) {
+    int from = firstBlock * LINES_PER_BLOCK + 1;
+    int toInclusive = (int) Math.min((lastBlock + 1L) * LINES_PER_BLOCK, Integer.MAX_VALUE);
+    List<DbFileSources.Line> lines = dto.getSourceLines(from, toInclusive);
+    int block = firstBlock;
+    for (int start = 0; start <= lines.size() && block <= lastBlock; start += LINES_PER_BLOCK) {
+      List<DbFileSources.Line> blockLines = new ArrayList<>(lines.subList(start, Math.min(start + LINES_PER_BLOCK, lines.size())));
+      cache.put(new BlockKey(fileUuid, dto.getDataHash(), block), blockLines);
+      if (blockLines.size() < LINES_PER_BLOCK) {
+        break;
+      }
+      block++;
+    }
+  }
+
+  private static void addLinesInRange(List<DbFileSources.Line> blockLines, int block, int from, int toInclusive, List<DbFileSources.Line> result) {
+    int firstPosition = block * LINES_PER_BLOCK + 1;
+    for (int i = 0; i < blockLines.size(); i++) {
+      long position = (long) firstPosition + i;
+      if (position >= from && position <= toInclusive) {
+        result.add(blockLines.get(i));
+      }
+    }
+  }
+
+  private static int weigh(BlockKey key, List<DbFileSources.Line> lines) {
+    int size = key.fileUuid.length() + key.dataHash.length();
+    for (DbFileSources.Line line : lines) {
+      size += line.getSerializedSize();
+    }
+    return size;
+  }
+
+  private static final class BlockKey {
+    private final String fileUuid;
+    private final String dataHash;
+    private final int block;
+
+    private BlockKey(String fileUuid, String dataHash, int block) {
+      this.fileUuid = fileUuid;
+      this.dataHash = dataHash;
+      this.block = block;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      BlockKey that = (BlockKey) o;
+      return block == that.block && fileUuid.equals(that.fileUuid) && dataHash.equals(that.dataHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(fileUuid, dataHash, block);
+    }
+  }
+}
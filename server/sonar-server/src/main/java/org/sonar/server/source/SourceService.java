@@ -19,6 +19,7 @@
  */
 package org.sonar.server.source;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import org.sonar.core.util.stream.MoreCollectors;
@@ -33,10 +34,12 @@ public class SourceService {
 
   private final DbClient dbClient;
   private final HtmlSourceDecorator htmlDecorator;
+  private final SourceLinesCache linesCache;
 
-  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator) {
+  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator, SourceLinesCache linesCache) {
     this.dbClient = dbClient;
     this.htmlDecorator = htmlDecorator;
+    this.linesCache = linesCache;
   }
 
   /**
@@ -63,11 +66,17 @@ public class SourceService {
   private <E> Optional<Iterable<E>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive, Function<DbFileSources.Line, E> function) {
     verifyLine(from);
     checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
-    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
-    if (dto == null) {
+    // data is loaded only if some lines are missing in cache
+    FileSourceDto hashes = dbClient.fileSourceDao().selectSourceHashesByFileUuid(dbSession, fileUuid);
+    if (hashes == null) {
       return Optional.empty();
     }
-    return Optional.of(dto.getSourceData().getLinesList().stream()
+    List<DbFileSources.Line> lines = linesCache.getLines(fileUuid, hashes.getDataHash(), from, toInclusive,
+      () -> dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid));
+    if (lines == null) {
+      return Optional.empty();
+    }
+    return Optional.of(lines.stream()
       .filter(line -> line.hasLine() && line.getLine() >= from)
       .limit((toInclusive - from) + 1L)
       .map(function)
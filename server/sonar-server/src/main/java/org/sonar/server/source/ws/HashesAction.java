@@ -0,0 +1,138 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source.ws;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.resources.Scopes;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.core.util.stream.MoreCollectors;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTreeQuery;
+import org.sonar.db.component.ComponentTreeQuery.Strategy;
+import org.sonar.db.source.LineHashesWithUuidDto;
+import org.sonar.scanner.protocol.input.ScannerInput;
+import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.user.UserSession;
+import org.sonarqube.ws.MediaTypes;
+
+import static java.util.Arrays.asList;
+import static org.sonar.api.web.UserRole.USER;
+import static org.sonar.server.ws.KeyExamples.KEY_FILE_EXAMPLE_001;
+import static org.sonar.server.ws.KeyExamples.KEY_PROJECT_EXAMPLE_001;
+import static org.sonar.server.ws.WsUtils.checkRequest;
+
+/**
+ * Batched version of {@link HashAction}, used by scanners to load the line hashes of many files in a single request.
+ */
+public class HashesAction implements SourcesWsAction {
+
+  static final int MAX_KEYS = 500;
+  private static final String PARAM_KEYS = "keys";
+  private static final String PARAM_MODULE = "module";
+  private static final List<String> FILE_QUALIFIERS = asList(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
+
+  private final DbClient dbClient;
+  private final UserSession userSession;
+  private final ComponentFinder componentFinder;
+
+  public HashesAction(DbClient dbClient, UserSession userSession, ComponentFinder componentFinder) {
+    this.dbClient = dbClient;
+    this.userSession = userSession;
+    this.componentFinder = componentFinder;
+  }
+
+  @Override
+  public void define(WebService.NewController controller) {
+    WebService.NewAction action = controller.createAction("hashes")
+      .setDescription("Stream the line hashes of many files as protocol buffers. Either parameter '%s' or '%s' must be set. " +
+        "Files without source are ignored. Require See Source Code permission on files' projects.<br/>" +
+        "Parameters can be sent in the body of a POST request, as the list of keys may exceed the maximum length of URLs.", PARAM_KEYS, PARAM_MODULE)
+      .setSince("6.6")
+      .setInternal(true)
+      .setHandler(this);
+
+    action
+      .createParam(PARAM_KEYS)
+      .setDescription("Comma-separated list of file keys. Unknown keys are ignored. At most %d keys are accepted.", MAX_KEYS)
+      .setExampleValue(KEY_FILE_EXAMPLE_001);
+
+    action
+      .createParam(PARAM_MODULE)
+      .setDescription("Project or module key. All the files of the module, including the files of its sub-modules, are returned.")
+      .setExampleValue(KEY_PROJECT_EXAMPLE_001);
+  }
+
+  @Override
+  public void handle(Request request, Response response) throws Exception {
+    List<String> keys = request.paramAsStrings(PARAM_KEYS);
+    String moduleKey = request.param(PARAM_MODULE);
+    checkRequest(keys == null ^ moduleKey == null, "Either '%s' or '%s' must be provided", PARAM_KEYS, PARAM_MODULE);
+
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      List<ComponentDto> files = keys == null ? loadFilesOfModule(dbSession, moduleKey) : loadFiles(dbSession, keys);
+      Map<String, String> keysByUuid = files.stream().collect(MoreCollectors.uniqueIndex(ComponentDto::uuid, ComponentDto::getDbKey));
+
+      response.stream().setMediaType(MediaTypes.PROTOBUF);
+      OutputStream output = response.stream().output();
+      ScannerInput.FileLineHashes.Builder builder = ScannerInput.FileLineHashes.newBuilder();
+      dbClient.fileSourceDao().scrollLineHashes(dbSession, keysByUuid.keySet(), context -> {
+        LineHashesWithUuidDto dto = context.getResultObject();
+        builder.clear()
+          .setFileKey(keysByUuid.get(dto.getUuid()))
+          .setLineHashes(dto.getRawLineHashes() == null ? "" : dto.getRawLineHashes());
+        writeTo(builder.build(), output);
+      });
+    }
+  }
+
+  private List<ComponentDto> loadFiles(DbSession dbSession, List<String> keys) {
+    checkRequest(keys.size() <= MAX_KEYS, "'%s' can contains only %d values, got %d", PARAM_KEYS, MAX_KEYS, keys.size());
+    List<ComponentDto> files = dbClient.componentDao().selectByKeys(dbSession, keys);
+    files.forEach(file -> userSession.checkComponentPermission(USER, file));
+    return files;
+  }
+
+  private List<ComponentDto> loadFilesOfModule(DbSession dbSession, String moduleKey) {
+    ComponentDto module = componentFinder.getByKey(dbSession, moduleKey);
+    checkRequest(Scopes.PROJECT.equals(module.scope()), "Component '%s' must be a project or a module", moduleKey);
+    userSession.checkComponentPermission(USER, module);
+    return dbClient.componentDao().selectDescendants(dbSession, ComponentTreeQuery.builder()
+      .setBaseUuid(module.uuid())
+      .setQualifiers(FILE_QUALIFIERS)
+      .setStrategy(Strategy.LEAVES)
+      .build());
+  }
+
+  private static void writeTo(ScannerInput.FileLineHashes message, OutputStream output) {
+    try {
+      message.writeDelimitedTo(output);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize line hashes of file " + message.getFileKey(), e);
+    }
+  }
+}
@@ -0,0 +1,404 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.protobuf.IssueCacheProtos;
+
+import static org.sonar.core.util.Protobuf.setNullable;
+
+/**
+ * Stores {@link DefaultIssue} on disk as Protocol Buffers messages, grouped in LZ4-compressed blocks.
+ * <p>
+ * Each block is written as a header of two integers (uncompressed and compressed sizes) followed by
+ * the compressed bytes.
+ * </p>
+ */
+public class ProtobufIssueDiskCache implements DiskCache<DefaultIssue> {
+
+  static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+  private static final int BLOCK_HEADER_SIZE = 2 * Integer.BYTES;
+
+  private final File file;
+  private final System2 system2;
+  private final int blockSize;
+  private final LZ4Factory lz4 = LZ4Factory.fastestInstance();
+  private long fileSize = 0L;
+
+  public ProtobufIssueDiskCache(File file, System2 system2) {
+    this(file, system2, DEFAULT_BLOCK_SIZE);
+  }
+
+  ProtobufIssueDiskCache(File file, System2 system2, int blockSize) {
+    this.file = file;
+    this.system2 = system2;
+    this.blockSize = blockSize;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      // only check that file is writable and empty
+      channel.force(false);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write into file: " + file, e);
+    }
+  }
+
+  @Override
+  public CacheAppender<DefaultIssue> newAppender() {
+    return new ProtobufCacheAppender();
+  }
+
+  @Override
+  public CloseableIterator<DefaultIssue> traverse() {
+    return new BlockIterator();
+  }
+
+  private class ProtobufCacheAppender implements CacheAppender<DefaultIssue> {
+    private final FileChannel channel;
+    private final ExposedByteArrayOutputStream block = new ExposedByteArrayOutputStream(blockSize);
+    private final LZ4Compressor compressor = lz4.fastCompressor();
+    private byte[] compressed = new byte[0];
+
+    private ProtobufCacheAppender() {
+      try {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to open file " + file, e);
+      }
+    }
+
+    @Override
+    public CacheAppender<DefaultIssue> append(DefaultIssue issue) {
+      try {
+        toProto(issue).writeDelimitedTo(block);
+        if (block.size() >= blockSize) {
+          flushBlock();
+        }
+        return this;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+    }
+
+    private void flushBlock() throws IOException {
+      if (block.size() == 0) {
+        return;
+      }
+      int maxCompressedLength = compressor.maxCompressedLength(block.size());
+      if (compressed.length < maxCompressedLength) {
+        compressed = new byte[maxCompressedLength];
+      }
+      int compressedLength = compressor.compress(block.buffer(), 0, block.size(), compressed, 0, maxCompressedLength);
+      ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+      header.putInt(block.size()).putInt(compressedLength).flip();
+      ByteBuffer[] buffers = {header, ByteBuffer.wrap(compressed, 0, compressedLength)};
+      long remaining = (long) BLOCK_HEADER_SIZE + compressedLength;
+      while (remaining > 0) {
+        remaining -= channel.write(buffers);
+      }
+
+      fileSize += BLOCK_HEADER_SIZE + compressedLength;
+      block.reset();
+    }
+
+    @Override
+    public void close() {
+      try {
+        flushBlock();
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      } finally {
+        system2.close(channel);
+      }
+    }
+  }
+
+  private class BlockIterator extends CloseableIterator<DefaultIssue> {
+    private final FileChannel channel;
+    private final LZ4FastDecompressor decompressor = lz4.fastDecompressor();
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private long nextOffset = 0L;
+    private InputStream currentBlock = new ByteArrayInputStream(new byte[0]);
+
+    private BlockIterator() {
+      try {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to traverse file: " + file, e);
+      }
+    }
+
+    @CheckForNull
+    @Override
+    protected DefaultIssue doNext() {
+      try {
+        while (true) {
+          IssueCacheProtos.Issue issue = IssueCacheProtos.Issue.parseDelimitedFrom(currentBlock);
+          if (issue != null) {
+            return toDefaultIssue(issue);
+          }
+          if (!readNextBlock()) {
+            return null;
+          }
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file " + file, e);
+      }
+    }
+
+    private boolean readNextBlock() throws IOException {
+      long offset = nextOffset;
+      if (offset >= fileSize) {
+        return false;
+      }
+
+      header.clear();
+      readFully(header, offset);
+      header.flip();
+      int rawLength = header.getInt();
+      int compressedLength = header.getInt();
+      ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+      readFully(compressed, offset + BLOCK_HEADER_SIZE);
+      byte[] raw = new byte[rawLength];
+      decompressor.decompress(compressed.array(), 0, raw, 0, rawLength);
+
+      nextOffset = offset + BLOCK_HEADER_SIZE + compressedLength;
+      currentBlock = new ByteArrayInputStream(raw);
+      return true;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+      long currentPosition = position;
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, currentPosition);
+        if (read < 0) {
+          throw new IllegalStateException("Unexpected end of file " + file);
+        }
+        currentPosition += read;
+      }
+    }
+
+    @Override
+    protected void doClose() throws IOException {
+      channel.close();
+    }
+  }
+
+  private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    private ExposedByteArrayOutputStream(int size) {
+      super(size);
+    }
+
+    private byte[] buffer() {
+      return buf;
+    }
+  }
+
+  static IssueCacheProtos.Issue toProto(DefaultIssue issue) {
+    IssueCacheProtos.Issue.Builder builder = IssueCacheProtos.Issue.newBuilder();
+    setNullable(issue.key(), builder::setKey);
+    setNullable(issue.type(), builder::setRuleType, RuleType::getDbConstant);
+    setNullable(issue.componentUuid(), builder::setComponentUuid);
+    setNullable(issue.componentKey(), builder::setComponentKey);
+    setNullable(issue.moduleUuid(), builder::setModuleUuid);
+    setNullable(issue.moduleUuidPath(), builder::setModuleUuidPath);
+    setNullable(issue.projectUuid(), builder::setProjectUuid);
+    setNullable(issue.projectKey(), builder::setProjectKey);
+    setNullable(issue.ruleKey(), builder::setRuleKey, RuleKey::toString);
+    setNullable(issue.language(), builder::setLanguage);
+    setNullable(issue.severity(), builder::setSeverity);
+    builder.setManualSeverity(issue.manualSeverity());
+    setNullable(issue.message(), builder::setMessage);
+    setNullable(issue.line(), builder::setLine);
+    setNullable(issue.gap(), builder::setGap);
+    setNullable(issue.effort(), builder::setEffort, Duration::toMinutes);
+    setNullable(issue.status(), builder::setStatus);
+    setNullable(issue.resolution(), builder::setResolution);
+    setNullable(issue.assignee(), builder::setAssignee);
+    setNullable(issue.checksum(), builder::setChecksum);
+    builder.putAllAttributes(issue.attributes());
+    setNullable(issue.authorLogin(), builder::setAuthorLogin);
+    for (IssueComment comment : issue.comments()) {
+      builder.addComments(toProto((DefaultIssueComment) comment));
+    }
+    builder.addAllTags(issue.tags());
+    Object locations = issue.getLocations();
+    if (locations != null) {
+      builder.setLocations(((DbIssues.Locations) locations).toByteString());
+    }
+    setNullable(issue.creationDate(), builder::setCreationDate, Date::getTime);
+    setNullable(issue.updateDate(), builder::setUpdateDate, Date::getTime);
+    setNullable(issue.closeDate(), builder::setCloseDate, Date::getTime);
+    FieldDiffs currentChange = issue.currentChange();
+    if (currentChange != null) {
+      builder.setCurrentChange(toProto(currentChange));
+    }
+    for (FieldDiffs change : issue.changes()) {
+      // current change is stored apart, and may have been added multiple times to changes
+      if (change != currentChange) {
+        builder.addChanges(toProto(change));
+      }
+    }
+    builder.setIsNew(issue.isNew());
+    builder.setBeingClosed(issue.isBeingClosed());
+    builder.setOnDisabledRule(issue.isOnDisabledRule());
+    builder.setIsChanged(issue.isChanged());
+    builder.setSendNotifications(issue.mustSendNotifications());
+    setNullable(issue.selectedAt(), builder::setSelectedAt);
+    return builder.build();
+  }
+
+  private static IssueCacheProtos.Comment toProto(DefaultIssueComment comment) {
+    IssueCacheProtos.Comment.Builder builder = IssueCacheProtos.Comment.newBuilder();
+    setNullable(comment.issueKey(), builder::setIssueKey);
+    setNullable(comment.userLogin(), builder::setUserLogin);
+    setNullable(comment.createdAt(), builder::setCreatedAt, Date::getTime);
+    setNullable(comment.updatedAt(), builder::setUpdatedAt, Date::getTime);
+    setNullable(comment.key(), builder::setKey);
+    setNullable(comment.markdownText(), builder::setMarkdownText);
+    builder.setIsNew(comment.isNew());
+    return builder.build();
+  }
+
+  private static IssueCacheProtos.FieldDiffs toProto(FieldDiffs fieldDiffs) {
+    IssueCacheProtos.FieldDiffs.Builder builder = IssueCacheProtos.FieldDiffs.newBuilder();
+    setNullable(fieldDiffs.issueKey(), builder::setIssueKey);
+    setNullable(fieldDiffs.userLogin(), builder::setUserLogin);
+    setNullable(fieldDiffs.creationDate(), builder::setCreationDate, Date::getTime);
+    for (Map.Entry<String, FieldDiffs.Diff> entry : fieldDiffs.diffs().entrySet()) {
+      IssueCacheProtos.Diff.Builder diffBuilder = IssueCacheProtos.Diff.newBuilder().setField(entry.getKey());
+      setNullable(entry.getValue().oldValue(), diffBuilder::setOldValue, Object::toString);
+      setNullable(entry.getValue().newValue(), diffBuilder::setNewValue, Object::toString);
+      builder.addDiffs(diffBuilder);
+    }
+    return builder.build();
+  }
+
+  static DefaultIssue toDefaultIssue(IssueCacheProtos.Issue proto) {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(proto.hasKey() ? proto.getKey() : null);
+    issue.setType(proto.hasRuleType() ? RuleType.valueOf(proto.getRuleType()) : null);
+    issue.setComponentUuid(proto.hasComponentUuid() ? proto.getComponentUuid() : null);
+    issue.setComponentKey(proto.hasComponentKey() ? proto.getComponentKey() : null);
+    issue.setModuleUuid(proto.hasModuleUuid() ? proto.getModuleUuid() : null);
+    issue.setModuleUuidPath(proto.hasModuleUuidPath() ? proto.getModuleUuidPath() : null);
+    issue.setProjectUuid(proto.hasProjectUuid() ? proto.getProjectUuid() : null);
+    issue.setProjectKey(proto.hasProjectKey() ? proto.getProjectKey() : null);
+    issue.setRuleKey(proto.hasRuleKey() ? RuleKey.parse(proto.getRuleKey()) : null);
+    issue.setLanguage(proto.hasLanguage() ? proto.getLanguage() : null);
+    issue.setSeverity(proto.hasSeverity() ? proto.getSeverity() : null);
+    issue.setManualSeverity(proto.getManualSeverity());
+    issue.setMessage(proto.hasMessage() ? proto.getMessage() : null);
+    issue.setLine(proto.hasLine() ? proto.getLine() : null);
+    issue.setGap(proto.hasGap() ? proto.getGap() : null);
+    issue.setEffort(proto.hasEffort() ? Duration.create(proto.getEffort()) : null);
+    if (proto.hasStatus()) {
+      issue.setStatus(proto.getStatus());
+    }
+    issue.setResolution(proto.hasResolution() ? proto.getResolution() : null);
+    issue.setAssignee(proto.hasAssignee() ? proto.getAssignee() : null);
+    issue.setChecksum(proto.hasChecksum() ? proto.getChecksum() : null);
+    if (!proto.getAttributes().isEmpty()) {
+      issue.setAttributes(proto.getAttributes());
+    }
+    issue.setAuthorLogin(proto.hasAuthorLogin() ? proto.getAuthorLogin() : null);
+    for (IssueCacheProtos.Comment comment : proto.getCommentsList()) {
+      issue.addComment(toDefaultIssueComment(comment));
+    }
+    if (proto.getTagsCount() > 0) {
+      issue.setTags(proto.getTagsList());
+    }
+    if (proto.hasLocations()) {
+      try {
+        issue.setLocations(DbIssues.Locations.parseFrom(proto.getLocations()));
+      } catch (InvalidProtocolBufferException e) {
+        throw new IllegalStateException("Fail to read locations of issue " + proto.getKey(), e);
+      }
+    }
+    issue.setCreationDate(proto.hasCreationDate() ? new Date(proto.getCreationDate()) : null);
+    issue.setUpdateDate(proto.hasUpdateDate() ? new Date(proto.getUpdateDate()) : null);
+    issue.setCloseDate(proto.hasCloseDate() ? new Date(proto.getCloseDate()) : null);
+    if (proto.getChangesCount() > 0) {
+      List<FieldDiffs> changes = new ArrayList<>(proto.getChangesCount() + 1);
+      for (IssueCacheProtos.FieldDiffs change : proto.getChangesList()) {
+        changes.add(toFieldDiffs(change));
+      }
+      issue.setChanges(changes);
+    }
+    if (proto.hasCurrentChange()) {
+      issue.setCurrentChange(toFieldDiffs(proto.getCurrentChange()));
+    }
+    issue.setNew(proto.getIsNew());
+    issue.setBeingClosed(proto.getBeingClosed());
+    issue.setOnDisabledRule(proto.getOnDisabledRule());
+    issue.setChanged(proto.getIsChanged());
+    issue.setSendNotifications(proto.getSendNotifications());
+    issue.setSelectedAt(proto.hasSelectedAt() ? proto.getSelectedAt() : null);
+    return issue;
+  }
+
+  private static DefaultIssueComment toDefaultIssueComment(IssueCacheProtos.Comment proto) {
+    return new DefaultIssueComment()
+      .setIssueKey(proto.hasIssueKey() ? proto.getIssueKey() : null)
+      .setUserLogin(proto.hasUserLogin() ? proto.getUserLogin() : null)
+      .setCreatedAt(proto.hasCreatedAt() ? new Date(proto.getCreatedAt()) : null)
+      .setUpdatedAt(proto.hasUpdatedAt() ? new Date(proto.getUpdatedAt()) : null)
+      .setKey(proto.hasKey() ? proto.getKey() : null)
+      .setMarkdownText(proto.hasMarkdownText() ? proto.getMarkdownText() : null)
+      .setNew(proto.getIsNew());
+  }
+
+  private static FieldDiffs toFieldDiffs(IssueCacheProtos.FieldDiffs proto) {
+    FieldDiffs fieldDiffs = new FieldDiffs()
+      .setIssueKey(proto.hasIssueKey() ? proto.getIssueKey() : null)
+      .setUserLogin(proto.hasUserLogin() ? proto.getUserLogin() : null)
+      .setCreationDate(proto.hasCreationDate() ? new Date(proto.getCreationDate()) : null);
+    for (IssueCacheProtos.Diff diff : proto.getDiffsList()) {
+      fieldDiffs.setDiff(diff.getField(),
+        diff.hasOldValue() ? diff.getOldValue() : null,
+        diff.hasNewValue() ? diff.getNewValue() : null);
+    }
+    return fieldDiffs;
+  }
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.ce.queue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import javax.annotation.Nullable;
@@ -42,6 +43,10 @@ import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 
 public class CeQueueImplTest {
 
@@ -60,7 +65,8 @@ public class CeQueueImplTest {
   private UuidFactory uuidFactory = UuidFactoryImpl.INSTANCE;
   private DefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(dbTester);
 
-  private CeQueue underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider);
+  private CeQueue underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider,
+    new DbReportSpool(dbTester.getDbClient()));
 
   @Test
   public void submit_returns_task_populated_from_CeTaskSubmit_and_creates_CeQueue_row() {
@@ -142,6 +148,21 @@ public class CeQueueImplTest {
     assertThat(activity.get().getStatus()).isEqualTo(CeActivityDto.Status.CANCELED);
   }
 
+  @Test
+  public void report_is_deleted_after_task_is_removed_from_queue() {
+    ReportSpool reportSpool = mock(ReportSpool.class);
+    List<Integer> queueSizesOnDelete = new ArrayList<>();
+    doAnswer(invocation -> queueSizesOnDelete.add(dbTester.countRowsOfTable("ce_queue")))
+      .when(reportSpool).delete(any(DbSession.class), anyCollection());
+    underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider, reportSpool);
+    CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
+
+    underTest.cancel(task.getUuid());
+
+    // the deletion of the queue row is already committed
+    assertThat(queueSizesOnDelete).containsExactly(0);
+  }
+
   @Test
   public void fail_to_cancel_if_in_progress() throws Exception {
     expectedException.expect(IllegalStateException.class);
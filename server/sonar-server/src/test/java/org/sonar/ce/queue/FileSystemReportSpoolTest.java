@@ -0,0 +1,142 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.TestSystem2;
+import org.sonar.db.DbTester;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileSystemReportSpoolTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+
+  private TestSystem2 system2 = new TestSystem2().setNow(System.currentTimeMillis() + 2 * FileSystemReportSpool.ORPHAN_GRACE_PERIOD_MS);
+  private Path dir;
+  private FileSystemReportSpool underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = new File(temp.newFolder(), "reports").toPath();
+    underTest = new FileSystemReportSpool(dbTester.getDbClient(), system2, dir);
+  }
+
+  @Test
+  public void create_directory_if_missing() {
+    assertThat(dir).isDirectory();
+  }
+
+  @Test
+  public void write_and_read_report() throws IOException {
+    underTest.write(dbTester.getSession(), "TASK_1", IOUtils.toInputStream("{binary}", UTF_8));
+
+    assertThat(underTest.fileOf("TASK_1")).hasContent("{binary}");
+    assertThat(readReport("TASK_1")).isEqualTo("{binary}");
+    // no temporary file is left
+    assertThat(dir.toFile().list()).containsOnly("TASK_1.zip");
+  }
+
+  @Test
+  public void write_replaces_existing_report() throws IOException {
+    underTest.write(dbTester.getSession(), "TASK_1", IOUtils.toInputStream("{first}", UTF_8));
+    underTest.write(dbTester.getSession(), "TASK_1", IOUtils.toInputStream("{second}", UTF_8));
+
+    assertThat(readReport("TASK_1")).isEqualTo("{second}");
+  }
+
+  @Test
+  public void read_returns_empty_if_report_does_not_exist() {
+    assertThat(underTest.read(dbTester.getSession(), "TASK_1")).isEmpty();
+  }
+
+  @Test
+  public void delete_reports() throws IOException {
+    underTest.write(dbTester.getSession(), "TASK_1", IOUtils.toInputStream("{binary}", UTF_8));
+    underTest.write(dbTester.getSession(), "TASK_2", IOUtils.toInputStream("{binary}", UTF_8));
+
+    underTest.delete(dbTester.getSession(), asList("TASK_1", "TASK_3"));
+
+    assertThat(underTest.read(dbTester.getSession(), "TASK_1")).isEmpty();
+    assertThat(readReport("TASK_2")).isEqualTo("{binary}");
+  }
+
+  @Test
+  public void deleteOrphans_deletes_reports_and_temporary_files_of_tasks_which_are_not_in_queue() throws IOException {
+    insertInQueue("TASK_1");
+    underTest.write(dbTester.getSession(), "TASK_1", IOUtils.toInputStream("{binary}", UTF_8));
+    underTest.write(dbTester.getSession(), "TASK_2", IOUtils.toInputStream("{binary}", UTF_8));
+    Files.write(dir.resolve("TASK_3.zip.tmp"), "{partial}".getBytes(UTF_8));
+
+    underTest.deleteOrphans(dbTester.getSession());
+
+    assertThat(readReport("TASK_1")).isEqualTo("{binary}");
+    assertThat(underTest.fileOf("TASK_2")).doesNotExist();
+    assertThat(dir.resolve("TASK_3.zip.tmp")).doesNotExist();
+  }
+
+  @Test
+  public void deleteOrphans_does_not_delete_recent_files_which_may_be_reports_being_submitted() throws IOException {
+    underTest.write(dbTester.getSession(), "TASK_1", IOUtils.toInputStream("{binary}", UTF_8));
+    Files.write(dir.resolve("TASK_2.zip.tmp"), "{partial}".getBytes(UTF_8));
+    system2.setNow(System.currentTimeMillis());
+
+    underTest.deleteOrphans(dbTester.getSession());
+
+    assertThat(readReport("TASK_1")).isEqualTo("{binary}");
+    assertThat(dir.resolve("TASK_2.zip.tmp")).exists();
+  }
+
+  private String readReport(String taskUuid) throws IOException {
+    Optional<ReportSpool.Report> report = underTest.read(dbTester.getSession(), taskUuid);
+    assertThat(report).isPresent();
+    try (ReportSpool.Report r = report.get(); InputStream input = r.getInputStream()) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+
+  private void insertInQueue(String taskUuid) {
+    CeQueueDto dto = new CeQueueDto();
+    dto.setTaskType(CeTaskTypes.REPORT);
+    dto.setComponentUuid("PROJECT_1");
+    dto.setUuid(taskUuid);
+    dto.setStatus(CeQueueDto.Status.PENDING);
+    dbTester.getDbClient().ceQueueDao().insert(dbTester.getSession(), dto);
+    dbTester.getSession().commit();
+  }
+}
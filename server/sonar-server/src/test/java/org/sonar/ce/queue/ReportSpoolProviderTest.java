@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.io.File;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.server.platform.ServerFileSystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReportSpoolProviderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private MapSettings settings = new MapSettings();
+  private DbClient dbClient = mock(DbClient.class);
+  private ServerFileSystem fs = mock(ServerFileSystem.class);
+  private File homeDir;
+  private File dataDir;
+  private ReportSpoolProvider underTest = new ReportSpoolProvider();
+
+  @Before
+  public void setUp() throws Exception {
+    homeDir = temp.newFolder();
+    dataDir = temp.newFolder();
+    when(fs.getHomeDir()).thenReturn(homeDir);
+    when(fs.getDataDir()).thenReturn(dataDir);
+  }
+
+  @Test
+  public void reports_are_stored_in_database_by_default() {
+    assertThat(underTest.provide(settings.asConfig(), dbClient, System2.INSTANCE, fs)).isInstanceOf(DbReportSpool.class);
+  }
+
+  @Test
+  public void reports_are_stored_in_data_directory_if_path_is_not_set() {
+    settings.setProperty(ReportSpool.TYPE_PROPERTY, ReportSpool.TYPE_FILESYSTEM);
+
+    ReportSpool spool = underTest.provide(settings.asConfig(), dbClient, System2.INSTANCE, fs);
+
+    assertThat(spool).isInstanceOf(FileSystemReportSpool.class);
+    assertThat(((FileSystemReportSpool) spool).fileOf("TASK_1")).isEqualTo(new File(dataDir, "ce/reports/TASK_1.zip").toPath());
+  }
+
+  @Test
+  public void relative_path_is_resolved_from_home_directory() {
+    settings.setProperty(ReportSpool.TYPE_PROPERTY, ReportSpool.TYPE_FILESYSTEM);
+    settings.setProperty(ReportSpool.PATH_PROPERTY, "shared/reports");
+
+    ReportSpool spool = underTest.provide(settings.asConfig(), dbClient, System2.INSTANCE, fs);
+
+    assertThat(((FileSystemReportSpool) spool).fileOf("TASK_1")).isEqualTo(new File(homeDir, "shared/reports/TASK_1.zip").toPath());
+  }
+
+  @Test
+  public void provide_always_returns_the_same_instance() {
+    ReportSpool spool = underTest.provide(settings.asConfig(), dbClient, System2.INSTANCE, fs);
+
+    assertThat(underTest.provide(settings.asConfig(), dbClient, System2.INSTANCE, fs)).isSameAs(spool);
+  }
+
+  @Test
+  public void fail_if_type_is_not_supported() {
+    settings.setProperty(ReportSpool.TYPE_PROPERTY, "s3");
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Unsupported value of property sonar.ce.reportSpool: s3");
+
+    underTest.provide(settings.asConfig(), dbClient, System2.INSTANCE, fs);
+  }
+}
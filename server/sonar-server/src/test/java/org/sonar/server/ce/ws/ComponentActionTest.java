@@ -106,6 +106,41 @@ public class ComponentActionTest {
     assertThat(response.getCurrent().getIncremental()).isFalse();
   }
 
+  @Test
+  public void purge_tasks_are_ignored() {
+    ComponentDto project = db.components().insertPrivateProject();
+    userSession.addProjectPermission(UserRole.USER, project);
+    insertActivity("T1", project, CeActivityDto.Status.SUCCESS);
+    insertActivity("T2", project, CeActivityDto.Status.FAILED);
+    // purge submitted by the analysis T2, before it failed
+    insertActivity("T3", project, CeTaskTypes.PROJECT_PURGE, CeActivityDto.Status.SUCCESS, null);
+    insertQueue("T4", project, CeQueueDto.Status.PENDING);
+    insertQueue("T5", project, CeTaskTypes.PROJECT_PURGE, CeQueueDto.Status.PENDING);
+
+    WsCe.ProjectResponse response = ws.newRequest()
+      .setParam("componentId", project.uuid())
+      .executeProtobuf(WsCe.ProjectResponse.class);
+
+    assertThat(response.getQueueList()).extracting(WsCe.Task::getId).containsExactly("T4");
+    assertThat(response.getCurrent().getId()).isEqualTo("T2");
+    assertThat(response.getCurrent().getStatus()).isEqualTo(WsCe.TaskStatus.FAILED);
+  }
+
+  @Test
+  public void no_current_task_if_project_has_only_purge_tasks() {
+    ComponentDto project = db.components().insertPrivateProject();
+    userSession.addProjectPermission(UserRole.USER, project);
+    insertActivity("T1", project, CeTaskTypes.PROJECT_PURGE, CeActivityDto.Status.SUCCESS, null);
+    insertQueue("T2", project, CeTaskTypes.PROJECT_PURGE, CeQueueDto.Status.PENDING);
+
+    WsCe.ProjectResponse response = ws.newRequest()
+      .setParam("componentId", project.uuid())
+      .executeProtobuf(WsCe.ProjectResponse.class);
+
+    assertThat(response.getQueueCount()).isZero();
+    assertThat(response.hasCurrent()).isFalse();
+  }
+
   @Test
   public void search_tasks_by_component_key() {
     ComponentDto project = db.components().insertPrivateProject();
@@ -229,8 +264,12 @@ public class ComponentActionTest {
   }
 
   private CeQueueDto insertQueue(String taskUuid, ComponentDto component, CeQueueDto.Status status) {
+    return insertQueue(taskUuid, component, CeTaskTypes.REPORT, status);
+  }
+
+  private CeQueueDto insertQueue(String taskUuid, ComponentDto component, String taskType, CeQueueDto.Status status) {
     CeQueueDto queueDto = new CeQueueDto();
-    queueDto.setTaskType(CeTaskTypes.REPORT);
+    queueDto.setTaskType(taskType);
     queueDto.setComponentUuid(component.uuid());
     queueDto.setUuid(taskUuid);
     queueDto.setStatus(status);
@@ -244,8 +283,12 @@ public class ComponentActionTest {
   }
 
   private CeActivityDto insertActivity(String taskUuid, ComponentDto component, CeActivityDto.Status status, @Nullable SnapshotDto analysis) {
+    return insertActivity(taskUuid, component, CeTaskTypes.REPORT, status, analysis);
+  }
+
+  private CeActivityDto insertActivity(String taskUuid, ComponentDto component, String taskType, CeActivityDto.Status status, @Nullable SnapshotDto analysis) {
     CeQueueDto queueDto = new CeQueueDto();
-    queueDto.setTaskType(CeTaskTypes.REPORT);
+    queueDto.setTaskType(taskType);
     queueDto.setComponentUuid(component.uuid());
     queueDto.setUuid(taskUuid);
     CeActivityDto activityDto = new CeActivityDto(queueDto);
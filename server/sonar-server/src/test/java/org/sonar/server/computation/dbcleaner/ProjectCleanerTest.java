@@ -37,6 +37,7 @@ import org.sonar.db.purge.PurgeProfiler;
 import org.sonar.db.purge.period.DefaultPeriodCleaner;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
@@ -44,6 +45,7 @@ import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 public class ProjectCleanerTest {
 
@@ -104,4 +106,13 @@ public class ProjectCleanerTest {
 
     verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Configuration.class));
   }
+
+  @Test
+  public void purgeDisabledComponents_purges_only_disabled_components() {
+    underTest.purgeDisabledComponents(mock(DbSession.class), mock(IdUuidPair.class), settings.asConfig(), singletonList("FILE_1"));
+
+    verify(dao).purgeDisabledComponents(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+    verify(dao, never()).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+    verifyZeroInteractions(periodCleaner);
+  }
 }
@@ -35,6 +35,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.ce.queue.CeQueue;
 import org.sonar.ce.queue.CeQueueImpl;
 import org.sonar.ce.queue.CeTaskSubmit;
+import org.sonar.ce.queue.DbReportSpool;
 import org.sonar.core.permission.GlobalPermissions;
 import org.sonar.core.util.SequenceUuidFactory;
 import org.sonar.core.util.UuidFactory;
@@ -92,7 +93,8 @@ public class ReportSubmitterTest {
   private FavoriteUpdater favoriteUpdater = mock(FavoriteUpdater.class);
   private UuidFactory uuidFactory = new SequenceUuidFactory();
 
-  private ReportSubmitter underTest = new ReportSubmitter(queue, userSession, componentUpdater, permissionTemplateService, uuidFactory, db.getDbClient());
+  private ReportSubmitter underTest = new ReportSubmitter(queue, userSession, componentUpdater, permissionTemplateService, uuidFactory, db.getDbClient(),
+    new DbReportSpool(db.getDbClient()));
 
   @Before
   public void setUp() throws Exception {
@@ -197,6 +197,55 @@ public class TreeRootHolderImplTest {
     assertThat(underTest.hasComponentWithKey("toto")).isFalse();
   }
 
+  @Test
+  public void getSize_throws_ISE_if_root_has_not_been_set() {
+    expectNotInitialized_ISE();
+
+    underTest.getSize();
+  }
+
+  @Test
+  public void getSize_returns_number_of_components_in_the_tree() {
+    underTest.setRoot(SOME_REPORT_COMPONENT_TREE);
+
+    assertThat(underTest.getSize()).isEqualTo(4);
+  }
+
+  @Test
+  public void getComponentOrdinal_throws_ISE_if_root_has_not_been_set() {
+    expectNotInitialized_ISE();
+
+    underTest.getComponentOrdinal(DUMB_PROJECT);
+  }
+
+  @Test
+  public void getComponentOrdinal_returns_pre_order_index_of_report_components() {
+    underTest.setRoot(SOME_REPORT_COMPONENT_TREE);
+
+    for (int ref = 1; ref <= 4; ref++) {
+      assertThat(underTest.getComponentOrdinal(underTest.getComponentByRef(ref))).isEqualTo(ref - 1);
+    }
+  }
+
+  @Test
+  public void getComponentOrdinal_returns_pre_order_index_of_views_components() {
+    underTest.setRoot(SOME_VIEWS_COMPONENT_TREE);
+
+    for (int i = 1; i <= 3; i++) {
+      assertThat(underTest.getComponentOrdinal(underTest.getComponentByKey(String.valueOf(i)))).isEqualTo(i - 1);
+    }
+  }
+
+  @Test
+  public void getComponentOrdinal_throws_IAE_if_component_is_not_in_the_tree() {
+    underTest.setRoot(SOME_REPORT_COMPONENT_TREE);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Component with key 'foo' can't be found");
+
+    underTest.getComponentOrdinal(ReportComponent.builder(FILE, 5).setKey("foo").build());
+  }
+
   private void expectNotInitialized_ISE() {
     expectedException.expect(IllegalStateException.class);
     expectedException.expectMessage("Holder has not been initialized yet");
@@ -54,4 +54,14 @@ public class TreeRootHolderRule extends ExternalResource implements TreeRootHold
   public boolean hasComponentWithKey(String key) {
     return delegate.hasComponentWithKey(key);
   }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public int getComponentOrdinal(Component component) {
+    return delegate.getComponentOrdinal(component);
+  }
 }
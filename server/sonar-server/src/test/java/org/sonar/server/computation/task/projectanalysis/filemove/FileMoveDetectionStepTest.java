@@ -23,13 +23,17 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -41,7 +45,7 @@ import org.sonar.db.component.ComponentDao;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.source.FileSourceDao;
-import org.sonar.db.source.FileSourceDto;
+import org.sonar.db.source.LineHashesWithUuidDto;
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -55,6 +59,7 @@ import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonar.api.resources.Qualifiers.FILE;
@@ -228,6 +233,7 @@ public class FileMoveDetectionStepTest {
   private ComponentDao componentDao = mock(ComponentDao.class);
   private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
   private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+  private Map<String, LineHashesWithUuidDto> lineHashesByFileUuidInDb = new HashMap<>();
   private long dbIdGenerator = 0;
 
   private FileMoveDetectionStep underTest = new FileMoveDetectionStep(analysisMetadataHolder, treeRootHolder, dbClient,
@@ -238,6 +244,10 @@ public class FileMoveDetectionStepTest {
     when(dbClient.openSession(false)).thenReturn(dbSession);
     when(dbClient.componentDao()).thenReturn(componentDao);
     when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
+    doAnswer(invocation -> {
+      scrollLineHashesInDb((Collection<String>) invocation.getArguments()[1], (ResultHandler<LineHashesWithUuidDto>) invocation.getArguments()[2]);
+      return null;
+    }).when(fileSourceDao).scrollLineHashes(eq(dbSession), any(Collection.class), any(ResultHandler.class));
     treeRootHolder.setRoot(PROJECT);
   }
 
@@ -508,14 +518,24 @@ public class FileMoveDetectionStepTest {
   }
 
   private void mockContentOfFileInDb(String key, @Nullable String[] content) {
-    FileSourceDto dto = new FileSourceDto();
+    LineHashesWithUuidDto dto = new LineHashesWithUuidDto().setUuid(componentUuidOf(key));
     if (content != null) {
       SourceLinesHashesComputer linesHashesComputer = new SourceLinesHashesComputer();
       stream(content).forEach(linesHashesComputer::addLine);
-      dto.setLineHashes(on('\n').join(linesHashesComputer.getLineHashes()));
+      dto.setRawLineHashes(on('\n').join(linesHashesComputer.getLineHashes()));
     }
+    lineHashesByFileUuidInDb.put(dto.getUuid(), dto);
+  }
 
-    when(fileSourceDao.selectSourceByFileUuid(dbSession, componentUuidOf(key))).thenReturn(dto);
+  private void scrollLineHashesInDb(Collection<String> fileUuids, ResultHandler<LineHashesWithUuidDto> handler) {
+    DefaultResultContext<LineHashesWithUuidDto> resultContext = new DefaultResultContext<>();
+    fileUuids.stream()
+      .map(lineHashesByFileUuidInDb::get)
+      .filter(Objects::nonNull)
+      .forEach(dto -> {
+        resultContext.nextResultObject(dto);
+        handler.handleResult(resultContext);
+      });
   }
 
   private void setFilesInReport(Component... files) {
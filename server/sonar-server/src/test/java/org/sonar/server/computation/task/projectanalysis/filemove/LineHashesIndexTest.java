@@ -0,0 +1,135 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.nCopies;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+public class LineHashesIndexTest {
+
+  private SourceSimilarityImpl sourceSimilarity = new SourceSimilarityImpl();
+
+  @Test
+  public void getCandidates_returns_files_with_same_content() {
+    LineHashesIndex underTest = new LineHashesIndex(asList(
+      file("a", "b", "c"),
+      file("d", "e", "f"),
+      file("a", "b", "c")));
+
+    assertThat(underTest.getCandidates(asList("a", "b", "c"))).containsExactly(0, 2);
+    assertThat(underTest.getCandidates(asList("d", "e", "f"))).containsExactly(1);
+    assertThat(underTest.getCandidates(asList("g", "h", "i"))).isEmpty();
+  }
+
+  @Test
+  public void getCandidates_ignores_files_with_too_different_sizes() {
+    List<String> lines = lines(100);
+    LineHashesIndex underTest = new LineHashesIndex(asList(
+      file(lines.subList(0, 84)),
+      file(lines.subList(0, 85)),
+      file(lines)));
+
+    assertThat(underTest.getCandidates(lines)).containsExactly(1, 2);
+  }
+
+  @Test
+  public void getCandidates_distinguishes_occurrences_of_same_line() {
+    LineHashesIndex underTest = new LineHashesIndex(asList(
+      file(nCopies(10, "a")),
+      file(nCopies(1, "a"))));
+
+    assertThat(underTest.getCandidates(nCopies(10, "a"))).containsExactly(0);
+  }
+
+  @Test
+  public void getCandidates_never_returns_empty_files() {
+    LineHashesIndex underTest = new LineHashesIndex(asList(file(), file("a")));
+
+    assertThat(underTest.getCandidates(emptyList())).isEmpty();
+    assertThat(underTest.getCandidates(asList("a"))).containsExactly(1);
+  }
+
+  @Test
+  public void getCandidates_contains_every_file_reaching_min_required_score() {
+    Random random = new Random(42);
+    List<FileSimilarity.File> files = new ArrayList<>();
+    List<String> original = lines(200);
+    for (int i = 0; i < 300; i++) {
+      files.add(file(mutate(original.subList(0, 20 + random.nextInt(180)), random)));
+    }
+    LineHashesIndex underTest = new LineHashesIndex(files);
+
+    for (int i = 0; i < 50; i++) {
+      List<String> lineHashes = mutate(original.subList(0, 20 + random.nextInt(180)), random);
+      List<Integer> expected = IntStream.range(0, files.size())
+        .filter(file -> sourceSimilarity.score(lineHashes, files.get(file).getLineHashes()) >= MIN_REQUIRED_SCORE)
+        .boxed()
+        .collect(toList());
+
+      assertThat(IntStream.of(underTest.getCandidates(lineHashes)).boxed().collect(toList())).containsAll(expected);
+    }
+  }
+
+  private static List<String> mutate(List<String> lines, Random random) {
+    List<String> res = new ArrayList<>(lines);
+    int changes = random.nextInt(1 + lines.size() / 5);
+    for (int i = 0; i < changes; i++) {
+      int index = random.nextInt(res.size());
+      switch (random.nextInt(3)) {
+        case 0:
+          res.remove(index);
+          break;
+        case 1:
+          res.add(index, "added" + random.nextInt(10));
+          break;
+        default:
+          res.set(index, "changed" + random.nextInt(10));
+      }
+    }
+    return res;
+  }
+
+  private static List<String> lines(int count) {
+    List<String> res = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      // a few duplicated lines, as in actual source files
+      res.add("line" + (i % 7 == 0 ? 0 : i));
+    }
+    return res;
+  }
+
+  private static FileSimilarity.File file(String... lineHashes) {
+    return file(asList(lineHashes));
+  }
+
+  private static FileSimilarity.File file(List<String> lineHashes) {
+    return new FileSimilarity.File("path", lineHashes);
+  }
+}
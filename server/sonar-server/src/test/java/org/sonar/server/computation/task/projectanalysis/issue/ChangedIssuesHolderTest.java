@@ -0,0 +1,76 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.db.es.EsQueueDto;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangedIssuesHolderTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private ChangedIssuesHolder underTest = new ChangedIssuesHolder();
+
+  @Test
+  public void set_items() {
+    EsQueueDto item = EsQueueDto.create("issues/issue", "I1", "issueKey", "P1");
+    underTest.setEsQueueItems(singletonList(item));
+
+    assertThat(underTest.isInitialized()).isTrue();
+    assertThat(underTest.getEsQueueItems()).containsExactly(item);
+  }
+
+  @Test
+  public void is_not_initialized_by_default() {
+    assertThat(underTest.isInitialized()).isFalse();
+  }
+
+  @Test
+  public void fail_with_NPE_when_setting_null_items() {
+    thrown.expect(NullPointerException.class);
+    thrown.expectMessage("Items cannot be null");
+
+    underTest.setEsQueueItems(null);
+  }
+
+  @Test
+  public void fail_with_ISE_when_setting_items_twice() {
+    underTest.setEsQueueItems(singletonList(EsQueueDto.create("issues/issue", "I1")));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Items have already been initialized");
+
+    underTest.setEsQueueItems(singletonList(EsQueueDto.create("issues/issue", "I2")));
+  }
+
+  @Test
+  public void fail_with_ISE_when_getting_items_before_initialization() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Items have not been initialized yet");
+
+    underTest.getEsQueueItems();
+  }
+}
@@ -23,6 +23,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.SetMultimap;
 import com.tngtech.java.junit.dataprovider.DataProvider;
 import com.tngtech.java.junit.dataprovider.DataProviderRunner;
 import com.tngtech.java.junit.dataprovider.UseDataProvider;
@@ -45,6 +46,7 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.Developer;
 import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
@@ -60,7 +62,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @RunWith(DataProviderRunner.class)
-public class MapBasedRawMeasureRepositoryTest {
+public class ColumnarRawMeasureRepositoryTest {
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
   @Rule
@@ -69,6 +71,10 @@ public class MapBasedRawMeasureRepositoryTest {
   private static final String FILE_COMPONENT_KEY = "file cpt key";
   private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey(FILE_COMPONENT_KEY).build();
   private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 2).setKey("some other key").build();
+  private static final ReportComponent PROJECT = ReportComponent.builder(Component.Type.PROJECT, 3).addChildren(FILE_COMPONENT, OTHER_COMPONENT).build();
+
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(PROJECT);
 
   private static final String METRIC_KEY_1 = "metric 1";
   private static final String METRIC_KEY_2 = "metric 2";
@@ -83,16 +89,11 @@ public class MapBasedRawMeasureRepositoryTest {
   private ReportMetricValidator reportMetricValidator = mock(ReportMetricValidator.class);
 
   private MetricRepository metricRepository = mock(MetricRepository.class);
-  private MapBasedRawMeasureRepository<Integer> underTest = new MapBasedRawMeasureRepository<>(new Function<Component, Integer>() {
-    @Override
-    public Integer apply(Component component) {
-      return component.getReportAttributes().getRef();
-    }
-  });
+  private ColumnarRawMeasureRepository underTest = new ColumnarRawMeasureRepository(treeRootHolder);
 
   private DbClient mockedDbClient = mock(DbClient.class);
   private BatchReportReader mockBatchReportReader = mock(BatchReportReader.class);
-  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator, treeRootHolder);
 
   @Before
   public void setUp() {
@@ -291,4 +292,79 @@ public class MapBasedRawMeasureRepositoryTest {
     assertThat(measures.iterator().next()).isSameAs(devMeasure);
   }
 
+  @Test
+  public void getRawMeasure_returns_numeric_measures_with_their_value_and_variation() {
+    MetricImpl intMetric = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+    MetricImpl longMetric = new MetricImpl(2, "long", "long", Metric.MetricType.WORK_DUR);
+    MetricImpl doubleMetric = new MetricImpl(3, "double", "double", Metric.MetricType.FLOAT);
+    MetricImpl booleanMetric = new MetricImpl(4, "boolean", "boolean", Metric.MetricType.BOOL);
+
+    underTest.add(FILE_COMPONENT, intMetric, Measure.newMeasureBuilder().setVariation(-2d).create(12));
+    underTest.add(FILE_COMPONENT, longMetric, Measure.newMeasureBuilder().create(123_456_789_012L));
+    underTest.add(FILE_COMPONENT, doubleMetric, Measure.newMeasureBuilder().create(1.23456d, 3));
+    underTest.add(OTHER_COMPONENT, booleanMetric, Measure.newMeasureBuilder().create(true));
+
+    Measure intMeasure = underTest.getRawMeasure(FILE_COMPONENT, intMetric).get();
+    assertThat(intMeasure.getIntValue()).isEqualTo(12);
+    assertThat(intMeasure.getVariation()).isEqualTo(-2d);
+    Measure longMeasure = underTest.getRawMeasure(FILE_COMPONENT, longMetric).get();
+    assertThat(longMeasure.getLongValue()).isEqualTo(123_456_789_012L);
+    assertThat(longMeasure.hasVariation()).isFalse();
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, doubleMetric).get().getDoubleValue()).isEqualTo(1.235d);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, booleanMetric).get().getBooleanValue()).isTrue();
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, intMetric)).isAbsent();
+    assertThat(underTest.getRawMeasure(PROJECT, intMetric)).isAbsent();
+  }
+
+  @Test
+  public void update_numeric_measure_with_variation() {
+    MetricImpl intMetric = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+    Measure measure = Measure.newMeasureBuilder().create(12, "some data");
+    underTest.add(FILE_COMPONENT, intMetric, measure);
+
+    underTest.update(FILE_COMPONENT, intMetric, Measure.updatedMeasureBuilder(measure).setVariation(3d).create());
+
+    Measure updated = underTest.getRawMeasure(FILE_COMPONENT, intMetric).get();
+    assertThat(updated.getIntValue()).isEqualTo(12);
+    assertThat(updated.getData()).isEqualTo("some data");
+    assertThat(updated.getVariation()).isEqualTo(3d);
+
+    underTest.update(FILE_COMPONENT, intMetric, Measure.newMeasureBuilder().create(5));
+
+    updated = underTest.getRawMeasure(FILE_COMPONENT, intMetric).get();
+    assertThat(updated.getIntValue()).isEqualTo(5);
+    assertThat(updated.getData()).isNull();
+    assertThat(updated.hasVariation()).isFalse();
+
+    underTest.update(FILE_COMPONENT, intMetric, Measure.newMeasureBuilder().createNoValue());
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getValueType()).isEqualTo(Measure.ValueType.NO_VALUE);
+  }
+
+  @Test
+  public void add_does_not_override_existing_measure_with_DO_NOT_OVERRIDE_policy() {
+    MetricImpl intMetric = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+    underTest.add(FILE_COMPONENT, intMetric, Measure.newMeasureBuilder().create(12), ColumnarRawMeasureRepository.OverridePolicy.DO_NOT_OVERRIDE);
+    underTest.add(FILE_COMPONENT, intMetric, Measure.newMeasureBuilder().create(5), ColumnarRawMeasureRepository.OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(12);
+  }
+
+  @Test
+  public void getRawMeasures_for_component_returns_measures_by_metric_key() {
+    MetricImpl intMetric = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+    Measure devMeasure = Measure.newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(3);
+    underTest.add(FILE_COMPONENT, metric1, SOME_MEASURE);
+    underTest.add(FILE_COMPONENT, intMetric, Measure.newMeasureBuilder().create(12));
+    underTest.add(FILE_COMPONENT, intMetric, devMeasure);
+    underTest.add(OTHER_COMPONENT, metric2, SOME_MEASURE);
+
+    SetMultimap<String, Measure> measures = underTest.getRawMeasures(FILE_COMPONENT);
+
+    assertThat(measures.keySet()).containsOnly(METRIC_KEY_1, "int");
+    assertThat(measures.get(METRIC_KEY_1)).containsOnly(SOME_MEASURE);
+    assertThat(measures.get("int")).hasSize(2).contains(devMeasure);
+    assertThat(underTest.getRawMeasures(PROJECT).isEmpty()).isTrue();
+  }
+
 }
@@ -0,0 +1,200 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderImpl;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+/**
+ * Compares the raw measures of a large project stored by {@link ColumnarRawMeasureRepository} and by a
+ * {@code Map<component, Map<MeasureKey, Measure>>}, as done before. Benchmark {@code add} stores all the measures
+ * of the project in a new repository, and {@code get} reads them.
+ * <p>
+ * Run with the GC profiler ({@code -prof gc}) to compare the heap allocated per repository: {@code gc.alloc.rate.norm}
+ * of {@code add}.
+ * </p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=org.sonar.server.computation.task.projectanalysis.measure.RawMeasureRepositoryMemoryBenchmark -Dexec.classpathScope=test}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class RawMeasureRepositoryMemoryBenchmark {
+
+  private static final int DIRECTORIES = 2_000;
+  private static final int FILES_PER_DIRECTORY = 100;
+  private static final int NUMERIC_METRICS = 50;
+  private static final int DATA_METRICS = 3;
+
+  @Param({"map", "columnar"})
+  public String repository;
+
+  private final List<Component> files = new ArrayList<>();
+  private final List<Component> directories = new ArrayList<>();
+  private final List<Metric> numericMetrics = new ArrayList<>();
+  private final List<Metric> dataMetrics = new ArrayList<>();
+  private final TreeRootHolderImpl treeRootHolder = new TreeRootHolderImpl();
+  private MeasureStore populatedStore;
+
+  @Setup
+  public void setUp() {
+    treeRootHolder.setRoot(createTree());
+    for (int i = 0; i < NUMERIC_METRICS; i++) {
+      numericMetrics.add(new MetricImpl(i, "numeric" + i, "numeric" + i, i % 2 == 0 ? Metric.MetricType.INT : Metric.MetricType.FLOAT));
+    }
+    for (int i = 0; i < DATA_METRICS; i++) {
+      dataMetrics.add(new MetricImpl(NUMERIC_METRICS + i, "data" + i, "data" + i, Metric.MetricType.DATA));
+    }
+    populatedStore = add();
+  }
+
+  @Benchmark
+  public MeasureStore add() {
+    MeasureStore store = "map".equals(repository) ? new MapMeasureStore() : new ColumnarMeasureStore(treeRootHolder);
+    for (Component file : files) {
+      for (Metric metric : numericMetrics) {
+        store.add(file, metric, newMeasure(metric, file.getReportAttributes().getRef(), false));
+      }
+      for (Metric metric : dataMetrics) {
+        store.add(file, metric, Measure.newMeasureBuilder().create("1=" + file.getReportAttributes().getRef()));
+      }
+    }
+    for (Component directory : directories) {
+      for (Metric metric : numericMetrics) {
+        store.add(directory, metric, newMeasure(metric, directory.getReportAttributes().getRef(), true));
+      }
+    }
+    return store;
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) {
+    for (Component file : files) {
+      for (Metric metric : numericMetrics) {
+        blackhole.consume(populatedStore.get(file, metric));
+      }
+      for (Metric metric : dataMetrics) {
+        blackhole.consume(populatedStore.get(file, metric));
+      }
+    }
+    for (Component directory : directories) {
+      for (Metric metric : numericMetrics) {
+        blackhole.consume(populatedStore.get(directory, metric));
+      }
+    }
+  }
+
+  private Component createTree() {
+    int ref = 1;
+    ReportComponent.Builder projectBuilder = ReportComponent.builder(Component.Type.PROJECT, ref++);
+    for (int d = 0; d < DIRECTORIES; d++) {
+      ReportComponent.Builder directoryBuilder = ReportComponent.builder(Component.Type.DIRECTORY, ref++);
+      for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+        ReportComponent file = ReportComponent.builder(Component.Type.FILE, ref++).build();
+        files.add(file);
+        directoryBuilder.addChildren(file);
+      }
+      ReportComponent directory = directoryBuilder.build();
+      directories.add(directory);
+      projectBuilder.addChildren(directory);
+    }
+    Component project = projectBuilder.build();
+    directories.add(project);
+    return project;
+  }
+
+  private static Measure newMeasure(Metric metric, int value, boolean withVariation) {
+    Measure.NewMeasureBuilder builder = Measure.newMeasureBuilder();
+    if (withVariation) {
+      builder.setVariation(1d);
+    }
+    return metric.getType() == Metric.MetricType.INT ? builder.create(value) : builder.create(value / 3d, 1);
+  }
+
+  public interface MeasureStore {
+    void add(Component component, Metric metric, Measure measure);
+
+    Measure get(Component component, Metric metric);
+  }
+
+  private static class MapMeasureStore implements MeasureStore {
+    private final Map<Component, Map<MeasureKey, Measure>> measures = new HashMap<>();
+
+    @Override
+    public void add(Component component, Metric metric, Measure measure) {
+      measures.computeIfAbsent(component, c -> new HashMap<>()).put(new MeasureKey(metric.getKey(), null), measure);
+    }
+
+    @Override
+    public Measure get(Component component, Metric metric) {
+      return measures.get(component).get(new MeasureKey(metric.getKey(), null));
+    }
+  }
+
+  private static class ColumnarMeasureStore implements MeasureStore {
+    private final ColumnarRawMeasureRepository repository;
+
+    private ColumnarMeasureStore(TreeRootHolderImpl treeRootHolder) {
+      this.repository = new ColumnarRawMeasureRepository(treeRootHolder);
+    }
+
+    @Override
+    public void add(Component component, Metric metric, Measure measure) {
+      repository.add(component, metric, measure);
+    }
+
+    @Override
+    public Measure get(Component component, Metric metric) {
+      return repository.getRawMeasure(component, metric).get();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(RawMeasureRepositoryMemoryBenchmark.class.getSimpleName())
+      .build())
+      .run();
+  }
+}
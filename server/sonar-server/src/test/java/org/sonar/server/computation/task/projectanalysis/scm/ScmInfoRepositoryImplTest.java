@@ -23,6 +23,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.guava.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.sonar.api.utils.log.LoggerLevel.DEBUG;
 import static org.sonar.api.utils.log.LoggerLevel.TRACE;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
 
@@ -52,6 +53,8 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.Component.Status;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepositoryImpl;
@@ -85,11 +88,14 @@ public class ScmInfoRepositoryImplTest {
   @Rule
   public AnalysisMetadataHolderRule analysisMetadataHolder = new AnalysisMetadataHolderRule();
   @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule()
+    .setRoot(builder(Component.Type.PROJECT, 2).setKey("PROJECT_KEY").setUuid("PROJECT_UUID").addChildren(FILE).build());
+  @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
   DbClient dbClient = dbTester.getDbClient();
 
-  ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient,
+  ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient, treeRootHolder,
     new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)));
 
   @Test
@@ -157,6 +163,72 @@ public class ScmInfoRepositoryImplTest {
     assertThat(logTester.logs(TRACE)).containsOnly("Reading SCM info from db for file 'FILE_KEY'");
   }
 
+  @Test
+  public void read_scm_info_of_all_files_of_project_from_db_at_once() {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    analysisMetadataHolder.setIncrementalAnalysis(false);
+    Component file2 = builder(Component.Type.FILE, 3).setKey("FILE2_KEY").setUuid("FILE2_UUID").build();
+    treeRootHolder.setRoot(builder(Component.Type.PROJECT, 2).setUuid("PROJECT_UUID").addChildren(FILE, file2).build());
+
+    addFileSourceInDb(FILE.getUuid(), "henry", DATE_1, "rev-1", computeSourceHash(1));
+    addFileSourceInDb(file2.getUuid(), "john", DATE_2, "rev-2", computeSourceHash(1));
+    addFileSourceInReport(1);
+    addCopyFromPreviousChangesetInReport();
+    reportReader.putFileSourceLines(3, generateLines(1));
+    reportReader.putComponent(ScannerReport.Component.newBuilder().setRef(3).setLines(1).build());
+    reportReader.putChangesets(ScannerReport.Changesets.newBuilder().setComponentRef(3).setCopyFromPrevious(true).build());
+
+    assertThat(underTest.getScmInfo(FILE).get().getChangesetForLine(1).getAuthor()).isEqualTo("henry");
+    assertThat(underTest.getScmInfo(file2).get().getChangesetForLine(1).getAuthor()).isEqualTo("john");
+
+    assertThat(logTester.logs(TRACE)).containsOnly("Reading SCM info from db for file 'FILE_KEY'", "Reading SCM info from db for file 'FILE2_KEY'");
+    assertThat(logTester.logs(DEBUG)).filteredOn(log -> log.startsWith("SCM info of ")).hasSize(1)
+      .allMatch(log -> log.startsWith("SCM info of 2 files loaded from db"));
+  }
+
+  @Test
+  public void scm_info_of_files_read_from_report_is_not_loaded_from_db() {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    analysisMetadataHolder.setIncrementalAnalysis(false);
+    Component file2 = builder(Component.Type.FILE, 3).setKey("FILE2_KEY").setUuid("FILE2_UUID").build();
+    treeRootHolder.setRoot(builder(Component.Type.PROJECT, 2).setUuid("PROJECT_UUID").addChildren(FILE, file2).build());
+
+    addFileSourceInDb(FILE.getUuid(), "henry", DATE_1, "rev-1", computeSourceHash(1));
+    addFileSourceInDb(file2.getUuid(), "john", DATE_2, "rev-2", computeSourceHash(1));
+    addChangesetInReport("jane", DATE_2, "rev-3");
+    reportReader.putFileSourceLines(3, generateLines(1));
+    reportReader.putComponent(ScannerReport.Component.newBuilder().setRef(3).setLines(1).build());
+    reportReader.putChangesets(ScannerReport.Changesets.newBuilder().setComponentRef(3).setCopyFromPrevious(true).build());
+
+    assertThat(underTest.getScmInfo(FILE).get().getChangesetForLine(1).getAuthor()).isEqualTo("jane");
+    assertThat(underTest.getScmInfo(file2).get().getChangesetForLine(1).getAuthor()).isEqualTo("john");
+
+    assertThat(logTester.logs(DEBUG)).filteredOn(log -> log.startsWith("SCM info of ")).hasSize(1)
+      .allMatch(log -> log.startsWith("SCM info of 1 files loaded from db"));
+  }
+
+  @Test
+  public void getScmInfo_fails_when_scm_info_of_db_is_partial() {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    analysisMetadataHolder.setIncrementalAnalysis(true);
+    DbFileSources.Data.Builder fileDataBuilder = DbFileSources.Data.newBuilder();
+    fileDataBuilder.addLinesBuilder().setLine(1).setScmRevision("rev-1").setScmDate(DATE_1);
+    fileDataBuilder.addLinesBuilder().setLine(2);
+    dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
+      .setFileUuid(FILE.getUuid())
+      .setProjectUuid("PROJECT_UUID")
+      .setSourceData(fileDataBuilder.build())
+      .setSrcHash("don't care"));
+    dbTester.commit();
+    addCopyFromPreviousChangesetInReport();
+    Component file = builder(Component.Type.FILE, FILE_REF).setKey("FILE_KEY").setUuid("FILE_UUID").setStatus(Status.SAME).build();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Partial scm information stored in DB for component");
+
+    underTest.getScmInfo(file);
+  }
+
   @Test
   public void read_from_report_even_if_data_in_db_exists() throws Exception {
     analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
@@ -234,12 +306,13 @@ public class ScmInfoRepositoryImplTest {
     BatchReportReader batchReportReader = mock(BatchReportReader.class);
     AnalysisMetadataHolder analysisMetadataHolder = mock(AnalysisMetadataHolder.class);
     DbClient dbClient = mock(DbClient.class);
+    TreeRootHolder treeRootHolder = mock(TreeRootHolder.class);
     SourceHashRepository sourceHashRepository = mock(SourceHashRepository.class);
-    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, treeRootHolder, sourceHashRepository);
 
     assertThat(underTest.getScmInfo(component)).isAbsent();
 
-    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, dbClient, treeRootHolder, sourceHashRepository);
   }
 
   @Test
@@ -268,6 +341,10 @@ public class ScmInfoRepositoryImplTest {
   }
 
   private void addFileSourceInDb(@Nullable String author, @Nullable Long date, @Nullable String revision, String srcHash) {
+    addFileSourceInDb(FILE.getUuid(), author, date, revision, srcHash);
+  }
+
+  private void addFileSourceInDb(String fileUuid, @Nullable String author, @Nullable Long date, @Nullable String revision, String srcHash) {
     DbFileSources.Data.Builder fileDataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder builder = fileDataBuilder.addLinesBuilder()
       .setLine(1);
@@ -281,7 +358,7 @@ public class ScmInfoRepositoryImplTest {
       builder.setScmRevision(revision);
     }
     dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
-      .setFileUuid(FILE.getUuid())
+      .setFileUuid(fileUuid)
       .setProjectUuid("PROJECT_UUID")
       .setSourceData(fileDataBuilder.build())
       .setSrcHash(srcHash));
@@ -33,6 +33,8 @@ import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.DbReportSpool;
+import org.sonar.ce.queue.FileSystemReportSpool;
 import org.sonar.db.DbTester;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportDirectoryHolderImpl;
@@ -59,12 +61,13 @@ public class ExtractReportStepTest {
   private MutableBatchReportDirectoryHolder reportDirectoryHolder = new BatchReportDirectoryHolderImpl();
   private CeTask ceTask = new CeTask.Builder().setOrganizationUuid("org1").setType(CeTaskTypes.REPORT).setUuid(TASK_UUID).build();
 
-  private ExtractReportStep underTest = new ExtractReportStep(dbTester.getDbClient(), ceTask, tempFolder, reportDirectoryHolder);
+  private ExtractReportStep underTest = new ExtractReportStep(dbTester.getDbClient(), ceTask, tempFolder, reportDirectoryHolder,
+    new DbReportSpool(dbTester.getDbClient()));
 
   @Test
   public void fail_if_report_zip_does_not_exist() throws Exception {
     expectedException.expect(MessageException.class);
-    expectedException.expectMessage("Analysis report 1 is missing in database");
+    expectedException.expectMessage("Analysis report 1 is missing");
 
     underTest.execute();
   }
@@ -87,6 +90,21 @@ public class ExtractReportStepTest {
     assertThat(new File(unzippedDir, "metadata.pb")).hasContent("{metadata}");
   }
 
+  @Test
+  public void unzip_report_stored_on_file_system() throws Exception {
+    FileSystemReportSpool reportSpool = new FileSystemReportSpool(dbTester.getDbClient(), System2.INSTANCE, tempFolder.newDir().toPath());
+    try (InputStream input = FileUtils.openInputStream(generateReport())) {
+      reportSpool.write(dbTester.getSession(), TASK_UUID, input);
+    }
+    underTest = new ExtractReportStep(dbTester.getDbClient(), ceTask, tempFolder, reportDirectoryHolder, reportSpool);
+
+    underTest.execute();
+
+    File unzippedDir = reportDirectoryHolder.getDirectory();
+    assertThat(unzippedDir.listFiles()).hasSize(1);
+    assertThat(new File(unzippedDir, "metadata.pb")).hasContent("{metadata}");
+  }
+
   private File generateReport() throws IOException {
     File zipDir = tempFolder.newDir();
     File metadataFile = new File(zipDir, "metadata.pb");
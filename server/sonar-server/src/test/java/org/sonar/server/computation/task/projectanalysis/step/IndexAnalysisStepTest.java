@@ -19,18 +19,27 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.es.EsQueueDto;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.issue.index.IssueIndexer;
 
+import static java.util.Collections.singletonList;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.VIEW;
 
@@ -45,7 +54,10 @@ public class IndexAnalysisStepTest extends BaseStepTest {
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
 
   private ProjectIndexer componentIndexer = mock(ProjectIndexer.class);
-  private IndexAnalysisStep underTest = new IndexAnalysisStep(treeRootHolder, componentIndexer);
+  private IssueIndexer issueIndexer = mock(IssueIndexer.class);
+  private DbClient dbClient = mock(DbClient.class);
+  private ChangedIssuesHolder changedIssuesHolder = new ChangedIssuesHolder();
+  private IndexAnalysisStep underTest = new IndexAnalysisStep(treeRootHolder, dbClient, changedIssuesHolder, componentIndexer, issueIndexer);
 
   @Test
   public void call_indexByProjectUuid_of_indexer_for_project() {
@@ -55,6 +67,23 @@ public class IndexAnalysisStepTest extends BaseStepTest {
     underTest.execute();
 
     verify(componentIndexer).indexOnAnalysis(PROJECT_UUID);
+    verify(issueIndexer).indexOnAnalysis(PROJECT_UUID);
+  }
+
+  @Test
+  public void index_only_changed_issues_if_they_are_known() {
+    Component project = ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    DbSession dbSession = mock(DbSession.class);
+    when(dbClient.openSession(false)).thenReturn(dbSession);
+    List<EsQueueDto> items = singletonList(EsQueueDto.create("issues/issue", "ISSUE_KEY", "issueKey", PROJECT_UUID));
+    changedIssuesHolder.setEsQueueItems(items);
+
+    underTest.execute();
+
+    verify(componentIndexer).indexOnAnalysis(PROJECT_UUID);
+    verify(issueIndexer).index(dbSession, items);
+    verify(issueIndexer, never()).indexOnAnalysis(PROJECT_UUID);
   }
 
   @Test
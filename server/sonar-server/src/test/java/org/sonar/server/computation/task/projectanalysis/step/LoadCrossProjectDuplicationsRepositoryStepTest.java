@@ -30,6 +30,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -55,6 +56,7 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.anyCollection;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -103,8 +105,10 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
 
   Analysis baseProjectAnalysis;
 
+  MapSettings settings = new MapSettings();
+
   ComputationStep underTest = new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
-    integrateCrossProjectDuplications, dbClient);
+    integrateCrossProjectDuplications, dbClient, settings.asConfig());
 
   @Before
   public void setUp() throws Exception {
@@ -259,6 +263,78 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
         .build());
   }
 
+  @Test
+  public void route_duplication_candidates_of_several_files_loaded_at_once() {
+    Component file2 = ReportComponent.builder(FILE, 3)
+      .setKey("FILE2_KEY")
+      .setFileAttributes(new FileAttributes(false, XOO_LANGUAGE, 1))
+      .build();
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, PROJECT_REF).addChildren(CURRENT_FILE, file2).build());
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    settings.setProperty(LoadCrossProjectDuplicationsRepositoryStep.THREADS_PROPERTY, 2);
+    underTest = new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
+      integrateCrossProjectDuplications, dbClient, settings.asConfig());
+
+    ComponentDto otherProject = createProject("OTHER_PROJECT_KEY");
+    SnapshotDto otherProjectSnapshot = createProjectSnapshot(otherProject);
+    ComponentDto otherFile = createFile("OTHER_FILE_KEY", otherProject);
+    DuplicationUnitDto duplicate1 = new DuplicationUnitDto()
+      .setHash("a8998353e96320ec")
+      .setStartLine(40)
+      .setEndLine(55)
+      .setIndexInFile(0)
+      .setAnalysisUuid(otherProjectSnapshot.getUuid())
+      .setComponentUuid(otherFile.uuid());
+    DuplicationUnitDto duplicate2 = new DuplicationUnitDto()
+      .setHash("b1234353e96320ff")
+      .setStartLine(20)
+      .setEndLine(35)
+      .setIndexInFile(1)
+      .setAnalysisUuid(otherProjectSnapshot.getUuid())
+      .setComponentUuid(otherFile.uuid());
+    dbClient.duplicationDao().insert(dbSession, duplicate1);
+    dbClient.duplicationDao().insert(dbSession, duplicate2);
+    dbSession.commit();
+
+    ScannerReport.CpdTextBlock block1 = ScannerReport.CpdTextBlock.newBuilder()
+      .setHash(duplicate1.getHash())
+      .setStartLine(30)
+      .setEndLine(45)
+      .setStartTokenIndex(0)
+      .setEndTokenIndex(10)
+      .build();
+    ScannerReport.CpdTextBlock block2 = ScannerReport.CpdTextBlock.newBuilder()
+      .setHash(duplicate2.getHash())
+      .setStartLine(10)
+      .setEndLine(25)
+      .setStartTokenIndex(5)
+      .setEndTokenIndex(15)
+      .build();
+    batchReportReader.putDuplicationBlocks(FILE_REF, asList(block1, block1));
+    batchReportReader.putDuplicationBlocks(3, asList(block2));
+
+    underTest.execute();
+
+    Class<ArrayList<Block>> listClass = (Class<ArrayList<Block>>) (Class) ArrayList.class;
+    ArgumentCaptor<ArrayList<Block>> duplicationBlocks = ArgumentCaptor.forClass(listClass);
+    verify(integrateCrossProjectDuplications).computeCpd(eq(CURRENT_FILE), anyCollection(), duplicationBlocks.capture());
+    assertThat(duplicationBlocks.getValue()).extracting(Block::getIndexInFile).containsExactly(0);
+    verify(integrateCrossProjectDuplications).computeCpd(eq(file2), anyCollection(), duplicationBlocks.capture());
+    assertThat(duplicationBlocks.getValue()).extracting(Block::getIndexInFile).containsExactly(1);
+  }
+
+  @Test
+  public void fail_if_number_of_threads_is_not_positive() {
+    settings.setProperty(LoadCrossProjectDuplicationsRepositoryStep.THREADS_PROPERTY, 0);
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Number of threads must be strictly positive: 0");
+
+    new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
+      integrateCrossProjectDuplications, dbClient, settings.asConfig());
+  }
+
   @Test
   public void nothing_to_do_when_cross_project_duplication_is_disabled() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(false);
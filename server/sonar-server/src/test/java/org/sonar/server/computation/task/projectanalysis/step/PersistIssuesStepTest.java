@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
@@ -37,25 +38,41 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.es.EsQueueDto;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.db.rule.RuleTesting;
 import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolderRule;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolder;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
 import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.es.EsClient;
+import org.sonar.server.issue.index.IssueIndexer;
+import org.sonar.server.issue.index.IssueIteratorFactory;
+import org.sonar.server.util.cache.DiskCache.CacheAppender;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class PersistIssuesStepTest extends BaseStepTest {
 
   public static final long NOW = 1400000000000L;
+  private static final Analysis BASE_ANALYSIS = new Analysis.Builder()
+    .setId(1)
+    .setUuid("BASE_ANALYSIS")
+    .setCreatedAt(NOW - 1000L)
+    .build();
 
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
@@ -65,12 +82,17 @@ public class PersistIssuesStepTest extends BaseStepTest {
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
   @Rule
   public AnalysisMetadataHolderRule analysisMetadataHolder = new AnalysisMetadataHolderRule()
-    .setOrganizationUuid("org-1");
+    .setOrganizationUuid("org-1")
+    .setBaseAnalysis(BASE_ANALYSIS);
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule()
+    .setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid("PROJECT").build());
 
   private DbSession session = dbTester.getSession();
   private DbClient dbClient = dbTester.getDbClient();
   private System2 system2;
   private IssueCache issueCache;
+  private ChangedIssuesHolder changedIssuesHolder = new ChangedIssuesHolder();
   private ComputationStep step;
 
   @Override
@@ -85,7 +107,9 @@ public class PersistIssuesStepTest extends BaseStepTest {
     when(system2.now()).thenReturn(NOW);
     reportReader.setMetadata(ScannerReport.Metadata.getDefaultInstance());
 
-    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient, analysisMetadataHolder), issueCache);
+    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient, analysisMetadataHolder), issueCache,
+      new MapSettings().asConfig(), treeRootHolder, analysisMetadataHolder, new IssueIndexer(mock(EsClient.class), dbClient, mock(IssueIteratorFactory.class)),
+      changedIssuesHolder);
   }
 
   @After
@@ -203,4 +227,75 @@ public class PersistIssuesStepTest extends BaseStepTest {
     dbTester.assertDbUnit(getClass(), "add_change-result.xml", new String[] {"id", "created_at", "updated_at"}, "issue_changes");
   }
 
+
+  @Test
+  public void changed_issues_are_queued_for_indexing() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    issueCache.newAppender()
+      .append(newClosedIssue("ISSUE").setChanged(true))
+      .append(newClosedIssue("UNCHANGED").setChanged(false))
+      .close();
+
+    step.execute();
+
+    assertThat(changedIssuesHolder.getEsQueueItems())
+      .extracting(EsQueueDto::getDocId, EsQueueDto::getDocIdType, EsQueueDto::getDocRouting)
+      .containsExactly(tuple("ISSUE", "issueKey", "PROJECT"));
+    assertThat(dbTester.countRowsOfTable("es_queue")).isEqualTo(1);
+  }
+
+  @Test
+  public void whole_project_is_queued_for_indexing_on_first_analysis() {
+    analysisMetadataHolder.setBaseAnalysis(null);
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    issueCache.newAppender().append(newClosedIssue("ISSUE").setChanged(true)).close();
+
+    step.execute();
+
+    assertThat(changedIssuesHolder.getEsQueueItems())
+      .extracting(EsQueueDto::getDocId, EsQueueDto::getDocIdType, EsQueueDto::getDocRouting)
+      .containsExactly(tuple("PROJECT", "projectUuid", "PROJECT"));
+    assertThat(dbTester.countRowsOfTable("es_queue")).isEqualTo(1);
+  }
+
+  @Test
+  public void whole_project_is_queued_for_indexing_when_too_many_issues_changed() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    CacheAppender<DefaultIssue> appender = issueCache.newAppender();
+    for (int i = 0; i <= PersistIssuesStep.MAX_CHANGED_ISSUES_TO_INDEX; i++) {
+      appender.append(newClosedIssue("ISSUE_" + i).setChanged(true));
+    }
+    appender.close();
+
+    step.execute();
+
+    assertThat(changedIssuesHolder.getEsQueueItems())
+      .extracting(EsQueueDto::getDocId, EsQueueDto::getDocIdType)
+      .containsExactly(tuple("PROJECT", "projectUuid"));
+  }
+
+  @Test
+  public void nothing_is_queued_for_indexing_if_no_issue_changed() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    issueCache.newAppender().append(newClosedIssue("ISSUE").setChanged(false)).close();
+
+    step.execute();
+
+    assertThat(changedIssuesHolder.getEsQueueItems()).isEmpty();
+    assertThat(dbTester.countRowsOfTable("es_queue")).isZero();
+  }
+
+  private static DefaultIssue newClosedIssue(String key) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setType(RuleType.CODE_SMELL)
+      .setRuleKey(RuleKey.of("xoo", "S01"))
+      .setComponentUuid("COMPONENT")
+      .setProjectUuid("PROJECT")
+      .setSeverity(Severity.BLOCKER)
+      .setStatus(Issue.STATUS_CLOSED)
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setSelectedAt(NOW)
+      .setNew(false);
+  }
 }
@@ -24,8 +24,10 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.utils.System2;
+import org.sonar.db.BatchInserter;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
@@ -103,7 +105,8 @@ public class PersistMeasuresStepTest extends BaseStepTest {
 
   @Before
   public void setUp() {
-    underTest = new PersistMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(dbIdsRepository, analysisMetadataHolder), treeRootHolder, measureRepository);
+    underTest = new PersistMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(dbIdsRepository, analysisMetadataHolder), treeRootHolder, measureRepository,
+      new MapSettings().asConfig());
     analysisMetadataHolder.setUuid(ANALYSIS_UUID);
   }
 
@@ -171,6 +174,16 @@ public class PersistMeasuresStepTest extends BaseStepTest {
     insertMeasures();
   }
 
+  @Test
+  public void insert_measures_by_batches_of_configured_size() {
+    MapSettings settings = new MapSettings().setProperty(BatchInserter.BATCH_SIZE_PROPERTY, 3);
+    underTest = new PersistMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(dbIdsRepository, analysisMetadataHolder), treeRootHolder, measureRepository,
+      settings.asConfig());
+    setupReportComponents();
+
+    insertMeasures();
+  }
+
   private void insertMeasures() {
     int stringMetricId = 1;
     int doubleMetricId = 2;
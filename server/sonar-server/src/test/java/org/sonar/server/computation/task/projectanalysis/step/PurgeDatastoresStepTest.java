@@ -31,8 +31,13 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.config.internal.MapSettings;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTaskSubmit;
+import org.sonar.core.config.PurgeConstants;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.purge.IdUuidPair;
 import org.sonar.server.computation.dbcleaner.ProjectCleaner;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -46,13 +51,18 @@ import org.sonar.server.computation.task.step.ComputationStep;
 import org.sonar.server.util.WrapInSingleElementArray;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 @RunWith(DataProviderRunner.class)
@@ -71,8 +81,11 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
   private ConfigurationRepository settingsRepository = mock(ConfigurationRepository.class);
   private MutableDisabledComponentsHolder disabledComponentsHolder = mock(MutableDisabledComponentsHolder.class, RETURNS_DEEP_STUBS);
 
-  private PurgeDatastoresStep underTest = new PurgeDatastoresStep(mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS), projectCleaner, dbIdsRepository, treeRootHolder,
-    settingsRepository, disabledComponentsHolder);
+  private DbClient dbClient = mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS);
+  private CeQueue ceQueue = mock(CeQueue.class);
+
+  private PurgeDatastoresStep underTest = new PurgeDatastoresStep(dbClient, projectCleaner, dbIdsRepository, treeRootHolder,
+    settingsRepository, disabledComponentsHolder, ceQueue);
 
   @Test
   public void call_purge_method_of_the_purge_task_for_project() {
@@ -124,6 +137,40 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
     verify_do_not_call_purge_method_of_the_purge_task(component);
   }
 
+  @Test
+  public void submit_purge_task_if_purge_is_deferred() {
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    dbIdsRepository.setComponentId(project, PROJECT_ID);
+    when(settingsRepository.getConfiguration(project)).thenReturn(new MapSettings().setProperty(PurgeConstants.DEFERRED_PURGE, true).asConfig());
+    when(dbClient.ceQueueDao().selectByComponentUuid(any(DbSession.class), eq(PROJECT_UUID))).thenReturn(emptyList());
+    when(ceQueue.prepareSubmit()).thenReturn(new CeTaskSubmit.Builder("TASK_1"));
+
+    underTest.execute();
+
+    verify(projectCleaner).purgeDisabledComponents(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), anyList());
+    verify(projectCleaner, never()).purge(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), anyList());
+    ArgumentCaptor<CeTaskSubmit> submit = ArgumentCaptor.forClass(CeTaskSubmit.class);
+    verify(ceQueue).submit(submit.capture());
+    assertThat(submit.getValue().getType()).isEqualTo(CeTaskTypes.PROJECT_PURGE);
+    assertThat(submit.getValue().getComponentUuid()).isEqualTo(PROJECT_UUID);
+  }
+
+  @Test
+  public void do_not_submit_purge_task_if_one_is_already_pending() {
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    dbIdsRepository.setComponentId(project, PROJECT_ID);
+    when(settingsRepository.getConfiguration(project)).thenReturn(new MapSettings().setProperty(PurgeConstants.DEFERRED_PURGE, true).asConfig());
+    CeQueueDto pendingPurge = new CeQueueDto().setUuid("TASK_0").setTaskType(CeTaskTypes.PROJECT_PURGE).setStatus(CeQueueDto.Status.PENDING);
+    when(dbClient.ceQueueDao().selectByComponentUuid(any(DbSession.class), eq(PROJECT_UUID))).thenReturn(singletonList(pendingPurge));
+
+    underTest.execute();
+
+    verify(projectCleaner).purgeDisabledComponents(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), anyList());
+    verifyZeroInteractions(ceQueue);
+  }
+
   private void verify_do_not_call_purge_method_of_the_purge_task(Component component) {
     treeRootHolder.setRoot(component);
 
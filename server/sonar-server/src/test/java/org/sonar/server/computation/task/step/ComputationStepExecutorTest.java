@@ -19,12 +19,20 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.InOrder;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.ChangeLogLevel;
@@ -32,6 +40,7 @@ import org.sonar.server.computation.task.ChangeLogLevel;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
@@ -45,6 +54,7 @@ public class ComputationStepExecutorTest {
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
 
+  private final Configuration config = new MapSettings().asConfig();
   private final ComputationStepExecutor.Listener listener = mock(ComputationStepExecutor.Listener.class);
   private final ComputationStep computationStep1 = mockComputationStep("step1");
   private final ComputationStep computationStep2 = mockComputationStep("step2");
@@ -52,7 +62,7 @@ public class ComputationStepExecutorTest {
 
   @Test
   public void execute_call_execute_on_each_ComputationStep_in_order_returned_by_instances_method() {
-    new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2, computationStep3))
+    new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2, computationStep3), config)
       .execute();
 
     InOrder inOrder = inOrder(computationStep1, computationStep2, computationStep3);
@@ -74,7 +84,7 @@ public class ComputationStepExecutorTest {
       .when(computationStep)
       .execute();
 
-    ComputationStepExecutor computationStepExecutor = new ComputationStepExecutor(mockComputationSteps(computationStep));
+    ComputationStepExecutor computationStepExecutor = new ComputationStepExecutor(mockComputationSteps(computationStep), config);
 
     expectedException.expect(RuntimeException.class);
     expectedException.expectMessage(message);
@@ -108,7 +118,7 @@ public class ComputationStepExecutorTest {
     try (ChangeLogLevel executor = new ChangeLogLevel(ComputationStepExecutor.class, level);
       ChangeLogLevel step1 = new ChangeLogLevel(computationStep1.getClass(), level);
       ChangeLogLevel step2 = new ChangeLogLevel(computationStep2.getClass(), level)) {
-      new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2))
+      new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2), config)
         .execute();
 
       return logTester.logs(LoggerLevel.DEBUG);
@@ -117,7 +127,7 @@ public class ComputationStepExecutorTest {
 
   @Test
   public void execute_calls_listener_finished_method_with_all_step_runs() {
-    new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2), listener)
+    new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2), config, listener)
       .execute();
 
     verify(listener).finished(true);
@@ -132,7 +142,7 @@ public class ComputationStepExecutorTest {
       .execute();
 
     try {
-      new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2), listener)
+      new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2), config, listener)
         .execute();
       fail("exception toBeThrown should have been raised");
     } catch (RuntimeException e) {
@@ -149,7 +159,150 @@ public class ComputationStepExecutorTest {
         .when(listener)
         .finished(anyBoolean());
 
-    new ComputationStepExecutor(mockComputationSteps(computationStep1), listener).execute();
+    new ComputationStepExecutor(mockComputationSteps(computationStep1), config, listener).execute();
+  }
+
+  @Test
+  public void execute_runs_concurrently_steps_which_do_not_share_data() throws InterruptedException {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    ComputationStep step1 = new TestConcurrentStep("step1", ImmutableSet.of(String.class), ImmutableSet.of(Integer.class), () -> awaitBoth(bothStarted), executed);
+    ComputationStep step2 = new TestConcurrentStep("step2", ImmutableSet.of(String.class), ImmutableSet.of(Long.class), () -> awaitBoth(bothStarted), executed);
+    ComputationStep step3 = new TestConcurrentStep("step3", ImmutableSet.of(Integer.class, Long.class), ImmutableSet.of(), () -> {
+    }, executed);
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2, step3), listener, 2).execute();
+
+    assertThat(executed).containsOnly("step1", "step2", "step3");
+    assertThat(executed.get(2)).isEqualTo("step3");
+    verify(listener).finished(true);
+  }
+
+  @Test
+  public void execute_runs_in_order_steps_which_share_data() {
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    ComputationStep step1 = new TestConcurrentStep("step1", ImmutableSet.of(), ImmutableSet.of(String.class), () -> sleep(50), executed);
+    ComputationStep step2 = new TestConcurrentStep("step2", ImmutableSet.of(String.class), ImmutableSet.of(Integer.class), () -> sleep(20), executed);
+    ComputationStep step3 = new TestConcurrentStep("step3", ImmutableSet.of(), ImmutableSet.of(Integer.class), () -> {
+    }, executed);
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2, step3), null, 4).execute();
+
+    assertThat(executed).containsExactly("step1", "step2", "step3");
+  }
+
+  @Test
+  public void execute_never_runs_concurrently_steps_which_do_not_declare_data() {
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    ComputationStep step1 = new TestConcurrentStep("step1", ImmutableSet.of(), ImmutableSet.of(String.class), () -> sleep(50), executed);
+    ComputationStep step2 = mockComputationStep("step2");
+    doAnswer(invocation -> executed.add("step2")).when(step2).execute();
+    ComputationStep step3 = new TestConcurrentStep("step3", ImmutableSet.of(), ImmutableSet.of(Integer.class), () -> {
+    }, executed);
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2, step3), null, 4).execute();
+
+    assertThat(executed).containsExactly("step1", "step2", "step3");
+  }
+
+  @Test
+  public void execute_does_not_start_other_steps_and_propagates_exception_when_a_concurrent_step_fails() {
+    RuntimeException toBeThrown = new RuntimeException("simulating failing execute Step method");
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    ComputationStep step1 = new TestConcurrentStep("step1", ImmutableSet.of(), ImmutableSet.of(String.class), () -> {
+      throw toBeThrown;
+    }, executed);
+    ComputationStep step2 = new TestConcurrentStep("step2", ImmutableSet.of(), ImmutableSet.of(Integer.class), () -> sleep(50), executed);
+    ComputationStep step3 = new TestConcurrentStep("step3", ImmutableSet.of(String.class), ImmutableSet.of(), () -> {
+    }, executed);
+
+    try {
+      new ComputationStepExecutor(mockComputationSteps(step1, step2, step3), listener, 2).execute();
+      fail("exception toBeThrown should have been raised");
+    } catch (RuntimeException e) {
+      assertThat(e).isSameAs(toBeThrown);
+      assertThat(executed).containsExactly("step2");
+      verify(listener).finished(false);
+    }
+  }
+
+  @Test
+  public void execute_logs_end_timing_for_each_concurrent_step_when_level_is_DEBUG() {
+    ComputationStep step1 = new TestConcurrentStep("step1", ImmutableSet.of(), ImmutableSet.of(String.class), () -> {
+    }, new ArrayList<>());
+    ComputationStep step2 = new TestConcurrentStep("step2", ImmutableSet.of(), ImmutableSet.of(Integer.class), () -> {
+    }, new ArrayList<>());
+
+    try (ChangeLogLevel executor = new ChangeLogLevel(ComputationStepExecutor.class, LoggerLevel.DEBUG)) {
+      new ComputationStepExecutor(mockComputationSteps(step1, step2), null, 2).execute();
+    }
+
+    List<String> debugLogs = logTester.logs(LoggerLevel.DEBUG);
+    assertThat(debugLogs).hasSize(2);
+    assertThat(debugLogs.stream().filter(log -> log.contains("step1 | time="))).hasSize(1);
+    assertThat(debugLogs.stream().filter(log -> log.contains("step2 | time="))).hasSize(1);
+  }
+
+  @Test
+  public void fail_if_number_of_threads_is_not_strictly_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of threads must be strictly positive: 0");
+
+    new ComputationStepExecutor(mockComputationSteps(computationStep1), null, 0);
+  }
+
+  private static void awaitBoth(CountDownLatch bothStarted) {
+    bothStarted.countDown();
+    try {
+      assertThat(bothStarted.await(10, TimeUnit.SECONDS)).as("steps are executed concurrently").isTrue();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class TestConcurrentStep implements ConcurrentComputationStep {
+    private final String description;
+    private final Set<Class<?>> inputs;
+    private final Set<Class<?>> outputs;
+    private final Runnable execution;
+    private final List<String> executed;
+
+    private TestConcurrentStep(String description, Set<Class<?>> inputs, Set<Class<?>> outputs, Runnable execution, List<String> executed) {
+      this.description = description;
+      this.inputs = inputs;
+      this.outputs = outputs;
+      this.execution = execution;
+      this.executed = executed;
+    }
+
+    @Override
+    public void execute() {
+      execution.run();
+      executed.add(description);
+    }
+
+    @Override
+    public Set<Class<?>> getInputs() {
+      return inputs;
+    }
+
+    @Override
+    public Set<Class<?>> getOutputs() {
+      return outputs;
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
   }
 
   private static ComputationSteps mockComputationSteps(ComputationStep... computationSteps) {
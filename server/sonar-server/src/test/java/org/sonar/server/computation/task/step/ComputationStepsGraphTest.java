@@ -0,0 +1,70 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ComputationStepsGraphTest {
+
+  @Test
+  public void steps_which_do_not_declare_data_depend_on_previous_steps_and_next_steps_depend_on_them() {
+    ComputationStepsGraph underTest = new ComputationStepsGraph(asList(
+      concurrentStep(ImmutableSet.of(), ImmutableSet.of(String.class)),
+      mock(ComputationStep.class),
+      concurrentStep(ImmutableSet.of(), ImmutableSet.of(Integer.class))));
+
+    assertThat(underTest.hasConcurrentSteps()).isFalse();
+    assertThat(underTest.getSuccessors(0)).containsExactly(1);
+    assertThat(underTest.getSuccessors(1)).containsExactly(2);
+    assertThat(underTest.getPredecessorCount(0)).isEqualTo(0);
+    assertThat(underTest.getPredecessorCount(2)).isEqualTo(1);
+  }
+
+  @Test
+  public void steps_depend_on_previous_steps_writing_data_they_read_or_write_or_reading_data_they_write() {
+    ComputationStepsGraph underTest = new ComputationStepsGraph(asList(
+      concurrentStep(ImmutableSet.of(Long.class), ImmutableSet.of(String.class)),
+      concurrentStep(ImmutableSet.of(String.class), ImmutableSet.of()),
+      concurrentStep(ImmutableSet.of(), ImmutableSet.of(String.class)),
+      concurrentStep(ImmutableSet.of(), ImmutableSet.of(Long.class)),
+      concurrentStep(ImmutableSet.of(Long.class), ImmutableSet.of(Integer.class))));
+
+    assertThat(underTest.hasConcurrentSteps()).isTrue();
+    assertThat(underTest.getSuccessors(0)).containsExactly(1, 2, 3);
+    assertThat(underTest.getSuccessors(1)).containsExactly(2);
+    assertThat(underTest.getSuccessors(2)).isEmpty();
+    assertThat(underTest.getSuccessors(3)).containsExactly(4);
+    assertThat(underTest.getPredecessorCount(4)).isEqualTo(1);
+  }
+
+  private static ConcurrentComputationStep concurrentStep(Set<Class<?>> inputs, Set<Class<?>> outputs) {
+    ConcurrentComputationStep step = mock(ConcurrentComputationStep.class);
+    when(step.getInputs()).thenReturn(inputs);
+    when(step.getOutputs()).thenReturn(outputs);
+    return step;
+  }
+}
@@ -278,6 +278,52 @@ public class IssueIndexerTest {
     assertThatEsQueueTableHasSize(0);
   }
 
+  @Test
+  public void prepareForRecoveryOnIssues_indexes_only_the_given_issues() {
+    IssueDto issue1 = db.issues().insertIssue(organization);
+    IssueDto issue2 = db.issues().insertIssue(organization);
+
+    Collection<EsQueueDto> items = underTest.prepareForRecoveryOnIssues(db.getSession(), issue1.getProjectUuid(), asList(issue1.getKey()));
+    db.commit();
+    assertThatEsQueueTableHasSize(1);
+
+    underTest.index(db.getSession(), items);
+
+    assertThatIndexHasOnly(issue1);
+    assertThatEsQueueTableHasSize(0);
+  }
+
+  @Test
+  public void prepareForRecoveryOnIssues_removes_issues_which_do_not_exist_in_db() {
+    IssueDto issue = db.issues().insertIssue(organization);
+    addIssueToIndex(issue.getProjectUuid(), "I1");
+
+    Collection<EsQueueDto> items = underTest.prepareForRecoveryOnIssues(db.getSession(), issue.getProjectUuid(), asList("I1", issue.getKey()));
+    db.commit();
+    underTest.index(db.getSession(), items);
+
+    assertThatIndexHasOnly(issue);
+    assertThatEsQueueTableHasSize(0);
+  }
+
+  @Test
+  public void prepareForRecoveryOnProject_indexes_all_the_issues_of_project() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject(organization);
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    IssueDto issue1 = db.issues().insert(rule, project, file);
+    IssueDto issue2 = db.issues().insert(rule, project, file);
+
+    Collection<EsQueueDto> items = underTest.prepareForRecoveryOnProject(db.getSession(), project.uuid());
+    db.commit();
+    assertThatEsQueueTableHasSize(1);
+
+    underTest.index(db.getSession(), items);
+
+    assertThatIndexHasOnly(issue1, issue2);
+    assertThatEsQueueTableHasSize(0);
+  }
+
   @Test
   public void commitAndIndexIssues_removes_issue_from_index_if_it_does_not_exist_in_db() {
     IssueDto issue1 = new IssueDto().setKee("I1").setProjectUuid("P1");
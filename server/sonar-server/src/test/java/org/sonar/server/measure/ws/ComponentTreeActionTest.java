@@ -321,6 +321,43 @@ public class ComponentTreeActionTest {
     assertThat(response.getPaging().getTotal()).isEqualTo(4);
   }
 
+  @Test
+  public void return_all_requested_measures_of_page_sorted_by_metric_value() {
+    ComponentDto projectDto = newPrivateProjectDto(db.getDefaultOrganization(), "project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(projectDto);
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-1"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-2"));
+    ComponentDto file3 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-3"));
+    MetricDto ncloc = newMetricDto().setKey("ncloc").setValueType(INT.name()).setDirection(1);
+    dbClient.metricDao().insert(dbSession, ncloc);
+    MetricDto coverage = insertCoverageMetric();
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(ncloc, projectDto, projectSnapshot).setValue(60.0d),
+      newMeasureDto(coverage, projectDto, projectSnapshot).setValue(50.0d),
+      newMeasureDto(ncloc, file1, projectSnapshot).setValue(10.0d),
+      newMeasureDto(coverage, file1, projectSnapshot).setValue(90.0d),
+      newMeasureDto(ncloc, file2, projectSnapshot).setValue(30.0d),
+      newMeasureDto(coverage, file2, projectSnapshot).setValue(20.0d),
+      newMeasureDto(ncloc, file3, projectSnapshot).setValue(20.0d),
+      newMeasureDto(coverage, file3, projectSnapshot).setValue(40.0d));
+    db.commit();
+
+    ComponentTreeWsResponse response = ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, "project-uuid")
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(Param.ASCENDING, "false")
+      .setParam(PARAM_METRIC_SORT, "ncloc")
+      .setParam(PARAM_METRIC_KEYS, "ncloc,coverage")
+      .setParam(Param.PAGE_SIZE, "2")
+      .executeProtobuf(ComponentTreeWsResponse.class);
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-2", "file-uuid-3");
+    assertThat(response.getPaging().getTotal()).isEqualTo(3);
+    assertThat(response.getComponents(0).getMeasuresList()).extracting("metric", "value").containsOnly(tuple("ncloc", "30"), tuple("coverage", "20.0"));
+    assertThat(response.getComponents(1).getMeasuresList()).extracting("metric", "value").containsOnly(tuple("ncloc", "20"), tuple("coverage", "40.0"));
+    assertThat(response.getBaseComponent().getMeasuresList()).extracting("metric", "value").containsOnly(tuple("ncloc", "60"), tuple("coverage", "50.0"));
+  }
+
   @Test
   public void remove_components_without_measure_on_the_metric_sort() {
     ComponentDto project = newPrivateProjectDto(db.getDefaultOrganization(), "project-uuid");
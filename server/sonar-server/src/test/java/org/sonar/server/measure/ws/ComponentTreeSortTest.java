@@ -35,6 +35,7 @@ import org.sonar.db.metric.MetricDto;
 import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.db.metric.MetricTesting.newMetricDto;
@@ -235,6 +236,49 @@ public class ComponentTreeSortTest {
       .containsExactly("path-1", "path-2", "path-3");
   }
 
+  @Test
+  public void select_first_components_of_sort() {
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_SORT), false, NUM_METRIC_KEY);
+
+    List<ComponentDto> result = ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, 3);
+
+    assertThat(result).extracting("path").containsExactly("path-9", "path-8", "path-7");
+  }
+
+  @Test
+  public void select_first_components_of_sort_in_original_order_when_equal() {
+    components = newArrayList(
+      newComponentWithoutSnapshotId("name-1", "qualifier-2", "path-1"),
+      newComponentWithoutSnapshotId("name-1", "qualifier-1", "path-2"),
+      newComponentWithoutSnapshotId("name-0", "qualifier-1", "path-3"),
+      newComponentWithoutSnapshotId("name-1", "qualifier-1", "path-4"),
+      newComponentWithoutSnapshotId("name-1", "qualifier-1", "path-5"));
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(NAME_SORT), true, null);
+
+    assertThat(ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, 3))
+      .extracting("path").containsExactly("path-3", "path-1", "path-2");
+    assertThat(ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, 4))
+      .containsExactlyElementsOf(sortComponents(wsRequest).subList(0, 4));
+  }
+
+  @Test
+  public void select_first_components_without_sort() {
+    ComponentTreeWsRequest wsRequest = newRequest(emptyList(), true, null);
+
+    assertThat(ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, 2)).extracting("path").containsExactly("path-9", "path-8");
+    assertThat(ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, 0)).isEmpty();
+  }
+
+  @Test
+  public void select_all_components_when_limit_is_greater_than_number_of_components() {
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(PATH_SORT), true, null);
+
+    List<ComponentDto> result = ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, 100);
+
+    assertThat(result).extracting("path")
+      .containsExactly("path-1", "path-2", "path-3", "path-4", "path-5", "path-6", "path-7", "path-8", "path-9");
+  }
+
   private List<ComponentDto> sortComponents(ComponentTreeWsRequest wsRequest) {
     return ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
   }
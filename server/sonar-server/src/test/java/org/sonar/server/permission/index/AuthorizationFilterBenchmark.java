@@ -0,0 +1,192 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.permission.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.db.user.GroupDto;
+import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsTester;
+import org.sonar.server.tester.MockUserSession;
+
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.sonar.server.permission.index.FooIndexDefinition.FIELD_NAME;
+import static org.sonar.server.permission.index.FooIndexDefinition.FIELD_PROJECT_UUID;
+import static org.sonar.server.permission.index.FooIndexDefinition.INDEX_TYPE_FOO;
+
+/**
+ * Compares the latency of searches filtered by {@link AuthorizationTypeSupport} in modes
+ * {@link AuthorizationTypeSupport#FILTER_MODE_JOIN} and {@link AuthorizationTypeSupport#FILTER_MODE_TERMS}, on an
+ * index of {@link #projects} projects with {@value #DOCS_PER_PROJECT} documents each. Searches of a root user
+ * (filter {@code none}), which are not filtered, give the cost of the rest of the request.
+ * <p>
+ * A "small" user can browse about 2% of projects, below the default {@link AuthorizationTypeSupport#FILTER_MAX_TERMS_PROPERTY}
+ * on 100,000 projects. A "large" user can browse about 20% of projects, so the terms mode falls back to the join, unless
+ * the maximum number of terms is removed (filter {@code unbounded_terms}).
+ * </p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=org.sonar.server.permission.index.AuthorizationFilterBenchmark -Dexec.classpathScope=test}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class AuthorizationFilterBenchmark {
+
+  private static final int DOCS_PER_PROJECT = 10;
+  private static final int GROUPS = 500;
+  private static final int GROUPS_PER_PROJECT = 5;
+
+  @Param({"100000"})
+  public int projects;
+
+  @Param({"small", "large"})
+  public String user;
+
+  @Param({"none", "join", "terms", "unbounded_terms"})
+  public String filter;
+
+  private EsTester es;
+  private AuthorizationTypeSupport authorizationTypeSupport;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    es = new EsTester(new FooIndexDefinition());
+    es.before();
+    populate(es.client(), projects);
+    authorizationTypeSupport = createAuthorizationTypeSupport(es.client());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    es.after();
+  }
+
+  @Benchmark
+  public long search() {
+    // the filter is created for each search, as done by the indices for each request
+    QueryBuilder query = boolQuery()
+      .must(termQuery(FIELD_NAME, "bar"))
+      .filter(authorizationTypeSupport.createQueryFilter(INDEX_TYPE_FOO));
+    return es.client().prepareSearch(INDEX_TYPE_FOO)
+      .setQuery(query)
+      .setSize(10)
+      .get()
+      .getHits()
+      .getTotalHits();
+  }
+
+  private AuthorizationTypeSupport createAuthorizationTypeSupport(EsClient client) {
+    if ("none".equals(filter)) {
+      MockUserSession rootSession = new MockUserSession("root");
+      rootSession.setRoot(true);
+      return new AuthorizationTypeSupport(rootSession);
+    }
+    int groups = "small".equals(user) ? 2 : 20;
+    MockUserSession userSession = new MockUserSession(user).setUserId(1);
+    userSession.setGroups(IntStream.range(0, groups)
+      .mapToObj(i -> new GroupDto().setId(i * (GROUPS / groups)))
+      .toArray(GroupDto[]::new));
+    switch (filter) {
+      case "join":
+        return new AuthorizationTypeSupport(userSession);
+      case "terms":
+        return new AuthorizationTypeSupport(userSession, client, new MapSettings()
+          .setProperty(AuthorizationTypeSupport.FILTER_MODE_PROPERTY, AuthorizationTypeSupport.FILTER_MODE_TERMS)
+          .asConfig());
+      case "unbounded_terms":
+        return new AuthorizationTypeSupport(userSession, client, new MapSettings()
+          .setProperty(AuthorizationTypeSupport.FILTER_MODE_PROPERTY, AuthorizationTypeSupport.FILTER_MODE_TERMS)
+          .setProperty(AuthorizationTypeSupport.FILTER_MAX_TERMS_PROPERTY, Integer.MAX_VALUE)
+          .asConfig());
+      default:
+        throw new IllegalArgumentException("Unsupported filter: " + filter);
+    }
+  }
+
+  private static void populate(EsClient client, int projects) {
+    Random random = new Random(42);
+    BulkRequestBuilder bulk = client.prepareBulk();
+    for (int p = 0; p < projects; p++) {
+      String projectUuid = "P" + p;
+      Map<String, Object> authorization = new HashMap<>();
+      if (p % 100 == 0) {
+        authorization.put(AuthorizationTypeSupport.FIELD_ALLOW_ANYONE, true);
+      } else {
+        authorization.put(AuthorizationTypeSupport.FIELD_ALLOW_ANYONE, false);
+        authorization.put(AuthorizationTypeSupport.FIELD_GROUP_IDS, random.ints(GROUPS_PER_PROJECT, 0, GROUPS).boxed().toArray());
+        authorization.put(AuthorizationTypeSupport.FIELD_USER_IDS, new int[] {p});
+      }
+      bulk.add(new IndexRequest(INDEX_TYPE_FOO.getIndex(), AuthorizationTypeSupport.TYPE_AUTHORIZATION)
+        .id(projectUuid)
+        .routing(projectUuid)
+        .source(authorization));
+      for (int d = 0; d < DOCS_PER_PROJECT; d++) {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put(FIELD_NAME, d % 2 == 0 ? "bar" : "baz");
+        doc.put(FIELD_PROJECT_UUID, projectUuid);
+        bulk.add(new IndexRequest(INDEX_TYPE_FOO.getIndex(), INDEX_TYPE_FOO.getType())
+          .parent(projectUuid)
+          .routing(projectUuid)
+          .source(doc));
+      }
+      if (bulk.numberOfActions() >= 10_000) {
+        bulk.get();
+        bulk = client.prepareBulk();
+      }
+    }
+    if (bulk.numberOfActions() > 0) {
+      bulk.get();
+    }
+    client.prepareRefresh(INDEX_TYPE_FOO.getIndex()).get();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(AuthorizationFilterBenchmark.class.getSimpleName())
+      .build())
+      .run();
+  }
+}
@@ -24,15 +24,22 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.join.query.HasParentQueryBuilder;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.GroupTesting;
+import org.sonar.server.es.EsClient;
 import org.sonar.server.tester.UserSessionRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.sonar.test.JsonAssert.assertJson;
 
 public class AuthorizationTypeSupportTest {
 
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
   @Rule
   public UserSessionRule userSession = UserSessionRule.standalone();
 
@@ -150,4 +157,37 @@ public class AuthorizationTypeSupportTest {
       "  }" +
       "}");
   }
+
+  @Test
+  public void createQueryFilter_of_index_type_has_parent_in_join_mode() {
+    userSession.anonymous();
+    AuthorizationTypeSupport underTest = new AuthorizationTypeSupport(userSession, mock(EsClient.class), new MapSettings().asConfig());
+
+    QueryBuilder filter = underTest.createQueryFilter(FooIndexDefinition.INDEX_TYPE_FOO);
+
+    assertThat(filter).isInstanceOf(HasParentQueryBuilder.class);
+    assertThat(filter.toString()).isEqualTo(underTest.createQueryFilter().toString());
+  }
+
+  @Test
+  public void createQueryFilter_of_index_type_does_not_include_permission_filters_in_terms_mode_if_user_is_flagged_as_root() {
+    userSession.logIn().setRoot();
+    EsClient esClient = mock(EsClient.class);
+    AuthorizationTypeSupport underTest = new AuthorizationTypeSupport(userSession, esClient, new MapSettings()
+      .setProperty(AuthorizationTypeSupport.FILTER_MODE_PROPERTY, AuthorizationTypeSupport.FILTER_MODE_TERMS).asConfig());
+
+    QueryBuilder filter = underTest.createQueryFilter(FooIndexDefinition.INDEX_TYPE_FOO);
+
+    assertThat(filter).isInstanceOf(MatchAllQueryBuilder.class);
+    verifyZeroInteractions(esClient);
+  }
+
+  @Test
+  public void fail_if_filter_mode_is_not_supported() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Unsupported value of property sonar.search.authorization.filterMode: foo");
+
+    new AuthorizationTypeSupport(userSession, mock(EsClient.class), new MapSettings()
+      .setProperty(AuthorizationTypeSupport.FILTER_MODE_PROPERTY, "foo").asConfig());
+  }
 }
@@ -23,6 +23,7 @@ import java.util.Collection;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
@@ -294,6 +295,61 @@ public class PermissionIndexerTest {
     verifyAuthorized(project, user1);
   }
 
+  @Test
+  public void terms_filter_mode_restricts_search_to_authorized_projects_and_is_refreshed_on_permission_change() {
+    AuthorizationTypeSupport authorizationTypeSupport = new AuthorizationTypeSupport(userSession, es.client(), new MapSettings()
+      .setProperty(AuthorizationTypeSupport.FILTER_MODE_PROPERTY, AuthorizationTypeSupport.FILTER_MODE_TERMS)
+      .asConfig());
+    fooIndex = new FooIndex(es.client(), authorizationTypeSupport);
+    underTest = new PermissionIndexer(db.getDbClient(), es.client(), authorizationTypeSupport, fooIndexer);
+    ComponentDto publicProject = createAndIndexPublicProject();
+    ComponentDto project = createAndIndexPrivateProject();
+    UserDto user1 = db.users().insertUser();
+    UserDto user2 = db.users().insertUser();
+    UserDto user3 = db.users().insertUser();
+    GroupDto group = db.users().insertGroup();
+    db.users().insertProjectPermissionOnUser(user1, USER, project);
+    db.users().insertProjectPermissionOnGroup(group, USER, project);
+    indexOnStartup();
+
+    verifyAnyoneAuthorized(publicProject);
+    verifyAnyoneNotAuthorized(project);
+    verifyAuthorized(project, user1);
+    verifyAuthorized(project, user3, group);
+    verifyNotAuthorized(project, user2);
+    verifyAuthorized(publicProject, user2);
+
+    db.users().insertProjectPermissionOnUser(user2, USER, project);
+    indexPermissions(project, PERMISSION_CHANGE);
+
+    verifyAuthorized(project, user2);
+    verifyNotAuthorized(project, user3);
+  }
+
+  @Test
+  public void terms_filter_mode_falls_back_to_join_if_user_can_browse_too_many_projects() {
+    AuthorizationTypeSupport authorizationTypeSupport = new AuthorizationTypeSupport(userSession, es.client(), new MapSettings()
+      .setProperty(AuthorizationTypeSupport.FILTER_MODE_PROPERTY, AuthorizationTypeSupport.FILTER_MODE_TERMS)
+      .setProperty(AuthorizationTypeSupport.FILTER_MAX_TERMS_PROPERTY, 1)
+      .asConfig());
+    fooIndex = new FooIndex(es.client(), authorizationTypeSupport);
+    underTest = new PermissionIndexer(db.getDbClient(), es.client(), authorizationTypeSupport, fooIndexer);
+    ComponentDto publicProject = createAndIndexPublicProject();
+    ComponentDto project1 = createAndIndexPrivateProject();
+    ComponentDto project2 = createAndIndexPrivateProject();
+    UserDto user1 = db.users().insertUser();
+    UserDto user2 = db.users().insertUser();
+    db.users().insertProjectPermissionOnUser(user1, USER, project1);
+    indexOnStartup();
+
+    // user1 can browse publicProject and project1
+    verifyAuthorized(publicProject, user1);
+    verifyAuthorized(project1, user1);
+    verifyNotAuthorized(project2, user1);
+    verifyAuthorized(publicProject, user2);
+    verifyNotAuthorized(project1, user2);
+  }
+
   @Test
   public void delete_permissions_on_project_deletion() {
     ComponentDto project = createAndIndexPrivateProject();
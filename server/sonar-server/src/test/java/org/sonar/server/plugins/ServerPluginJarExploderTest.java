@@ -42,22 +42,28 @@ public class ServerPluginJarExploderTest {
   @Test
   public void copy_all_classloader_files_to_dedicated_directory() throws Exception {
     File deployDir = temp.newFolder();
+    File dataDir = temp.newFolder();
     when(fs.getDeployedPluginsDir()).thenReturn(deployDir);
+    when(fs.getDataDir()).thenReturn(dataDir);
     File jar = TestProjectUtils.jarOf("test-libs-plugin");
     PluginInfo info = PluginInfo.create(jar);
 
     ExplodedPlugin exploded = underTest.explode(info);
 
+    // the JAR is copied to web/deploy/{pluginKey} in order to be downloaded by scanners
+    assertThat(new File(deployDir, "testlibs/" + jar.getName())).isFile().exists();
+
     // all the files loaded by classloaders (JAR + META-INF/libs/*.jar) are copied to the dedicated directory
-    // web/deploy/{pluginKey}
-    File pluginDeployDir = new File(deployDir, "testlibs");
+    // web/exploded-plugins/{pluginKey}/{hash} of data dir
+    File pluginCacheDir = new File(dataDir, "web/exploded-plugins/testlibs");
 
     assertThat(exploded.getKey()).isEqualTo("testlibs");
-    assertThat(exploded.getMain()).isFile().exists().hasParent(pluginDeployDir);
+    assertThat(exploded.getMain()).isFile().exists().hasName(jar.getName());
+    assertThat(exploded.getMain().getParentFile()).hasParent(pluginCacheDir);
     assertThat(exploded.getLibs()).extracting("name").containsOnly("commons-daemon-1.0.15.jar", "commons-email-20030310.165926.jar");
     for (File lib : exploded.getLibs()) {
       assertThat(lib).exists().isFile();
-      assertThat(lib.getCanonicalPath()).startsWith(pluginDeployDir.getCanonicalPath());
+      assertThat(lib.getCanonicalPath()).startsWith(pluginCacheDir.getCanonicalPath());
     }
   }
 }
@@ -0,0 +1,149 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.source.SourceLinesCache.LINES_PER_BLOCK;
+
+public class SourceLinesCacheTest {
+
+  private static final String FILE_UUID = "FILE_UUID";
+
+  private SourceLinesCache underTest = new SourceLinesCache();
+  private CountingLoader loader = new CountingLoader(newDto("HASH", 2 * LINES_PER_BLOCK + 10));
+
+  @Test
+  public void load_data_only_once() {
+    assertThat(lineNumbers(underTest.getLines(FILE_UUID, "HASH", 1, 3, loader))).containsExactly(1, 2, 3);
+    assertThat(lineNumbers(underTest.getLines(FILE_UUID, "HASH", 5, 6, loader))).containsExactly(5, 6);
+
+    assertThat(loader.calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void load_only_missing_blocks() {
+    underTest.getLines(FILE_UUID, "HASH", 1, 3, loader);
+    assertThat(lineNumbers(underTest.getLines(FILE_UUID, "HASH", LINES_PER_BLOCK - 1, LINES_PER_BLOCK + 2, loader)))
+      .containsExactly(LINES_PER_BLOCK - 1, LINES_PER_BLOCK, LINES_PER_BLOCK + 1, LINES_PER_BLOCK + 2);
+    assertThat(loader.calls.get()).isEqualTo(2);
+
+    underTest.getLines(FILE_UUID, "HASH", LINES_PER_BLOCK + 3, LINES_PER_BLOCK + 4, loader);
+    assertThat(loader.calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void get_lines_until_end_of_file() {
+    List<DbFileSources.Line> lines = underTest.getLines(FILE_UUID, "HASH", 2 * LINES_PER_BLOCK + 5, Integer.MAX_VALUE, loader);
+    assertThat(lineNumbers(lines)).containsExactly(2 * LINES_PER_BLOCK + 5, 2 * LINES_PER_BLOCK + 6, 2 * LINES_PER_BLOCK + 7,
+      2 * LINES_PER_BLOCK + 8, 2 * LINES_PER_BLOCK + 9, 2 * LINES_PER_BLOCK + 10);
+
+    assertThat(underTest.getLines(FILE_UUID, "HASH", 1, Integer.MAX_VALUE, loader)).hasSize(2 * LINES_PER_BLOCK + 10);
+    assertThat(underTest.getLines(FILE_UUID, "HASH", 3 * LINES_PER_BLOCK, Integer.MAX_VALUE, loader)).isEmpty();
+    assertThat(loader.calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void get_lines_of_file_with_size_multiple_of_block_size() {
+    CountingLoader loader = new CountingLoader(newDto("HASH", LINES_PER_BLOCK));
+
+    assertThat(underTest.getLines(FILE_UUID, "HASH", 1, Integer.MAX_VALUE, loader)).hasSize(LINES_PER_BLOCK);
+    assertThat(underTest.getLines(FILE_UUID, "HASH", LINES_PER_BLOCK + 1, Integer.MAX_VALUE, loader)).isEmpty();
+    assertThat(loader.calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void reload_when_data_hash_changes() {
+    underTest.getLines(FILE_UUID, "HASH", 1, 3, loader);
+    CountingLoader newLoader = new CountingLoader(newDto("NEW_HASH", 5));
+
+    assertThat(lineNumbers(underTest.getLines(FILE_UUID, "NEW_HASH", 1, 10, newLoader))).containsExactly(1, 2, 3, 4, 5);
+    assertThat(newLoader.calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_mix_lines_of_different_versions_of_file() {
+    CountingLoader newLoader = new CountingLoader(newDto("NEW_HASH", 5));
+
+    assertThat(lineNumbers(underTest.getLines(FILE_UUID, "HASH", 1, 10, newLoader))).containsExactly(1, 2, 3, 4, 5);
+    underTest.getLines(FILE_UUID, "HASH", 1, 10, newLoader);
+    assertThat(newLoader.calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void do_not_cache_if_no_data_hash() {
+    underTest.getLines(FILE_UUID, null, 1, 3, loader);
+    underTest.getLines(FILE_UUID, null, 1, 3, loader);
+
+    assertThat(loader.calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void return_null_if_file_has_no_source_anymore() {
+    assertThat(underTest.getLines(FILE_UUID, "HASH", 1, 3, () -> null)).isNull();
+    assertThat(underTest.getLines(FILE_UUID, null, 1, 3, () -> null)).isNull();
+  }
+
+  @Test
+  public void cache_is_bounded_by_size() {
+    SourceLinesCache smallCache = new SourceLinesCache(10);
+
+    assertThat(lineNumbers(smallCache.getLines(FILE_UUID, "HASH", 1, 3, loader))).containsExactly(1, 2, 3);
+    smallCache.getLines(FILE_UUID, "HASH", 1, 3, loader);
+    assertThat(loader.calls.get()).isEqualTo(2);
+  }
+
+  private static FileSourceDto newDto(String dataHash, int numberOfLines) {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= numberOfLines; i++) {
+      data.addLinesBuilder().setLine(i).setSource("SOURCE_" + i);
+    }
+    return new FileSourceDto()
+      .setFileUuid(FILE_UUID)
+      .setDataHash(dataHash)
+      .setSourceData(data.build());
+  }
+
+  private static List<Integer> lineNumbers(List<DbFileSources.Line> lines) {
+    return lines.stream().map(DbFileSources.Line::getLine).collect(toList());
+  }
+
+  private static class CountingLoader implements Supplier<FileSourceDto> {
+    private final FileSourceDto dto;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private CountingLoader(FileSourceDto dto) {
+      this.dto = dto;
+    }
+
+    @Override
+    public FileSourceDto get() {
+      calls.incrementAndGet();
+      return dto;
+    }
+  }
+}
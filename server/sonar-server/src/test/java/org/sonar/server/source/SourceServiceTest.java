@@ -49,7 +49,7 @@ public class SourceServiceTest {
 
   HtmlSourceDecorator htmlDecorator = mock(HtmlSourceDecorator.class);
 
-  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator);
+  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, new SourceLinesCache());
 
   @Before
   public void injectFakeLines() throws IOException {
@@ -91,6 +91,15 @@ public class SourceServiceTest {
     assertThat(lines).containsExactly("HTML_5", "HTML_6", "HTML_7");
   }
 
+  @Test
+  public void get_lines_of_file_already_loaded() {
+    underTest.getLines(dbTester.getSession(), FILE_UUID, 1, 10);
+
+    Optional<Iterable<DbFileSources.Line>> linesOpt = underTest.getLines(dbTester.getSession(), FILE_UUID, 2, 3);
+
+    assertThat(linesOpt.get()).extracting(DbFileSources.Line::getLine).containsExactly(2, 3);
+  }
+
   @Test
   public void getLines_fails_if_range_starts_at_zero() {
     expectedException.expect(IllegalArgumentException.class);
@@ -0,0 +1,204 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source.ws;
+
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
+import org.sonar.api.web.UserRole;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.Protobuf;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
+import org.sonar.server.component.TestComponentFinder;
+import org.sonar.server.exceptions.BadRequestException;
+import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.TestRequest;
+import org.sonar.server.ws.WsActionTester;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.nCopies;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.sonar.db.component.ComponentTesting.newDirectory;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.component.ComponentTesting.newModuleDto;
+
+public class HashesActionTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+  @Rule
+  public UserSessionRule userSession = UserSessionRule.standalone();
+
+  private WsActionTester tester = new WsActionTester(new HashesAction(db.getDbClient(), userSession, TestComponentFinder.from(db)));
+
+  @Test
+  public void stream_line_hashes_of_files() {
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file1 = db.components().insertComponent(newFileDto(project));
+    ComponentDto file2 = db.components().insertComponent(newFileDto(project));
+    ComponentDto file3 = db.components().insertComponent(newFileDto(project));
+    db.fileSources().insertFileSource(file1, s -> s.setLineHashes("a1\nb1"));
+    db.fileSources().insertFileSource(file2, s -> s.setLineHashes("a2"));
+    db.fileSources().insertFileSource(file3, s -> s.setLineHashes("a3"));
+    userSession.addProjectPermission(UserRole.USER, project);
+
+    List<FileLineHashes> result = call(tester.newRequest().setParam("keys", file1.getDbKey() + "," + file2.getDbKey() + ",unknown"));
+
+    assertThat(result)
+      .extracting(FileLineHashes::getFileKey, FileLineHashes::getLineHashes)
+      .containsOnly(tuple(file1.getDbKey(), "a1\nb1"), tuple(file2.getDbKey(), "a2"));
+  }
+
+  @Test
+  public void keys_can_be_sent_by_POST_request() {
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    db.fileSources().insertFileSource(file, s -> s.setLineHashes("a1"));
+    userSession.addProjectPermission(UserRole.USER, project);
+
+    List<FileLineHashes> result = call(tester.newRequest().setMethod("POST").setParam("keys", file.getDbKey()));
+
+    assertThat(result).extracting(FileLineHashes::getFileKey).containsOnly(file.getDbKey());
+  }
+
+  @Test
+  public void files_without_source_are_ignored() {
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    userSession.addProjectPermission(UserRole.USER, project);
+
+    List<FileLineHashes> result = call(tester.newRequest().setParam("keys", file.getDbKey()));
+
+    assertThat(result).isEmpty();
+  }
+
+  @Test
+  public void null_line_hashes_are_returned_as_empty() {
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    db.fileSources().insertFileSource(file, s -> s.setLineHashes(null));
+    userSession.addProjectPermission(UserRole.USER, project);
+
+    List<FileLineHashes> result = call(tester.newRequest().setParam("keys", file.getDbKey()));
+
+    assertThat(result)
+      .extracting(FileLineHashes::getFileKey, FileLineHashes::getLineHashes)
+      .containsOnly(tuple(file.getDbKey(), ""));
+  }
+
+  @Test
+  public void stream_line_hashes_of_all_files_of_module() {
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    ComponentDto directory = db.components().insertComponent(newDirectory(module, "src"));
+    ComponentDto fileInModule = db.components().insertComponent(newFileDto(module, directory));
+    ComponentDto fileInProject = db.components().insertComponent(newFileDto(project));
+    db.fileSources().insertFileSource(fileInModule, s -> s.setLineHashes("a1"));
+    db.fileSources().insertFileSource(fileInProject, s -> s.setLineHashes("a2"));
+    userSession.addProjectPermission(UserRole.USER, project);
+
+    assertThat(call(tester.newRequest().setParam("module", module.getDbKey())))
+      .extracting(FileLineHashes::getFileKey)
+      .containsOnly(fileInModule.getDbKey());
+    assertThat(call(tester.newRequest().setParam("module", project.getDbKey())))
+      .extracting(FileLineHashes::getFileKey)
+      .containsOnly(fileInModule.getDbKey(), fileInProject.getDbKey());
+  }
+
+  @Test
+  public void fail_if_no_parameter() {
+    expectedException.expect(BadRequestException.class);
+    expectedException.expectMessage("Either 'keys' or 'module' must be provided");
+
+    tester.newRequest().execute();
+  }
+
+  @Test
+  public void fail_if_both_parameters() {
+    expectedException.expect(BadRequestException.class);
+    expectedException.expectMessage("Either 'keys' or 'module' must be provided");
+
+    tester.newRequest().setParam("keys", "file").setParam("module", "project").execute();
+  }
+
+  @Test
+  public void fail_if_too_many_keys() {
+    expectedException.expect(BadRequestException.class);
+    expectedException.expectMessage("'keys' can contains only 500 values, got 501");
+
+    tester.newRequest().setParam("keys", String.join(",", nCopies(HashesAction.MAX_KEYS + 1, "file"))).execute();
+  }
+
+  @Test
+  public void fail_if_module_is_a_file() {
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    userSession.addProjectPermission(UserRole.USER, project);
+
+    expectedException.expect(BadRequestException.class);
+    expectedException.expectMessage("Component '" + file.getDbKey() + "' must be a project or a module");
+
+    tester.newRequest().setParam("module", file.getDbKey()).execute();
+  }
+
+  @Test
+  public void fail_if_module_does_not_exist() {
+    expectedException.expect(NotFoundException.class);
+
+    tester.newRequest().setParam("module", "unknown").execute();
+  }
+
+  @Test
+  public void fail_if_missing_permission_on_a_file() {
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto otherProject = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    ComponentDto otherFile = db.components().insertComponent(newFileDto(otherProject));
+    userSession.addProjectPermission(UserRole.USER, project);
+
+    expectedException.expect(ForbiddenException.class);
+
+    tester.newRequest().setParam("keys", file.getDbKey() + "," + otherFile.getDbKey()).execute();
+  }
+
+  @Test
+  public void fail_if_missing_permission_on_module() {
+    ComponentDto project = db.components().insertPrivateProject();
+
+    expectedException.expect(ForbiddenException.class);
+
+    tester.newRequest().setParam("module", project.getDbKey()).execute();
+  }
+
+  private static List<FileLineHashes> call(TestRequest request) {
+    try (CloseableIterator<FileLineHashes> it = Protobuf.readStream(request.execute().getInputStream(), FileLineHashes.parser())) {
+      return newArrayList(it);
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.util.Date;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ProtobufIssueDiskCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void traverse_empty_cache() throws Exception {
+    ProtobufIssueDiskCache underTest = new ProtobufIssueDiskCache(temp.newFile(), System2.INSTANCE);
+
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+  }
+
+  @Test
+  public void write_and_read_all_fields() throws Exception {
+    ProtobufIssueDiskCache underTest = new ProtobufIssueDiskCache(temp.newFile(), System2.INSTANCE);
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(3).setEndLine(4))
+      .build();
+    DefaultIssueComment comment = new DefaultIssueComment()
+      .setIssueKey("ISSUE_1")
+      .setKey("COMMENT_1")
+      .setUserLogin("john")
+      .setMarkdownText("a comment")
+      .setCreatedAt(new Date(1_500_000_000_000L))
+      .setUpdatedAt(new Date(1_500_000_001_000L))
+      .setNew(true);
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_1")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE_1")
+      .setComponentKey("PROJECT:File1.java")
+      .setModuleUuid("MODULE_1")
+      .setModuleUuidPath(".MODULE_1.")
+      .setProjectUuid("PROJECT_1")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("java", "S001"))
+      .setLanguage("java")
+      .setSeverity(Severity.MAJOR)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(3)
+      .setGap(2.5)
+      .setEffort(Duration.create(10L))
+      .setStatus("RESOLVED")
+      .setResolution("FIXED")
+      .setAssignee("jane")
+      .setChecksum("abc")
+      .setAttribute("jira", "FOO-1")
+      .setAuthorLogin("john")
+      .addComment(comment)
+      .setTags(newArrayList("tag1", "tag2"))
+      .setLocations(locations)
+      .setCreationDate(new Date(1_400_000_000_000L))
+      .setUpdateDate(new Date(1_450_000_000_000L))
+      .setCloseDate(new Date(1_460_000_000_000L))
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_470_000_000_000L);
+    issue.addChange(new FieldDiffs().setUserLogin("jane").setDiff("severity", "MINOR", "MAJOR"));
+    issue.setFieldChange(IssueChangeContext.createUser(new Date(1_480_000_000_000L), "john"), "technicalDebt", 5L, 10L);
+
+    underTest.newAppender().append(issue).close();
+
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      DefaultIssue read = traverse.next();
+      assertThat(traverse.hasNext()).isFalse();
+
+      assertThat(read.key()).isEqualTo("ISSUE_1");
+      assertThat(read.type()).isEqualTo(RuleType.BUG);
+      assertThat(read.componentUuid()).isEqualTo("FILE_1");
+      assertThat(read.componentKey()).isEqualTo("PROJECT:File1.java");
+      assertThat(read.moduleUuid()).isEqualTo("MODULE_1");
+      assertThat(read.moduleUuidPath()).isEqualTo(".MODULE_1.");
+      assertThat(read.projectUuid()).isEqualTo("PROJECT_1");
+      assertThat(read.projectKey()).isEqualTo("PROJECT");
+      assertThat(read.ruleKey()).isEqualTo(RuleKey.of("java", "S001"));
+      assertThat(read.language()).isEqualTo("java");
+      assertThat(read.severity()).isEqualTo(Severity.MAJOR);
+      assertThat(read.manualSeverity()).isTrue();
+      assertThat(read.message()).isEqualTo("the message");
+      assertThat(read.line()).isEqualTo(3);
+      assertThat(read.gap()).isEqualTo(2.5);
+      assertThat(read.effort()).isEqualTo(Duration.create(10L));
+      assertThat(read.status()).isEqualTo("RESOLVED");
+      assertThat(read.resolution()).isEqualTo("FIXED");
+      assertThat(read.assignee()).isEqualTo("jane");
+      assertThat(read.checksum()).isEqualTo("abc");
+      assertThat(read.attributes()).containsOnly(entry("jira", "FOO-1"));
+      assertThat(read.authorLogin()).isEqualTo("john");
+      assertThat(read.tags()).containsExactly("tag1", "tag2");
+      assertThat((DbIssues.Locations) read.getLocations()).isEqualTo(locations);
+      assertThat(read.creationDate()).isEqualTo(new Date(1_400_000_000_000L));
+      assertThat(read.updateDate()).isEqualTo(new Date(1_450_000_000_000L));
+      assertThat(read.closeDate()).isEqualTo(new Date(1_460_000_000_000L));
+      assertThat(read.isNew()).isFalse();
+      assertThat(read.isBeingClosed()).isTrue();
+      assertThat(read.isOnDisabledRule()).isTrue();
+      assertThat(read.isChanged()).isTrue();
+      assertThat(read.mustSendNotifications()).isTrue();
+      assertThat(read.selectedAt()).isEqualTo(1_470_000_000_000L);
+
+      assertThat(read.comments()).hasSize(1);
+      DefaultIssueComment readComment = (DefaultIssueComment) read.comments().get(0);
+      assertThat(readComment.key()).isEqualTo("COMMENT_1");
+      assertThat(readComment.issueKey()).isEqualTo("ISSUE_1");
+      assertThat(readComment.userLogin()).isEqualTo("john");
+      assertThat(readComment.markdownText()).isEqualTo("a comment");
+      assertThat(readComment.createdAt()).isEqualTo(new Date(1_500_000_000_000L));
+      assertThat(readComment.updatedAt()).isEqualTo(new Date(1_500_000_001_000L));
+      assertThat(readComment.isNew()).isTrue();
+
+      FieldDiffs currentChange = read.currentChange();
+      assertThat(currentChange.userLogin()).isEqualTo("john");
+      assertThat(currentChange.creationDate()).isEqualTo(new Date(1_480_000_000_000L));
+      assertThat(currentChange.get("technicalDebt").oldValueLong()).isEqualTo(5L);
+      assertThat(currentChange.get("technicalDebt").newValueLong()).isEqualTo(10L);
+      assertThat(read.changes()).hasSize(2);
+      assertThat(read.changes().get(0).toString()).isEqualTo("severity=MINOR|MAJOR");
+      assertThat(read.changes().get(1)).isSameAs(currentChange);
+    }
+  }
+
+  @Test
+  public void write_and_read_issue_with_only_mandatory_fields() throws Exception {
+    ProtobufIssueDiskCache underTest = new ProtobufIssueDiskCache(temp.newFile(), System2.INSTANCE);
+
+    underTest.newAppender().append(new DefaultIssue().setKey("ISSUE_1")).close();
+
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      DefaultIssue read = traverse.next();
+      assertThat(read.key()).isEqualTo("ISSUE_1");
+      assertThat(read.type()).isNull();
+      assertThat(read.componentUuid()).isNull();
+      assertThat(read.ruleKey()).isNull();
+      assertThat(read.line()).isNull();
+      assertThat(read.gap()).isNull();
+      assertThat(read.effort()).isNull();
+      assertThat(read.creationDate()).isNull();
+      assertThat((Object) read.getLocations()).isNull();
+      assertThat(read.currentChange()).isNull();
+      assertThat(read.changes()).isEmpty();
+      assertThat(read.comments()).isEmpty();
+      assertThat(read.attributes()).isEmpty();
+      assertThat(read.tags()).isEmpty();
+      assertThat(read.isNew()).isTrue();
+      assertThat(read.selectedAt()).isNull();
+    }
+  }
+
+  @Test
+  public void traverse_issues_of_multiple_blocks_and_appenders_in_order() throws Exception {
+    ProtobufIssueDiskCache underTest = new ProtobufIssueDiskCache(temp.newFile(), System2.INSTANCE, 100);
+
+    appendIssues(underTest, "FILE_1", 0, 50);
+    appendIssues(underTest, "FILE_2", 50, 60);
+    appendIssues(underTest, "FILE_1", 60, 100);
+
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      int i = 0;
+      while (traverse.hasNext()) {
+        assertThat(traverse.next().key()).isEqualTo("ISSUE_" + i);
+        i++;
+      }
+      assertThat(i).isEqualTo(100);
+    }
+  }
+
+  @Test
+  public void fail_if_file_is_not_writable() throws Exception {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to write into file");
+
+    new ProtobufIssueDiskCache(temp.newFolder(), System2.INSTANCE);
+  }
+
+  private static void appendIssues(ProtobufIssueDiskCache underTest, String componentUuid, int from, int to) {
+    try (DiskCache.CacheAppender<DefaultIssue> appender = underTest.newAppender()) {
+      for (int i = from; i < to; i++) {
+        appender.append(new DefaultIssue()
+          .setKey("ISSUE_" + i)
+          .setComponentUuid(componentUuid)
+          .setRuleKey(RuleKey.of("java", "S001"))
+          .setMessage("message of issue " + i));
+      }
+    }
+  }
+}
@@ -27,4 +27,14 @@ public interface PurgeConstants {
   String WEEKS_BEFORE_KEEPING_ONLY_ONE_SNAPSHOT_BY_MONTH = "sonar.dbcleaner.weeksBeforeKeepingOnlyOneSnapshotByMonth";
   String WEEKS_BEFORE_DELETING_ALL_SNAPSHOTS = "sonar.dbcleaner.weeksBeforeDeletingAllSnapshots";
   String DAYS_BEFORE_DELETING_CLOSED_ISSUES = "sonar.dbcleaner.daysBeforeDeletingClosedIssues";
+
+  /**
+   * Ratio of the duration of the pauses between two chunks of deletions to the duration of the chunks. Default is 0, no pause.
+   */
+  String THROTTLING_RATIO = "sonar.dbcleaner.throttlingRatio";
+
+  /**
+   * When true, the purge is not executed at the end of analysis but in a dedicated task of low priority. Default is false.
+   */
+  String DEFERRED_PURGE = "sonar.dbcleaner.deferred";
 }
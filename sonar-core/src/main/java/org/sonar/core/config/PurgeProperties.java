@@ -100,6 +100,30 @@ public final class PurgeProperties {
         .category(CoreProperties.CATEGORY_GENERAL)
         .subCategory(CoreProperties.SUBCATEGORY_DATABASE_CLEANER)
         .index(6)
+        .build(),
+
+      PropertyDefinition.builder(PurgeConstants.THROTTLING_RATIO)
+        .defaultValue("0")
+        .name("Throttling ratio")
+        .description("Ratio of the duration of the pauses between two chunks of deletions to the duration of the chunks. "
+          + "For example 0.5 pauses half a second after each second of deletions. The default value 0 disables the pauses.")
+        .type(PropertyType.FLOAT)
+        .onQualifiers(Qualifiers.PROJECT)
+        .category(CoreProperties.CATEGORY_GENERAL)
+        .subCategory(CoreProperties.SUBCATEGORY_DATABASE_CLEANER)
+        .index(7)
+        .build(),
+
+      PropertyDefinition.builder(PurgeConstants.DEFERRED_PURGE)
+        .defaultValue("false")
+        .name("Defer purge")
+        .description("If set to true, the purge is not executed at the end of analysis but in a dedicated background task, "
+          + "which is executed when no other task is pending.")
+        .type(PropertyType.BOOLEAN)
+        .onQualifiers(Qualifiers.PROJECT)
+        .category(CoreProperties.CATEGORY_GENERAL)
+        .subCategory(CoreProperties.SUBCATEGORY_DATABASE_CLEANER)
+        .index(8)
         .build()
       );
   }
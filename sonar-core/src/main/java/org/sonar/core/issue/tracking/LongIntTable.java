@@ -0,0 +1,123 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.Arrays;
+
+/**
+ * Map of primitive {@code long} keys to {@code int} values, with open addressing and linear probing.
+ * Value {@link Integer#MIN_VALUE} is reserved. Not thread-safe.
+ */
+final class LongIntTable {
+
+  static final int NOT_FOUND = -1;
+  private static final int FREE = Integer.MIN_VALUE;
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] keys;
+  private int[] values;
+  private int size = 0;
+
+  LongIntTable(int expectedSize) {
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * @return the value of the key, or {@link #NOT_FOUND}
+   */
+  int get(long key) {
+    int mask = keys.length - 1;
+    for (int slot = hash(key) & mask; values[slot] != FREE; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return values[slot];
+      }
+    }
+    return NOT_FOUND;
+  }
+
+  void put(long key, int value) {
+    if (2 * (size + 1) > keys.length) {
+      rehash(keys.length * 2);
+    }
+    if (insert(key, value)) {
+      size++;
+    }
+  }
+
+  /**
+   * Forgets all the keys but keeps the allocated arrays, so that the table can be reused
+   */
+  void clear() {
+    Arrays.fill(values, FREE);
+    size = 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return true if the key was added, false if its value was replaced
+   */
+  private boolean insert(long key, int value) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (values[slot] != FREE) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    return true;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != FREE) {
+        insert(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    Arrays.fill(values, FREE);
+  }
+
+  private static int capacityFor(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < 2 * expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
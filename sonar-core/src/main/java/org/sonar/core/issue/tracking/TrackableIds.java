@@ -0,0 +1,139 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Fields of issues used by {@link Tracker} to match issues, as int ids. Ids are given by a
+ * {@link Dictionary} shared by raw and base issues, so that equal values have the same id.
+ */
+final class TrackableIds<T extends Trackable> {
+
+  /**
+   * Line of the issues which do not relate to a line. Lines start with 1.
+   */
+  private static final int NO_LINE = Integer.MIN_VALUE;
+
+  private final List<T> trackables;
+  private final int[] lines;
+  private final int[] lineHashes;
+  private final int[] ruleAndLineHashes;
+  private final int[] ruleAndMessages;
+
+  TrackableIds(Collection<T> trackables, Dictionary dictionary) {
+    this.trackables = new ArrayList<>(trackables);
+    int size = this.trackables.size();
+    this.lines = new int[size];
+    this.lineHashes = new int[size];
+    this.ruleAndLineHashes = new int[size];
+    this.ruleAndMessages = new int[size];
+    for (int i = 0; i < size; i++) {
+      T trackable = this.trackables.get(i);
+      Integer line = trackable.getLine();
+      int rule = Dictionary.idOf(dictionary.rules, trackable.getRuleKey());
+      lines[i] = line == null ? NO_LINE : line;
+      lineHashes[i] = Dictionary.idOf(dictionary.lineHashes, StringUtils.defaultString(trackable.getLineHash(), ""));
+      ruleAndLineHashes[i] = dictionary.idOf(rule, lineHashes[i]);
+      ruleAndMessages[i] = dictionary.idOf(rule, Dictionary.idOf(dictionary.messages, trackable.getMessage()));
+    }
+  }
+
+  int size() {
+    return trackables.size();
+  }
+
+  T get(int index) {
+    return trackables.get(index);
+  }
+
+  /**
+   * Same rule, same line and same line hash
+   */
+  long lineAndLineHashKey(int index) {
+    return pack(ruleAndLineHashes[index], lines[index]);
+  }
+
+  /**
+   * Same rule, same message and same line hash
+   */
+  long lineHashAndMessageKey(int index) {
+    return pack(ruleAndMessages[index], lineHashes[index]);
+  }
+
+  /**
+   * Same rule, same line and same message
+   */
+  long lineAndMessageKey(int index) {
+    return pack(ruleAndMessages[index], lines[index]);
+  }
+
+  /**
+   * Same rule and same line hash
+   */
+  long lineHashKey(int index) {
+    return ruleAndLineHashes[index];
+  }
+
+  private static long pack(int high, int low) {
+    return ((long) high << 32) | (low & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Ids of rule keys, line hashes, messages and of pairs of ids. Values of different kinds
+   * may share an id, as they are never compared to each other.
+   */
+  static final class Dictionary {
+    private final Map<RuleKey, Integer> rules = new HashMap<>();
+    private final Map<String, Integer> lineHashes = new HashMap<>();
+    private final Map<String, Integer> messages = new HashMap<>();
+    private final LongIntTable pairIds;
+
+    Dictionary(int expectedSize) {
+      this.pairIds = new LongIntTable(expectedSize);
+    }
+
+    private static <V> int idOf(Map<V, Integer> ids, @Nullable V value) {
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = ids.size();
+        ids.put(value, id);
+      }
+      return id;
+    }
+
+    int idOf(int first, int second) {
+      long pair = pack(first, second);
+      int id = pairIds.get(pair);
+      if (id == LongIntTable.NOT_FOUND) {
+        id = pairIds.size();
+        pairIds.put(pair, id);
+      }
+      return id;
+    }
+  }
+}
@@ -19,15 +19,8 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import java.util.Collection;
-import java.util.Objects;
-import javax.annotation.Nonnull;
-import org.apache.commons.lang.StringUtils;
-import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.InstantiationStrategy;
-import org.sonar.api.rule.RuleKey;
+import org.sonar.api.batch.ScannerSide;
 
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @ScannerSide
@@ -35,22 +28,27 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
 
   public Tracking<RAW, BASE> track(Input<RAW> rawInput, Input<BASE> baseInput) {
     Tracking<RAW, BASE> tracking = new Tracking<>(rawInput, baseInput);
+    if (tracking.isComplete()) {
+      return tracking;
+    }
+    Matcher matcher = new Matcher(tracking);
 
     // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
-    match(tracking, LineAndLineHashKeyFactory.INSTANCE);
+    matcher.match(TrackableIds::lineAndLineHashKey);
 
     // 2. detect code moves by comparing blocks of codes
     detectCodeMoves(rawInput, baseInput, tracking);
+    matcher.refreshMatched();
 
     // 3. match issues with same rule, same message and same line hash
-    match(tracking, LineHashAndMessageKeyFactory.INSTANCE);
+    matcher.match(TrackableIds::lineHashAndMessageKey);
 
     // 4. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKeyFactory.INSTANCE);
+    matcher.match(TrackableIds::lineAndMessageKey);
 
     // 5. match issues with same rule and same line hash but different line and different message.
     // See SONAR-2812
-    match(tracking, LineHashKeyFactory.INSTANCE);
+    matcher.match(TrackableIds::lineHashKey);
 
     return tracking;
   }
@@ -61,189 +59,79 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
-  private void match(Tracking<RAW, BASE> tracking, SearchKeyFactory factory) {
-    if (tracking.isComplete()) {
-      return;
-    }
-
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
-    for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(factory.create(base), base);
-    }
-
-    for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = factory.create(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      if (!bases.isEmpty()) {
-        // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
-        // Message could be checked to take the best one.
-        BASE match = bases.iterator().next();
-        tracking.match(raw, match);
-        baseSearch.remove(rawKey, match);
+  /**
+   * Hash join of unmatched raw issues with unmatched base issues. Fields of issues are converted once to int ids,
+   * and the table of base issues is reused by all the passes.
+   */
+  private class Matcher {
+    private final Tracking<RAW, BASE> tracking;
+    private final TrackableIds<RAW> raws;
+    private final TrackableIds<BASE> bases;
+    private final boolean[] matchedRaws;
+    private final boolean[] matchedBases;
+    // first unmatched base of each key
+    private final LongIntTable firstBases;
+    // next unmatched base with the same key, by index of base
+    private final int[] nextBases;
+
+    private Matcher(Tracking<RAW, BASE> tracking) {
+      this.tracking = tracking;
+      TrackableIds.Dictionary dictionary = new TrackableIds.Dictionary(tracking.getRaws().size() + tracking.getBases().size());
+      this.raws = new TrackableIds<>(tracking.getRaws(), dictionary);
+      this.bases = new TrackableIds<>(tracking.getBases(), dictionary);
+      this.firstBases = new LongIntTable(bases.size());
+      this.nextBases = new int[bases.size()];
+      this.matchedRaws = new boolean[raws.size()];
+      this.matchedBases = new boolean[bases.size()];
+      refreshMatched();
+    }
+
+    /**
+     * To be called when issues are matched without this matcher
+     */
+    private void refreshMatched() {
+      for (int i = 0; i < raws.size(); i++) {
+        matchedRaws[i] = tracking.baseFor(raws.get(i)) != null;
       }
-    }
-  }
-
-  private interface SearchKey {
-  }
-
-  private interface SearchKeyFactory {
-    SearchKey create(Trackable trackable);
-  }
-
-  private static class LineAndLineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-    private final Integer line;
-
-    LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      for (int i = 0; i < bases.size(); i++) {
+        matchedBases[i] = !tracking.containsUnmatchedBase(bases.get(i));
       }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
     }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndLineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndLineHashKey(t);
-    }
-  }
-
-  private static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
-
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+    private void match(SearchKey searchKey) {
+      if (tracking.isComplete()) {
+        return;
       }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
-    }
-  }
-
-  private enum LineHashAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashAndMessageKey(t);
-    }
-  }
-
-  private static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
-
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      firstBases.clear();
+      // bases are chained backward, so that the first base of a key is also the first one in the list of bases
+      for (int i = bases.size() - 1; i >= 0; i--) {
+        if (!matchedBases[i]) {
+          long key = searchKey.of(bases, i);
+          nextBases[i] = firstBases.get(key);
+          firstBases.put(key, i);
+        }
       }
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndMessageKey(t);
-    }
-  }
-
-  private static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      for (int i = 0; i < raws.size(); i++) {
+        if (!matchedRaws[i]) {
+          long key = searchKey.of(raws, i);
+          int base = firstBases.get(key);
+          if (base != LongIntTable.NOT_FOUND) {
+            // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
+            // Message could be checked to take the best one.
+            tracking.match(raws.get(i), bases.get(base));
+            matchedRaws[i] = true;
+            matchedBases[base] = true;
+            firstBases.put(key, nextBases[base]);
+          }
+        }
       }
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
     }
   }
 
-  private enum LineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashKey(t);
-    }
+  @FunctionalInterface
+  private interface SearchKey {
+    long of(TrackableIds<?> trackables, int index);
   }
 }
@@ -20,19 +20,37 @@
 package org.sonar.core.platform;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.zip.ZipEntry;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.sonar.api.utils.ZipUtils;
 
+import static org.apache.commons.io.FileUtils.forceMkdir;
 import static org.apache.commons.io.FileUtils.listFiles;
 
 public abstract class PluginJarExploder {
 
   protected static final String LIB_RELATIVE_PATH_IN_JAR = "META-INF/lib";
+  private static final String TEMP_SUFFIX = ".tmp";
 
   public abstract ExplodedPlugin explode(PluginInfo info);
 
+  /**
+   * Called by {@link PluginLoader} once all the plugins are exploded, in order to drop the files of the plugins
+   * which are not installed anymore. Does nothing by default.
+   */
+  public void deleteUnused(Set<String> installedPluginKeys) {
+    // nothing to do
+  }
+
   protected Predicate<ZipEntry> newLibFilter() {
     return ze -> ze.getName().startsWith(LIB_RELATIVE_PATH_IN_JAR);
   }
@@ -47,4 +65,49 @@ public abstract class PluginJarExploder {
     }
     return new ExplodedPlugin(pluginKey, jarFile, libs);
   }
+
+  /**
+   * Explodes the plugin into {@code cacheDir/<pluginKey>/<md5 of JAR>}. The directory is reused as-is when the JAR
+   * did not change since the previous startup, otherwise the previous content of {@code cacheDir/<pluginKey>}
+   * is dropped. The JAR is copied into the directory, so that the original file is never locked by classloaders.
+   */
+  protected ExplodedPlugin explodeToCache(PluginInfo info, File cacheDir) throws IOException {
+    File jarSource = info.getNonNullJarFile();
+    File pluginDir = new File(cacheDir, info.getKey());
+    String hash = hash(jarSource);
+    File hashDir = new File(pluginDir, hash);
+    if (!hashDir.isDirectory()) {
+      forceMkdir(pluginDir);
+      org.sonar.core.util.FileUtils.cleanDirectory(pluginDir);
+      // exploded in a temporary directory then moved, so that an interrupted explosion is never reused
+      File tempDir = new File(pluginDir, hash + TEMP_SUFFIX);
+      forceMkdir(tempDir);
+      FileUtils.copyFile(jarSource, new File(tempDir, jarSource.getName()));
+      ZipUtils.unzip(jarSource, tempDir, newLibFilter());
+      Files.move(tempDir.toPath(), hashDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+    return explodeFromUnzippedDir(info.getKey(), new File(hashDir, jarSource.getName()), hashDir);
+  }
+
+  /**
+   * Deletes the directories of {@code cacheDir} which are not related to an installed plugin,
+   * see {@link #explodeToCache(PluginInfo, File)}.
+   */
+  protected static void deleteUnusedFromCache(File cacheDir, Set<String> installedPluginKeys) {
+    File[] pluginDirs = cacheDir.listFiles(File::isDirectory);
+    if (pluginDirs == null) {
+      return;
+    }
+    for (File pluginDir : pluginDirs) {
+      if (!installedPluginKeys.contains(pluginDir.getName())) {
+        org.sonar.core.util.FileUtils.deleteQuietly(pluginDir);
+      }
+    }
+  }
+
+  private static String hash(File file) throws IOException {
+    try (InputStream input = Files.newInputStream(file.toPath())) {
+      return DigestUtils.md5Hex(input);
+    }
+  }
 }
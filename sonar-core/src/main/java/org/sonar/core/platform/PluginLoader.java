@@ -69,6 +69,7 @@ public class PluginLoader {
 
   public Map<String, Plugin> load(Map<String, PluginInfo> infoByKeys) {
     Collection<PluginClassLoaderDef> defs = defineClassloaders(infoByKeys);
+    jarExploder.deleteUnused(infoByKeys.keySet());
     Map<PluginClassLoaderDef, ClassLoader> classloaders = classloaderFactory.create(defs);
     return instantiatePluginClasses(classloaders);
   }
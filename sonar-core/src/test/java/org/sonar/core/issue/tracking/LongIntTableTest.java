@@ -0,0 +1,75 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongIntTableTest {
+
+  private LongIntTable underTest = new LongIntTable(2);
+
+  @Test
+  public void put_and_get() {
+    underTest.put(42L, 1);
+    underTest.put(-42L, 2);
+    underTest.put(Long.MAX_VALUE, -1);
+
+    assertThat(underTest.get(42L)).isEqualTo(1);
+    assertThat(underTest.get(-42L)).isEqualTo(2);
+    assertThat(underTest.get(Long.MAX_VALUE)).isEqualTo(-1);
+    assertThat(underTest.get(0L)).isEqualTo(LongIntTable.NOT_FOUND);
+    assertThat(underTest.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void put_replaces_value() {
+    underTest.put(42L, 1);
+    underTest.put(42L, 2);
+
+    assertThat(underTest.get(42L)).isEqualTo(2);
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void grow_when_many_keys_are_added() {
+    for (int i = 0; i < 10_000; i++) {
+      underTest.put((long) i << 32, i);
+    }
+
+    for (int i = 0; i < 10_000; i++) {
+      assertThat(underTest.get((long) i << 32)).isEqualTo(i);
+    }
+    assertThat(underTest.size()).isEqualTo(10_000);
+  }
+
+  @Test
+  public void clear() {
+    underTest.put(42L, 1);
+
+    underTest.clear();
+
+    assertThat(underTest.get(42L)).isEqualTo(LongIntTable.NOT_FOUND);
+    assertThat(underTest.size()).isZero();
+    underTest.put(42L, 3);
+    assertThat(underTest.get(42L)).isEqualTo(3);
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Tracks the {@code issues} of a file against the issues of its previous analysis.
+ * <p>
+ * Issues are distributed as on large files of real projects: a few rules raise most of the issues (Zipf distribution),
+ * several issues can be on the same line, some lines have common hashes (blank lines, closing braces...), and the
+ * message of some rules contains the name of the flagged element. Between the two analyses, a block of lines is
+ * inserted at the first third of the file, some lines are modified (see {@link #modifiedLines}), some issues are fixed and others are introduced.
+ * </p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=org.sonar.core.issue.tracking.TrackerBenchmark -Dexec.classpathScope=test}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class TrackerBenchmark {
+
+  private static final int RULES = 300;
+  private static final double RULES_ZIPF_EXPONENT = 1.2;
+  private static final int COMMON_LINE_HASHES = 20;
+  private static final int INSERTED_LINES = 20;
+
+  @Param({"1000", "50000"})
+  public int issues;
+
+  /**
+   * Percentage of lines modified between the two analyses, for example when the file is reformatted
+   */
+  @Param({"2", "30"})
+  public int modifiedLines;
+
+  private final Tracker<FakeIssue, FakeIssue> tracker = new Tracker<>();
+  private FakeInput rawInput;
+  private FakeInput baseInput;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    RuleKey[] rules = new RuleKey[RULES];
+    double[] cumulatedRuleFrequencies = new double[RULES];
+    double sum = 0;
+    for (int i = 0; i < RULES; i++) {
+      rules[i] = RuleKey.of("java", "S" + (100 + i));
+      sum += 1 / Math.pow(i + 1, RULES_ZIPF_EXPONENT);
+      cumulatedRuleFrequencies[i] = sum;
+    }
+
+    int lines = Math.max(100, issues / 2);
+    String[] baseHashes = new String[lines];
+    for (int i = 0; i < lines; i++) {
+      baseHashes[i] = random.nextInt(10) == 0 ? ("common" + random.nextInt(COMMON_LINE_HASHES)) : ("line" + i);
+    }
+    // a block of lines is inserted at the first third of the file, and some lines are modified
+    int insertion = lines / 3;
+    String[] rawHashes = new String[lines + INSERTED_LINES];
+    for (int i = 0; i < rawHashes.length; i++) {
+      if (i < insertion) {
+        rawHashes[i] = baseHashes[i];
+      } else if (i < insertion + INSERTED_LINES) {
+        rawHashes[i] = "inserted" + i;
+      } else {
+        rawHashes[i] = baseHashes[i - INSERTED_LINES];
+      }
+      if (random.nextInt(100) < modifiedLines) {
+        rawHashes[i] = "modified" + i;
+      }
+    }
+
+    baseInput = new FakeInput(baseHashes);
+    rawInput = new FakeInput(rawHashes);
+    for (int i = 0; i < issues; i++) {
+      int rule = Arrays.binarySearch(cumulatedRuleFrequencies, random.nextDouble() * sum);
+      rule = rule < 0 ? (-rule - 1) : rule;
+      int baseLine = 1 + random.nextInt(lines);
+      String message = rule % 3 == 0 ? ("Rename \"field" + random.nextInt(50) + "\" to match the regular expression") : ("Message of rule " + rule);
+      baseInput.addIssue(baseLine, rules[rule], message);
+
+      int dice = random.nextInt(100);
+      if (dice < 3) {
+        // fixed
+        continue;
+      }
+      int rawLine = baseLine > insertion ? (baseLine + INSERTED_LINES) : baseLine;
+      rawInput.addIssue(rawLine, rules[rule], dice < 5 ? (message + " (updated)") : message);
+      if (dice < 8) {
+        // introduced
+        rawInput.addIssue(1 + random.nextInt(rawHashes.length), rules[random.nextInt(RULES)], "New issue");
+      }
+    }
+  }
+
+  @Benchmark
+  public Tracking<FakeIssue, FakeIssue> track() {
+    return tracker.track(rawInput, baseInput);
+  }
+
+  private static class FakeIssue implements Trackable {
+    private final Integer line;
+    private final String lineHash;
+    private final RuleKey ruleKey;
+    private final String message;
+
+    FakeIssue(Integer line, String lineHash, RuleKey ruleKey, String message) {
+      this.line = line;
+      this.lineHash = lineHash;
+      this.ruleKey = ruleKey;
+      this.message = message;
+    }
+
+    @Override
+    public Integer getLine() {
+      return line;
+    }
+
+    @Override
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String getLineHash() {
+      return lineHash;
+    }
+
+    @Override
+    public RuleKey getRuleKey() {
+      return ruleKey;
+    }
+  }
+
+  private static class FakeInput implements Input<FakeIssue> {
+    private final List<FakeIssue> issues = new ArrayList<>();
+    private final LineHashSequence lineHashSequence;
+    private final BlockHashSequence blockHashSequence;
+
+    FakeInput(String[] lineHashes) {
+      this.lineHashSequence = new LineHashSequence(Arrays.asList(lineHashes));
+      this.blockHashSequence = BlockHashSequence.create(lineHashSequence);
+    }
+
+    void addIssue(int line, RuleKey ruleKey, String message) {
+      issues.add(new FakeIssue(line, lineHashSequence.getHashForLine(line), ruleKey, message));
+    }
+
+    @Override
+    public LineHashSequence getLineHashSequence() {
+      return lineHashSequence;
+    }
+
+    @Override
+    public BlockHashSequence getBlockHashSequence() {
+      return blockHashSequence;
+    }
+
+    @Override
+    public Collection<FakeIssue> getIssues() {
+      return issues;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TrackerBenchmark.class.getSimpleName()).build()).run();
+  }
+}
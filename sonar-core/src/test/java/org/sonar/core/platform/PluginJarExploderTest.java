@@ -20,6 +20,8 @@
 package org.sonar.core.platform;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
@@ -74,6 +76,80 @@ public class PluginJarExploderTest {
     assertThat(exploded.getMain()).isSameAs(jarFile);
   }
 
+  @Test
+  public void explode_to_cache_reuses_directory_of_unchanged_plugin() throws Exception {
+    File jarFile = getFile("sonar-checkstyle-plugin-2.8.jar");
+    File cacheDir = temp.newFolder();
+    PluginInfo pluginInfo = new PluginInfo("checkstyle").setJarFile(jarFile);
+    CacheExploder exploder = new CacheExploder(cacheDir);
+
+    ExplodedPlugin exploded = exploder.explode(pluginInfo);
+    assertThat(exploded.getKey()).isEqualTo("checkstyle");
+    assertThat(exploded.getMain()).isFile().hasName(jarFile.getName());
+    assertThat(exploded.getMain().getParentFile().getParentFile()).isEqualTo(new File(cacheDir, "checkstyle"));
+    assertThat(exploded.getLibs()).extracting("name").containsOnly("antlr-2.7.6.jar", "checkstyle-5.1.jar", "commons-cli-1.0.jar");
+
+    // unzipped files are not touched on next explosion
+    File lib = exploded.getLibs().iterator().next();
+    lib.setLastModified(1_000L);
+    ExplodedPlugin reexploded = exploder.explode(pluginInfo);
+    assertThat(reexploded.getMain()).isEqualTo(exploded.getMain());
+    assertThat(lib.lastModified()).isEqualTo(1_000L);
+  }
+
+  @Test
+  public void explode_to_cache_replaces_previous_version_of_plugin() throws Exception {
+    File cacheDir = temp.newFolder();
+    CacheExploder exploder = new CacheExploder(cacheDir);
+    File jarFile = temp.newFile("plugin.jar");
+    FileUtils.copyFile(getFile("sonar-checkstyle-plugin-2.8.jar"), jarFile);
+    ExplodedPlugin exploded = exploder.explode(new PluginInfo("checkstyle").setJarFile(jarFile));
+
+    File otherVersion = new File(temp.getRoot(), "plugin-2.jar");
+    File content = temp.newFolder();
+    FileUtils.write(new File(content, "foo.txt"), "foo");
+    ZipUtils.zipDir(content, otherVersion);
+    ExplodedPlugin reexploded = exploder.explode(new PluginInfo("checkstyle").setJarFile(otherVersion));
+
+    assertThat(reexploded.getMain().getParentFile()).isNotEqualTo(exploded.getMain().getParentFile());
+    assertThat(reexploded.getLibs()).isEmpty();
+    assertThat(new File(cacheDir, "checkstyle").listFiles()).containsOnly(reexploded.getMain().getParentFile());
+  }
+
+  @Test
+  public void delete_from_cache_the_plugins_which_are_not_installed() throws Exception {
+    File cacheDir = temp.newFolder();
+    CacheExploder exploder = new CacheExploder(cacheDir);
+    exploder.explode(new PluginInfo("checkstyle").setJarFile(getFile("sonar-checkstyle-plugin-2.8.jar")));
+    exploder.explode(new PluginInfo("uninstalled").setJarFile(getFile("sonar-checkstyle-plugin-2.8.jar")));
+
+    exploder.deleteUnused(Collections.singleton("checkstyle"));
+
+    assertThat(cacheDir.list()).containsOnly("checkstyle");
+  }
+
+  private static class CacheExploder extends PluginJarExploder {
+    private final File cacheDir;
+
+    CacheExploder(File cacheDir) {
+      this.cacheDir = cacheDir;
+    }
+
+    @Override
+    public ExplodedPlugin explode(PluginInfo info) {
+      try {
+        return explodeToCache(info, cacheDir);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public void deleteUnused(Set<String> installedPluginKeys) {
+      deleteUnusedFromCache(cacheDir, installedPluginKeys);
+    }
+  }
+
   private File getFile(String filename) {
     return FileUtils.toFile(getClass().getResource("/org/sonar/core/platform/" + filename));
   }
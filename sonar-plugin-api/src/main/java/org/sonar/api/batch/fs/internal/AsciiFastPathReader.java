@@ -0,0 +1,143 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader of charsets which are a superset of ASCII. Runs of ASCII bytes, which are the vast majority of source files,
+ * are widened directly to chars. Other bytes are decoded by a {@link CharsetDecoder} which, like
+ * {@link java.io.InputStreamReader}, replaces malformed and unmappable input.
+ */
+class AsciiFastPathReader extends Reader {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final InputStream stream;
+  private final CharsetDecoder decoder;
+  private final byte[] bytes = new byte[BUFFER_SIZE];
+  private final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+  private final char[] surrogatePair = new char[2];
+  private int pendingChar = -1;
+  private boolean endOfStream = false;
+  private boolean done = false;
+
+  AsciiFastPathReader(InputStream stream, Charset charset) {
+    this.stream = stream;
+    this.decoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.byteBuffer.limit(0);
+  }
+
+  static boolean supports(Charset charset) {
+    return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset) || StandardCharsets.ISO_8859_1.equals(charset);
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (pendingChar != -1) {
+      cbuf[off] = (char) pendingChar;
+      pendingChar = -1;
+      return 1;
+    }
+    while (!done) {
+      if (!byteBuffer.hasRemaining() && !endOfStream) {
+        fill();
+      }
+      int n = endOfStream ? decodeEndOfInput(cbuf, off, len) : decode(cbuf, off, len);
+      if (n > 0) {
+        return n;
+      }
+      if (!endOfStream) {
+        // the remaining bytes are an incomplete sequence
+        fill();
+      }
+    }
+    return -1;
+  }
+
+  private void fill() throws IOException {
+    byteBuffer.compact();
+    int read = stream.read(bytes, byteBuffer.position(), byteBuffer.remaining());
+    if (read == -1) {
+      endOfStream = true;
+    } else {
+      byteBuffer.position(byteBuffer.position() + read);
+    }
+    byteBuffer.flip();
+  }
+
+  private int decode(char[] cbuf, int off, int len) {
+    int pos = byteBuffer.position();
+    int max = Math.min(byteBuffer.remaining(), len);
+    int ascii = 0;
+    while (ascii < max && bytes[pos + ascii] >= 0) {
+      cbuf[off + ascii] = (char) bytes[pos + ascii];
+      ascii++;
+    }
+    byteBuffer.position(pos + ascii);
+    if (ascii == len || !byteBuffer.hasRemaining()) {
+      return ascii;
+    }
+    CharBuffer out = CharBuffer.wrap(cbuf, off + ascii, len - ascii);
+    CoderResult result = decoder.decode(byteBuffer, out, false);
+    int decoded = out.position() - off;
+    if (decoded == 0 && result.isOverflow()) {
+      // a surrogate pair does not fit in a single char
+      return decodeSurrogatePair(cbuf, off);
+    }
+    return decoded;
+  }
+
+  private int decodeSurrogatePair(char[] cbuf, int off) {
+    CharBuffer out = CharBuffer.wrap(surrogatePair);
+    decoder.decode(byteBuffer, out, false);
+    cbuf[off] = surrogatePair[0];
+    if (out.position() > 1) {
+      pendingChar = surrogatePair[1];
+    }
+    return 1;
+  }
+
+  private int decodeEndOfInput(char[] cbuf, int off, int len) {
+    CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+    if (decoder.decode(byteBuffer, out, true).isUnderflow() && decoder.flush(out).isUnderflow()) {
+      done = true;
+    }
+    return out.position() - off;
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+}
@@ -72,7 +72,10 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     this.contents = contents;
   }
 
-  public void checkMetadata() {
+  /**
+   * Metadata may be requested concurrently, for example when preloaded by the threads indexing files.
+   */
+  public synchronized void checkMetadata() {
     if (metadata == null) {
       metadataGenerator.accept(this);
     }
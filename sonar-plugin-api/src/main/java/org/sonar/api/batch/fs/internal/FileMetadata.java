@@ -19,7 +19,6 @@
  */
 package org.sonar.api.batch.fs.internal;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -47,6 +46,7 @@ import org.sonar.api.batch.fs.internal.charhandler.LineOffsetCounter;
 public class FileMetadata {
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final int BUFFER_SIZE = 8192;
 
   /**
    * Compute hash of a file ignoring line ends differences.
@@ -91,51 +91,47 @@ public class FileMetadata {
   }
 
   public static void readFile(InputStream stream, Charset encoding, String filePath, CharHandler[] handlers) {
-    try (Reader reader = new BufferedReader(new InputStreamReader(stream, encoding))) {
+    try (Reader reader = newReader(stream, encoding)) {
       read(reader, handlers);
     } catch (IOException e) {
       throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", filePath, encoding), e);
     }
   }
 
+  private static Reader newReader(InputStream stream, Charset encoding) {
+    if (AsciiFastPathReader.supports(encoding)) {
+      return new AsciiFastPathReader(stream, encoding);
+    }
+    return new InputStreamReader(stream, encoding);
+  }
+
+  /**
+   * Characters are read by chunks. Runs of characters which are not end of lines are pushed at once to the handlers,
+   * while end of lines are handled one by one.
+   */
   private static void read(Reader reader, CharHandler[] handlers) throws IOException {
-    char c;
-    int i = reader.read();
+    char[] buf = new char[BUFFER_SIZE];
     boolean afterCR = false;
-    while (i != -1) {
-      c = (char) i;
-      if (afterCR) {
-        for (CharHandler handler : handlers) {
-          if (c == CARRIAGE_RETURN) {
-            handler.newLine();
-            handler.handleAll(c);
-          } else if (c == LINE_FEED) {
-            handler.handleAll(c);
+    int read = reader.read(buf, 0, buf.length);
+    while (read != -1) {
+      int runStart = 0;
+      for (int i = 0; i < read; i++) {
+        char c = buf[i];
+        if (c == LINE_FEED || c == CARRIAGE_RETURN) {
+          handleRun(handlers, buf, runStart, i - runStart);
+          runStart = i + 1;
+          handleEoL(handlers, c, afterCR);
+          afterCR = c == CARRIAGE_RETURN;
+        } else if (afterCR) {
+          // single CR as end of line
+          for (CharHandler handler : handlers) {
             handler.newLine();
-          } else {
-            handler.newLine();
-            handler.handleIgnoreEoL(c);
-            handler.handleAll(c);
           }
-        }
-        afterCR = c == CARRIAGE_RETURN;
-      } else if (c == LINE_FEED) {
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-          handler.newLine();
-        }
-      } else if (c == CARRIAGE_RETURN) {
-        afterCR = true;
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-        }
-      } else {
-        for (CharHandler handler : handlers) {
-          handler.handleIgnoreEoL(c);
-          handler.handleAll(c);
+          afterCR = false;
         }
       }
-      i = reader.read();
+      handleRun(handlers, buf, runStart, read - runStart);
+      read = reader.read(buf, 0, buf.length);
     }
     for (CharHandler handler : handlers) {
       if (afterCR) {
@@ -145,6 +141,29 @@ public class FileMetadata {
     }
   }
 
+  private static void handleRun(CharHandler[] handlers, char[] buf, int off, int len) {
+    if (len > 0) {
+      for (CharHandler handler : handlers) {
+        handler.handleIgnoreEoL(buf, off, len);
+        handler.handleAll(buf, off, len);
+      }
+    }
+  }
+
+  private static void handleEoL(CharHandler[] handlers, char c, boolean afterCR) {
+    for (CharHandler handler : handlers) {
+      if (c == LINE_FEED) {
+        handler.handleAll(c);
+        handler.newLine();
+      } else {
+        if (afterCR) {
+          handler.newLine();
+        }
+        handler.handleAll(c);
+      }
+    }
+  }
+
   @FunctionalInterface
   public interface LineHashConsumer {
     void consume(int lineIdx, @Nullable byte[] hash);
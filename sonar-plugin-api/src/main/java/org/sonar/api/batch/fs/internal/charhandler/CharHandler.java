@@ -19,14 +19,39 @@
  */
 package org.sonar.api.batch.fs.internal.charhandler;
 
+/**
+ * Receives the characters of a file read by {@link org.sonar.api.batch.fs.internal.FileMetadata}.
+ * Characters are pushed by chunks: the methods handling a range of a {@code char[]} delegate by default to
+ * the methods handling a single character, and should be overridden by handlers that can process
+ * a whole range at once. Ranges never contain end of line characters, and the array must not be kept as it
+ * is reused by the reader.
+ */
 public abstract class CharHandler {
 
   public void handleAll(char c) {
   }
 
+  /**
+   * Same as {@link #handleAll(char)} for each of the {@code len} characters of {@code buf} starting at {@code off}.
+   */
+  public void handleAll(char[] buf, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      handleAll(buf[i]);
+    }
+  }
+
   public void handleIgnoreEoL(char c) {
   }
 
+  /**
+   * Same as {@link #handleIgnoreEoL(char)} for each of the {@code len} characters of {@code buf} starting at {@code off}.
+   */
+  public void handleIgnoreEoL(char[] buf, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      handleIgnoreEoL(buf[i]);
+    }
+  }
+
   public void newLine() {
   }
 
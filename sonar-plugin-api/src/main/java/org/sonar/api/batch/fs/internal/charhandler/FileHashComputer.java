@@ -53,6 +53,11 @@ public class FileHashComputer extends CharHandler {
     sb.append(c);
   }
 
+  @Override
+  public void handleIgnoreEoL(char[] buf, int off, int len) {
+    sb.append(buf, off, len);
+  }
+
   @Override
   public void newLine() {
     sb.append(LINE_FEED);
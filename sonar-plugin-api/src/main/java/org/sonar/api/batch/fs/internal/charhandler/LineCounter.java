@@ -49,6 +49,16 @@ public class LineCounter extends CharHandler {
     }
   }
 
+  @Override
+  public void handleAll(char[] buf, int off, int len) {
+    if (alreadyLoggedInvalidCharacter) {
+      return;
+    }
+    for (int i = off; i < off + len; i++) {
+      handleAll(buf[i]);
+    }
+  }
+
   @Override
   public void newLine() {
     lines++;
@@ -65,6 +75,13 @@ public class LineCounter extends CharHandler {
     }
   }
 
+  @Override
+  public void handleIgnoreEoL(char[] buf, int off, int len) {
+    for (int i = off; blankLine && i < off + len; i++) {
+      handleIgnoreEoL(buf[i]);
+    }
+  }
+
   @Override
   public void eof() {
     if (!blankLine) {
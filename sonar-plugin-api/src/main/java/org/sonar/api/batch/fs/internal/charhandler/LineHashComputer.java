@@ -54,6 +54,16 @@ public class LineHashComputer extends CharHandler {
     }
   }
 
+  @Override
+  public void handleIgnoreEoL(char[] buf, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      char c = buf[i];
+      if (!Character.isWhitespace(c)) {
+        sb.append(c);
+      }
+    }
+  }
+
   @Override
   public void newLine() {
     processBuffer();
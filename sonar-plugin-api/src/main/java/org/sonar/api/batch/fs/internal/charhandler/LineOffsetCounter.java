@@ -33,6 +33,11 @@ public class LineOffsetCounter extends CharHandler {
     currentOriginalOffset++;
   }
 
+  @Override
+  public void handleAll(char[] buf, int off, int len) {
+    currentOriginalOffset += len;
+  }
+
   @Override
   public void newLine() {
     if (currentOriginalOffset > Integer.MAX_VALUE) {
@@ -0,0 +1,126 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsciiFastPathReaderTest {
+
+  @Test
+  public void supports_only_ascii_compatible_charsets() {
+    assertThat(AsciiFastPathReader.supports(StandardCharsets.UTF_8)).isTrue();
+    assertThat(AsciiFastPathReader.supports(StandardCharsets.US_ASCII)).isTrue();
+    assertThat(AsciiFastPathReader.supports(StandardCharsets.ISO_8859_1)).isTrue();
+    assertThat(AsciiFastPathReader.supports(StandardCharsets.UTF_16)).isFalse();
+    assertThat(AsciiFastPathReader.supports(Charset.forName("cp1252"))).isFalse();
+  }
+
+  @Test
+  public void read_ascii() throws IOException {
+    verifySameAsInputStreamReader("foo\nbar\r\nbaz".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void read_non_ascii_utf_8() throws IOException {
+    verifySameAsInputStreamReader("föo\r\nbàr\r\nᴑEbaßz𝄞".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void read_multi_bytes_sequence_on_buffer_boundary() throws IOException {
+    String content = StringUtils.repeat("a", 8191) + "é" + StringUtils.repeat("b", 8190) + "𝄞" + "c";
+    verifySameAsInputStreamReader(content.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void replace_malformed_input_like_input_stream_reader() throws IOException {
+    verifySameAsInputStreamReader("marker´s\n".getBytes(Charset.forName("cp1252")), StandardCharsets.UTF_8);
+    verifySameAsInputStreamReader("marker´s\n".getBytes(Charset.forName("cp1252")), StandardCharsets.US_ASCII);
+    verifySameAsInputStreamReader(new byte[] {'a', (byte) 0xE2, (byte) 0x82}, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void read_iso_8859_1() throws IOException {
+    verifySameAsInputStreamReader("föo\r\nbàr".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+  }
+
+  @Test
+  public void read_char_by_char() throws IOException {
+    byte[] bytes = "aé𝄞b".getBytes(StandardCharsets.UTF_8);
+    StringBuilder sb = new StringBuilder();
+    try (Reader reader = new AsciiFastPathReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+      int c = reader.read();
+      while (c != -1) {
+        sb.append((char) c);
+        c = reader.read();
+      }
+    }
+    assertThat(sb.toString()).isEqualTo("aé𝄞b");
+  }
+
+  @Test
+  public void read_empty_stream() throws IOException {
+    try (Reader reader = new AsciiFastPathReader(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8)) {
+      assertThat(reader.read(new char[10], 0, 10)).isEqualTo(-1);
+      assertThat(reader.read(new char[10], 0, 10)).isEqualTo(-1);
+    }
+  }
+
+  private static void verifySameAsInputStreamReader(byte[] bytes, Charset charset) throws IOException {
+    String expected = IOUtils.toString(new InputStreamReader(new ByteArrayInputStream(bytes), charset));
+    try (Reader reader = new AsciiFastPathReader(new TrickleInputStream(bytes), charset)) {
+      assertThat(IOUtils.toString(reader)).isEqualTo(expected);
+    }
+    try (Reader reader = new AsciiFastPathReader(new ByteArrayInputStream(bytes), charset)) {
+      assertThat(IOUtils.toString(reader)).isEqualTo(expected);
+    }
+  }
+
+  /**
+   * Returns at most 3 bytes per read, so that multi-bytes sequences are split between reads
+   */
+  private static class TrickleInputStream extends InputStream {
+    private final ByteArrayInputStream delegate;
+
+    TrickleInputStream(byte[] bytes) {
+      this.delegate = new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public int read() {
+      return delegate.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      return delegate.read(b, off, Math.min(len, 3));
+    }
+  }
+}
@@ -27,6 +27,7 @@ import java.nio.charset.StandardCharsets;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -110,6 +111,27 @@ public class FileMetadataTest {
     assertThat(metadata.originalLineOffsets()).containsOnly(0, 5, 10, 18);
   }
 
+  @Test
+  public void end_of_lines_and_non_ascii_characters_on_buffer_boundaries() throws Exception {
+    StringBuilder content = new StringBuilder();
+    StringBuilder expectedHashed = new StringBuilder();
+    // 8191 chars then CR LF, so that the CR is the last char of the first chunk
+    content.append(StringUtils.repeat("a", 8191)).append("\r\n");
+    expectedHashed.append(StringUtils.repeat("a", 8191)).append("\n");
+    // a single CR then a non-ASCII char on the next chunk
+    content.append(StringUtils.repeat("b", 8191)).append("\r\u00e9\u1D11E");
+    expectedHashed.append(StringUtils.repeat("b", 8191)).append("\n\u00e9\u1D11E");
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, content, StandardCharsets.UTF_8, true);
+
+    Metadata metadata = new FileMetadata().readMetadata(new FileInputStream(tempFile), StandardCharsets.UTF_8, tempFile.getName());
+    assertThat(metadata.lines()).isEqualTo(3);
+    assertThat(metadata.nonBlankLines()).isEqualTo(3);
+    assertThat(metadata.hash()).isEqualTo(md5Hex(expectedHashed.toString().getBytes(StandardCharsets.UTF_8)));
+    assertThat(metadata.originalLineOffsets()).containsOnly(0, 8193, 16385);
+    assertThat(metadata.lastValidOffset()).isEqualTo(content.length());
+  }
+
   @Test
   public void unix_without_latest_eol() throws Exception {
     File tempFile = temp.newFile();
@@ -21,15 +21,22 @@ package org.sonar.scanner.cpd;
 
 import static com.google.common.collect.FluentIterable.from;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.CheckForNull;
+
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
@@ -51,11 +58,14 @@ import org.sonar.scanner.util.ProgressReport;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * Files are processed concurrently by a pool of {@link CpdSettings#getDetectionThreads()} threads, but
+ * duplications are written to the report in the order of the index.
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
@@ -91,22 +101,34 @@ public class CpdExecutor {
     if (filesWithoutBlocks > 0) {
       LOG.info("{} {} had no CPD blocks", filesWithoutBlocks, pluralize(filesWithoutBlocks));
     }
+    int threads = settings.getDetectionThreads();
     progressReport.start(String.format("Calculating CPD for %d %s", total, pluralize(total)));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CPD-%d").build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
+      // detections are submitted ahead so that all threads are busy, but results are saved in the order of the index
+      Deque<CpdDetection> pendingDetections = new ArrayDeque<>();
+      int maxPendingDetections = threads * 2;
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
-        count++;
+        CpdDetection detection = submitCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (detection != null) {
+          pendingDetections.add(detection);
+        }
+        if (pendingDetections.size() >= maxPendingDetections) {
+          saveCpdAnalysis(pendingDetections.poll(), timeout);
+        }
+      }
+      while (!pendingDetections.isEmpty()) {
+        saveCpdAnalysis(pendingDetections.poll(), timeout);
       }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
     }
   }
 
@@ -116,24 +138,41 @@ public class CpdExecutor {
 
   @VisibleForTesting
   void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+    CpdDetection detection = submitCpdAnalysis(executorService, componentKey, fileBlocks);
+    if (detection != null) {
+      saveCpdAnalysis(detection, timeout);
+    }
+  }
+
+  @CheckForNull
+  private CpdDetection submitCpdAnalysis(ExecutorService executorService, String componentKey, Collection<Block> fileBlocks) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      count++;
+      return null;
     }
 
-    InputFile inputFile = (InputFile) component;
-    LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
+    CpdDetection detection = new CpdDetection(component, fileBlocks);
+    detection.future = executorService.submit(detection);
+    return detection;
+  }
+
+  private void saveCpdAnalysis(CpdDetection detection, long timeout) {
+    InputFile inputFile = (InputFile) detection.component;
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
+    count++;
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      duplications = detection.get(timeout);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      detection.future.cancel(true);
       return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during detection of duplication for " + inputFile.absolutePath(), e);
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
     }
@@ -147,7 +186,40 @@ public class CpdExecutor {
       filtered = duplications;
     }
 
-    saveDuplications(component, filtered);
+    saveDuplications(detection.component, filtered);
+  }
+
+  /**
+   * Detection of the duplications of a file. The timeout applies from the moment the detection
+   * is started by a worker thread, not from its submission.
+   */
+  private class CpdDetection implements Callable<List<CloneGroup>> {
+    private final DefaultInputComponent component;
+    private final Collection<Block> fileBlocks;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private volatile long startedAt;
+    private Future<List<CloneGroup>> future;
+
+    private CpdDetection(DefaultInputComponent component, Collection<Block> fileBlocks) {
+      this.component = component;
+      this.fileBlocks = fileBlocks;
+    }
+
+    @Override
+    public List<CloneGroup> call() {
+      startedAt = System.currentTimeMillis();
+      started.countDown();
+      LOG.debug("Detection of duplications for {}", ((InputFile) component).absolutePath());
+      return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
+    }
+
+    private List<CloneGroup> get(long timeout) throws InterruptedException, ExecutionException, TimeoutException {
+      if (!started.await(timeout, TimeUnit.MILLISECONDS)) {
+        throw new TimeoutException();
+      }
+      long remaining = timeout - (System.currentTimeMillis() - startedAt);
+      return future.get(Math.max(0L, remaining), TimeUnit.MILLISECONDS);
+    }
   }
 
   @VisibleForTesting
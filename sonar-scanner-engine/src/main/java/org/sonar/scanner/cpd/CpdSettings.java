@@ -26,6 +26,8 @@ import org.sonar.api.config.Configuration;
 import org.sonar.duplications.block.BlockChunker;
 
 public class CpdSettings {
+  static final String DETECTION_THREADS_PROPERTY = "sonar.cpd.threads";
+
   private final Configuration settings;
   private final String branch;
 
@@ -40,6 +42,13 @@ public class CpdSettings {
       && StringUtils.isBlank(branch);
   }
 
+  /**
+   * Number of threads used to detect duplications once all files are indexed. Defaults to the number of available processors.
+   */
+  int getDetectionThreads() {
+    return Math.max(1, settings.getInt(DETECTION_THREADS_PROPERTY).orElse(Runtime.getRuntime().availableProcessors()));
+  }
+
   /**
    * Not applicable to Java, as the {@link BlockChunker} that it uses does not record start and end units of each block. 
    * Also, it uses statements instead of tokens. 
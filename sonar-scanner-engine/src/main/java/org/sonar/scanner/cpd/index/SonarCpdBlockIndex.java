@@ -70,20 +70,22 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
         return builder.build();
       }).collect(Collectors.toList()));
     }
-    for (Block block : blocks) {
-      mem.insert(block);
+    synchronized (this) {
+      for (Block block : blocks) {
+        mem.insert(block);
+      }
+      indexedFiles.add(inputFile);
     }
     if (blocks.isEmpty()) {
       LOG.debug("Not enough content in '{}' to have CPD blocks, it will not be part of the duplication detection", inputFile.relativePath());
     }
-    indexedFiles.add(inputFile);
   }
 
-  public int noIndexedFiles() {
+  public synchronized int noIndexedFiles() {
     return indexedFiles.size();
   }
 
-  public boolean isIndexed(InputFile inputFile) {
+  public synchronized boolean isIndexed(InputFile inputFile) {
     return indexedFiles.contains(inputFile);
   }
 
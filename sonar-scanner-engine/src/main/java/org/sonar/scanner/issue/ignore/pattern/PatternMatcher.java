@@ -28,12 +28,15 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.rule.RuleKey;
 
+/**
+ * Patterns are registered while file metadata is computed, possibly by several threads of the {@code FileIndexer}.
+ */
 public class PatternMatcher {
 
   private Multimap<String, IssuePattern> excludePatternByComponent = LinkedHashMultimap.create();
 
   @CheckForNull
-  public IssuePattern getMatchingPattern(String componentKey, RuleKey ruleKey, @Nullable Integer line) {
+  public synchronized IssuePattern getMatchingPattern(String componentKey, RuleKey ruleKey, @Nullable Integer line) {
     for (IssuePattern pattern : getPatternsForComponent(componentKey)) {
       if (pattern.match(componentKey, ruleKey, line)) {
         return pattern;
@@ -43,11 +46,11 @@ public class PatternMatcher {
   }
 
   @VisibleForTesting
-  public Collection<IssuePattern> getPatternsForComponent(String componentKey) {
+  public synchronized Collection<IssuePattern> getPatternsForComponent(String componentKey) {
     return excludePatternByComponent.get(componentKey);
   }
 
-  public void addPatternForComponent(String componentKey, IssuePattern pattern) {
+  public synchronized void addPatternForComponent(String componentKey, IssuePattern pattern) {
     excludePatternByComponent.put(componentKey, pattern.forResource(componentKey));
   }
 
@@ -32,6 +32,7 @@ import org.sonar.scanner.issue.ignore.pattern.PatternMatcher;
 public final class IssueExclusionsLoader {
   private final List<java.util.regex.Pattern> allFilePatterns;
   private final List<DoubleRegexpMatcher> blockMatchers;
+  private final RegexpPrefilter prefilter;
   private final PatternMatcher patternMatcher;
   private final IssueExclusionPatternInitializer patternsInitializer;
   private final boolean enableCharHandler;
@@ -50,6 +51,7 @@ public final class IssueExclusionsLoader {
         java.util.regex.Pattern.compile(pattern.getBeginBlockRegexp()),
         java.util.regex.Pattern.compile(pattern.getEndBlockRegexp())));
     }
+    prefilter = IssueExclusionsRegexpScanner.newPrefilter(allFilePatterns, blockMatchers);
     enableCharHandler = !allFilePatterns.isEmpty() || !blockMatchers.isEmpty();
   }
 
@@ -68,7 +70,7 @@ public final class IssueExclusionsLoader {
   @CheckForNull
   public CharHandler createCharHandlerFor(String componentKey) {
     if (enableCharHandler) {
-      return new IssueExclusionsRegexpScanner(componentKey, allFilePatterns, blockMatchers, patternMatcher);
+      return new IssueExclusionsRegexpScanner(componentKey, allFilePatterns, blockMatchers, prefilter, patternMatcher);
     }
     return null;
   }
@@ -83,17 +85,25 @@ public final class IssueExclusionsLoader {
       this.secondPattern = secondPattern;
     }
 
-    boolean matchesFirstPattern(String line) {
+    boolean matchesFirstPattern(CharSequence line) {
       return firstPattern.matcher(line).find();
     }
 
-    boolean matchesSecondPattern(String line) {
+    boolean matchesSecondPattern(CharSequence line) {
       return hasSecondPattern() && secondPattern.matcher(line).find();
     }
 
     boolean hasSecondPattern() {
       return StringUtils.isNotEmpty(secondPattern.toString());
     }
+
+    java.util.regex.Pattern firstPattern() {
+      return firstPattern;
+    }
+
+    java.util.regex.Pattern secondPattern() {
+      return secondPattern;
+    }
   }
 
   @Override
@@ -20,6 +20,7 @@
 package org.sonar.scanner.issue.ignore.scanner;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -32,6 +33,10 @@ import org.sonar.scanner.issue.ignore.pattern.LineRange;
 import org.sonar.scanner.issue.ignore.pattern.PatternMatcher;
 import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsLoader.DoubleRegexpMatcher;
 
+/**
+ * Searches the issue exclusion patterns in the lines of a file, while {@link org.sonar.api.batch.fs.internal.FileMetadata}
+ * reads it. A {@link RegexpPrefilter} selects the patterns which may match a line, so that only these regexps are run.
+ */
 public class IssueExclusionsRegexpScanner extends CharHandler {
   private static final Logger LOG = LoggerFactory.getLogger(IssueExclusionsLoader.class);
 
@@ -39,38 +44,61 @@ public class IssueExclusionsRegexpScanner extends CharHandler {
   private final List<Pattern> allFilePatterns;
   private final List<DoubleRegexpMatcher> blockMatchers;
   private final String componentKey;
+  private final RegexpPrefilter prefilter;
   private final PatternMatcher patternMatcher;
+  private final BitSet candidates = new BitSet();
 
   private int lineIndex = 1;
   private List<LineExclusion> lineExclusions = new ArrayList<>();
   private LineExclusion currentLineExclusion = null;
   private int fileLength = 0;
   private DoubleRegexpMatcher currentMatcher;
+  private int currentMatcherIndex;
 
-  IssueExclusionsRegexpScanner(String componentKey, List<Pattern> allFilePatterns, List<DoubleRegexpMatcher> blockMatchers, PatternMatcher patternMatcher) {
+  IssueExclusionsRegexpScanner(String componentKey, List<Pattern> allFilePatterns, List<DoubleRegexpMatcher> blockMatchers, RegexpPrefilter prefilter,
+    PatternMatcher patternMatcher) {
     this.allFilePatterns = allFilePatterns;
     this.blockMatchers = blockMatchers;
+    this.prefilter = prefilter;
     this.patternMatcher = patternMatcher;
     this.componentKey = componentKey;
     String relativePath = StringUtils.substringAfterLast(componentKey, ":");
     LOG.info("'{}' generating issue exclusions", relativePath);
   }
 
+  /**
+   * The patterns of the prefilter are the patterns of {@code allFilePatterns}, followed by the first and the second
+   * patterns of each of the {@code blockMatchers}.
+   */
+  static RegexpPrefilter newPrefilter(List<Pattern> allFilePatterns, List<DoubleRegexpMatcher> blockMatchers) {
+    List<Pattern> patterns = new ArrayList<>(allFilePatterns);
+    for (DoubleRegexpMatcher blockMatcher : blockMatchers) {
+      patterns.add(blockMatcher.firstPattern());
+      patterns.add(blockMatcher.secondPattern());
+    }
+    return new RegexpPrefilter(patterns);
+  }
+
   @Override
   public void handleIgnoreEoL(char c) {
     sb.append(c);
   }
 
+  @Override
+  public void handleIgnoreEoL(char[] buf, int off, int len) {
+    sb.append(buf, off, len);
+  }
+
   @Override
   public void newLine() {
-    processLine(sb.toString());
+    processLine();
     sb.setLength(0);
     lineIndex++;
   }
 
   @Override
   public void eof() {
-    processLine(sb.toString());
+    processLine();
 
     if (currentMatcher != null && !currentMatcher.hasSecondPattern()) {
       // this will happen when there is a start block regexp but no end block regexp
@@ -86,14 +114,16 @@ public class IssueExclusionsRegexpScanner extends CharHandler {
     }
   }
 
-  private void processLine(String line) {
-    if (line.trim().length() == 0) {
+  private void processLine() {
+    if (isBlank(sb)) {
       return;
     }
+    prefilter.candidates(sb, candidates);
 
     // first check the single regexp patterns that can be used to totally exclude a file
-    for (Pattern pattern : allFilePatterns) {
-      if (pattern.matcher(line).find()) {
+    for (int i = 0; i < allFilePatterns.size(); i++) {
+      Pattern pattern = allFilePatterns.get(i);
+      if (candidates.get(i) && pattern.matcher(sb).find()) {
         patternMatcher.addPatternToExcludeResource(componentKey);
         // nothing more to do on this file
         LOG.debug("- Exclusion pattern '{}': every issue in this file will be ignored.", pattern);
@@ -102,7 +132,16 @@ public class IssueExclusionsRegexpScanner extends CharHandler {
     }
 
     // then check the double regexps if we're still here
-    checkDoubleRegexps(line, lineIndex);
+    checkDoubleRegexps(sb, lineIndex);
+  }
+
+  private static boolean isBlank(CharSequence line) {
+    for (int i = 0; i < line.length(); i++) {
+      if (line.charAt(i) > ' ') {
+        return false;
+      }
+    }
+    return true;
   }
 
   private Set<LineRange> convertLineExclusionsToLineRanges() {
@@ -113,23 +152,33 @@ public class IssueExclusionsRegexpScanner extends CharHandler {
     return lineRanges;
   }
 
-  private void checkDoubleRegexps(String line, int lineIndex) {
+  private void checkDoubleRegexps(CharSequence line, int lineIndex) {
     if (currentMatcher == null) {
-      for (DoubleRegexpMatcher matcher : blockMatchers) {
-        if (matcher.matchesFirstPattern(line)) {
+      for (int i = 0; i < blockMatchers.size(); i++) {
+        DoubleRegexpMatcher matcher = blockMatchers.get(i);
+        if (candidates.get(firstPatternIndex(i)) && matcher.matchesFirstPattern(line)) {
           startExclusion(lineIndex);
           currentMatcher = matcher;
+          currentMatcherIndex = i;
           break;
         }
       }
     } else {
-      if (currentMatcher.matchesSecondPattern(line)) {
+      if (candidates.get(secondPatternIndex(currentMatcherIndex)) && currentMatcher.matchesSecondPattern(line)) {
         endExclusion(lineIndex);
         currentMatcher = null;
       }
     }
   }
 
+  private int firstPatternIndex(int blockMatcherIndex) {
+    return allFilePatterns.size() + 2 * blockMatcherIndex;
+  }
+
+  private int secondPatternIndex(int blockMatcherIndex) {
+    return firstPatternIndex(blockMatcherIndex) + 1;
+  }
+
   private void startExclusion(int lineIndex) {
     currentLineExclusion = new LineExclusion(lineIndex);
     lineExclusions.add(currentLineExclusion);
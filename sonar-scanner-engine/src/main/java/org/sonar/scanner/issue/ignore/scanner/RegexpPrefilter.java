@@ -0,0 +1,146 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.ignore.scanner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the patterns which may match a line, by searching in a single pass the {@link RequiredLiteral required literals}
+ * of all the patterns with an Aho-Corasick automaton. Patterns without required literal are always selected.
+ * <p/>
+ * Immutable, so a single instance can be shared by the scanners of all files.
+ */
+final class RegexpPrefilter {
+
+  private static final int ROOT = 0;
+
+  private final BitSet unfiltered = new BitSet();
+  // states of the automaton. Transitions are sorted by character.
+  private final char[][] transitionChars;
+  private final int[][] transitionTargets;
+  private final int[] failures;
+  // indices of the patterns whose literal ends at the state
+  private final int[][] outputs;
+
+  RegexpPrefilter(List<Pattern> patterns) {
+    List<Map<Character, Integer>> transitions = new ArrayList<>();
+    List<BitSet> patternsByState = new ArrayList<>();
+    transitions.add(new TreeMap<>());
+    patternsByState.add(new BitSet());
+    for (int i = 0; i < patterns.size(); i++) {
+      String literal = RequiredLiteral.of(patterns.get(i));
+      if (literal == null) {
+        unfiltered.set(i);
+      } else {
+        int state = ROOT;
+        for (int c = 0; c < literal.length(); c++) {
+          Integer next = transitions.get(state).get(literal.charAt(c));
+          if (next == null) {
+            next = transitions.size();
+            transitions.add(new TreeMap<>());
+            patternsByState.add(new BitSet());
+            transitions.get(state).put(literal.charAt(c), next);
+          }
+          state = next;
+        }
+        patternsByState.get(state).set(i);
+      }
+    }
+
+    int stateCount = transitions.size();
+    this.transitionChars = new char[stateCount][];
+    this.transitionTargets = new int[stateCount][];
+    this.failures = new int[stateCount];
+    this.outputs = new int[stateCount][];
+    for (int state = 0; state < stateCount; state++) {
+      Map<Character, Integer> stateTransitions = transitions.get(state);
+      transitionChars[state] = new char[stateTransitions.size()];
+      transitionTargets[state] = new int[stateTransitions.size()];
+      int t = 0;
+      for (Map.Entry<Character, Integer> transition : stateTransitions.entrySet()) {
+        transitionChars[state][t] = transition.getKey();
+        transitionTargets[state][t] = transition.getValue();
+        t++;
+      }
+    }
+    computeFailures(patternsByState);
+  }
+
+  /**
+   * Breadth-first traversal, so that the failure state of a state is always processed before the state itself.
+   */
+  private void computeFailures(List<BitSet> patternsByState) {
+    Deque<Integer> queue = new ArrayDeque<>();
+    outputs[ROOT] = new int[0];
+    for (int child : transitionTargets[ROOT]) {
+      failures[child] = ROOT;
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      BitSet output = patternsByState.get(state);
+      output.or(patternsByState.get(failures[state]));
+      outputs[state] = output.stream().toArray();
+      for (int t = 0; t < transitionChars[state].length; t++) {
+        int child = transitionTargets[state][t];
+        failures[child] = next(failures[state], transitionChars[state][t]);
+        queue.add(child);
+      }
+    }
+  }
+
+  /**
+   * Clears {@code candidates} then sets the indices of the patterns which may match {@code line}. The patterns
+   * which are not set in {@code candidates} can not match.
+   */
+  void candidates(CharSequence line, BitSet candidates) {
+    candidates.clear();
+    candidates.or(unfiltered);
+    int state = ROOT;
+    for (int i = 0; i < line.length(); i++) {
+      state = next(state, line.charAt(i));
+      for (int pattern : outputs[state]) {
+        candidates.set(pattern);
+      }
+    }
+  }
+
+  private int next(int from, char c) {
+    int state = from;
+    while (true) {
+      int t = Arrays.binarySearch(transitionChars[state], c);
+      if (t >= 0) {
+        return transitionTargets[state][t];
+      }
+      if (state == ROOT) {
+        return ROOT;
+      }
+      state = failures[state];
+    }
+  }
+}
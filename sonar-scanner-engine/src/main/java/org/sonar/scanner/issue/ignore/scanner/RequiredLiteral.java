@@ -0,0 +1,263 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.ignore.scanner;
+
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+
+/**
+ * Extracts from a regular expression a literal which is part of any match of the expression. Lines which do not
+ * contain this literal can not match the expression, so that they can be discarded without running the regexp.
+ * <p/>
+ * The analysis is conservative: only the characters at the top-level of the expression, out of any group, class or
+ * quantified atom, are considered. Expressions with top-level alternations or embedded flags have no required literal.
+ */
+final class RequiredLiteral {
+
+  private static final String EMBEDDED_FLAGS = "idmsuxU-";
+
+  private final String regexp;
+  private final StringBuilder run = new StringBuilder();
+  private String longest = "";
+  private boolean lastIsLiteral = false;
+  private int depth = 0;
+
+  private RequiredLiteral(String regexp) {
+    this.regexp = regexp;
+  }
+
+  /**
+   * @return the longest literal found in every match of the pattern, or {@code null} if there's no such literal
+   */
+  @CheckForNull
+  static String of(Pattern pattern) {
+    if (pattern.flags() != 0) {
+      return null;
+    }
+    return new RequiredLiteral(pattern.pattern()).extract();
+  }
+
+  @CheckForNull
+  private String extract() {
+    int i = 0;
+    while (i < regexp.length()) {
+      char c = regexp.charAt(i);
+      i++;
+      switch (c) {
+        case '\\':
+          i = escape(i);
+          break;
+        case '[':
+          i = skipClass(regexp, i);
+          endRun();
+          break;
+        case '(':
+          if (i + 1 < regexp.length() && regexp.charAt(i) == '?' && EMBEDDED_FLAGS.indexOf(regexp.charAt(i + 1)) >= 0) {
+            return null;
+          }
+          endRun();
+          depth++;
+          break;
+        case ')':
+          depth--;
+          lastIsLiteral = false;
+          break;
+        case '|':
+          if (depth == 0) {
+            return null;
+          }
+          break;
+        case '*':
+        case '?':
+          // previous atom is optional
+          dropLastLiteral();
+          i = skipQuantifierModifier(i);
+          break;
+        case '{':
+          dropLastLiteral();
+          i = skipQuantifierModifier(regexp.indexOf('}', i) + 1);
+          break;
+        case '+':
+          // previous atom is required, but can be repeated
+          endRun();
+          i = skipQuantifierModifier(i);
+          break;
+        case '.':
+        case '^':
+        case '$':
+          endRun();
+          break;
+        default:
+          appendLiteral(String.valueOf(c));
+      }
+      if (i <= 0) {
+        return null;
+      }
+    }
+    endRun();
+    return longest.isEmpty() ? null : longest;
+  }
+
+  private int escape(int from) {
+    if (from >= regexp.length()) {
+      return -1;
+    }
+    char c = regexp.charAt(from);
+    if (c == 'Q') {
+      int end = regexp.indexOf("\\E", from);
+      String quoted = end < 0 ? regexp.substring(from + 1) : regexp.substring(from + 1, end);
+      if (!quoted.isEmpty()) {
+        // an empty quote is not an atom, a following quantifier applies to the previous one
+        appendLiteral(quoted);
+      }
+      return end < 0 ? regexp.length() : (end + 2);
+    }
+    if (!Character.isLetterOrDigit(c)) {
+      appendLiteral(String.valueOf(c));
+      return from + 1;
+    }
+    // predefined classes, boundaries, back references, control characters...
+    endRun();
+    switch (c) {
+      case 'x':
+        return isAt(from + 1, '{') ? skipPast(from + 2, '}') : (from + 3);
+      case 'u':
+        return from + 5;
+      case 'c':
+        return from + 2;
+      case 'k':
+        return skipPast(from + 1, '>');
+      case 'p':
+      case 'P':
+        return isAt(from + 1, '{') ? skipPast(from + 2, '}') : (from + 2);
+      case '0':
+        return skipOctal(from + 1);
+      default:
+        return skipDigits(from + 1, c);
+    }
+  }
+
+  private boolean isAt(int index, char c) {
+    return index < regexp.length() && regexp.charAt(index) == c;
+  }
+
+  /**
+   * @return index of the character following the first {@code c} found from {@code from}, or -1 if there's none
+   */
+  private int skipPast(int from, char c) {
+    int index = regexp.indexOf(c, from);
+    return index < 0 ? -1 : (index + 1);
+  }
+
+  /**
+   * Octal value \0n, \0nn or \0mnn with m <= 3
+   */
+  private int skipOctal(int from) {
+    int i = from;
+    while (i < regexp.length() && i < from + 3 && isOctal(regexp.charAt(i))) {
+      if (i == from + 2 && regexp.charAt(from) > '3') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isOctal(char c) {
+    return c >= '0' && c <= '7';
+  }
+
+  /**
+   * Back references can be followed by more digits, which are consumed too as they may be part of the group number
+   */
+  private int skipDigits(int from, char escaped) {
+    if (!Character.isDigit(escaped)) {
+      return from;
+    }
+    int i = from;
+    while (i < regexp.length() && Character.isDigit(regexp.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private void appendLiteral(String literal) {
+    if (depth == 0 && !literal.isEmpty()) {
+      run.append(literal);
+      lastIsLiteral = true;
+    } else {
+      lastIsLiteral = false;
+    }
+  }
+
+  private void dropLastLiteral() {
+    if (lastIsLiteral) {
+      run.setLength(run.length() - 1);
+    }
+    endRun();
+  }
+
+  private void endRun() {
+    if (run.length() > longest.length()) {
+      longest = run.toString();
+    }
+    run.setLength(0);
+    lastIsLiteral = false;
+  }
+
+  private int skipQuantifierModifier(int from) {
+    if (from > 0 && from < regexp.length() && (regexp.charAt(from) == '?' || regexp.charAt(from) == '+')) {
+      return from + 1;
+    }
+    return from;
+  }
+
+  /**
+   * @return index of the character following the class starting at {@code from}, or -1 if class can not be parsed
+   */
+  private static int skipClass(String regexp, int from) {
+    int i = from;
+    if (i < regexp.length() && regexp.charAt(i) == '^') {
+      i++;
+    }
+    if (i < regexp.length() && regexp.charAt(i) == ']') {
+      // leading ] is a literal
+      i++;
+    }
+    while (i < regexp.length()) {
+      char c = regexp.charAt(i);
+      i++;
+      if (c == '\\') {
+        if (i < regexp.length() && regexp.charAt(i) == 'Q') {
+          return -1;
+        }
+        i++;
+      } else if (c == '[') {
+        i = skipClass(regexp, i);
+        if (i < 0) {
+          return -1;
+        }
+      } else if (c == ']') {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -19,28 +19,128 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
 import org.apache.commons.io.IOUtils;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
 import org.sonar.scanner.util.ScannerUtils;
 import org.sonarqube.ws.client.GetRequest;
+import org.sonarqube.ws.client.PostRequest;
 
-public class DefaultServerLineHashesLoader implements ServerLineHashesLoader {
-  private ScannerWsClient wsClient;
+/**
+ * Line hashes are loaded file by file from WS api/sources/hash, unless they have been prefetched. Prefetching
+ * loads files by batches from WS api/sources/hashes, in background threads. If a batch fails, for example because
+ * the server does not support this WS, then its files are loaded one by one. Keys of batches are sent in the body of
+ * POST requests, as they would exceed the maximum length of URLs accepted by proxies.
+ */
+public class DefaultServerLineHashesLoader implements ServerLineHashesLoader, Startable {
+
+  private static final Logger LOG = Loggers.get(DefaultServerLineHashesLoader.class);
+  static final int BATCH_SIZE = 50;
+  private static final int THREADS = 4;
+
+  private final ScannerWsClient wsClient;
+  private final Map<String, Future<Map<String, String>>> prefetchedByFileKey = new ConcurrentHashMap<>();
+  private ExecutorService executor;
 
   public DefaultServerLineHashesLoader(ScannerWsClient wsClient) {
     this.wsClient = wsClient;
   }
 
+  @Override
+  public void start() {
+    // executor is created on first prefetch
+  }
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    prefetchedByFileKey.clear();
+  }
+
+  @Override
+  public synchronized void prefetch(Collection<String> fileKeys) {
+    if (fileKeys.isEmpty()) {
+      return;
+    }
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(THREADS, new ThreadFactoryBuilder()
+        .setNameFormat("line-hashes-%d")
+        .setDaemon(true)
+        .build());
+    }
+    for (List<String> batch : Iterables.partition(fileKeys, BATCH_SIZE)) {
+      Future<Map<String, String>> future = executor.submit(() -> loadBatchFromWs(batch));
+      batch.forEach(fileKey -> prefetchedByFileKey.put(fileKey, future));
+    }
+  }
+
   @Override
   public String[] getLineHashes(String fileKey) {
-    String hashesFromWs = loadHashesFromWs(fileKey);
-    return Iterators.toArray(Splitter.on('\n').split(hashesFromWs).iterator(), String.class);
+    String hashes = getPrefetched(fileKey);
+    if (hashes == null) {
+      hashes = loadHashesFromWs(fileKey);
+    }
+    return Iterators.toArray(Splitter.on('\n').split(hashes).iterator(), String.class);
+  }
+
+  @CheckForNull
+  private String getPrefetched(String fileKey) {
+    Future<Map<String, String>> future = prefetchedByFileKey.remove(fileKey);
+    if (future == null) {
+      return null;
+    }
+    try {
+      // entry is removed so that batch is garbage collected once all its files are tracked
+      return future.get().remove(fileKey);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      LOG.debug("Fail to prefetch line hashes of " + fileKey, e.getCause());
+      return null;
+    }
+  }
+
+  private Map<String, String> loadBatchFromWs(List<String> fileKeys) throws IOException {
+    Profiler profiler = Profiler.createIfDebug(LOG)
+      .addContext("files", fileKeys.size())
+      .startDebug("Prefetch line hashes");
+
+    PostRequest postRequest = new PostRequest("/api/sources/hashes").setParam("keys", Joiner.on(',').join(fileKeys));
+    Map<String, String> hashesByFileKey = new ConcurrentHashMap<>(fileKeys.size());
+    try (InputStream input = wsClient.call(postRequest).contentStream()) {
+      FileLineHashes lineHashes = FileLineHashes.parseDelimitedFrom(input);
+      while (lineHashes != null) {
+        hashesByFileKey.put(lineHashes.getFileKey(), lineHashes.getLineHashes());
+        lineHashes = FileLineHashes.parseDelimitedFrom(input);
+      }
+      return hashesByFileKey;
+    } finally {
+      profiler.stopDebug();
+    }
   }
 
   private String loadHashesFromWs(String fileKey) {
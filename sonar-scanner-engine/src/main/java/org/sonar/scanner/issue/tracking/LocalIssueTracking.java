@@ -47,6 +47,7 @@ import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.issue.IssueTransformer;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.repository.ProjectRepositories;
+import org.sonar.scanner.scan.filesystem.InputComponentStore;
 
 @ScannerSide
 public class LocalIssueTracking {
@@ -56,14 +57,17 @@ public class LocalIssueTracking {
   private final ServerIssueRepository serverIssueRepository;
   private final DefaultAnalysisMode mode;
   private final InputComponentTree componentTree;
+  private final InputComponentStore componentStore;
 
   private boolean hasServerAnalysis;
 
   public LocalIssueTracking(Tracker<TrackedIssue, ServerIssueFromWs> tracker, ServerLineHashesLoader lastLineHashes, InputComponentTree componentTree,
-    ActiveRules activeRules, ServerIssueRepository serverIssueRepository, ProjectRepositories projectRepositories, DefaultAnalysisMode mode) {
+    InputComponentStore componentStore, ActiveRules activeRules, ServerIssueRepository serverIssueRepository, ProjectRepositories projectRepositories,
+    DefaultAnalysisMode mode) {
     this.tracker = tracker;
     this.lastLineHashes = lastLineHashes;
     this.componentTree = componentTree;
+    this.componentStore = componentStore;
     this.serverIssueRepository = serverIssueRepository;
     this.mode = mode;
     this.activeRules = activeRules;
@@ -73,9 +77,24 @@ public class LocalIssueTracking {
   public void init() {
     if (hasServerAnalysis) {
       serverIssueRepository.load();
+      prefetchLineHashes();
     }
   }
 
+  /**
+   * Line hashes on server are needed only by the changed files that have issues on server, see {@link SourceHashHolder}
+   * and {@link #createBaseInput(Collection, SourceHashHolder)}. They are loaded while tracking the first components.
+   */
+  private void prefetchLineHashes() {
+    List<String> fileKeys = new ArrayList<>();
+    for (InputFile file : componentStore.allFiles()) {
+      if (file.status() == Status.CHANGED && serverIssueRepository.byComponent(file).iterator().hasNext()) {
+        fileKeys.add(SourceHashHolder.serverSideKey(moduleOf(file), file));
+      }
+    }
+    lastLineHashes.prefetch(fileKeys);
+  }
+
   public List<TrackedIssue> trackIssues(InputComponent component, Collection<ScannerReport.Issue> reportIssues, Date analysisDate) {
     List<TrackedIssue> trackedIssues = new LinkedList<>();
     if (hasServerAnalysis) {
@@ -113,7 +132,8 @@ public class LocalIssueTracking {
   private static Input<ServerIssueFromWs> createBaseInput(Collection<ServerIssueFromWs> serverIssues, @Nullable SourceHashHolder sourceHashHolder) {
     List<String> refHashes;
 
-    if (sourceHashHolder != null && sourceHashHolder.getHashedReference() != null) {
+    // line hashes on server are not loaded if there's no issue to match
+    if (sourceHashHolder != null && !serverIssues.isEmpty() && sourceHashHolder.getHashedReference() != null) {
       refHashes = Arrays.asList(sourceHashHolder.getHashedReference().hashes());
     } else {
       refHashes = new ArrayList<>(0);
@@ -164,13 +184,16 @@ public class LocalIssueTracking {
   private SourceHashHolder loadSourceHashes(InputComponent component) {
     SourceHashHolder sourceHashHolder = null;
     if (component.isFile()) {
-      DefaultInputModule module = (DefaultInputModule) componentTree.getParent(componentTree.getParent(component));
       DefaultInputFile file = (DefaultInputFile) component;
-      sourceHashHolder = new SourceHashHolder(module, file, lastLineHashes);
+      sourceHashHolder = new SourceHashHolder(moduleOf(file), file, lastLineHashes);
     }
     return sourceHashHolder;
   }
 
+  private DefaultInputModule moduleOf(InputFile file) {
+    return (DefaultInputModule) componentTree.getParent(componentTree.getParent(file));
+  }
+
   private Collection<ServerIssueFromWs> loadServerIssues(InputComponent component) {
     Collection<ServerIssueFromWs> serverIssues = new ArrayList<>();
     for (org.sonar.scanner.protocol.input.ScannerInput.ServerIssue previousIssue : serverIssueRepository.byComponent(component)) {
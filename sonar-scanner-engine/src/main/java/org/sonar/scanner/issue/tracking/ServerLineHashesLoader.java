@@ -19,10 +19,19 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import java.util.Collection;
 import org.sonar.api.batch.ScannerSide;
 
 @ScannerSide
 public interface ServerLineHashesLoader {
 
   String[] getLineHashes(String fileKey);
+
+  /**
+   * Notifies that the line hashes of the given files are going to be requested, so that implementations can load them
+   * in advance. By default nothing is done.
+   */
+  default void prefetch(Collection<String> fileKeys) {
+    // nothing to do
+  }
 }
@@ -22,6 +22,7 @@ package org.sonar.scanner.issue.tracking;
 import java.util.Collection;
 import java.util.Collections;
 import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Status;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
@@ -51,14 +52,19 @@ public class SourceHashHolder {
       } else if (status == Status.SAME) {
         hashedReference = hashedSource;
       } else {
-        // Need key with branch
-        String serverSideKey = ComponentKeys.createEffectiveKey(module.definition().getKeyWithBranch(), inputFile);
-        String[] lineHashes = lastSnapshots.getLineHashes(serverSideKey);
+        String[] lineHashes = lastSnapshots.getLineHashes(serverSideKey(module, inputFile));
         hashedReference = lineHashes != null ? FileHashes.create(lineHashes) : null;
       }
     }
   }
 
+  /**
+   * Key of the file on server, including the branch
+   */
+  static String serverSideKey(DefaultInputModule module, InputFile inputFile) {
+    return ComponentKeys.createEffectiveKey(module.definition().getKeyWithBranch(), inputFile);
+  }
+
   @CheckForNull
   public FileHashes getHashedReference() {
     initHashes();
@@ -19,6 +19,8 @@
  */
 package org.sonar.scanner.phases;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.events.SensorExecutionHandler;
@@ -33,8 +35,9 @@ import org.sonar.scanner.util.ScannerUtils;
 public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseHandler {
 
   private static final Logger LOG = Loggers.get(PhasesTimeProfiler.class);
-  private Profiler profiler = Profiler.create(LOG);
   private final ScannerPluginRepository pluginRepo;
+  // sensors may be executed concurrently, see SensorsExecutor#THREADS_KEY
+  private final Map<Sensor, Profiler> profilers = new ConcurrentHashMap<>();
 
   public PhasesTimeProfiler(ScannerPluginRepository pluginRepo) {
     this.pluginRepo = pluginRepo;
@@ -56,9 +59,12 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseH
       if (pluginKey != null) {
         suffix = " [" + pluginKey + "]";
       }
-      profiler.startInfo("Sensor " + ScannerUtils.describe(event.getSensor()) + suffix);
+      profilers.put(event.getSensor(), Profiler.create(LOG).startInfo("Sensor " + ScannerUtils.describe(event.getSensor()) + suffix));
     } else {
-      profiler.stopInfo();
+      Profiler profiler = profilers.remove(event.getSensor());
+      if (profiler != null) {
+        profiler.stopInfo();
+      }
     }
   }
 
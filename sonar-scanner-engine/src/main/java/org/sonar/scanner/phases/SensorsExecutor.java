@@ -20,33 +20,76 @@
 package org.sonar.scanner.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
+import org.sonar.api.PropertyType;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.SensorStrategy;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorWrapper;
 
+@Properties({
+  @Property(
+    key = SensorsExecutor.THREADS_KEY,
+    defaultValue = "1",
+    name = "Number of threads of sensors",
+    description = "Sensors which declare the languages they analyze, and have no language in common, are executed concurrently "
+      + "by this number of threads. Other sensors are executed alone. By default all the sensors are executed sequentially.",
+    category = CoreProperties.CATEGORY_GENERAL,
+    project = false,
+    module = false,
+    global = false,
+    type = PropertyType.INTEGER)
+})
 @ScannerSide
 public class SensorsExecutor {
+
+  /**
+   * Number of threads executing the sensors which declare the languages they analyze. Sensors
+   * with no common language are executed concurrently. Default is 1, all the sensors are
+   * executed sequentially.
+   */
+  public static final String THREADS_KEY = "sonar.scanner.sensors.threads";
+
+  private static final Logger LOG = Loggers.get(SensorsExecutor.class);
+
   private final ScannerExtensionDictionnary selector;
   private final DefaultInputModule module;
   private final EventBus eventBus;
   private final SensorStrategy strategy;
   private final boolean isRoot;
+  private final int threads;
 
-  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, InputModuleHierarchy hierarchy, EventBus eventBus, SensorStrategy strategy) {
+  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, InputModuleHierarchy hierarchy, EventBus eventBus, SensorStrategy strategy,
+    Configuration settings) {
     this.selector = selector;
     this.module = module;
     this.eventBus = eventBus;
     this.strategy = strategy;
     this.isRoot = hierarchy.isRoot(module);
+    this.threads = Math.max(1, settings.getInt(THREADS_KEY).orElse(1));
   }
 
   public void execute(SensorContext context) {
@@ -78,8 +121,89 @@ public class SensorsExecutor {
   }
 
   private void execute(SensorContext context, Collection<Sensor> sensors) {
+    if (threads == 1) {
+      for (Sensor sensor : sensors) {
+        executeSensor(context, sensor);
+      }
+      return;
+    }
+
+    // Sensors which don't declare their languages are barriers: the sensors before them are done when they start
+    List<SensorWrapper> concurrentSensors = new ArrayList<>();
     for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+      if (sensor instanceof SensorWrapper && !((SensorWrapper) sensor).languages().isEmpty()) {
+        concurrentSensors.add((SensorWrapper) sensor);
+      } else {
+        executeConcurrently(context, concurrentSensors);
+        concurrentSensors.clear();
+        executeSensor(context, sensor);
+      }
+    }
+    executeConcurrently(context, concurrentSensors);
+  }
+
+  private void executeConcurrently(SensorContext context, List<SensorWrapper> sensors) {
+    Collection<List<SensorWrapper>> lanes = partitionByLanguages(sensors);
+    if (lanes.size() <= 1) {
+      sensors.forEach(sensor -> executeSensor(context, sensor));
+      return;
+    }
+
+    LOG.debug("Execute {} sensors in {} lanes with {} threads", sensors.size(), lanes.size(), threads);
+    ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, lanes.size()), new ThreadFactoryBuilder().setNameFormat("Sensors-%d").build());
+    try {
+      List<Future<?>> tasks = new ArrayList<>();
+      for (List<SensorWrapper> lane : lanes) {
+        tasks.add(executorService.submit(() -> lane.forEach(sensor -> executeSensor(context, sensor))));
+      }
+      waitForTasksToComplete(tasks);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Sensors sharing a language, even transitively, are in the same lane and keep their relative order.
+   */
+  static Collection<List<SensorWrapper>> partitionByLanguages(List<SensorWrapper> sensors) {
+    Map<String, String> parentLanguages = new HashMap<>();
+    for (SensorWrapper sensor : sensors) {
+      String first = rootLanguage(parentLanguages, sensor.languages().iterator().next());
+      for (String language : sensor.languages()) {
+        String root = rootLanguage(parentLanguages, language);
+        if (!root.equals(first)) {
+          parentLanguages.put(root, first);
+        }
+      }
+    }
+    Map<String, List<SensorWrapper>> lanes = new LinkedHashMap<>();
+    for (SensorWrapper sensor : sensors) {
+      lanes.computeIfAbsent(rootLanguage(parentLanguages, sensor.languages().iterator().next()), l -> new ArrayList<>()).add(sensor);
+    }
+    return lanes.values();
+  }
+
+  private static String rootLanguage(Map<String, String> parentLanguages, String language) {
+    String root = language;
+    String parent = parentLanguages.get(root);
+    while (parent != null) {
+      root = parent;
+      parent = parentLanguages.get(root);
+    }
+    return root;
+  }
+
+  private static void waitForTasksToComplete(List<Future<?>> tasks) {
+    for (Future<?> task : tasks) {
+      try {
+        task.get();
+      } catch (ExecutionException e) {
+        // Unwrap ExecutionException
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
     }
   }
 
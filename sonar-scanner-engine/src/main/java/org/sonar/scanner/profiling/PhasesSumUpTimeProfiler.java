@@ -153,8 +153,11 @@ public class PhasesSumUpTimeProfiler implements ProjectAnalysisHandler, SensorEx
     }
   }
 
+  /**
+   * Synchronized as sensors may be executed concurrently
+   */
   @Override
-  public void onSensorExecution(SensorExecutionEvent event) {
+  public synchronized void onSensorExecution(SensorExecutionEvent event) {
     PhaseProfiling profiling = currentModuleProfiling.getProfilingPerPhase(Phase.SENSOR);
     if (event.isStart()) {
       profiling.newItemProfiling(event.getSensor());
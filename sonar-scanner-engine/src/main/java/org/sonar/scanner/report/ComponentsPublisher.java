@@ -64,7 +64,11 @@ public class ComponentsPublisher implements ReportPublisherStep {
   public void publish(ScannerReportWriter writer) {
     this.reader = new ScannerReportReader(writer.getFileStructure().root());
     this.writer = writer;
-    recursiveWriteComponent((DefaultInputComponent) moduleHierarchy.root());
+    try {
+      recursiveWriteComponent((DefaultInputComponent) moduleHierarchy.root());
+    } finally {
+      reader.close();
+    }
   }
 
   /**
@@ -21,7 +21,7 @@ package org.sonar.scanner.repository;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 
 import org.sonar.api.batch.ScannerSide;
@@ -29,7 +29,7 @@ import org.sonar.api.batch.ScannerSide;
 @ScannerSide
 public class ContextPropertiesCache {
 
-  private final Map<String, String> props = new HashMap<>();
+  private final Map<String, String> props = new ConcurrentHashMap<>();
 
   /**
    * Value is overridden if the key was already stored.
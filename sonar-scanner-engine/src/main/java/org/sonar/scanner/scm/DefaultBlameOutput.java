@@ -23,6 +23,7 @@ import com.google.common.base.Preconditions;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -45,6 +46,7 @@ class DefaultBlameOutput implements BlameOutput {
 
   private final ScannerReportWriter writer;
   private final Set<InputFile> allFilesToBlame = new LinkedHashSet<>();
+  private final long startedAt;
   private ProgressReport progressReport;
   private int count;
   private int total;
@@ -54,15 +56,22 @@ class DefaultBlameOutput implements BlameOutput {
     this.allFilesToBlame.addAll(filesToBlame);
     count = 0;
     total = filesToBlame.size();
+    startedAt = System.currentTimeMillis();
     progressReport = new ProgressReport("Report about progress of SCM blame", TimeUnit.SECONDS.toMillis(10));
     progressReport.start(total + " files to be analyzed");
   }
 
+  /**
+   * Can be called concurrently by the SCM provider or by the threads of {@link ScmPublisher}. Changesets of the file are
+   * written to the report as soon as its blame is done.
+   */
   @Override
-  public synchronized void blameResult(InputFile file, List<BlameLine> lines) {
+  public void blameResult(InputFile file, List<BlameLine> lines) {
     Preconditions.checkNotNull(file);
     Preconditions.checkNotNull(lines);
-    Preconditions.checkArgument(allFilesToBlame.contains(file), "It was not expected to blame file %s", file.relativePath());
+    synchronized (this) {
+      Preconditions.checkArgument(allFilesToBlame.contains(file), "It was not expected to blame file %s", file.relativePath());
+    }
 
     if (lines.size() != file.lines()) {
       LOG.debug("Ignoring blame result since provider returned {} blame lines but file {} has {} lines", lines.size(), file.relativePath(), file.lines());
@@ -87,9 +96,16 @@ class DefaultBlameOutput implements BlameOutput {
       lineId++;
     }
     writer.writeComponentChangesets(scmBuilder.build());
-    allFilesToBlame.remove(file);
-    count++;
-    progressReport.message(count + "/" + total + " files analyzed");
+    synchronized (this) {
+      allFilesToBlame.remove(file);
+      count++;
+      progressReport.message(count + "/" + total + " files analyzed, " + throughput() + " files/s");
+    }
+  }
+
+  private String throughput() {
+    long durationInMs = Math.max(1L, System.currentTimeMillis() - startedAt);
+    return String.format(Locale.ENGLISH, "%.1f", count * 1000d / durationInMs);
   }
 
   private static void validateLine(BlameLine line, int lineId, InputFile file) {
@@ -115,8 +131,9 @@ class DefaultBlameOutput implements BlameOutput {
     return inputString.toLowerCase();
   }
 
-  public void finish(boolean success) {
+  public synchronized void finish(boolean success) {
     progressReport.stop(count + "/" + total + " files analyzed");
+    LOG.debug("SCM blame throughput: {} files/s", throughput());
     if (success && !allFilesToBlame.isEmpty()) {
       LOG.warn("Missing blame information for the following files:");
       for (InputFile f : allFilesToBlame) {
@@ -47,7 +47,18 @@ import org.sonar.api.utils.log.Loggers;
     project = false,
     module = false,
     global = false,
-    type = PropertyType.BOOLEAN)
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = ScmConfiguration.BLAME_THREADS_KEY,
+    defaultValue = "1",
+    name = "Number of threads of SCM blame",
+    description = "Files to blame are partitioned and the SCM provider is called by this number of threads, each one on its own partition. "
+      + "Use only with SCM providers which support concurrent calls.",
+    category = CoreProperties.CATEGORY_SCM,
+    project = false,
+    module = false,
+    global = false,
+    type = PropertyType.INTEGER)
 })
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @ScannerSide
@@ -55,6 +66,7 @@ public final class ScmConfiguration implements Startable {
   private static final Logger LOG = Loggers.get(ScmConfiguration.class);
 
   public static final String FORCE_RELOAD_KEY = "sonar.scm.forceReloadAll";
+  public static final String BLAME_THREADS_KEY = "sonar.scm.blame.threads";
 
   private final Configuration settings;
   private final Map<String, ScmProvider> providerPerKey = new LinkedHashMap<>();
@@ -144,6 +156,14 @@ public final class ScmConfiguration implements Startable {
     return settings.getBoolean(FORCE_RELOAD_KEY).orElse(false);
   }
 
+  /**
+   * Number of threads calling the blame command of the provider on partitions of the files to blame. By default, the
+   * blame command is called once with all the files, and is responsible for parallelizing its work.
+   */
+  public int blameThreads() {
+    return Math.max(1, settings.getInt(BLAME_THREADS_KEY).orElse(1));
+  }
+
   @Override
   public void stop() {
     // Nothing to do
@@ -19,8 +19,15 @@
  */
 package org.sonar.scanner.scm;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.InstantiationStrategy;
@@ -29,6 +36,7 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Status;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.batch.scm.BlameCommand;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -45,6 +53,7 @@ import org.sonar.scanner.scan.filesystem.ModuleInputComponentStore;
 public final class ScmPublisher {
 
   private static final Logger LOG = Loggers.get(ScmPublisher.class);
+  private static final int PARTITIONS_PER_THREAD = 4;
 
   private final DefaultInputModule inputModule;
   private final ScmConfiguration configuration;
@@ -79,7 +88,7 @@ public final class ScmPublisher {
       LOG.info("SCM provider for this project is: " + key);
       DefaultBlameOutput output = new DefaultBlameOutput(writer, filesToBlame);
       try {
-        configuration.provider().blameCommand().blame(new DefaultBlameInput(fs, filesToBlame), output);
+        blame(configuration.provider().blameCommand(), filesToBlame, output);
       } catch (Exception e) {
         output.finish(false);
         throw e;
@@ -88,6 +97,42 @@ public final class ScmPublisher {
     }
   }
 
+  private void blame(BlameCommand blameCommand, List<InputFile> filesToBlame, DefaultBlameOutput output) {
+    int threads = Math.min(configuration.blameThreads(), filesToBlame.size());
+    if (threads <= 1) {
+      blameCommand.blame(new DefaultBlameInput(fs, filesToBlame), output);
+      return;
+    }
+
+    // more partitions than threads, so that threads which are done with small files are not idle
+    int partitionSize = Math.max(1, (int) Math.ceil((double) filesToBlame.size() / (threads * PARTITIONS_PER_THREAD)));
+    LOG.debug("Blame {} files with {} threads", filesToBlame.size(), threads);
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("SCM-blame-%d").build());
+    try {
+      List<Future<?>> tasks = new ArrayList<>();
+      for (List<InputFile> partition : Lists.partition(new ArrayList<>(filesToBlame), partitionSize)) {
+        tasks.add(executorService.submit(() -> blameCommand.blame(new DefaultBlameInput(fs, partition), output)));
+      }
+      waitForTasksToComplete(tasks);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static void waitForTasksToComplete(List<Future<?>> tasks) {
+    for (Future<?> task : tasks) {
+      try {
+        task.get();
+      } catch (ExecutionException e) {
+        // Unwrap ExecutionException
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
   private List<InputFile> collectFilesToBlame(ScannerReportWriter writer) {
     if (configuration.forceReloadAll()) {
       LOG.warn("Forced reloading of SCM data for all files.");
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.sonar.api.batch.fs.InputComponent;
@@ -149,7 +150,7 @@ public class DefaultSensorStorage implements SensorStorage {
   private final Map<Metric<?>, Metric<?>> deprecatedCoverageMetricMapping = new HashMap<>();
   private final Set<Metric<?>> coverageMetrics = new HashSet<>();
   private final Set<Metric<?>> byLineMetrics = new HashSet<>();
-  private final Set<String> alreadyLogged = new HashSet<>();
+  private final Set<String> alreadyLogged = ConcurrentHashMap.newKeySet();
 
   public DefaultSensorStorage(MetricFinder metricFinder, ModuleIssues moduleIssues, Configuration settings,
     ReportPublisher reportPublisher, MeasureCache measureCache, SonarCpdBlockIndex index,
@@ -256,14 +257,22 @@ public class DefaultSensorStorage implements SensorStorage {
       }
       saveCoverageMetricInternal((InputFile) component, metric, measureToSave);
     } else {
-      if (measureCache.contains(component.key(), metric.key())) {
-        throw new UnsupportedOperationException("Can not add the same measure twice on " + component + ": " + measure);
-      }
-      measureCache.put(component.key(), metric.key(), measureToSave);
+      saveMeasureInternal(component, metric, measure, measureToSave);
+    }
+  }
+
+  /**
+   * Synchronized with {@link #saveCoverageMetricInternal(InputFile, Metric, DefaultMeasure)}, as sensors may be executed
+   * concurrently and both read the cache before writing to it.
+   */
+  private synchronized void saveMeasureInternal(InputComponent component, Metric<?> metric, DefaultMeasure<?> measure, DefaultMeasure<?> measureToSave) {
+    if (measureCache.contains(component.key(), metric.key())) {
+      throw new UnsupportedOperationException("Can not add the same measure twice on " + component + ": " + measure);
     }
+    measureCache.put(component.key(), metric.key(), measureToSave);
   }
 
-  private void saveCoverageMetricInternal(InputFile file, Metric<?> metric, DefaultMeasure<?> measure) {
+  private synchronized void saveCoverageMetricInternal(InputFile file, Metric<?> metric, DefaultMeasure<?> measure) {
     if (isLineMetrics(metric)) {
       validateCoverageMeasure((String) measure.value(), file);
       DefaultMeasure<?> previousMeasure = measureCache.byMetric(file.key(), metric.key());
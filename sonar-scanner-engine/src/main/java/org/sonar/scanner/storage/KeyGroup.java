@@ -0,0 +1,414 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.annotation.CheckForNull;
+
+/**
+ * Keys of a {@link Storage} which have the same first part, with the addresses in {@link MappedSegments} of their
+ * first record, which is kept to read the key, and of their last record, which has the current value. Keys are
+ * mostly read and written by first part, for example the measures of a file, so consecutive operations use the same
+ * small arrays and the same region of the segments, and they don't wait for the threads working on other groups.
+ * <p>
+ * Entries are made of arrays of primitives, so that they don't put pressure on garbage collection whatever the number
+ * of keys. They are appended in any order and sorted when the group is scanned, so that writes are cheap and
+ * consecutive scans do not sort again. A hash table of the positions of the entries is used to look up keys.
+ * Removed entries are marked as deleted until the entries are compacted.
+ * </p>
+ * Records are read while holding the lock of the group, as the segments of the records which are not referenced
+ * anymore can be released.
+ */
+class KeyGroup {
+
+  private static final int INITIAL_CAPACITY = 4;
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+  // addresses are positive, see MappedSegments
+  private static final long DELETED = -1L;
+
+  private final MappedSegments segments;
+  /**
+   * The first part is the same for all the keys of the group, so it's not hashed nor compared
+   */
+  private final int firstPartLength;
+  private int[] hashes;
+  private long[] firstAddresses;
+  private long[] lastAddresses;
+  /**
+   * Number of entries, including the deleted ones
+   */
+  private int size;
+  private int deleted;
+  /**
+   * Open addressing hash table, with linear probing, of the positions of entries plus one. Zero is a free slot.
+   * It's twice bigger than the arrays of entries, so that probing always ends on a free slot.
+   */
+  private int[] table;
+  private boolean sorted;
+
+  KeyGroup(MappedSegments segments, int firstPartLength) {
+    this.segments = segments;
+    this.firstPartLength = firstPartLength;
+    reset();
+  }
+
+  /**
+   * @return a read-only buffer positioned at the start of the current value of {@code key} and limited to its end,
+   * or {@code null} if the key does not exist
+   */
+  @CheckForNull
+  synchronized ByteBuffer readValue(StorageKey key) {
+    int position = find(key.bytes(), hash(key.bytes()));
+    return position < 0 ? null : segments.readValue(lastAddresses[position]);
+  }
+
+  synchronized boolean contains(StorageKey key) {
+    return find(key.bytes(), hash(key.bytes())) >= 0;
+  }
+
+  /**
+   * Associates the record at {@code address} to {@code key}. The previous record of the key is released, except if
+   * it's the first one.
+   */
+  synchronized void put(StorageKey key, long address) {
+    byte[] bytes = key.bytes();
+    int hash = hash(bytes);
+    int position = find(bytes, hash);
+    if (position >= 0) {
+      long previousAddress = lastAddresses[position];
+      lastAddresses[position] = address;
+      if (previousAddress != firstAddresses[position]) {
+        segments.release(previousAddress);
+      }
+      return;
+    }
+    if (size == firstAddresses.length) {
+      if (2 * deleted >= size) {
+        compact();
+      } else {
+        resize(2 * firstAddresses.length);
+      }
+    }
+    position = size;
+    size++;
+    hashes[position] = hash;
+    firstAddresses[position] = address;
+    lastAddresses[position] = address;
+    insertInTable(position);
+    sorted = size - deleted == 1;
+  }
+
+  /**
+   * Removes {@code key} and releases its records
+   *
+   * @return {@code true} if the key was present
+   */
+  synchronized boolean remove(StorageKey key) {
+    int position = find(key.bytes(), hash(key.bytes()));
+    if (position < 0) {
+      return false;
+    }
+    delete(position);
+    compactIfSparse();
+    return true;
+  }
+
+  /**
+   * Removes the keys starting with {@code prefix}, and releases their records
+   */
+  synchronized void clear(StorageKey prefix) {
+    if (prefix.bytes().length <= firstPartLength) {
+      for (int position = 0; position < size; position++) {
+        if (firstAddresses[position] != DELETED) {
+          delete(position);
+        }
+      }
+      reset();
+      return;
+    }
+    sort();
+    int from = lowerBound(prefix.bytes());
+    for (int position = from; position < size && segments.keyStartsWith(firstAddresses[position], prefix.bytes(), firstPartLength); position++) {
+      delete(position);
+    }
+    compactIfSparse();
+  }
+
+  synchronized boolean isEmpty() {
+    return size == deleted;
+  }
+
+  /**
+   * Keys starting with {@code prefix}, and their current values, in the order of keys
+   */
+  synchronized Scan scan(StorageKey prefix) {
+    sort();
+    int from = 0;
+    int to = size;
+    if (prefix.bytes().length > firstPartLength) {
+      from = lowerBound(prefix.bytes());
+      to = from;
+      while (to < size && segments.keyStartsWith(firstAddresses[to], prefix.bytes(), firstPartLength)) {
+        to++;
+      }
+    }
+    Scan scan = new Scan(to - from);
+    for (int i = 0; i < scan.size; i++) {
+      long firstAddress = firstAddresses[from + i];
+      long lastAddress = lastAddresses[from + i];
+      scan.keyAddresses[i] = firstAddress;
+      scan.keySegments[i] = segments.segmentOf(firstAddress);
+      scan.valueAddresses[i] = lastAddress;
+      scan.valueSegments[i] = lastAddress == firstAddress ? scan.keySegments[i] : segments.segmentOf(lastAddress);
+    }
+    return scan;
+  }
+
+  private int hash(byte[] key) {
+    int h = 1;
+    for (int i = firstPartLength; i < key.length; i++) {
+      h = 31 * h + key[i];
+    }
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private int find(byte[] key, int hash) {
+    int mask = table.length - 1;
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      int position = table[slot] - 1;
+      if (position < 0) {
+        return -1;
+      }
+      // the last record is read rather than the first one, as it's usually read just after
+      if (hashes[position] == hash && firstAddresses[position] != DELETED && segments.keyEquals(lastAddresses[position], key, firstPartLength)) {
+        return position;
+      }
+    }
+  }
+
+  private void insertInTable(int position) {
+    int mask = table.length - 1;
+    int slot = hashes[position] & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = position + 1;
+  }
+
+  private void rebuildTable() {
+    Arrays.fill(table, 0);
+    for (int position = 0; position < size; position++) {
+      insertInTable(position);
+    }
+  }
+
+  /**
+   * The entry stays in the hash table, so that probing continues after it, until entries are compacted
+   */
+  private void delete(int position) {
+    segments.release(firstAddresses[position]);
+    if (lastAddresses[position] != firstAddresses[position]) {
+      segments.release(lastAddresses[position]);
+    }
+    firstAddresses[position] = DELETED;
+    deleted++;
+  }
+
+  private void compactIfSparse() {
+    if (deleted == size) {
+      reset();
+    } else if (2 * deleted > size) {
+      compact();
+    }
+  }
+
+  /**
+   * Drops the deleted entries, without changing the order of the others
+   */
+  private void compact() {
+    int live = 0;
+    for (int position = 0; position < size; position++) {
+      if (firstAddresses[position] != DELETED) {
+        hashes[live] = hashes[position];
+        firstAddresses[live] = firstAddresses[position];
+        lastAddresses[live] = lastAddresses[position];
+        live++;
+      }
+    }
+    size = live;
+    deleted = 0;
+    int capacity = firstAddresses.length;
+    while (capacity > INITIAL_CAPACITY && 4 * size <= capacity) {
+      capacity /= 2;
+    }
+    if (capacity == firstAddresses.length) {
+      rebuildTable();
+    } else {
+      resize(capacity);
+    }
+  }
+
+  private void resize(int capacity) {
+    hashes = Arrays.copyOf(hashes, capacity);
+    firstAddresses = Arrays.copyOf(firstAddresses, capacity);
+    lastAddresses = Arrays.copyOf(lastAddresses, capacity);
+    table = new int[2 * capacity];
+    rebuildTable();
+  }
+
+  private void reset() {
+    hashes = new int[INITIAL_CAPACITY];
+    firstAddresses = new long[INITIAL_CAPACITY];
+    lastAddresses = new long[INITIAL_CAPACITY];
+    table = new int[2 * INITIAL_CAPACITY];
+    size = 0;
+    deleted = 0;
+    sorted = true;
+  }
+
+  /**
+   * Compacts and sorts the entries in the order of keys
+   */
+  private void sort() {
+    if (deleted > 0) {
+      compact();
+    }
+    if (sorted) {
+      return;
+    }
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    mergeSort(order, new int[size], 0, size);
+    int[] sortedHashes = new int[hashes.length];
+    long[] sortedFirstAddresses = new long[firstAddresses.length];
+    long[] sortedLastAddresses = new long[lastAddresses.length];
+    for (int i = 0; i < size; i++) {
+      sortedHashes[i] = hashes[order[i]];
+      sortedFirstAddresses[i] = firstAddresses[order[i]];
+      sortedLastAddresses[i] = lastAddresses[order[i]];
+    }
+    hashes = sortedHashes;
+    firstAddresses = sortedFirstAddresses;
+    lastAddresses = sortedLastAddresses;
+    rebuildTable();
+    sorted = true;
+  }
+
+  /**
+   * Sorts the positions {@code order[from]} to {@code order[to - 1]} by key. Ranges which are already in order,
+   * for example the keys added in order since the previous sort, are not merged again.
+   */
+  private void mergeSort(int[] order, int[] buffer, int from, int to) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      insertionSort(order, from, to);
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(order, buffer, from, middle);
+    mergeSort(order, buffer, middle, to);
+    if (compare(order[middle - 1], order[middle]) <= 0) {
+      return;
+    }
+    System.arraycopy(order, from, buffer, from, middle - from);
+    int i = from;
+    int j = middle;
+    int k = from;
+    while (i < middle && j < to) {
+      if (compare(order[j], buffer[i]) < 0) {
+        order[k] = order[j];
+        j++;
+      } else {
+        order[k] = buffer[i];
+        i++;
+      }
+      k++;
+    }
+    // remaining positions of the second half are already in place
+    System.arraycopy(buffer, i, order, k, middle - i);
+  }
+
+  private void insertionSort(int[] order, int from, int to) {
+    for (int i = from + 1; i < to; i++) {
+      int position = order[i];
+      int j = i - 1;
+      while (j >= from && compare(order[j], position) > 0) {
+        order[j + 1] = order[j];
+        j--;
+      }
+      order[j + 1] = position;
+    }
+  }
+
+  private int compare(int position1, int position2) {
+    return segments.compareKeys(firstAddresses[position1], firstAddresses[position2], firstPartLength);
+  }
+
+  /**
+   * Position of the first key greater than or equal to {@code key}
+   */
+  private int lowerBound(byte[] key) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (segments.compareKey(firstAddresses[middle], key, firstPartLength) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Copy of entries of a group. The records can be read after the lock of the group is released.
+   */
+  static final class Scan {
+    private final int size;
+    private final long[] keyAddresses;
+    private final ByteBuffer[] keySegments;
+    private final long[] valueAddresses;
+    private final ByteBuffer[] valueSegments;
+
+    private Scan(int size) {
+      this.size = size;
+      this.keyAddresses = new long[size];
+      this.keySegments = new ByteBuffer[size];
+      this.valueAddresses = new long[size];
+      this.valueSegments = new ByteBuffer[size];
+    }
+
+    int size() {
+      return size;
+    }
+
+    ByteBuffer readKey(int index) {
+      return MappedSegments.readKey(keySegments[index], keyAddresses[index]);
+    }
+
+    ByteBuffer readValue(int index) {
+      return MappedSegments.readValue(valueSegments[index], valueAddresses[index]);
+    }
+  }
+}
@@ -0,0 +1,436 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Append-only log of key-value records, backed by memory-mapped files. Records are never updated. Keys are read and
+ * compared in place, without being copied.
+ * <p>
+ * Writes are distributed on several stripes, each one having its own files and its own lock, so that threads
+ * appending concurrently rarely wait for each other. Reads do not lock. The first segment of a stripe is small,
+ * and each new segment is twice bigger than the previous one, up to the maximum size of segments.
+ * </p>
+ * <p>
+ * The owner of the records calls {@link #release(long)} when a record is not referenced anymore. A segment is
+ * released, and its file deleted, when all its records are released and no more records are appended to it. As
+ * readers may still use a released segment, it's not unmapped explicitly, but when it's garbage collected. So the
+ * owner must get the segment of a record with {@link #segmentOf(long)} while the record is referenced.
+ * </p>
+ * The address of a record is made of the index of the stripe, the index of the segment in the stripe and the
+ * offset of the record in the segment.
+ */
+class MappedSegments implements AutoCloseable {
+
+  static final int DEFAULT_MAX_SEGMENT_SIZE = 8 * 1024 * 1024;
+  static final int FIRST_SEGMENT_SIZE = 64 * 1024;
+
+  private static final Logger LOG = Loggers.get(MappedSegments.class);
+
+  // addresses are positive, see KeyGroup
+  private static final int MAX_STRIPES = 1 << 7;
+  private static final int MAX_SEGMENTS_PER_STRIPE = 1 << 24;
+  private static final int OFFSET_BITS = 32;
+  private static final int SEGMENT_BITS = 24;
+  /**
+   * Length of key and length of value
+   */
+  private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+  private final File dir;
+  private final int maxSegmentSize;
+  private final Stripe[] stripes;
+  /**
+   * Files of released segments which could not be deleted while they were mapped
+   */
+  private final List<Segment> undeletedSegments = new CopyOnWriteArrayList<>();
+
+  MappedSegments(File dir, int stripes, int maxSegmentSize) {
+    checkArgument(stripes > 0 && stripes <= MAX_STRIPES, "Number of stripes must be between 1 and %s: %s", MAX_STRIPES, stripes);
+    checkArgument(maxSegmentSize > RECORD_HEADER_SIZE, "Segment size is too small: %s", maxSegmentSize);
+    this.dir = dir;
+    this.maxSegmentSize = maxSegmentSize;
+    this.stripes = new Stripe[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new Stripe(i);
+    }
+  }
+
+  long append(byte[] key, byte[] value) {
+    return append(key, value, value.length);
+  }
+
+  /**
+   * Appends {@code key} and the {@code valueLength} first bytes of {@code value}. The record is referenced until
+   * {@link #release(long)} is called.
+   *
+   * @return the address of the record, to be used with {@link #readKey(long)} and {@link #readValue(long)}
+   */
+  long append(byte[] key, byte[] value, int valueLength) {
+    Stripe stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+    return stripe.append(key, value, valueLength);
+  }
+
+  /**
+   * The segment containing the record at {@code address}, which must still be referenced. The segment can be read
+   * with {@link #readKey(ByteBuffer, long)} and {@link #readValue(ByteBuffer, long)} even after the record is released.
+   * Only absolute reads are allowed on the returned buffer, as it's shared by all the threads.
+   */
+  ByteBuffer segmentOf(long address) {
+    int stripeIndex = (int) (address >>> (OFFSET_BITS + SEGMENT_BITS));
+    int segmentIndex = (int) ((address >>> OFFSET_BITS) & (MAX_SEGMENTS_PER_STRIPE - 1));
+    Segment segment = stripes[stripeIndex].segments.get(segmentIndex);
+    if (segment == null) {
+      throw new IllegalStateException("Segment of record " + address + " is released");
+    }
+    return segment.buffer;
+  }
+
+  /**
+   * @return a read-only buffer positioned at the start of the key and limited to its end
+   */
+  ByteBuffer readKey(long address) {
+    return readKey(segmentOf(address), address);
+  }
+
+  static ByteBuffer readKey(ByteBuffer segment, long address) {
+    int offset = offsetOf(address);
+    // a view of the segment is required to read concurrently, as buffers have a position and a limit
+    ByteBuffer buffer = segment.asReadOnlyBuffer();
+    buffer.limit(offset + RECORD_HEADER_SIZE + buffer.getInt(offset));
+    buffer.position(offset + RECORD_HEADER_SIZE);
+    return buffer;
+  }
+
+  /**
+   * @return a read-only buffer positioned at the start of the value and limited to its end
+   */
+  ByteBuffer readValue(long address) {
+    return readValue(segmentOf(address), address);
+  }
+
+  static ByteBuffer readValue(ByteBuffer segment, long address) {
+    int offset = offsetOf(address);
+    ByteBuffer buffer = segment.asReadOnlyBuffer();
+    int start = offset + RECORD_HEADER_SIZE + buffer.getInt(offset);
+    buffer.limit(start + buffer.getInt(offset + Integer.BYTES));
+    buffer.position(start);
+    return buffer;
+  }
+
+  /**
+   * Compares the key of the record at {@code address} to {@code key}, from index {@code from}, in the unsigned
+   * lexicographic order. The bytes before {@code from} are expected to be equal.
+   */
+  int compareKey(long address, byte[] key, int from) {
+    ByteBuffer segment = segmentOf(address);
+    int offset = offsetOf(address);
+    int length = segment.getInt(offset);
+    int start = offset + RECORD_HEADER_SIZE;
+    int minLength = Math.min(length, key.length);
+    int i = from;
+    for (; i + Long.BYTES <= minLength; i += Long.BYTES) {
+      long value = segment.getLong(start + i);
+      long other = getLong(key, i);
+      if (value != other) {
+        return compareUnsigned(value, other);
+      }
+    }
+    for (; i < minLength; i++) {
+      int cmp = Integer.compare(segment.get(start + i) & 0xFF, key[i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(length, key.length);
+  }
+
+  /**
+   * Compares the keys of the records at {@code address1} and {@code address2}, from index {@code from}, in the
+   * unsigned lexicographic order. The bytes before {@code from} are expected to be equal.
+   */
+  int compareKeys(long address1, long address2, int from) {
+    ByteBuffer segment1 = segmentOf(address1);
+    ByteBuffer segment2 = segmentOf(address2);
+    int start1 = offsetOf(address1) + RECORD_HEADER_SIZE;
+    int start2 = offsetOf(address2) + RECORD_HEADER_SIZE;
+    int length1 = segment1.getInt(start1 - RECORD_HEADER_SIZE);
+    int length2 = segment2.getInt(start2 - RECORD_HEADER_SIZE);
+    int minLength = Math.min(length1, length2);
+    int i = from;
+    // big-endian longs are compared as their bytes
+    for (; i + Long.BYTES <= minLength; i += Long.BYTES) {
+      long value1 = segment1.getLong(start1 + i);
+      long value2 = segment2.getLong(start2 + i);
+      if (value1 != value2) {
+        return compareUnsigned(value1, value2);
+      }
+    }
+    for (; i < minLength; i++) {
+      int cmp = Integer.compare(segment1.get(start1 + i) & 0xFF, segment2.get(start2 + i) & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(length1, length2);
+  }
+
+  /**
+   * Whether the key of the record at {@code address} starts with {@code prefix}, ignoring the bytes before {@code from}
+   */
+  boolean keyStartsWith(long address, byte[] prefix, int from) {
+    ByteBuffer segment = segmentOf(address);
+    int offset = offsetOf(address);
+    return segment.getInt(offset) >= prefix.length && bytesEqual(segment, offset + RECORD_HEADER_SIZE, prefix, from, prefix.length);
+  }
+
+  /**
+   * Whether the key of the record at {@code address} equals {@code key}, ignoring the bytes before {@code from}
+   */
+  boolean keyEquals(long address, byte[] key, int from) {
+    ByteBuffer segment = segmentOf(address);
+    int offset = offsetOf(address);
+    return segment.getInt(offset) == key.length && bytesEqual(segment, offset + RECORD_HEADER_SIZE, key, from, key.length);
+  }
+
+  private static boolean bytesEqual(ByteBuffer segment, int start, byte[] bytes, int from, int to) {
+    int i = from;
+    for (; i + Long.BYTES <= to; i += Long.BYTES) {
+      if (segment.getLong(start + i) != getLong(bytes, i)) {
+        return false;
+      }
+    }
+    for (; i < to; i++) {
+      if (segment.get(start + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long getLong(byte[] bytes, int index) {
+    long value = 0;
+    for (int i = index; i < index + Long.BYTES; i++) {
+      value = (value << Byte.SIZE) | (bytes[i] & 0xFF);
+    }
+    return value;
+  }
+
+  private static int compareUnsigned(long value1, long value2) {
+    return Long.compare(value1 + Long.MIN_VALUE, value2 + Long.MIN_VALUE);
+  }
+
+  private static int offsetOf(long address) {
+    return (int) address;
+  }
+
+  /**
+   * The record at {@code address} is not referenced anymore. Its segment is released if it was the last referenced
+   * record of the segment and if the segment is full.
+   */
+  void release(long address) {
+    int stripeIndex = (int) (address >>> (OFFSET_BITS + SEGMENT_BITS));
+    int segmentIndex = (int) ((address >>> OFFSET_BITS) & (MAX_SEGMENTS_PER_STRIPE - 1));
+    Stripe stripe = stripes[stripeIndex];
+    Segment segment = stripe.segments.get(segmentIndex);
+    if (segment != null && segment.referencedRecords.decrementAndGet() == 0 && segment.full) {
+      stripe.release(segmentIndex, segment);
+    }
+  }
+
+  /**
+   * Number of segments which are not released
+   */
+  int countSegments() {
+    int count = 0;
+    for (Stripe stripe : stripes) {
+      for (Segment segment : stripe.segments) {
+        if (segment != null) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Unmaps the segments and deletes their files. The records must not be read anymore.
+   */
+  @Override
+  public void close() {
+    List<Segment> segments = new ArrayList<>(undeletedSegments);
+    undeletedSegments.clear();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.segments.stream().filter(Objects::nonNull).forEach(segments::add);
+        stripe.segments.clear();
+        stripe.current = null;
+      }
+    }
+    segments.forEach(segment -> unmap(segment.buffer));
+    if (dir.exists() && !deleteQuietly(dir)) {
+      LOG.warn("Fail to delete directory of storage {}", dir);
+    }
+  }
+
+  private final class Stripe {
+    private final int index;
+    /**
+     * Segments by index in the stripe. Released segments are replaced by {@code null}, so that indexes don't change.
+     */
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    @CheckForNull
+    private Segment current;
+
+    private Stripe(int index) {
+      this.index = index;
+    }
+
+    private synchronized long append(byte[] key, byte[] value, int valueLength) {
+      int size = RECORD_HEADER_SIZE + key.length + valueLength;
+      checkArgument(size > 0, "Record is too big: %s bytes", (long) key.length + valueLength);
+      if (current == null || current.buffer.remaining() < size) {
+        Segment previous = current;
+        current = newSegment(size);
+        if (previous != null) {
+          seal(segments.size() - 2, previous);
+        }
+      }
+      MappedByteBuffer buffer = current.buffer;
+      long address = ((long) index << (OFFSET_BITS + SEGMENT_BITS)) | ((long) (segments.size() - 1) << OFFSET_BITS) | buffer.position();
+      current.referencedRecords.incrementAndGet();
+      buffer.putInt(key.length);
+      buffer.putInt(valueLength);
+      buffer.put(key);
+      buffer.put(value, 0, valueLength);
+      return address;
+    }
+
+    private void seal(int segmentIndex, Segment segment) {
+      segment.full = true;
+      if (segment.referencedRecords.get() == 0) {
+        release(segmentIndex, segment);
+      }
+    }
+
+    private Segment newSegment(int recordSize) {
+      int segmentIndex = segments.size();
+      if (segmentIndex >= MAX_SEGMENTS_PER_STRIPE) {
+        throw new IllegalStateException("Too many segments in storage " + dir);
+      }
+      int size = FIRST_SEGMENT_SIZE;
+      if (current != null) {
+        size = (int) Math.min(2L * current.buffer.capacity(), maxSegmentSize);
+      }
+      // records bigger than the size of segments are stored in their own segment
+      size = Math.max(Math.min(size, maxSegmentSize), recordSize);
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IllegalStateException("Fail to create directory of storage " + dir);
+      }
+      File file = new File(dir, "stripe" + index + "-" + segmentIndex);
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        FileChannel channel = randomAccessFile.getChannel()) {
+        // the mapping stays valid after the channel is closed
+        Segment segment = new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        segments.add(segment);
+        return segment;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to create storage segment " + file, e);
+      }
+    }
+
+    private void release(int segmentIndex, Segment segment) {
+      if (segment.released.compareAndSet(false, true)) {
+        segments.set(segmentIndex, null);
+        // the file is not deleted by all the file systems while it's mapped
+        if (!segment.file.delete()) {
+          undeletedSegments.add(segment);
+        }
+      }
+    }
+  }
+
+  private static final class Segment {
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final AtomicInteger referencedRecords = new AtomicInteger();
+    private final AtomicBoolean released = new AtomicBoolean();
+    /**
+     * No more records are appended to a full segment
+     */
+    private volatile boolean full = false;
+
+    private Segment(File file, MappedByteBuffer buffer) {
+      this.file = file;
+      this.buffer = buffer;
+    }
+  }
+
+  /**
+   * Unmaps the buffer without waiting for garbage collection, so that its file can be deleted on all the file systems.
+   * It relies on internal APIs of the JVM. If they are not available, the buffer is unmapped when garbage collected.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = findMethod(unsafeClass, "invokeCleaner", ByteBuffer.class);
+      if (invokeCleaner == null) {
+        // Java 8
+        Object cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner").invoke(buffer);
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      } else {
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        invokeCleaner.invoke(theUnsafe.get(null), buffer);
+      }
+    } catch (Exception | LinkageError e) {
+      LOG.debug("Fail to unmap storage segment", e);
+    }
+  }
+
+  @CheckForNull
+  private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+    try {
+      return clazz.getMethod(name, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
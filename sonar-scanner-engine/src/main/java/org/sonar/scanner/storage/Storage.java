@@ -19,68 +19,116 @@
  */
 package org.sonar.scanner.storage;
 
-import com.persistit.Exchange;
-import com.persistit.Key;
-import com.persistit.KeyFilter;
-import com.persistit.exception.PersistitException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.CheckForNull;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
+ * Key-value storage. Keys (see {@link StorageKey}) and values (encoded by {@link ValueCoder}s) are appended to
+ * memory-mapped files. Only the addresses of the records are kept in memory, in groups of keys having the same
+ * first part (see {@link KeyGroup}).
  * <p>
- * This storage is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * This storage is thread-safe. Iterators are weakly consistent: they never fail because of concurrent
+ * modifications, and may or may not reflect them.
  * </p>
  */
 public class Storage<V> {
 
   private final String name;
-  private final Exchange exchange;
+  private final MappedSegments segments;
+  private final ValueCoders coders;
+  /**
+   * Groups are never removed, so that they can be looked up without lock
+   */
+  private final Map<StorageKey, KeyGroup> groupsByFirstPart = new ConcurrentHashMap<>();
+  /**
+   * Same groups as {@link #groupsByFirstPart}, in the order of keys, for the scans of all the keys
+   */
+  private final ConcurrentSkipListMap<StorageKey, KeyGroup> sortedGroups = new ConcurrentSkipListMap<>();
+  /**
+   * Keys are usually read and written component by component, so the last group avoids to copy the first part of
+   * the key and to look it up on each call
+   */
+  private volatile LastGroup lastGroup;
 
-  Storage(String name, Exchange exchange) {
+  Storage(String name, MappedSegments segments, ValueCoders coders) {
     this.name = name;
-    this.exchange = exchange;
+    this.segments = segments;
+    this.coders = coders;
   }
 
   public Storage<V> put(Object key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(StorageKey.of(key), value);
   }
 
   public Storage<V> put(Object firstKey, Object secondKey, V value) {
-    resetKey(firstKey, secondKey);
-    return doPut(value);
+    return doPut(StorageKey.of(firstKey, secondKey), value);
   }
 
   public Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doPut(value);
+    return doPut(StorageKey.of(firstKey, secondKey, thirdKey), value);
   }
 
   public Storage<V> put(Object[] key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(StorageKey.of(key), value);
   }
 
-  private Storage<V> doPut(V value) {
+  private Storage<V> doPut(StorageKey key, V value) {
+    checkArgument(!key.isEmpty(), "Key must have at least one part");
     try {
-      exchange.getValue().put(value);
-      exchange.store();
+      long address = coders.encode(value, (bytes, length) -> segments.append(key.bytes(), bytes, length));
+      groupOf(key).put(key, address);
       return this;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to put element in the storage '" + name + "'", e);
     }
   }
 
+  private KeyGroup groupOf(StorageKey key) {
+    KeyGroup group = findGroup(key);
+    if (group == null) {
+      StorageKey firstPart = key.firstPart();
+      group = groupsByFirstPart.computeIfAbsent(firstPart, this::newGroup);
+      lastGroup = new LastGroup(firstPart, group);
+    }
+    return group;
+  }
+
+  @CheckForNull
+  private KeyGroup findGroup(StorageKey key) {
+    LastGroup last = lastGroup;
+    if (last != null && key.hasFirstPart(last.firstPart)) {
+      return last.group;
+    }
+    StorageKey firstPart = key.firstPart();
+    KeyGroup group = groupsByFirstPart.get(firstPart);
+    if (group != null) {
+      lastGroup = new LastGroup(firstPart, group);
+    }
+    return group;
+  }
+
+  private KeyGroup newGroup(StorageKey firstPart) {
+    KeyGroup group = new KeyGroup(segments, firstPart.bytes().length);
+    sortedGroups.put(firstPart, group);
+    return group;
+  }
+
   /**
    * Returns the value object associated with keys, or null if not found.
    */
   public V get(Object key) {
-    resetKey(key);
-    return doGet();
+    return doGet(StorageKey.of(key));
   }
 
   /**
@@ -88,8 +136,7 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doGet();
+    return doGet(StorageKey.of(firstKey, secondKey));
   }
 
   /**
@@ -97,8 +144,7 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doGet();
+    return doGet(StorageKey.of(firstKey, secondKey, thirdKey));
   }
 
   /**
@@ -106,82 +152,69 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object[] key) {
-    resetKey(key);
-    return doGet();
+    return doGet(StorageKey.of(key));
   }
 
-  @SuppressWarnings("unchecked")
   @CheckForNull
-  private V doGet() {
+  private V doGet(StorageKey key) {
+    KeyGroup group = findGroup(key);
+    ByteBuffer value = group == null ? null : group.readValue(key);
+    return value == null ? null : read(value);
+  }
+
+  @SuppressWarnings("unchecked")
+  private V read(ByteBuffer value) {
     try {
-      exchange.fetch();
-      if (!exchange.getValue().isDefined()) {
-        return null;
-      }
-      return (V) exchange.getValue().get();
+      return (V) coders.decode(value);
     } catch (Exception e) {
-      // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
     }
   }
 
   public boolean containsKey(Object key) {
-    resetKey(key);
-    return doContainsKey();
+    return doContainsKey(StorageKey.of(key));
   }
 
   public boolean containsKey(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doContainsKey();
+    return doContainsKey(StorageKey.of(firstKey, secondKey));
   }
 
   public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doContainsKey();
+    return doContainsKey(StorageKey.of(firstKey, secondKey, thirdKey));
   }
 
   public boolean containsKey(Object[] key) {
-    resetKey(key);
-    return doContainsKey();
+    return doContainsKey(StorageKey.of(key));
   }
 
-  private boolean doContainsKey() {
-    try {
-      exchange.fetch();
-      return exchange.isValueDefined();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to check if element is in cache " + name, e);
-    }
+  private boolean doContainsKey(StorageKey key) {
+    KeyGroup group = findGroup(key);
+    return group != null && group.contains(key);
   }
 
   public boolean remove(Object key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(StorageKey.of(key));
   }
 
   public boolean remove(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doRemove();
+    return doRemove(StorageKey.of(firstKey, secondKey));
   }
 
   public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doRemove();
+    return doRemove(StorageKey.of(firstKey, secondKey, thirdKey));
   }
 
   public boolean remove(Object[] key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(StorageKey.of(key));
   }
 
-  private boolean doRemove() {
-    try {
-      return exchange.remove();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to get element from cache " + name, e);
-    }
+  /**
+   * The records of the key stay in the memory-mapped files, which are append-only, until all the records of their
+   * segment are removed or replaced.
+   */
+  private boolean doRemove(StorageKey key) {
+    KeyGroup group = findGroup(key);
+    return group != null && group.remove(key);
   }
 
   /**
@@ -190,88 +223,64 @@ public class Storage<V> {
    * @param group The group name.
    */
   public Storage<V> clear(Object key) {
-    resetKey(key);
-    return doClear();
+    return doClear(StorageKey.of(key));
   }
 
   public Storage<V> clear(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doClear();
+    return doClear(StorageKey.of(firstKey, secondKey));
   }
 
   public Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doClear();
+    return doClear(StorageKey.of(firstKey, secondKey, thirdKey));
   }
 
   public Storage<V> clear(Object[] key) {
-    resetKey(key);
-    return doClear();
+    return doClear(StorageKey.of(key));
   }
 
-  private Storage<V> doClear() {
-    try {
-      Key to = new Key(exchange.getKey());
-      to.append(Key.AFTER);
-      exchange.removeKeyRange(exchange.getKey(), to);
-      return this;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to clear values from cache " + name, e);
+  private Storage<V> doClear(StorageKey prefix) {
+    if (prefix.isEmpty()) {
+      sortedGroups.values().forEach(group -> group.clear(prefix));
+    } else {
+      KeyGroup group = findGroup(prefix);
+      if (group != null) {
+        group.clear(prefix);
+      }
     }
+    return this;
   }
 
   /**
    * Clears the default as well as all group caches.
    */
   public void clear() {
-    try {
-      exchange.clear();
-      exchange.removeAll();
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to clear cache", e);
-    }
+    doClear(StorageKey.of());
+  }
+
+  /**
+   * Forgets all the keys at once and deletes the memory-mapped files
+   */
+  void close() {
+    lastGroup = null;
+    groupsByFirstPart.clear();
+    sortedGroups.clear();
+    segments.close();
   }
 
   /**
    * Returns the set of cache keys associated with this group.
-   * TODO implement a lazy-loading equivalent with Iterator/Iterable
    *
    * @param group The group.
    * @return The set of cache keys for this group.
    */
   @SuppressWarnings("rawtypes")
   public Set keySet(Object key) {
-    try {
-      Set<Object> keys = new LinkedHashSet<>();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(key);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return keySet(StorageKey.of(key));
   }
 
   @SuppressWarnings("rawtypes")
   public Set keySet(Object firstKey, Object secondKey) {
-    try {
-      Set<Object> keys = new LinkedHashSet<>();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(firstKey);
-      iteratorExchange.append(secondKey);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return keySet(StorageKey.of(firstKey, secondKey));
   }
 
   /**
@@ -280,128 +289,118 @@ public class Storage<V> {
    * @return The set containing the keys for this cache.
    */
   public Set<Object> keySet() {
-    try {
-      Set<Object> keys = new LinkedHashSet<>();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
+    Set<Object> keys = new LinkedHashSet<>();
+    sortedGroups.forEach((firstPart, group) -> {
+      if (!group.isEmpty()) {
+        keys.add(firstPart.parts()[0]);
+      }
+    });
+    return keys;
+  }
+
+  /**
+   * Distinct parts, following {@code prefix}, of the keys starting with {@code prefix}
+   */
+  private Set<Object> keySet(StorageKey prefix) {
+    KeyGroup group = findGroup(prefix);
+    if (group == null) {
+      return Collections.emptySet();
+    }
+    int depth = prefix.depth();
+    Set<Object> keys = new LinkedHashSet<>();
+    KeyGroup.Scan scan = group.scan(prefix);
+    for (int i = 0; i < scan.size(); i++) {
+      Object[] parts = StorageKey.decode(scan.readKey(i));
+      if (parts.length > depth) {
+        keys.add(parts[depth]);
       }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
     }
+    return keys;
   }
 
   /**
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<>(exchange, firstKey, secondKey);
+    return values(StorageKey.of(firstKey, secondKey));
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<>(exchange, firstKey);
+    return values(StorageKey.of(firstKey));
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<>(exchange);
-  }
-
-  public Iterable<Entry<V>> entries() {
-    return new EntryIterable<>(exchange);
-  }
-
-  public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<>(exchange, firstKey);
+    return values(StorageKey.of());
   }
 
-  private void resetKey(Object key) {
-    exchange.clear();
-    exchange.append(key);
+  private Iterable<V> values(StorageKey prefix) {
+    return () -> new KeyIterator<>(prefix, (scan, index) -> read(scan.readValue(index)));
   }
 
-  private void resetKey(Object first, Object second) {
-    exchange.clear();
-    exchange.append(first).append(second);
+  public Iterable<Entry<V>> entries() {
+    return entries(StorageKey.of());
   }
 
-  private void resetKey(Object first, Object second, Object third) {
-    exchange.clear();
-    exchange.append(first).append(second).append(third);
+  public Iterable<Entry<V>> entries(Object firstKey) {
+    return entries(StorageKey.of(firstKey));
   }
 
-  private void resetKey(Object[] keys) {
-    exchange.clear();
-    for (Object o : keys) {
-      exchange.append(o);
-    }
+  private Iterable<Entry<V>> entries(StorageKey prefix) {
+    return () -> new KeyIterator<>(prefix, (scan, index) -> new Entry<>(StorageKey.decode(scan.readKey(index)), read(scan.readValue(index))));
   }
 
   //
-  // LAZY ITERATORS AND ITERABLES
+  // LAZY ITERATORS
   //
 
-  private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
-    private final Object[] keys;
-
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
-    }
-
-    @Override
-    public Iterator<T> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
+  /**
+   * Iterates over the keys starting with a prefix, group by group. The keys of a group are copied when the iterator
+   * reaches the group.
+   */
+  private class KeyIterator<T> implements Iterator<T> {
+    private final StorageKey prefix;
+    private final Iterator<KeyGroup> groups;
+    private final EntryReader<T> reader;
+    private KeyGroup.Scan scan;
+    private int nextIndex = 0;
+
+    private KeyIterator(StorageKey prefix, EntryReader<T> reader) {
+      this.prefix = prefix;
+      if (prefix.isEmpty()) {
+        this.groups = sortedGroups.values().iterator();
+      } else {
+        KeyGroup group = findGroup(prefix);
+        this.groups = group == null ? Collections.emptyIterator() : Collections.singletonList(group).iterator();
       }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new ValueIterator<>(iteratorExchange, filter);
-    }
-  }
-
-  private static class ValueIterator<T> implements Iterator<T> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
-
-    private ValueIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
+      this.reader = reader;
     }
 
     @Override
     public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
+      while (scan == null || nextIndex == scan.size()) {
+        if (!groups.hasNext()) {
+          return false;
+        }
+        scan = groups.next().scan(prefix);
+        nextIndex = 0;
       }
+      return true;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public T next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        return (T) exchange.getValue().get();
+      if (!hasNext()) {
+        throw new NoSuchElementException();
       }
-      throw new NoSuchElementException();
+      T next = reader.read(scan, nextIndex);
+      nextIndex++;
+      return next;
     }
 
     @Override
@@ -410,71 +409,9 @@ public class Storage<V> {
     }
   }
 
-  private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
-    private final Object[] keys;
-
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
-    }
-
-    @Override
-    public Iterator<Entry<T>> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
-      }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new EntryIterator<>(iteratorExchange, filter);
-    }
-  }
-
-  private static class EntryIterator<T> implements Iterator<Entry<T>> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
-
-    private EntryIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
-    }
-
-    @Override
-    public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public Entry<T> next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        T value = (T) exchange.getValue().get();
-        Key key = exchange.getKey();
-        Object[] array = new Object[key.getDepth()];
-        for (int i = 0; i < key.getDepth(); i++) {
-          array[i] = key.indexTo(i - key.getDepth()).decode();
-        }
-        return new Entry<>(array, value);
-      }
-      throw new NoSuchElementException();
-    }
-
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("Removing an item is not supported");
-    }
+  @FunctionalInterface
+  private interface EntryReader<T> {
+    T read(KeyGroup.Scan scan, int index);
   }
 
   public static class Entry<V> {
@@ -500,4 +437,14 @@ public class Storage<V> {
     }
   }
 
+
+  private static final class LastGroup {
+    private final StorageKey firstPart;
+    private final KeyGroup group;
+
+    private LastGroup(StorageKey firstPart, KeyGroup group) {
+      this.firstPart = firstPart;
+      this.group = group;
+    }
+  }
 }
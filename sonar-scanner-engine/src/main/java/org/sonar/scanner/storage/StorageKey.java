@@ -0,0 +1,382 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Key of an element of {@link Storage}, made of one or more parts, encoded so that the unsigned lexicographic order of
+ * the bytes is the order of the keys:
+ * <ul>
+ *   <li>keys are sorted part by part, and a key is lower than the keys it's a prefix of, so that all the keys starting
+ *   with a given prefix are contiguous</li>
+ *   <li>parts of different types are sorted by type: booleans, then integral numbers, then floating-point numbers,
+ *   then strings</li>
+ *   <li>numbers of the same kind are sorted by value. As in Persistit, {@code 1} and {@code 1L} are different keys.</li>
+ * </ul>
+ * As the encoding of a part is self-delimiting, a key starts with a prefix if and only if its bytes start with
+ * the bytes of the prefix.
+ */
+final class StorageKey implements Comparable<StorageKey> {
+
+  private static final byte BOOLEAN = 0x10;
+  private static final byte INTEGRAL = 0x20;
+  private static final byte FLOATING_POINT = 0x30;
+  private static final byte STRING = 0x40;
+  /**
+   * Greater than all the types, see {@link #after(StorageKey)}
+   */
+  private static final byte AFTER = (byte) 0xFF;
+
+  private static final byte BYTE_SUBTYPE = 1;
+  private static final byte SHORT_SUBTYPE = 2;
+  private static final byte INTEGER_SUBTYPE = 3;
+  private static final byte LONG_SUBTYPE = 4;
+  private static final byte FLOAT_SUBTYPE = 1;
+  private static final byte DOUBLE_SUBTYPE = 2;
+
+  /**
+   * Zero bytes of UTF-8 strings are escaped, as zero terminates the strings
+   */
+  private static final byte STRING_END = 0;
+  private static final byte STRING_ESCAPE = 1;
+
+  private static final int NUMBER_SIZE = 1 + Long.BYTES + 1;
+
+  private final byte[] bytes;
+  private final int firstPartLength;
+
+  private StorageKey(byte[] bytes) {
+    this(bytes, bytes.length == 0 ? 0 : endOfPart(ByteBuffer.wrap(bytes), 0));
+  }
+
+  private StorageKey(byte[] bytes, int firstPartLength) {
+    this.bytes = bytes;
+    this.firstPartLength = firstPartLength;
+  }
+
+  static StorageKey of(Object... parts) {
+    Encoder encoder = new Encoder();
+    int firstPartLength = 0;
+    for (Object part : parts) {
+      encoder.write(requireNonNull(part, "Part of key can't be null"));
+      if (firstPartLength == 0) {
+        firstPartLength = encoder.size;
+      }
+    }
+    return new StorageKey(encoder.toByteArray(), firstPartLength);
+  }
+
+  static StorageKey wrap(byte[] bytes) {
+    return new StorageKey(bytes);
+  }
+
+  /**
+   * Lowest key greater than all the keys starting with {@code prefix}
+   */
+  static StorageKey after(StorageKey prefix) {
+    byte[] bytes = Arrays.copyOf(prefix.bytes, prefix.bytes.length + 1);
+    bytes[prefix.bytes.length] = AFTER;
+    return new StorageKey(bytes);
+  }
+
+  byte[] bytes() {
+    return bytes;
+  }
+
+  boolean isEmpty() {
+    return bytes.length == 0;
+  }
+
+  /**
+   * Number of bytes of the first part, or 0 if the key is empty
+   */
+  int firstPartLength() {
+    return firstPartLength;
+  }
+
+  /**
+   * Same as {@code prefix(1)}
+   */
+  StorageKey firstPart() {
+    return firstPartLength == bytes.length ? this : new StorageKey(Arrays.copyOf(bytes, firstPartLength), firstPartLength);
+  }
+
+  /**
+   * The {@code depth} first parts of this key, or the key itself if it does not have more parts
+   */
+  StorageKey prefix(int depth) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    int offset = 0;
+    for (int i = 0; i < depth && offset < bytes.length; i++) {
+      offset = endOfPart(buffer, offset);
+    }
+    return offset == bytes.length ? this : new StorageKey(Arrays.copyOf(bytes, offset));
+  }
+
+  int depth() {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    int depth = 0;
+    for (int offset = 0; offset < bytes.length; offset = endOfPart(buffer, offset)) {
+      depth++;
+    }
+    return depth;
+  }
+
+  Object[] parts() {
+    return decode(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Same as {@code firstPart().equals(firstPart)}, without copying the first part
+   */
+  boolean hasFirstPart(StorageKey firstPart) {
+    return firstPartLength == firstPart.bytes.length && startsWith(firstPart);
+  }
+
+  boolean startsWith(StorageKey prefix) {
+    if (bytes.length < prefix.bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.bytes.length; i++) {
+      if (bytes[i] != prefix.bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int compareTo(StorageKey other) {
+    int length = Math.min(bytes.length, other.bytes.length);
+    for (int i = 0; i < length; i++) {
+      int cmp = Integer.compare(bytes[i] & 0xFF, other.bytes[i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(bytes.length, other.bytes.length);
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    return Arrays.equals(bytes, ((StorageKey) o).bytes);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bytes);
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(parts());
+  }
+
+  /**
+   * Decodes the parts of the key between the position and the limit of {@code buffer}. The buffer is not modified.
+   */
+  static Object[] decode(ByteBuffer buffer) {
+    List<Object> parts = new ArrayList<>();
+    int offset = buffer.position();
+    while (offset < buffer.limit()) {
+      byte type = buffer.get(offset);
+      switch (type) {
+        case BOOLEAN:
+          parts.add(buffer.get(offset + 1) != 0);
+          break;
+        case INTEGRAL:
+          parts.add(decodeIntegral(buffer.getLong(offset + 1) ^ Long.MIN_VALUE, buffer.get(offset + NUMBER_SIZE - 1)));
+          break;
+        case FLOATING_POINT:
+          parts.add(decodeFloatingPoint(buffer.getLong(offset + 1), buffer.get(offset + NUMBER_SIZE - 1)));
+          break;
+        case STRING:
+          parts.add(decodeString(buffer, offset + 1));
+          break;
+        default:
+          throw new IllegalStateException("Unknown type of key part: " + type);
+      }
+      offset = endOfPart(buffer, offset);
+    }
+    return parts.toArray();
+  }
+
+  private static int endOfPart(ByteBuffer buffer, int offset) {
+    byte type = buffer.get(offset);
+    switch (type) {
+      case BOOLEAN:
+        return offset + 2;
+      case INTEGRAL:
+      case FLOATING_POINT:
+        return offset + NUMBER_SIZE;
+      case STRING:
+        int end = offset + 1;
+        while (buffer.get(end) != STRING_END) {
+          end += buffer.get(end) == STRING_ESCAPE ? 2 : 1;
+        }
+        return end + 1;
+      default:
+        throw new IllegalStateException("Unknown type of key part: " + type);
+    }
+  }
+
+  private static Number decodeIntegral(long value, byte subtype) {
+    switch (subtype) {
+      case BYTE_SUBTYPE:
+        return (byte) value;
+      case SHORT_SUBTYPE:
+        return (short) value;
+      case INTEGER_SUBTYPE:
+        return (int) value;
+      default:
+        return value;
+    }
+  }
+
+  private static Number decodeFloatingPoint(long sortableBits, byte subtype) {
+    long bits = sortableBits < 0 ? (sortableBits ^ Long.MIN_VALUE) : ~sortableBits;
+    double value = Double.longBitsToDouble(bits);
+    return subtype == FLOAT_SUBTYPE ? (Number) (float) value : (Number) value;
+  }
+
+  private static String decodeString(ByteBuffer buffer, int offset) {
+    byte[] utf8 = new byte[endOfPart(buffer, offset - 1) - offset];
+    int length = 0;
+    for (int i = offset; buffer.get(i) != STRING_END; i++) {
+      byte b = buffer.get(i);
+      if (b == STRING_ESCAPE) {
+        i++;
+        b = (byte) (buffer.get(i) - 1);
+      }
+      utf8[length] = b;
+      length++;
+    }
+    return new String(utf8, 0, length, UTF_8);
+  }
+
+  private static class Encoder {
+    private byte[] buf = new byte[64];
+    private int size = 0;
+
+    private void write(Object part) {
+      if (part instanceof String) {
+        writeString((String) part);
+      } else if (part instanceof Boolean) {
+        ensureCapacity(2);
+        buf[size++] = BOOLEAN;
+        buf[size++] = (byte) ((Boolean) part ? 1 : 0);
+      } else if (part instanceof Integer || part instanceof Long || part instanceof Short || part instanceof Byte) {
+        writeNumber(INTEGRAL, ((Number) part).longValue() ^ Long.MIN_VALUE, integralSubtype((Number) part));
+      } else if (part instanceof Double || part instanceof Float) {
+        long bits = Double.doubleToLongBits(((Number) part).doubleValue());
+        // negative values are sorted in reverse order of their bits
+        long sortableBits = bits < 0 ? ~bits : (bits ^ Long.MIN_VALUE);
+        writeNumber(FLOATING_POINT, sortableBits, part instanceof Float ? FLOAT_SUBTYPE : DOUBLE_SUBTYPE);
+      } else {
+        throw new IllegalArgumentException("Unsupported type of key part: " + part.getClass().getName());
+      }
+    }
+
+    private static byte integralSubtype(Number number) {
+      if (number instanceof Byte) {
+        return BYTE_SUBTYPE;
+      }
+      if (number instanceof Short) {
+        return SHORT_SUBTYPE;
+      }
+      return number instanceof Integer ? INTEGER_SUBTYPE : LONG_SUBTYPE;
+    }
+
+    private void writeNumber(byte type, long sortableValue, byte subtype) {
+      ensureCapacity(NUMBER_SIZE);
+      buf[size++] = type;
+      for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+        buf[size++] = (byte) (sortableValue >>> shift);
+      }
+      buf[size++] = subtype;
+    }
+
+    /**
+     * Writes UTF-8 directly in the buffer, as {@link String#getBytes(java.nio.charset.Charset)} creates an encoder on each call
+     */
+    private void writeString(String s) {
+      // at most 3 bytes per char, including the escaped ones
+      ensureCapacity(2 + 3 * s.length());
+      // fields are copied to locals, so that they're not read and written on each char
+      byte[] b = buf;
+      int n = size;
+      b[n++] = STRING;
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c < 0x80) {
+          if (c == STRING_END || c == STRING_ESCAPE) {
+            b[n++] = STRING_ESCAPE;
+            b[n++] = (byte) (c + 1);
+          } else {
+            b[n++] = (byte) c;
+          }
+        } else if (c < 0x800) {
+          b[n++] = (byte) (0xC0 | (c >> 6));
+          b[n++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, s.charAt(i + 1));
+          i++;
+          b[n++] = (byte) (0xF0 | (codePoint >> 18));
+          b[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          b[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          b[n++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+          // malformed, replaced as by String#getBytes()
+          b[n++] = '?';
+        } else {
+          b[n++] = (byte) (0xE0 | (c >> 12));
+          b[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          b[n++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      b[n++] = STRING_END;
+      size = n;
+    }
+
+    private void ensureCapacity(int length) {
+      if (size + length > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(2 * buf.length, size + length));
+      }
+    }
+
+    private byte[] toByteArray() {
+      return Arrays.copyOf(buf, size);
+    }
+  }
+}
@@ -20,28 +20,38 @@
 package org.sonar.scanner.storage;
 
 import com.google.common.base.Preconditions;
-import com.persistit.Exchange;
-import com.persistit.Persistit;
-import com.persistit.Value;
-import com.persistit.Volume;
-import com.persistit.encoding.CoderManager;
-import com.persistit.encoding.ValueCoder;
-import com.persistit.exception.PersistitException;
-import java.util.HashMap;
+import java.io.File;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.CheckForNull;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import static org.sonar.core.util.FileUtils.deleteQuietly;
 
 @ScannerSide
 public class Storages implements Startable {
-  private final Map<String, Exchange> cacheMap = new HashMap<>();
-  private Persistit persistit;
-  private Volume volume;
+  private static final Logger LOG = Loggers.get(Storages.class);
+  // threads of the scanner rarely write all at the same time
+  private static final int MAX_STRIPES = 16;
+
+  private final Map<String, Storage<?>> cacheMap = new ConcurrentHashMap<>();
+  private final ValueCoders coders = new ValueCoders();
+  private final int stripes;
+  private final int maxSegmentSize;
+  @CheckForNull
+  private File dir;
 
   public Storages(StoragesManager storagesManager) {
-    persistit = storagesManager.persistit();
-    doStart();
+    this(storagesManager, Runtime.getRuntime().availableProcessors(), MappedSegments.DEFAULT_MAX_SEGMENT_SIZE);
+  }
+
+  Storages(StoragesManager storagesManager, int stripes, int maxSegmentSize) {
+    this.stripes = Math.min(stripes, MAX_STRIPES);
+    this.maxSegmentSize = maxSegmentSize;
+    doStart(storagesManager);
   }
 
   @Override
@@ -49,50 +59,34 @@ public class Storages implements Startable {
     // done in constructor
   }
 
-  private void doStart() {
-    try {
-      persistit.flush();
-      volume = persistit.createTemporaryVolume();
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to create a cache volume", e);
-    }
+  private void doStart(StoragesManager storagesManager) {
+    dir = storagesManager.newStorageDir();
   }
 
-  public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
-    CoderManager cm = persistit.getCoderManager();
-    cm.registerValueCoder(clazz, coder);
+  public void registerValueCoder(Class<?> clazz, ValueCoder<?> coder) {
+    coders.register(clazz, coder);
   }
 
-  public <V> Storage<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
+  public synchronized <V> Storage<V> createCache(String cacheName) {
+    Preconditions.checkState(dir != null, "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: %s", cacheName);
-    try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
-      return cache;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to create cache: " + cacheName, e);
-    }
+    // names of caches are not used in paths, as they may contain any character
+    MappedSegments segments = new MappedSegments(new File(dir, "storage" + cacheMap.size()), stripes, maxSegmentSize);
+    Storage<V> cache = new Storage<>(cacheName, segments, coders);
+    cacheMap.put(cacheName, cache);
+    return cache;
   }
 
   @Override
-  public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
-    }
-
+  public synchronized void stop() {
+    cacheMap.values().forEach(Storage::close);
     cacheMap.clear();
 
-    if (volume != null) {
-      try {
-        volume.close();
-        volume.delete();
-      } catch (PersistitException e) {
-        throw new IllegalStateException("Fail to close caches", e);
+    if (dir != null) {
+      if (!deleteQuietly(dir)) {
+        LOG.warn("Fail to delete directory of caches {}", dir);
       }
-      volume = null;
+      dir = null;
     }
   }
 }
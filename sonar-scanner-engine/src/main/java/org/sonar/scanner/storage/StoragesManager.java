@@ -19,13 +19,9 @@
  */
 package org.sonar.scanner.storage;
 
-import com.persistit.Persistit;
-import com.persistit.exception.PersistitException;
-import com.persistit.logging.Slf4jAdapter;
 import java.io.File;
-import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.picocontainer.Startable;
-import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.utils.TempFolder;
 
@@ -38,32 +34,18 @@ import static org.sonar.core.util.FileUtils.deleteQuietly;
  */
 @ScannerSide
 public class StoragesManager implements Startable {
-  private File tempDir;
-  private Persistit persistit;
+  private final AtomicInteger storagesCount = new AtomicInteger();
   private final TempFolder tempFolder;
+  private File tempDir;
 
   public StoragesManager(TempFolder tempFolder) {
     this.tempFolder = tempFolder;
-    initPersistit();
+    initTempDir();
   }
 
-  private void initPersistit() {
+  private void initTempDir() {
     try {
       tempDir = tempFolder.newDir("caches");
-      persistit = new Persistit();
-      persistit.setPersistitLogger(new Slf4jAdapter(LoggerFactory.getLogger("PERSISTIT")));
-      Properties props = new Properties();
-      props.setProperty("datapath", tempDir.getAbsolutePath());
-      props.setProperty("logpath", "${datapath}/log");
-      props.setProperty("logfile", "${logpath}/persistit_${timestamp}.log");
-      props.setProperty("buffer.count.8192", "10");
-      props.setProperty("journalpath", "${datapath}/journal");
-      props.setProperty("tmpvoldir", "${datapath}");
-      props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:8192,initialPages:10,extensionPages:100,maximumPages:25000");
-      props.setProperty("jmx", "false");
-      persistit.setProperties(props);
-      persistit.initialize();
-
     } catch (Exception e) {
       throw new IllegalStateException("Fail to start caches", e);
     }
@@ -76,14 +58,6 @@ public class StoragesManager implements Startable {
 
   @Override
   public void stop() {
-    if (persistit != null) {
-      try {
-        persistit.close(false);
-        persistit = null;
-      } catch (PersistitException e) {
-        throw new IllegalStateException("Fail to close caches", e);
-      }
-    }
     deleteQuietly(tempDir);
     tempDir = null;
   }
@@ -92,7 +66,17 @@ public class StoragesManager implements Startable {
     return tempDir;
   }
 
-  Persistit persistit() {
-    return persistit;
+  /**
+   * Directory of the files of a new {@link Storages}, deleted when {@link Storages} is stopped.
+   */
+  File newStorageDir() {
+    if (tempDir == null) {
+      throw new IllegalStateException("Caches are stopped");
+    }
+    File dir = new File(tempDir, "storages" + storagesCount.incrementAndGet());
+    if (!dir.mkdirs()) {
+      throw new IllegalStateException("Fail to create directory of caches " + dir);
+    }
+    return dir;
   }
 }
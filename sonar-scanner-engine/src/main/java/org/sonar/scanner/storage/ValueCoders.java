@@ -0,0 +1,213 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Registry of the {@link ValueCoder}s of {@link Storages}. The index of the coder is written before the value,
+ * so that the coder is known when reading the value.
+ */
+class ValueCoders {
+
+  private static final int DEFAULT_CODER_INDEX = 0;
+  /**
+   * Buffers bigger than this size are not kept by threads after encoding
+   */
+  private static final int MAX_KEPT_BUFFER_SIZE = 64 * 1024;
+
+  private final List<ValueCoder<?>> coders = new CopyOnWriteArrayList<>();
+  private final Map<Class<?>, Integer> coderIndexesByClass = new ConcurrentHashMap<>();
+  private final ThreadLocal<EncodingBuffer> buffers = ThreadLocal.withInitial(EncodingBuffer::new);
+
+  ValueCoders() {
+    coders.add(DefaultValueCoder.INSTANCE);
+  }
+
+  synchronized void register(Class<?> clazz, ValueCoder<?> coder) {
+    coders.add(coder);
+    coderIndexesByClass.put(clazz, coders.size() - 1);
+  }
+
+  /**
+   * Encodes {@code value} in a buffer reused by the current thread, and gives the buffer to {@code consumer}
+   * which must not keep it.
+   */
+  long encode(@Nullable Object value, EncodedValueConsumer consumer) {
+    int coderIndex = value == null ? DEFAULT_CODER_INDEX : coderIndexOf(value.getClass());
+    EncodingBuffer buffer = buffers.get();
+    try {
+      buffer.output.writeShort(coderIndex);
+      write(coders.get(coderIndex), buffer.output, value);
+      return consumer.accept(buffer.bytes(), buffer.size());
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to encode value of type " + value.getClass().getName(), e);
+    } finally {
+      if (buffer.bytes().length > MAX_KEPT_BUFFER_SIZE) {
+        buffers.remove();
+      } else {
+        buffer.reset();
+      }
+    }
+  }
+
+  @CheckForNull
+  Object decode(ByteBuffer bytes) {
+    try {
+      ByteBufferDataInput input = new ByteBufferDataInput(bytes);
+      int coderIndex = input.readUnsignedShort();
+      return coders.get(coderIndex).read(input);
+    } catch (IOException | BufferUnderflowException e) {
+      throw new IllegalStateException("Fail to decode value", e);
+    }
+  }
+
+  private int coderIndexOf(Class<?> clazz) {
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      Integer index = coderIndexesByClass.get(c);
+      if (index != null) {
+        return index;
+      }
+    }
+    return DEFAULT_CODER_INDEX;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> void write(ValueCoder<T> coder, DataOutputStream output, @Nullable Object value) throws IOException {
+    coder.write(output, (T) value);
+  }
+
+  @FunctionalInterface
+  interface EncodedValueConsumer {
+    long accept(byte[] bytes, int length);
+  }
+
+  private static class EncodingBuffer extends ByteArrayOutputStream {
+    private final DataOutputStream output = new DataOutputStream(this);
+
+    private EncodingBuffer() {
+      super(256);
+    }
+
+    private byte[] bytes() {
+      return buf;
+    }
+  }
+
+  /**
+   * Reads the values directly from the memory-mapped segment, without copying the record
+   */
+  private static class ByteBufferDataInput implements DataInput {
+    private final ByteBuffer buffer;
+
+    private ByteBufferDataInput(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void readFully(byte[] bytes) {
+      buffer.get(bytes);
+    }
+
+    @Override
+    public void readFully(byte[] bytes, int offset, int length) {
+      buffer.get(bytes, offset, length);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+      int skipped = Math.min(n, buffer.remaining());
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() {
+      return buffer.get() != 0;
+    }
+
+    @Override
+    public byte readByte() {
+      return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() {
+      return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public short readShort() {
+      return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() {
+      return buffer.getShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() {
+      return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() {
+      return buffer.getInt();
+    }
+
+    @Override
+    public long readLong() {
+      return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() {
+      return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() {
+      return buffer.getDouble();
+    }
+
+    @Override
+    public String readLine() {
+      throw new UnsupportedOperationException("Lines are not supported");
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+      return DataInputStream.readUTF(this);
+    }
+  }
+}
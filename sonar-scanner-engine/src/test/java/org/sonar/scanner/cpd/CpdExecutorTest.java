@@ -81,6 +81,7 @@ public class CpdExecutorTest {
     baseDir = temp.newFolder();
 
     settings = mock(CpdSettings.class);
+    when(settings.getDetectionThreads()).thenReturn(2);
     publisher = mock(ReportPublisher.class);
     when(publisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
 
@@ -221,6 +222,39 @@ public class CpdExecutorTest {
         "Timeout during detection of duplications for .*Foo2.php");
   }
 
+  @Test
+  public void detect_duplications_of_files_concurrently_and_save_them_in_order() {
+    List<DefaultInputFile> files = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      DefaultInputFile component = createComponent("src/Bar" + i + ".php", 100);
+      files.add(component);
+      // files 2n and 2n+1 are duplicated
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 3; j++) {
+        blocks.add(Block.builder()
+          .setResourceId(component.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(j, j + 1)
+          .setBlockHash(new ByteArray(String.format("%04d%04d", i / 2, j).getBytes()))
+          .build());
+      }
+      index.insert((InputFile) component, blocks);
+    }
+
+    executor.execute(60_000L);
+
+    for (int i = 0; i < 20; i++) {
+      DefaultInputFile duplicatedFile = files.get(i % 2 == 0 ? i + 1 : i - 1);
+      try (CloseableIterator<Duplication> dups = reader.readComponentDuplications(files.get(i).batchId())) {
+        Duplication duplication = dups.next();
+        assertThat(dups.hasNext()).isFalse();
+        assertDuplication(duplication, 1, 4, duplicatedFile.batchId(), 1, 4);
+      }
+    }
+    assertThat(logTester.logs(LoggerLevel.WARN)).isEmpty();
+  }
+
   private Duplication[] readDuplications(int expected) {
     assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
@@ -59,4 +59,19 @@ public class CpdSettingsTest {
     assertThat(cpdSettings.getMinimumTokens("java")).isEqualTo(42);
     assertThat(cpdSettings.getMinimumTokens("php")).isEqualTo(33);
   }
+
+  @Test
+  public void defaultDetectionThreads() {
+    when(configuration.getInt(anyString())).thenReturn(Optional.empty());
+    assertThat(cpdSettings.getDetectionThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test
+  public void detectionThreads() {
+    when(configuration.getInt("sonar.cpd.threads")).thenReturn(Optional.of(3));
+    assertThat(cpdSettings.getDetectionThreads()).isEqualTo(3);
+
+    when(configuration.getInt("sonar.cpd.threads")).thenReturn(Optional.of(0));
+    assertThat(cpdSettings.getDetectionThreads()).isEqualTo(1);
+  }
 }
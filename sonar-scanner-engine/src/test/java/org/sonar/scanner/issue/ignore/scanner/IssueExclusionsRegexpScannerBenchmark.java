@@ -0,0 +1,206 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.ignore.scanner;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.internal.FileMetadata;
+import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.batch.fs.internal.charhandler.CharHandler;
+import org.sonar.scanner.issue.ignore.pattern.PatternMatcher;
+import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsLoader.DoubleRegexpMatcher;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares the time to read the metadata of a file while searching issue exclusion patterns with
+ * {@link IssueExclusionsRegexpScanner}, and with the loop running all the regexps on each line as done before
+ * the introduction of {@link RegexpPrefilter}. {@code metadataOnly} is the time to read the metadata without
+ * searching patterns.
+ * <p>
+ * A third of the {@code patterns} exclude whole files, the others are the begin and end patterns of blocks.
+ * </p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=org.sonar.scanner.issue.ignore.scanner.IssueExclusionsRegexpScannerBenchmark -Dexec.classpathScope=test}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IssueExclusionsRegexpScannerBenchmark {
+
+  private static final String COMPONENT_KEY = "project:src/main/java/Foo.java";
+  private static final String[] CODE = {
+    "  /**",
+    "   * Returns the number of elements in this list.",
+    "   */",
+    "  @Override",
+    "  public int size(List<String> elements, int offset) {",
+    "    if (elements == null || elements.isEmpty()) {",
+    "      return 0; // nothing to count",
+    "    }",
+    "    int count = elements.size() - offset;",
+    "    LOG.debug(\"Counted {} elements\", count);",
+    "    return count;",
+    "  }",
+    ""
+  };
+
+  @Param({"5", "30"})
+  public int patterns;
+
+  @Param({"10000"})
+  public int lines;
+
+  private byte[] content;
+  private List<Pattern> allFilePatterns;
+  private List<DoubleRegexpMatcher> blockMatchers;
+  private RegexpPrefilter prefilter;
+  private FileMetadata fileMetadata;
+
+  @Setup
+  public void setUp() {
+    ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(IssueExclusionsLoader.class)).setLevel(ch.qos.logback.classic.Level.WARN);
+    allFilePatterns = new ArrayList<>();
+    blockMatchers = new ArrayList<>();
+    for (int i = 0; i < patterns; i++) {
+      if (i % 3 == 0) {
+        allFilePatterns.add(Pattern.compile("@GeneratedBy\\(\"tool-" + i + "\"\\)"));
+      } else {
+        blockMatchers.add(new DoubleRegexpMatcher(Pattern.compile("//\\s*BEGIN-NOSONAR-" + i), Pattern.compile("//\\s*END-NOSONAR-" + i)));
+      }
+    }
+    prefilter = IssueExclusionsRegexpScanner.newPrefilter(allFilePatterns, blockMatchers);
+    fileMetadata = new FileMetadata();
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      if (i % 1000 == 100) {
+        sb.append("  // BEGIN-NOSONAR-1\n");
+      } else if (i % 1000 == 200) {
+        sb.append("  // END-NOSONAR-1\n");
+      } else {
+        sb.append(CODE[i % CODE.length]).append('\n');
+      }
+    }
+    content = sb.toString().getBytes(UTF_8);
+  }
+
+  @Benchmark
+  public Metadata metadataOnly() {
+    return read(null);
+  }
+
+  @Benchmark
+  public Metadata loop() {
+    return read(new LoopScanner(allFilePatterns, blockMatchers));
+  }
+
+  @Benchmark
+  public Metadata prefilter() {
+    return read(new IssueExclusionsRegexpScanner(COMPONENT_KEY, allFilePatterns, blockMatchers, prefilter, new PatternMatcher()));
+  }
+
+  private Metadata read(CharHandler handler) {
+    return fileMetadata.readMetadata(new ByteArrayInputStream(content), UTF_8, COMPONENT_KEY, handler);
+  }
+
+  /**
+   * Search of patterns in {@link IssueExclusionsRegexpScanner} without prefilter
+   */
+  private static class LoopScanner extends CharHandler {
+    private final StringBuilder sb = new StringBuilder();
+    private final List<Pattern> allFilePatterns;
+    private final List<DoubleRegexpMatcher> blockMatchers;
+    private DoubleRegexpMatcher currentMatcher;
+
+    LoopScanner(List<Pattern> allFilePatterns, List<DoubleRegexpMatcher> blockMatchers) {
+      this.allFilePatterns = allFilePatterns;
+      this.blockMatchers = blockMatchers;
+    }
+
+    @Override
+    public void handleIgnoreEoL(char c) {
+      sb.append(c);
+    }
+
+    @Override
+    public void handleIgnoreEoL(char[] buf, int off, int len) {
+      sb.append(buf, off, len);
+    }
+
+    @Override
+    public void newLine() {
+      processLine(sb.toString());
+      sb.setLength(0);
+    }
+
+    @Override
+    public void eof() {
+      processLine(sb.toString());
+    }
+
+    private void processLine(String line) {
+      if (line.trim().length() == 0) {
+        return;
+      }
+      for (Pattern pattern : allFilePatterns) {
+        if (pattern.matcher(line).find()) {
+          return;
+        }
+      }
+      if (currentMatcher == null) {
+        for (DoubleRegexpMatcher matcher : blockMatchers) {
+          if (matcher.matchesFirstPattern(line)) {
+            currentMatcher = matcher;
+            break;
+          }
+        }
+      } else if (currentMatcher.matchesSecondPattern(line)) {
+        currentMatcher = null;
+      }
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(IssueExclusionsRegexpScannerBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+}
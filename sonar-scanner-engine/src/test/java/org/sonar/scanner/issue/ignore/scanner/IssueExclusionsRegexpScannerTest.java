@@ -70,7 +70,8 @@ public class IssueExclusionsRegexpScannerTest {
     allFilePatterns = Collections.singletonList(Pattern.compile("@SONAR-IGNORE-ALL"));
 
     javaFile = "org.sonar.test.MyFile";
-    regexpScanner = new IssueExclusionsRegexpScanner(javaFile, allFilePatterns, blockPatterns, patternMatcher);
+    regexpScanner = new IssueExclusionsRegexpScanner(javaFile, allFilePatterns, blockPatterns,
+      IssueExclusionsRegexpScanner.newPrefilter(allFilePatterns, blockPatterns), patternMatcher);
   }
 
   @Test
@@ -0,0 +1,94 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.ignore.scanner;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RegexpPrefilterTest {
+
+  private BitSet candidates = new BitSet();
+
+  @Test
+  public void select_patterns_whose_literal_is_in_line() {
+    RegexpPrefilter underTest = new RegexpPrefilter(Arrays.asList(
+      Pattern.compile("@SONAR-IGNORE-ALL"),
+      Pattern.compile("// SONAR-OFF"),
+      Pattern.compile("// SONAR-ON"),
+      Pattern.compile("NOSONAR")));
+
+    underTest.candidates("int i; // SONAR-OFF", candidates);
+    assertThat(candidates.stream().toArray()).containsOnly(1);
+
+    underTest.candidates("// SONAR-ON @SONAR-IGNORE-ALL", candidates);
+    assertThat(candidates.stream().toArray()).containsOnly(0, 2);
+
+    underTest.candidates("int i;", candidates);
+    assertThat(candidates.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void literals_can_overlap() {
+    RegexpPrefilter underTest = new RegexpPrefilter(Arrays.asList(
+      Pattern.compile("he"),
+      Pattern.compile("she"),
+      Pattern.compile("hers"),
+      Pattern.compile("his")));
+
+    underTest.candidates("ushers", candidates);
+    assertThat(candidates.stream().toArray()).containsOnly(0, 1, 2);
+
+    underTest.candidates("hhis", candidates);
+    assertThat(candidates.stream().toArray()).containsOnly(3);
+  }
+
+  @Test
+  public void patterns_without_literal_are_always_selected() {
+    RegexpPrefilter underTest = new RegexpPrefilter(Arrays.asList(
+      Pattern.compile("foo|bar"),
+      Pattern.compile("baz")));
+
+    underTest.candidates("qux", candidates);
+    assertThat(candidates.stream().toArray()).containsOnly(0);
+  }
+
+  @Test
+  public void same_literal_in_several_patterns() {
+    RegexpPrefilter underTest = new RegexpPrefilter(Arrays.asList(
+      Pattern.compile("^foo"),
+      Pattern.compile("foo$")));
+
+    underTest.candidates("a foo b", candidates);
+    assertThat(candidates.stream().toArray()).containsOnly(0, 1);
+  }
+
+  @Test
+  public void no_patterns() {
+    RegexpPrefilter underTest = new RegexpPrefilter(Collections.emptyList());
+
+    underTest.candidates("foo", candidates);
+    assertThat(candidates.isEmpty()).isTrue();
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.ignore.scanner;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequiredLiteralTest {
+
+  @Test
+  public void literal_of_plain_text() {
+    assertThat(literalOf("@SONAR-IGNORE-ALL")).isEqualTo("@SONAR-IGNORE-ALL");
+    assertThat(literalOf("// SONAR-OFF")).isEqualTo("// SONAR-OFF");
+  }
+
+  @Test
+  public void quantified_characters_are_not_required() {
+    assertThat(literalOf("colou?r")).isEqualTo("colo");
+    assertThat(literalOf("ab*cde")).isEqualTo("cde");
+    assertThat(literalOf("abc{2,3}de")).isEqualTo("ab");
+    assertThat(literalOf("abc*?")).isEqualTo("ab");
+    assertThat(literalOf("abc+de")).isEqualTo("abc");
+  }
+
+  @Test
+  public void groups_and_classes_are_ignored() {
+    assertThat(literalOf("^\\s*// generated by (foo|bar)$")).isEqualTo("// generated by ");
+    assertThat(literalOf("a.*bcd")).isEqualTo("bcd");
+    assertThat(literalOf("[ab]cd[ef]")).isEqualTo("cd");
+    assertThat(literalOf("[]x]yz")).isEqualTo("yz");
+    assertThat(literalOf("(?:abc)+de")).isEqualTo("de");
+    assertThat(literalOf("(?!foo)barr")).isEqualTo("barr");
+    assertThat(literalOf("a(b|c)d")).isEqualTo("a");
+  }
+
+  @Test
+  public void escaped_characters() {
+    assertThat(literalOf("\\(foo\\)\\.")).isEqualTo("(foo).");
+    assertThat(literalOf("\\Qa.b*c\\E")).isEqualTo("a.b*c");
+    assertThat(literalOf("\\Qa.b\\E*")).isEqualTo("a.");
+    assertThat(literalOf("x\\d+yz")).isEqualTo("yz");
+  }
+
+  @Test
+  public void escaped_values_and_references_are_not_literals() {
+    assertThat(literalOf("\\x41BC")).isEqualTo("BC");
+    assertThat(literalOf("\\x{41}BC")).isEqualTo("BC");
+    assertThat(literalOf("\\u0041BC")).isEqualTo("BC");
+    assertThat(literalOf("\\0101BC")).isEqualTo("BC");
+    assertThat(literalOf("\\0401BC")).isEqualTo("1BC");
+    assertThat(literalOf("\\cJfoo")).isEqualTo("foo");
+    assertThat(literalOf("(?<n>a)\\k<n>zz")).isEqualTo("zz");
+    assertThat(literalOf("\\p{Lu}abc")).isEqualTo("abc");
+    assertThat(literalOf("\\PLabc")).isEqualTo("abc");
+    assertThat(literalOf("(a)\\12bc")).isEqualTo("bc");
+  }
+
+  @Test
+  public void empty_quote_is_not_an_atom() {
+    assertThat(literalOf("xy\\Q\\E*z")).isEqualTo("x");
+    assertThat(literalOf("x\\Q\\E*y")).isEqualTo("y");
+  }
+
+  @Test
+  public void lines_matching_random_regexps_contain_required_literal() {
+    String[] tokens = {"a", "b", "ab", "-", ".", "*", "+", "?", "{1,2}", "*?", "(", ")", "(?:", "|", "[ab]", "[^a]", "[]a]", "^", "$",
+      "\\x61", "\\x{62}", "\\u0061", "\\0141", "\\cA", "\\Q\\E", "\\Qa-\\E", "\\d", "\\s", "\\b", "\\pL", "\\p{Lower}", "(?<g>a)", "\\k<g>",
+      "(a)", "\\1", "\\-", "\\."};
+    char[] chars = {'a', 'b', '-', ' ', '\u0001', '.'};
+    Random random = new Random(42);
+    BitSet candidates = new BitSet();
+    for (int p = 0; p < 20_000; p++) {
+      StringBuilder regexp = new StringBuilder();
+      for (int t = random.nextInt(6) + 1; t > 0; t--) {
+        regexp.append(tokens[random.nextInt(tokens.length)]);
+      }
+      Pattern pattern;
+      try {
+        pattern = Pattern.compile(regexp.toString());
+      } catch (PatternSyntaxException e) {
+        continue;
+      }
+      RegexpPrefilter prefilter = new RegexpPrefilter(Collections.singletonList(pattern));
+      for (int l = 0; l < 20; l++) {
+        StringBuilder line = new StringBuilder();
+        for (int c = random.nextInt(10); c > 0; c--) {
+          line.append(chars[random.nextInt(chars.length)]);
+        }
+        if (pattern.matcher(line).find()) {
+          prefilter.candidates(line, candidates);
+          assertThat(candidates.get(0)).as("regexp %s on line '%s'", regexp, line).isTrue();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void no_required_literal() {
+    assertThat(literalOf("foo|bar")).isNull();
+    assertThat(literalOf("(?i)foo")).isNull();
+    assertThat(literalOf(".*")).isNull();
+    assertThat(literalOf("\\d+\\s*")).isNull();
+    assertThat(literalOf("a?")).isNull();
+    assertThat(literalOf("")).isNull();
+    assertThat(RequiredLiteral.of(Pattern.compile("foo", Pattern.CASE_INSENSITIVE))).isNull();
+  }
+
+  private static String literalOf(String regexp) {
+    return RequiredLiteral.of(Pattern.compile(regexp));
+  }
+}
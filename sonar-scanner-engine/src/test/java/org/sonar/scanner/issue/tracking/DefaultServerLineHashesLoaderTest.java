@@ -19,19 +19,37 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
+import java.util.stream.IntStream;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
+import org.sonarqube.ws.client.WsRequest;
+import org.sonarqube.ws.client.WsResponse;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class DefaultServerLineHashesLoaderTest {
   private ScannerWsClient wsClient;
@@ -73,4 +91,76 @@ public class DefaultServerLineHashesLoaderTest {
     lastSnapshots.getLineHashes("foo");
   }
 
+  @Test
+  public void should_use_prefetched_hashes() throws IOException {
+    WsTestUtil.mockStream(wsClient, "/api/sources/hashes",
+      toStream(newLineHashes("project:Foo.c", "ae12\n43fb"), newLineHashes("project:Bar.c", "")));
+    DefaultServerLineHashesLoader underTest = new DefaultServerLineHashesLoader(wsClient);
+
+    underTest.prefetch(asList("project:Foo.c", "project:Bar.c"));
+
+    assertThat(underTest.getLineHashes("project:Foo.c")).containsExactly("ae12", "43fb");
+    assertThat(underTest.getLineHashes("project:Bar.c")).containsExactly("");
+    ArgumentCaptor<WsRequest> request = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, times(1)).call(request.capture());
+    // keys are not in URL
+    assertThat(request.getValue().getMethod()).isEqualTo(WsRequest.Method.POST);
+    assertThat(request.getValue().getParams()).containsOnly(entry("keys", "project:Foo.c,project:Bar.c"));
+    underTest.stop();
+  }
+
+  @Test
+  public void should_prefetch_by_batches() throws IOException {
+    WsResponse response = mock(WsResponse.class);
+    when(response.contentStream()).thenAnswer(invocation -> toStream());
+    when(response.contentReader()).thenAnswer(invocation -> new StringReader("ae12"));
+    when(wsClient.call(any(WsRequest.class))).thenReturn(response);
+    DefaultServerLineHashesLoader underTest = new DefaultServerLineHashesLoader(wsClient);
+
+    List<String> fileKeys = IntStream.range(0, DefaultServerLineHashesLoader.BATCH_SIZE + 1).mapToObj(i -> "project:File" + i).collect(toList());
+    underTest.prefetch(fileKeys);
+    underTest.getLineHashes("project:File0");
+    underTest.getLineHashes("project:File" + DefaultServerLineHashesLoader.BATCH_SIZE);
+
+    // 2 batches, then fallback to WS api/sources/hash for the 2 files missing in the responses
+    verify(wsClient, times(4)).call(any(WsRequest.class));
+    underTest.stop();
+  }
+
+  @Test
+  public void should_load_file_if_missing_in_prefetched_hashes() throws IOException {
+    WsTestUtil.mockStream(wsClient, "/api/sources/hashes", toStream());
+    WsTestUtil.mockReader(wsClient, "/api/sources/hash?key=project%3AFoo.c", new StringReader("ae12"));
+    DefaultServerLineHashesLoader underTest = new DefaultServerLineHashesLoader(wsClient);
+
+    underTest.prefetch(singletonList("project:Foo.c"));
+
+    assertThat(underTest.getLineHashes("project:Foo.c")).containsExactly("ae12");
+    underTest.stop();
+  }
+
+  @Test
+  public void should_load_file_if_prefetch_fails() throws URISyntaxException {
+    WsTestUtil.mockException(wsClient, "/api/sources/hashes", new HttpDownloader.HttpException(new URI(""), 404));
+    WsTestUtil.mockReader(wsClient, "/api/sources/hash?key=project%3AFoo.c", new StringReader("ae12"));
+    DefaultServerLineHashesLoader underTest = new DefaultServerLineHashesLoader(wsClient);
+
+    underTest.prefetch(singletonList("project:Foo.c"));
+
+    assertThat(underTest.getLineHashes("project:Foo.c")).containsExactly("ae12");
+    underTest.stop();
+  }
+
+  private static FileLineHashes newLineHashes(String fileKey, String lineHashes) {
+    return FileLineHashes.newBuilder().setFileKey(fileKey).setLineHashes(lineHashes).build();
+  }
+
+  private static InputStream toStream(FileLineHashes... messages) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for (FileLineHashes message : messages) {
+      message.writeDelimitedTo(output);
+    }
+    return new ByteArrayInputStream(output.toByteArray());
+  }
+
 }
@@ -65,6 +65,21 @@ public class IssuesMediumTest {
     assertThat(issue.getTextRange().getStartLine()).isEqualTo(issue.getTextRange().getStartLine());
   }
 
+  @Test
+  public void testIssuesWithConcurrentSensors() throws Exception {
+    File projectDir = new File(IssuesMediumTest.class.getResource("/mediumtest/xoo/sample").toURI());
+    File tmpDir = temp.newFolder();
+    FileUtils.copyDirectory(projectDir, tmpDir);
+
+    TaskResult result = tester
+      .newScanTask(new File(tmpDir, "sonar-project.properties"))
+      .property("sonar.scanner.sensors.threads", "4")
+      .execute();
+
+    List<Issue> issues = result.issuesFor(result.inputFile("xources/hello/HelloJava.xoo"));
+    assertThat(issues).hasSize(8 /* lines */);
+  }
+
   @Test
   public void findActiveRuleByInternalKey() throws Exception {
     File projectDir = new File(IssuesMediumTest.class.getResource("/mediumtest/xoo/sample").toURI());
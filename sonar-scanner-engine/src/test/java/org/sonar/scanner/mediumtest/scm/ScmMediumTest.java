@@ -242,6 +242,38 @@ public class ScmMediumTest {
     assertThat(logTester.logs()).containsSubsequence(MISSING_BLAME_INFORMATION_FOR_THE_FOLLOWING_FILES, "  * " + noBlameScmOnServer.getPath().replaceAll("\\\\", "/"));
   }
 
+  @Test
+  public void blame_partitions_of_files_in_parallel() throws IOException, URISyntaxException {
+    File baseDir = prepareProject();
+    for (int i = 0; i < 10; i++) {
+      File xooFile = new File(baseDir, "src/sample" + i + ".xoo");
+      FileUtils.write(xooFile, "Sample xoo\ncontent");
+      FileUtils.write(new File(baseDir, "src/sample" + i + ".xoo.scm"), "a,foo,2013-01-04\nb" + i + ",bar,2013-01-04\n");
+    }
+
+    tester.newTask()
+      .properties(ImmutableMap.<String, String>builder()
+        .put("sonar.task", "scan")
+        .put("sonar.projectBaseDir", baseDir.getAbsolutePath())
+        .put("sonar.projectKey", "com.foo.project")
+        .put("sonar.projectName", "Foo Project")
+        .put("sonar.projectVersion", "1.0-SNAPSHOT")
+        .put("sonar.projectDescription", "Description of Foo Project")
+        .put("sonar.sources", "src")
+        .put("sonar.scm.provider", "xoo")
+        .put("sonar.scm.blame.threads", "3")
+        .build())
+      .execute();
+
+    assertThat(getChangesets(baseDir, "src/sample.xoo").getChangesetIndexByLineList()).hasSize(5);
+    for (int i = 0; i < 10; i++) {
+      ScannerReport.Changesets changesets = getChangesets(baseDir, "src/sample" + i + ".xoo");
+      assertThat(changesets.getChangesetList()).extracting(Changeset::getAuthor).containsExactly("foo", "bar");
+      assertThat(changesets.getChangeset(1).getRevision()).isEqualTo("b" + i);
+    }
+    assertThat(logTester.logs()).containsSubsequence("11 files to be analyzed", "11/11 files analyzed");
+  }
+
   @Test
   public void forceReload() throws IOException, URISyntaxException {
 
@@ -20,7 +20,14 @@
 package org.sonar.scanner.phases;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -32,9 +39,13 @@ import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.SensorStrategy;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorOptimizer;
+import org.sonar.scanner.sensor.SensorWrapper;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -49,6 +60,9 @@ public class SensorsExecutorTest {
   private SensorsExecutor rootModuleExecutor;
   private SensorsExecutor subModuleExecutor;
   private SensorContext context;
+  private ScannerExtensionDictionnary selector;
+  private DefaultInputModule rootModule;
+  private InputModuleHierarchy hierarchy;
 
   private SensorStrategy strategy = new SensorStrategy();
 
@@ -81,21 +95,21 @@ public class SensorsExecutorTest {
   public void setUp() throws IOException {
     context = mock(SensorContext.class);
 
-    ScannerExtensionDictionnary selector = mock(ScannerExtensionDictionnary.class);
+    selector = mock(ScannerExtensionDictionnary.class);
     when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Collections.singleton(perModuleSensor));
     when(selector.selectSensors(any(DefaultInputModule.class), eq(true))).thenReturn(Collections.singleton(globalSensor));
 
     ProjectDefinition childDef = ProjectDefinition.create().setKey("sub").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder());
     ProjectDefinition rootDef = ProjectDefinition.create().setKey("root").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder());
 
-    DefaultInputModule rootModule = TestInputFileBuilder.newDefaultInputModule(rootDef);
+    rootModule = TestInputFileBuilder.newDefaultInputModule(rootDef);
     DefaultInputModule subModule = TestInputFileBuilder.newDefaultInputModule(childDef);
 
-    InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
+    hierarchy = mock(InputModuleHierarchy.class);
     when(hierarchy.isRoot(rootModule)).thenReturn(true);
 
-    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy);
-    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy);
+    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, new MapSettings().asConfig());
+    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy, new MapSettings().asConfig());
   }
 
   @Test
@@ -116,4 +130,97 @@ public class SensorsExecutorTest {
     assertThat(globalSensor.called).isTrue();
     assertThat(globalSensor.global).isTrue();
   }
+
+  @Test
+  public void execute_concurrently_sensors_of_different_languages() {
+    // each sensor waits for the other one, so the test can only pass if they are executed concurrently
+    CountDownLatch latch = new CountDownLatch(2);
+    LanguageSensor javaSensor = new LanguageSensor(latch, "java");
+    LanguageSensor xooSensor = new LanguageSensor(latch, "xoo");
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(javaSensor), wrap(xooSensor)));
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(true))).thenReturn(Collections.emptyList());
+
+    newExecutor(2).execute(context);
+
+    assertThat(javaSensor.executedConcurrently).isTrue();
+    assertThat(xooSensor.executedConcurrently).isTrue();
+  }
+
+  @Test
+  public void sensors_not_declaring_languages_wait_for_previous_sensors() {
+    List<String> executions = Collections.synchronizedList(new ArrayList<>());
+    List<Sensor> sensors = Arrays.asList(
+      wrap(new LanguageSensor(executions, "java")),
+      wrap(new LanguageSensor(executions, "xoo")),
+      wrap(new LanguageSensor(executions)),
+      wrap(new LanguageSensor(executions, "java")));
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(sensors);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(true))).thenReturn(Collections.emptyList());
+
+    newExecutor(4).execute(context);
+
+    assertThat(executions).hasSize(4);
+    assertThat(executions.subList(0, 2)).containsOnly("java", "xoo");
+    assertThat(executions.subList(2, 4)).containsExactly("", "java");
+  }
+
+  @Test
+  public void sensors_sharing_a_language_are_in_the_same_lane() {
+    SensorWrapper java = wrap(new LanguageSensor(new ArrayList<>(), "java"));
+    SensorWrapper xoo = wrap(new LanguageSensor(new ArrayList<>(), "xoo"));
+    SensorWrapper javaAndJs = wrap(new LanguageSensor(new ArrayList<>(), "java", "js"));
+    SensorWrapper js = wrap(new LanguageSensor(new ArrayList<>(), "js"));
+    SensorWrapper xoo2 = wrap(new LanguageSensor(new ArrayList<>(), "xoo2"));
+
+    Collection<List<SensorWrapper>> lanes = SensorsExecutor.partitionByLanguages(Arrays.asList(js, java, xoo, javaAndJs, xoo2));
+
+    assertThat(lanes.stream().map(l -> l.stream().map(SensorWrapper::toString).collect(Collectors.joining(","))))
+      .containsExactly("js,java,java+js", "xoo", "xoo2");
+  }
+
+  private SensorsExecutor newExecutor(int threads) {
+    MapSettings settings = new MapSettings().setProperty(SensorsExecutor.THREADS_KEY, threads);
+    return new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, settings.asConfig());
+  }
+
+  private static SensorWrapper wrap(org.sonar.api.batch.sensor.Sensor sensor) {
+    return new SensorWrapper(sensor, mock(org.sonar.api.batch.sensor.SensorContext.class), mock(SensorOptimizer.class));
+  }
+
+  private static class LanguageSensor implements org.sonar.api.batch.sensor.Sensor {
+    private final String[] languages;
+    private final List<String> executions;
+    private final CountDownLatch latch;
+    private boolean executedConcurrently;
+
+    LanguageSensor(List<String> executions, String... languages) {
+      this.languages = languages;
+      this.executions = executions;
+      this.latch = null;
+    }
+
+    LanguageSensor(CountDownLatch latch, String... languages) {
+      this.languages = languages;
+      this.executions = new ArrayList<>();
+      this.latch = latch;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.name(String.join("+", languages)).onlyOnLanguages(languages);
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      if (latch != null) {
+        latch.countDown();
+        try {
+          executedConcurrently = latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      executions.add(String.join("+", languages));
+    }
+  }
 }
@@ -21,9 +21,7 @@ package org.sonar.scanner.scan.measure;
 
 import java.util.Iterator;
 import org.junit.Before;
-import org.junit.Rule;
 import org.junit.Test;
-import org.junit.rules.ExpectedException;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
 import org.sonar.api.measures.CoreMetrics;
@@ -38,9 +36,6 @@ public class MeasureCacheTest extends AbstractCachesTest {
 
   private static final String COMPONENT_KEY = "struts";
 
-  @Rule
-  public ExpectedException thrown = ExpectedException.none();
-
   private MetricFinder metricFinder;
 
   private MeasureCache measureCache;
@@ -103,21 +98,20 @@ public class MeasureCacheTest extends AbstractCachesTest {
   }
 
   @Test
-  public void should_add_measure_with_too_big_data_for_persistit() {
+  public void should_add_measure_bigger_than_storage_segments() {
     assertThat(measureCache.entries()).hasSize(0);
     assertThat(measureCache.byComponentKey(COMPONENT_KEY)).hasSize(0);
 
-    // Limit is 64Mo
-    StringBuilder data = new StringBuilder(64 * 1024 * 1024 + 1);
-    for (int i = 0; i < 64 * 1024 * 1024 + 1; i++) {
+    // segments of storages are 8Mo
+    StringBuilder data = new StringBuilder(10 * 1024 * 1024);
+    for (int i = 0; i < 10 * 1024 * 1024; i++) {
       data.append('a');
     }
     DefaultMeasure<?> m = new DefaultMeasure().forMetric(CoreMetrics.COVERAGE_LINE_HITS_DATA).withValue(data.toString());
 
-    thrown.expect(IllegalStateException.class);
-    thrown.expectMessage("Fail to put element in the storage 'measures'");
-
     measureCache.put(COMPONENT_KEY, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, m);
+
+    assertThat(measureCache.byMetric(COMPONENT_KEY, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).value()).isEqualTo(data.toString());
   }
 
   @Test
@@ -0,0 +1,201 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyGroupTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private MappedSegments segments;
+  private KeyGroup underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    segments = new MappedSegments(temp.newFolder(), 1, 1024 * 1024);
+    underTest = new KeyGroup(segments, StorageKey.of("foo").bytes().length);
+  }
+
+  @After
+  public void tearDown() {
+    segments.close();
+  }
+
+  @Test
+  public void put_and_get() {
+    StorageKey key = StorageKey.of("foo", 1);
+
+    assertThat(underTest.readValue(key)).isNull();
+    assertThat(underTest.isEmpty()).isTrue();
+    put(key, 1);
+
+    assertThat(value(underTest.readValue(key))).isEqualTo(1);
+    assertThat(value(underTest.readValue(StorageKey.of("foo", 1)))).isEqualTo(1);
+    assertThat(underTest.readValue(StorageKey.of("foo", 2))).isNull();
+    assertThat(underTest.contains(key)).isTrue();
+    assertThat(underTest.contains(StorageKey.of("foo", 2))).isFalse();
+    assertThat(underTest.isEmpty()).isFalse();
+  }
+
+  @Test
+  public void put_releases_replaced_records_but_keeps_first_one() throws IOException {
+    // every record has its own segment
+    segments.close();
+    segments = new MappedSegments(temp.newFolder(), 1, 16);
+    underTest = new KeyGroup(segments, StorageKey.of("foo").bytes().length);
+    StorageKey key = StorageKey.of("foo", "bar");
+
+    put(key, 1);
+    put(key, 2);
+    put(key, 3);
+
+    assertThat(value(underTest.readValue(key))).isEqualTo(3);
+    // first record holds the key, last one holds the value
+    assertThat(segments.countSegments()).isEqualTo(2);
+
+    underTest.remove(key);
+    // the current segment is kept until it's full
+    assertThat(segments.countSegments()).isEqualTo(1);
+  }
+
+  @Test
+  public void remove() {
+    StorageKey key = StorageKey.of("foo", 1);
+    put(key, 1);
+
+    assertThat(underTest.remove(key)).isTrue();
+    assertThat(underTest.remove(key)).isFalse();
+
+    assertThat(underTest.readValue(key)).isNull();
+    assertThat(underTest.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void many_keys_are_added_and_removed() {
+    int count = 100_000;
+    for (int i = 0; i < count; i++) {
+      put(StorageKey.of("foo", i), i);
+    }
+    for (int i = 0; i < count; i += 2) {
+      underTest.remove(StorageKey.of("foo", i));
+    }
+    for (int i = 0; i < count; i += 4) {
+      put(StorageKey.of("foo", i), -i);
+    }
+
+    for (int i = 0; i < count; i++) {
+      ByteBuffer value = underTest.readValue(StorageKey.of("foo", i));
+      if (i % 4 == 0) {
+        assertThat(value(value)).isEqualTo(-i);
+      } else if (i % 2 == 0) {
+        assertThat(value).isNull();
+      } else {
+        assertThat(value(value)).isEqualTo(i);
+      }
+    }
+    assertThat(underTest.scan(StorageKey.of("foo")).size()).isEqualTo(count / 2 + count / 4);
+  }
+
+  @Test
+  public void scan_keys_in_order() {
+    put(StorageKey.of("foo", "b", 2), 1);
+    put(StorageKey.of("foo", "a"), 2);
+    put(StorageKey.of("foo", "b", 1), 3);
+    put(StorageKey.of("foo", "c"), 4);
+
+    assertThat(scan(StorageKey.of("foo"))).containsExactly(2, 3, 1, 4);
+    assertThat(scan(StorageKey.of("foo", "b"))).containsExactly(3, 1);
+    assertThat(scan(StorageKey.of("foo", "d"))).isEmpty();
+
+    KeyGroup.Scan scan = underTest.scan(StorageKey.of("foo", "c"));
+    assertThat(StorageKey.decode(scan.readKey(0))).isEqualTo(new Object[] {"foo", "c"});
+  }
+
+  @Test
+  public void scan_is_not_impacted_by_next_changes() {
+    put(StorageKey.of("foo", "a"), 1);
+    put(StorageKey.of("foo", "b"), 2);
+
+    KeyGroup.Scan scan = underTest.scan(StorageKey.of("foo"));
+    put(StorageKey.of("foo", "a"), 3);
+    underTest.remove(StorageKey.of("foo", "b"));
+
+    assertThat(scan.size()).isEqualTo(2);
+    assertThat(scan.readValue(0).getInt()).isEqualTo(1);
+    assertThat(scan.readValue(1).getInt()).isEqualTo(2);
+  }
+
+  @Test
+  public void clear_keys_starting_with_prefix() {
+    put(StorageKey.of("foo", "a", 1), 1);
+    put(StorageKey.of("foo", "b", 1), 2);
+    put(StorageKey.of("foo", "b", 2), 3);
+    put(StorageKey.of("foo", "c"), 4);
+
+    underTest.clear(StorageKey.of("foo", "b"));
+
+    assertThat(scan(StorageKey.of("foo"))).containsExactly(1, 4);
+    assertThat(underTest.contains(StorageKey.of("foo", "b", 1))).isFalse();
+    assertThat(underTest.contains(StorageKey.of("foo", "c"))).isTrue();
+  }
+
+  @Test
+  public void clear_all_keys() {
+    put(StorageKey.of("foo", 1), 1);
+    put(StorageKey.of("foo", 2), 2);
+
+    underTest.clear(StorageKey.of("foo"));
+
+    assertThat(underTest.isEmpty()).isTrue();
+    assertThat(underTest.readValue(StorageKey.of("foo", 1))).isNull();
+    put(StorageKey.of("foo", 1), 3);
+    assertThat(value(underTest.readValue(StorageKey.of("foo", 1)))).isEqualTo(3);
+  }
+
+  private void put(StorageKey key, int value) {
+    long address = segments.append(key.bytes(), ByteBuffer.allocate(Integer.BYTES).putInt(value).array());
+    underTest.put(key, address);
+  }
+
+  private List<Integer> scan(StorageKey prefix) {
+    KeyGroup.Scan scan = underTest.scan(prefix);
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < scan.size(); i++) {
+      values.add(scan.readValue(i).getInt());
+    }
+    return values;
+  }
+
+  private static int value(ByteBuffer buffer) {
+    return buffer.getInt();
+  }
+}
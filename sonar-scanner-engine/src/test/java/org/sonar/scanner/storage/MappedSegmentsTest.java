@@ -0,0 +1,220 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedSegmentsTest {
+
+  private static final byte[] NO_BYTES = new byte[0];
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void append_and_read_records() throws IOException {
+    MappedSegments underTest = new MappedSegments(temp.newFolder(), 1, 1024);
+
+    long address1 = underTest.append(new byte[] {1}, new byte[] {2, 3});
+    long address2 = underTest.append(NO_BYTES, NO_BYTES);
+    long address3 = underTest.append(new byte[] {4, 5}, new byte[] {6, 7, 8}, 1);
+
+    assertThat(bytes(underTest.readKey(address1))).isEqualTo(new byte[] {1});
+    assertThat(bytes(underTest.readValue(address1))).isEqualTo(new byte[] {2, 3});
+    assertThat(bytes(underTest.readKey(address2))).isEmpty();
+    assertThat(bytes(underTest.readValue(address2))).isEmpty();
+    assertThat(bytes(underTest.readKey(address3))).isEqualTo(new byte[] {4, 5});
+    assertThat(bytes(underTest.readValue(address3))).isEqualTo(new byte[] {6});
+  }
+
+  @Test
+  public void create_new_segment_when_current_one_is_full() throws IOException {
+    File dir = temp.newFolder();
+    MappedSegments underTest = new MappedSegments(dir, 1, 16);
+
+    long address1 = underTest.append(new byte[] {1, 2}, new byte[] {3, 4, 5, 6});
+    long address2 = underTest.append(new byte[] {7, 8}, new byte[] {9, 10, 11, 12});
+    // bigger than segments
+    long address3 = underTest.append(new byte[] {13}, new byte[100]);
+    long address4 = underTest.append(new byte[] {14}, new byte[] {15});
+
+    assertThat(bytes(underTest.readValue(address1))).isEqualTo(new byte[] {3, 4, 5, 6});
+    assertThat(bytes(underTest.readValue(address2))).isEqualTo(new byte[] {9, 10, 11, 12});
+    assertThat(bytes(underTest.readKey(address3))).isEqualTo(new byte[] {13});
+    assertThat(bytes(underTest.readValue(address3))).hasSize(100);
+    assertThat(bytes(underTest.readValue(address4))).isEqualTo(new byte[] {15});
+    assertThat(dir.list()).containsOnly("stripe0-0", "stripe0-1", "stripe0-2", "stripe0-3");
+  }
+
+  @Test
+  public void records_of_several_stripes() throws Exception {
+    File dir = temp.newFolder();
+    MappedSegments underTest = new MappedSegments(dir, 2, 1024);
+
+    long[] addresses = new long[2];
+    Thread thread1 = new Thread(() -> addresses[0] = underTest.append(new byte[] {1}, new byte[] {2}));
+    thread1.start();
+    thread1.join();
+    Thread thread2 = new Thread(() -> addresses[1] = underTest.append(new byte[] {3}, new byte[] {4}));
+    thread2.start();
+    thread2.join();
+
+    assertThat(bytes(underTest.readValue(addresses[0]))).isEqualTo(new byte[] {2});
+    assertThat(bytes(underTest.readValue(addresses[1]))).isEqualTo(new byte[] {4});
+  }
+
+  @Test
+  public void compare_keys_without_reading_them() throws IOException {
+    MappedSegments underTest = new MappedSegments(temp.newFolder(), 1, 1024);
+    long ab = underTest.append(new byte[] {1, 2}, new byte[] {9});
+    long abc = underTest.append(new byte[] {1, 2, 3}, NO_BYTES);
+    long b = underTest.append(new byte[] {(byte) 200}, new byte[] {0});
+
+    assertThat(underTest.compareKeys(ab, abc, 0)).isNegative();
+    assertThat(underTest.compareKeys(b, abc, 0)).isPositive();
+    assertThat(underTest.compareKeys(ab, ab, 0)).isZero();
+    assertThat(underTest.compareKey(ab, new byte[] {1, 2}, 0)).isZero();
+    assertThat(underTest.compareKey(ab, new byte[] {1}, 0)).isPositive();
+    assertThat(underTest.compareKey(b, new byte[] {1, 2}, 0)).isPositive();
+    assertThat(underTest.keyEquals(abc, new byte[] {1, 2, 3}, 0)).isTrue();
+    assertThat(underTest.keyEquals(abc, new byte[] {1, 2}, 0)).isFalse();
+    assertThat(underTest.keyStartsWith(abc, new byte[] {1, 2}, 0)).isTrue();
+    assertThat(underTest.keyStartsWith(ab, new byte[] {1, 2, 3}, 0)).isFalse();
+    assertThat(underTest.keyStartsWith(b, NO_BYTES, 0)).isTrue();
+  }
+
+  @Test
+  public void compare_keys_from_index() throws IOException {
+    MappedSegments underTest = new MappedSegments(temp.newFolder(), 1, 1024);
+    long first = underTest.append(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, NO_BYTES);
+    long second = underTest.append(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 12}, NO_BYTES);
+
+    assertThat(underTest.compareKeys(first, second, 3)).isNegative();
+    assertThat(underTest.compareKeys(second, first, 10)).isPositive();
+    assertThat(underTest.compareKey(first, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, 2)).isZero();
+    assertThat(underTest.keyEquals(second, new byte[] {0, 0, 3, 4, 5, 6, 7, 8, 9, 10, 12}, 2)).isTrue();
+    assertThat(underTest.keyEquals(second, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, 2)).isFalse();
+    assertThat(underTest.keyStartsWith(second, new byte[] {0, 2, 3, 4, 5, 6, 7, 8, 9, 10}, 1)).isTrue();
+  }
+
+  @Test
+  public void size_of_segments_grows_up_to_max_size() throws IOException {
+    File dir = temp.newFolder();
+    MappedSegments underTest = new MappedSegments(dir, 1, 4 * MappedSegments.FIRST_SEGMENT_SIZE);
+    byte[] value = new byte[1024];
+
+    while (dir.list() == null || dir.list().length < 4) {
+      underTest.append(NO_BYTES, value);
+    }
+
+    assertThat(new File(dir, "stripe0-0").length()).isEqualTo((long) MappedSegments.FIRST_SEGMENT_SIZE);
+    assertThat(new File(dir, "stripe0-1").length()).isEqualTo(2L * MappedSegments.FIRST_SEGMENT_SIZE);
+    assertThat(new File(dir, "stripe0-2").length()).isEqualTo(4L * MappedSegments.FIRST_SEGMENT_SIZE);
+    assertThat(new File(dir, "stripe0-3").length()).isEqualTo(4L * MappedSegments.FIRST_SEGMENT_SIZE);
+  }
+
+  @Test
+  public void directory_is_created_by_first_record() throws IOException {
+    File dir = new File(temp.newFolder(), "storage");
+    MappedSegments underTest = new MappedSegments(dir, 1, 1024);
+    assertThat(dir).doesNotExist();
+
+    underTest.append(new byte[] {1}, new byte[] {2});
+
+    assertThat(dir).isDirectory();
+  }
+
+  @Test
+  public void delete_full_segment_when_its_records_are_released() throws IOException {
+    File dir = temp.newFolder();
+    MappedSegments underTest = new MappedSegments(dir, 1, 16);
+
+    long address1 = underTest.append(new byte[] {1, 2}, new byte[] {3, 4, 5, 6});
+    long address2 = underTest.append(new byte[] {7, 8}, new byte[] {9, 10, 11, 12});
+    assertThat(underTest.countSegments()).isEqualTo(2);
+
+    underTest.release(address1);
+    assertThat(underTest.countSegments()).isEqualTo(1);
+    assertThat(dir.list()).containsOnly("stripe0-1");
+
+    // current segment is kept until it's full
+    underTest.release(address2);
+    assertThat(underTest.countSegments()).isEqualTo(1);
+    underTest.append(new byte[] {1, 2}, new byte[] {3, 4, 5, 6});
+    assertThat(underTest.countSegments()).isEqualTo(1);
+    assertThat(dir.list()).containsOnly("stripe0-2");
+  }
+
+  @Test
+  public void fail_to_read_released_segment() throws IOException {
+    MappedSegments underTest = new MappedSegments(temp.newFolder(), 1, 16);
+    long address = underTest.append(new byte[] {1, 2}, new byte[] {3, 4, 5, 6});
+    underTest.append(new byte[] {7, 8}, new byte[] {9, 10, 11, 12});
+    underTest.release(address);
+
+    expectedException.expect(IllegalStateException.class);
+    underTest.readValue(address);
+  }
+
+  @Test
+  public void close_deletes_files() throws IOException {
+    File dir = temp.newFolder();
+    MappedSegments underTest = new MappedSegments(dir, 1, 1024);
+    underTest.append(new byte[] {1}, new byte[] {2});
+
+    underTest.close();
+
+    assertThat(dir).doesNotExist();
+  }
+
+  @Test
+  public void close_storage_without_records() throws IOException {
+    File dir = new File(temp.newFolder(), "storage");
+    MappedSegments underTest = new MappedSegments(dir, 1, 1024);
+
+    underTest.close();
+
+    assertThat(dir).doesNotExist();
+  }
+
+  @Test
+  public void fail_if_invalid_number_of_stripes() throws IOException {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of stripes must be between 1 and 128: 0");
+
+    new MappedSegments(temp.newFolder(), 0, 1024);
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
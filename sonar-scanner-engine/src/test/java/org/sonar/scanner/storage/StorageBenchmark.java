@@ -0,0 +1,190 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.persistit.Exchange;
+import com.persistit.Key;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import com.persistit.Volume;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.utils.internal.DefaultTempFolder;
+
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Compares the time to put, get and iterate measures keyed by component and metric in a {@link Storage}
+ * and in a Persistit {@link Exchange} configured as scanner caches were before version 6.6.
+ * <p>
+ * Each invocation puts all the {@code measures}, then reads them one by one and finally iterates over them.
+ * </p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=org.sonar.scanner.storage.StorageBenchmark -Dexec.classpathScope=test}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class StorageBenchmark {
+
+  private static final int METRICS_PER_COMPONENT = 50;
+
+  @Param({"100000", "5000000"})
+  public int measures;
+
+  private String[] componentKeys;
+  private String[] metricKeys;
+  private File tempDir;
+  private StoragesManager storagesManager;
+  private Storages storages;
+  private Persistit persistit;
+  private Volume volume;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    // as in scanner, keys of components and metrics are instantiated once
+    componentKeys = new String[measures / METRICS_PER_COMPONENT + 1];
+    for (int i = 0; i < componentKeys.length; i++) {
+      componentKeys[i] = "project:src/main/java/File" + i + ".java";
+    }
+    metricKeys = new String[METRICS_PER_COMPONENT];
+    for (int i = 0; i < metricKeys.length; i++) {
+      metricKeys[i] = "metric" + i;
+    }
+    tempDir = Files.createTempDirectory("storage-benchmark").toFile();
+    storagesManager = new StoragesManager(new DefaultTempFolder(new File(tempDir, "storages")));
+    persistit = startPersistit(new File(tempDir, "persistit"));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    persistit.close(false);
+    storagesManager.stop();
+    deleteQuietly(tempDir);
+  }
+
+  @Setup(Level.Iteration)
+  public void createStorages() throws Exception {
+    storages = new Storages(storagesManager);
+    storages.start();
+    persistit.flush();
+    volume = persistit.createTemporaryVolume();
+  }
+
+  @TearDown(Level.Iteration)
+  public void dropStorages() throws Exception {
+    storages.stop();
+    volume.close();
+  }
+
+  @Benchmark
+  public void storage(Blackhole blackhole) {
+    Storage<String> storage = storages.createCache("measures");
+    for (int i = 0; i < measures; i++) {
+      storage.put(componentKey(i), metricKey(i), measureData(i));
+    }
+    for (int i = 0; i < measures; i++) {
+      blackhole.consume(storage.get(componentKey(i), metricKey(i)));
+    }
+    for (String data : storage.values()) {
+      blackhole.consume(data);
+    }
+  }
+
+  @Benchmark
+  public void persistit(Blackhole blackhole) throws Exception {
+    Exchange exchange = persistit.getExchange(volume, "measures", true);
+    exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+    try {
+      for (int i = 0; i < measures; i++) {
+        exchange.clear().append(componentKey(i)).append(metricKey(i));
+        exchange.getValue().put(measureData(i));
+        exchange.store();
+      }
+      for (int i = 0; i < measures; i++) {
+        exchange.clear().append(componentKey(i)).append(metricKey(i)).fetch();
+        blackhole.consume(exchange.getValue().get());
+      }
+      exchange.clear().append(Key.BEFORE);
+      while (exchange.traverse(Key.GT, true)) {
+        blackhole.consume(exchange.getValue().get());
+      }
+    } finally {
+      persistit.releaseExchange(exchange);
+    }
+  }
+
+  private String componentKey(int i) {
+    return componentKeys[i / METRICS_PER_COMPONENT];
+  }
+
+  private String metricKey(int i) {
+    return metricKeys[i % METRICS_PER_COMPONENT];
+  }
+
+  private static String measureData(int i) {
+    return "1=" + i + ";2=" + (i + 1) + ";3=" + (i + 2);
+  }
+
+  private static Persistit startPersistit(File dir) throws Exception {
+    Files.createDirectories(dir.toPath().resolve("log"));
+    Persistit persistit = new Persistit();
+    Properties props = new Properties();
+    props.setProperty("datapath", dir.getAbsolutePath());
+    props.setProperty("logpath", "${datapath}/log");
+    props.setProperty("logfile", "${logpath}/persistit_${timestamp}.log");
+    props.setProperty("buffer.count.8192", "10");
+    props.setProperty("journalpath", "${datapath}/journal");
+    props.setProperty("tmpvoldir", "${datapath}");
+    props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:8192,initialPages:10,extensionPages:100,maximumPages:25000");
+    props.setProperty("jmx", "false");
+    persistit.setProperties(props);
+    persistit.initialize();
+    return persistit;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(StorageBenchmark.class.getSimpleName())
+      .build())
+      .run();
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StorageKeyTest {
+
+  @Test
+  public void keys_are_sorted_part_by_part() {
+    List<StorageKey> keys = new ArrayList<>(asList(
+      StorageKey.of("b"),
+      StorageKey.of("a", "c"),
+      StorageKey.of("a", "b", "c"),
+      StorageKey.of("a"),
+      StorageKey.of("a", "b"),
+      StorageKey.of("ab")));
+
+    Collections.sort(keys);
+
+    assertThat(keys).extracting(StorageKey::toString).containsExactly("[a]", "[a, b]", "[a, b, c]", "[a, c]", "[ab]", "[b]");
+  }
+
+  @Test
+  public void parts_are_sorted_by_type_then_by_value() {
+    List<StorageKey> keys = new ArrayList<>(asList(
+      StorageKey.of("1"),
+      StorageKey.of(2.5d),
+      StorageKey.of(-3.5d),
+      StorageKey.of(3L),
+      StorageKey.of(-4),
+      StorageKey.of(false),
+      StorageKey.of(true),
+      StorageKey.of(2)));
+
+    Collections.sort(keys);
+
+    assertThat(keys).extracting(StorageKey::toString).containsExactly("[false]", "[true]", "[-4]", "[2]", "[3]", "[-3.5]", "[2.5]", "[1]");
+  }
+
+  @Test
+  public void strings_are_sorted_even_with_special_characters() {
+    List<StorageKey> keys = new ArrayList<>(asList(
+      StorageKey.of("a\u0002"),
+      StorageKey.of("a\u0001"),
+      StorageKey.of("a"),
+      StorageKey.of("a\u0000"),
+      StorageKey.of("é"),
+      StorageKey.of("z")));
+
+    Collections.sort(keys);
+
+    assertThat(keys).extracting(k -> k.parts()[0]).containsExactly("a", "a\u0000", "a\u0001", "a\u0002", "z", "é");
+  }
+
+  @Test
+  public void parts_are_decoded_with_their_type() {
+    Object[] parts = {"foo", (byte) 1, (short) 2, 3, 4L, 5.5f, 6.5d, true, "", "bar\u0000", "\u00e9t\u00e9 \u20ac \ud83d\ude00"};
+
+    assertThat(StorageKey.of(parts).parts()).containsExactly(parts);
+    assertThat(StorageKey.decode(ByteBuffer.wrap(StorageKey.of(parts).bytes()))).containsExactly(parts);
+    assertThat(StorageKey.of(parts).depth()).isEqualTo(parts.length);
+  }
+
+  @Test
+  public void numbers_of_different_types_are_different_keys() {
+    assertThat(StorageKey.of(1, "a")).isEqualTo(StorageKey.of(1, "a"));
+    assertThat(StorageKey.of(1, "a").hashCode()).isEqualTo(StorageKey.of(1, "a").hashCode());
+    assertThat(StorageKey.of(1, "a")).isNotEqualTo(StorageKey.of(1L, "a"));
+    assertThat(StorageKey.of(1, "a")).isNotEqualTo(StorageKey.of("1", "a"));
+  }
+
+  @Test
+  public void after_is_greater_than_all_keys_starting_with_prefix() {
+    StorageKey prefix = StorageKey.of("a", 1);
+    StorageKey after = StorageKey.after(prefix);
+
+    assertThat(after).isGreaterThan(StorageKey.of("a", 1));
+    assertThat(after).isGreaterThan(StorageKey.of("a", 1, "zzz"));
+    assertThat(after).isGreaterThan(StorageKey.of("a", 1, "zzz", 100));
+    assertThat(after).isLessThan(StorageKey.of("a", 2));
+    assertThat(after).isLessThan(StorageKey.of("b"));
+  }
+
+  @Test
+  public void prefix() {
+    StorageKey key = StorageKey.of("a", 1, "b");
+
+    assertThat(key.prefix(0).isEmpty()).isTrue();
+    assertThat(key.prefix(1)).isEqualTo(StorageKey.of("a"));
+    assertThat(key.prefix(2)).isEqualTo(StorageKey.of("a", 1));
+    assertThat(key.prefix(5)).isEqualTo(key);
+  }
+
+  @Test
+  public void startsWith() {
+    StorageKey key = StorageKey.of("a", "b");
+
+    assertThat(key.startsWith(StorageKey.of())).isTrue();
+    assertThat(key.startsWith(StorageKey.of("a"))).isTrue();
+    assertThat(key.startsWith(StorageKey.of("a", "b"))).isTrue();
+    assertThat(key.startsWith(StorageKey.of("a", "b", "c"))).isFalse();
+    assertThat(key.startsWith(StorageKey.of("b"))).isFalse();
+  }
+}
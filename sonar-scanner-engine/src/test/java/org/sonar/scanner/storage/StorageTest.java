@@ -20,11 +20,19 @@
 package org.sonar.scanner.storage;
 
 import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Test;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage.Entry;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class StorageTest extends AbstractCachesTest {
 
@@ -224,6 +232,116 @@ public class StorageTest extends AbstractCachesTest {
     assertThat(cache.values()).isEmpty();
   }
 
+  @Test
+  public void keys_are_sorted_by_type_then_by_value() {
+    Storage<String> cache = caches.createCache("mixed");
+    cache.put("b", "string b");
+    cache.put(10, "int 10");
+    cache.put("a", "string a");
+    cache.put(2L, "long 2");
+    cache.put(true, "boolean");
+    cache.put(-1.5d, "double -1.5");
+    cache.put(10, 1, "int 10/1");
+
+    assertThat(cache.keySet()).containsExactly(true, 2L, 10, -1.5d, "a", "b");
+    assertThat(cache.values()).containsExactly("boolean", "long 2", "int 10", "int 10/1", "double -1.5", "string a", "string b");
+    assertThat(cache.get(10)).isEqualTo("int 10");
+    // as in Persistit, numbers of different types are different keys
+    assertThat(cache.get(10L)).isNull();
+    assertThat(cache.keySet(10)).containsOnly(1);
+  }
+
+  @Test
+  public void fail_to_put_key_of_unsupported_type() {
+    Storage<String> cache = caches.createCache("unsupported");
+
+    try {
+      cache.put(new Object(), "foo");
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Unsupported type of key part: java.lang.Object");
+    }
+  }
+
+  @Test
+  public void values_of_several_types() {
+    Storage<Object> cache = caches.createCache("values");
+    cache.put("string", "foo");
+    cache.put("int", 1);
+    cache.put("long", 2L);
+    cache.put("double", 3.5d);
+    cache.put("boolean", true);
+    cache.put("bytes", new byte[] {1, 2, 3});
+    cache.put("serializable", new ArrayList<>(asList("a", "b")));
+
+    assertThat(cache.get("string")).isEqualTo("foo");
+    assertThat(cache.get("int")).isEqualTo(1);
+    assertThat(cache.get("long")).isEqualTo(2L);
+    assertThat(cache.get("double")).isEqualTo(3.5d);
+    assertThat(cache.get("boolean")).isEqualTo(true);
+    assertThat(cache.get("bytes")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(cache.get("serializable")).isEqualTo(asList("a", "b"));
+  }
+
+  @Test
+  public void put_replaces_value() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("europe", "france", "lyon");
+    cache.put("europe", "france", "paris");
+
+    assertThat(cache.get("europe", "france")).isEqualTo("paris");
+    assertThat(cache.values()).containsExactly("paris");
+  }
+
+  @Test
+  public void values_bigger_than_segments() {
+    caches.stop();
+    caches = new Storages(cachesManager, 2, 64);
+    Storage<String> cache = caches.createCache("big");
+    String big = StringUtils.repeat("a", 1_000);
+
+    cache.put("small", "foo");
+    cache.put("big", big);
+    cache.put("small2", "bar");
+
+    assertThat(cache.get("small")).isEqualTo("foo");
+    assertThat(cache.get("big")).isEqualTo(big);
+    assertThat(cache.get("small2")).isEqualTo("bar");
+  }
+
+  @Test
+  public void put_and_get_concurrently() throws Exception {
+    caches.stop();
+    caches = new Storages(cachesManager, 4, 1024);
+    Storage<String> cache = caches.createCache("concurrent");
+    int threads = 8;
+    int valuesPerThread = 2_000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        String component = "component" + t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < valuesPerThread; i++) {
+            cache.put(component, i, component + "-" + i);
+            assertThat(cache.get(component, i)).isEqualTo(component + "-" + i);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(cache.keySet()).hasSize(threads);
+    assertThat(cache.values()).hasSize(threads * valuesPerThread);
+    assertThat(cache.values("component3")).contains("component3-0");
+    assertThat(cache.get("component5", 1_999)).isEqualTo("component5-1999");
+  }
+
   @Test
   public void empty_cache() {
     Storage<String> cache = caches.createCache("empty");
@@ -19,7 +19,9 @@
  */
 package org.sonar.scanner.storage;
 
-import com.persistit.exception.PersistitException;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import org.junit.Test;
 import org.sonar.scanner.index.AbstractCachesTest;
@@ -55,7 +57,8 @@ public class StoragesTest extends AbstractCachesTest {
     caches.stop();
 
     // manager continues up
-    assertThat(cachesManager.persistit().isInitialized()).isTrue();
+    assertThat(cachesManager.tempDir()).isDirectory();
+    assertThat(cachesManager.tempDir().list()).isEmpty();
 
     caches = new Storages(cachesManager);
     caches.start();
@@ -63,7 +66,7 @@ public class StoragesTest extends AbstractCachesTest {
   }
 
   @Test
-  public void leak_test() throws PersistitException {
+  public void leak_test() {
     caches.stop();
 
     int len = 1 * 1024 * 1024;
@@ -77,14 +80,51 @@ public class StoragesTest extends AbstractCachesTest {
       caches.start();
       Storage<String> c = caches.<String>createCache("test" + i);
       c.put("key" + i, sb.toString());
-      cachesManager.persistit().flush();
+      assertThat(c.get("key" + i)).isEqualTo(sb.toString());
 
       caches.stop();
     }
   }
 
+  @Test
+  public void fail_to_create_cache_when_stopped() {
+    caches.stop();
+
+    try {
+      caches.createCache("foo");
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Caches are not initialized");
+    }
+  }
+
+  @Test
+  public void values_are_encoded_by_registered_coder() {
+    caches.registerValueCoder(Element.class, new ValueCoder<Element>() {
+      @Override
+      public void write(DataOutput output, Element value) throws IOException {
+        output.writeUTF("coded " + value.name);
+      }
+
+      @Override
+      public Element read(DataInput input) throws IOException {
+        return new Element(input.readUTF());
+      }
+    });
+    Storage<Element> cache = caches.createCache("foo");
+
+    cache.put("a", new Element("a"));
+
+    assertThat(cache.get("a").name).isEqualTo("coded a");
+  }
+
   private static class Element implements Serializable {
     private static final long serialVersionUID = 1L;
+    private final String name;
+
+    private Element(String name) {
+      this.name = name;
+    }
 
   }
 }
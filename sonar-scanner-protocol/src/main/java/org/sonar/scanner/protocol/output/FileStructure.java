@@ -51,6 +51,20 @@ public class FileStructure {
       this.filePrefix = filePrefix;
       this.fileSuffix = fileSuffix;
     }
+
+    /**
+     * Reference of the component of a file of this domain, or -1 if the file name does not match the domain.
+     */
+    int componentRefOf(String fileName) {
+      if (!fileName.startsWith(filePrefix) || !fileName.endsWith(fileSuffix)) {
+        return -1;
+      }
+      String ref = fileName.substring(filePrefix.length(), fileName.length() - fileSuffix.length());
+      if (ref.isEmpty() || ref.length() > 9 || !ref.chars().allMatch(Character::isDigit)) {
+        return -1;
+      }
+      return Integer.parseInt(ref);
+    }
   }
 
   private final File dir;
@@ -78,6 +92,24 @@ public class FileStructure {
     return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
   }
 
+  /**
+   * Concatenation of the files of all the components for the specified domain, when the report is segmented.
+   *
+   * @see ReportSegments
+   */
+  public File segmentFile(Domain domain) {
+    return new File(dir, domain.filePrefix + "segment.bin");
+  }
+
+  /**
+   * Index of the segment files. The report is segmented if, and only if, this file exists.
+   *
+   * @see ReportSegments
+   */
+  public File segmentsIndex() {
+    return new File(dir, "segments.idx");
+  }
+
   public File contextProperties() {
     return new File(dir, "context-props.pb");
   }
@@ -0,0 +1,352 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.scanner.protocol.output.FileStructure.Domain;
+
+/**
+ * Segmented layout of the report. The files of a {@link Domain}, one per component, are concatenated in a single
+ * segment file, and an index gives the offset and length of the data of each component in the segments. Large projects
+ * then produce a few dozens of files instead of several hundreds of thousands, which are much faster to zip, to
+ * upload, to extract and to open.
+ * <p>
+ * Reading is thread-safe. Segments are memory-mapped, and data of a component is read from a slice of the mapping.
+ * The mappings are released by {@link #close()}.
+ * </p>
+ */
+public class ReportSegments implements Closeable {
+
+  private static final Logger LOG = Loggers.get(ReportSegments.class);
+  private static final int FORMAT_VERSION = 1;
+
+  private final FileStructure fileStructure;
+  private final Map<Domain, Index> indexByDomain;
+  private final Map<Domain, MappedByteBuffer> mappedSegments = new EnumMap<>(Domain.class);
+  /**
+   * Mappings of the regions of the segments which are too big to be mapped at once
+   */
+  private final List<MappedByteBuffer> mappedRegions = new ArrayList<>();
+  private boolean closed = false;
+
+  private ReportSegments(FileStructure fileStructure, Map<Domain, Index> indexByDomain) {
+    this.fileStructure = fileStructure;
+    this.indexByDomain = indexByDomain;
+  }
+
+  public static boolean isSegmented(FileStructure fileStructure) {
+    return fileStructure.segmentsIndex().isFile();
+  }
+
+  /**
+   * Moves the per-component files of all domains to segment files, then writes the index. Files which are not
+   * per-component (metadata, active rules, ...) are kept as they are.
+   */
+  public static void pack(FileStructure fileStructure) {
+    Map<Domain, TreeMap<Integer, File>> filesByDomain = listComponentFiles(fileStructure);
+    File indexFile = fileStructure.segmentsIndex();
+    try (DataOutputStream indexOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+      indexOutput.writeInt(FORMAT_VERSION);
+      indexOutput.writeInt(filesByDomain.size());
+      for (Map.Entry<Domain, TreeMap<Integer, File>> entry : filesByDomain.entrySet()) {
+        packDomain(fileStructure, entry.getKey(), entry.getValue(), indexOutput);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write report segments in " + fileStructure.root(), e);
+    }
+  }
+
+  private static Map<Domain, TreeMap<Integer, File>> listComponentFiles(FileStructure fileStructure) {
+    Map<Domain, TreeMap<Integer, File>> filesByDomain = new EnumMap<>(Domain.class);
+    File[] files = fileStructure.root().listFiles();
+    if (files == null) {
+      return filesByDomain;
+    }
+    for (File file : files) {
+      if (!file.isFile()) {
+        continue;
+      }
+      for (Domain domain : Domain.values()) {
+        int ref = domain.componentRefOf(file.getName());
+        if (ref >= 0) {
+          filesByDomain.computeIfAbsent(domain, d -> new TreeMap<>()).put(ref, file);
+          break;
+        }
+      }
+    }
+    return filesByDomain;
+  }
+
+  private static void packDomain(FileStructure fileStructure, Domain domain, TreeMap<Integer, File> filesByRef, DataOutputStream indexOutput) throws IOException {
+    indexOutput.writeUTF(domain.name());
+    indexOutput.writeInt(filesByRef.size());
+    try (FileChannel segment = new FileOutputStream(fileStructure.segmentFile(domain)).getChannel()) {
+      long offset = 0;
+      for (Map.Entry<Integer, File> entry : filesByRef.entrySet()) {
+        File file = entry.getValue();
+        long length;
+        try (FileChannel in = new FileInputStream(file).getChannel()) {
+          length = in.size();
+          long transferred = 0;
+          while (transferred < length) {
+            transferred += in.transferTo(transferred, length - transferred, segment);
+          }
+        }
+        indexOutput.writeInt(entry.getKey());
+        indexOutput.writeLong(offset);
+        indexOutput.writeLong(length);
+        offset += length;
+        if (!file.delete()) {
+          throw new IllegalStateException("Fail to delete " + file);
+        }
+      }
+    }
+  }
+
+  /**
+   * @throws IllegalStateException if the report is not segmented or if the index is corrupted
+   */
+  public static ReportSegments load(FileStructure fileStructure) {
+    File indexFile = fileStructure.segmentsIndex();
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      int version = input.readInt();
+      if (version != FORMAT_VERSION) {
+        throw new IllegalStateException("Unsupported version of report segments: " + version);
+      }
+      Map<Domain, Index> indexByDomain = new EnumMap<>(Domain.class);
+      int domains = input.readInt();
+      for (int i = 0; i < domains; i++) {
+        Domain domain = Domain.valueOf(input.readUTF());
+        indexByDomain.put(domain, Index.read(input));
+      }
+      return new ReportSegments(fileStructure, indexByDomain);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read index of report segments: " + indexFile, e);
+    }
+  }
+
+  public boolean hasData(Domain domain, int componentRef) {
+    Index index = indexByDomain.get(domain);
+    return index != null && index.find(componentRef) >= 0;
+  }
+
+  /**
+   * Data of the component in the specified domain, or {@code null} if there's none.
+   */
+  @CheckForNull
+  public InputStream open(Domain domain, int componentRef) {
+    Index index = indexByDomain.get(domain);
+    if (index == null) {
+      return null;
+    }
+    int position = index.find(componentRef);
+    if (position < 0) {
+      return null;
+    }
+    return new ByteBufferInputStream(slice(domain, index.offsets[position], index.lengths[position]));
+  }
+
+  private ByteBuffer slice(Domain domain, long offset, long length) {
+    File segmentFile = fileStructure.segmentFile(domain);
+    try {
+      ByteBuffer segment = mappedSegment(domain, segmentFile);
+      if (segment != null) {
+        ByteBuffer slice = segment.duplicate();
+        slice.position((int) offset);
+        slice.limit((int) (offset + length));
+        return slice.slice();
+      }
+      return mappedRegion(segmentFile, offset, length);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read report segment: " + segmentFile, e);
+    }
+  }
+
+  @CheckForNull
+  private synchronized ByteBuffer mappedSegment(Domain domain, File segmentFile) throws IOException {
+    checkNotClosed();
+    if (!mappedSegments.containsKey(domain)) {
+      MappedByteBuffer segment = null;
+      if (segmentFile.length() <= Integer.MAX_VALUE) {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "r")) {
+          segment = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+      }
+      mappedSegments.put(domain, segment);
+    }
+    return mappedSegments.get(domain);
+  }
+
+  private synchronized ByteBuffer mappedRegion(File segmentFile, long offset, long length) throws IOException {
+    checkNotClosed();
+    try (RandomAccessFile file = new RandomAccessFile(segmentFile, "r")) {
+      MappedByteBuffer region = file.getChannel().map(FileChannel.MapMode.READ_ONLY, offset, length);
+      mappedRegions.add(region);
+      return region;
+    }
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("Report segments are closed: " + fileStructure.root());
+    }
+  }
+
+  /**
+   * Unmaps the segments. The streams returned by {@link #open(Domain, int)} must not be read anymore.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    mappedSegments.values().stream().filter(Objects::nonNull).forEach(ReportSegments::unmap);
+    mappedSegments.clear();
+    mappedRegions.forEach(ReportSegments::unmap);
+    mappedRegions.clear();
+  }
+
+  /**
+   * Unmaps the buffer without waiting for garbage collection, so that the segment file can be deleted on all the file
+   * systems. It relies on internal APIs of the JVM. If they are not available, the buffer is unmapped when garbage collected.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = findMethod(unsafeClass, "invokeCleaner", ByteBuffer.class);
+      if (invokeCleaner == null) {
+        // Java 8
+        Object cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner").invoke(buffer);
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      } else {
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        invokeCleaner.invoke(theUnsafe.get(null), buffer);
+      }
+    } catch (Exception | LinkageError e) {
+      LOG.debug("Fail to unmap report segment", e);
+    }
+  }
+
+  @CheckForNull
+  private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+    try {
+      return clazz.getMethod(name, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Offsets and lengths in a segment, sorted by component reference.
+   */
+  private static final class Index {
+    private final int[] refs;
+    private final long[] offsets;
+    private final long[] lengths;
+
+    private Index(int[] refs, long[] offsets, long[] lengths) {
+      this.refs = refs;
+      this.offsets = offsets;
+      this.lengths = lengths;
+    }
+
+    static Index read(DataInputStream input) throws IOException {
+      int size = input.readInt();
+      int[] refs = new int[size];
+      long[] offsets = new long[size];
+      long[] lengths = new long[size];
+      for (int i = 0; i < size; i++) {
+        refs[i] = input.readInt();
+        offsets[i] = input.readLong();
+        lengths[i] = input.readLong();
+      }
+      return new Index(refs, offsets, lengths);
+    }
+
+    int find(int componentRef) {
+      return Arrays.binarySearch(refs, componentRef);
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int read = Math.min(len, buffer.remaining());
+      buffer.get(b, off, read);
+      return read;
+    }
+
+    @Override
+    public long skip(long n) {
+      int skipped = (int) Math.min(Math.max(n, 0), buffer.remaining());
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -19,16 +19,26 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
-public class ScannerReportReader {
+public class ScannerReportReader implements Closeable {
 
   private final FileStructure fileStructure;
+  private boolean segmentsChecked = false;
+  @CheckForNull
+  private ReportSegments segments;
 
   public ScannerReportReader(File dir) {
     this.fileStructure = new FileStructure(dir);
@@ -51,90 +61,65 @@ public class ScannerReportReader {
   }
 
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.MEASURES, componentRef, ScannerReport.Measure.parser());
   }
 
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
+    InputStream input = openComponentData(FileStructure.Domain.CHANGESETS, componentRef);
+    if (input != null) {
+      return Protobuf.read(input, ScannerReport.Changesets.parser());
     }
     return null;
   }
 
   public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    InputStream input = openComponentData(FileStructure.Domain.COMPONENT, componentRef);
+    if (input == null) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: "
+        + fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef));
     }
-    return Protobuf.read(file, ScannerReport.Component.parser());
+    return Protobuf.read(input, ScannerReport.Component.parser());
   }
 
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.ISSUES, componentRef, ScannerReport.Issue.parser());
   }
 
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.DUPLICATIONS, componentRef, ScannerReport.Duplication.parser());
   }
 
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef, ScannerReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYMBOLS, componentRef, ScannerReport.Symbol.parser());
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
   }
 
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef, ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.COVERAGES, componentRef);
   }
 
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.COVERAGES, fileRef, ScannerReport.LineCoverage.parser());
   }
 
+  /**
+   * @throws IllegalStateException if the report is segmented, see {@link #openFileSource(int)}
+   */
   @CheckForNull
   public File readFileSource(int fileRef) {
+    checkNotSegmented();
     File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
     if (fileExists(file)) {
       return file;
@@ -142,8 +127,20 @@ public class ScannerReportReader {
     return null;
   }
 
+  /**
+   * Content of the file #{@code ref}, or {@code null} if the report does not have it. Supports both layouts of the report.
+   */
+  @CheckForNull
+  public InputStream openFileSource(int fileRef) {
+    return openComponentData(FileStructure.Domain.SOURCE, fileRef);
+  }
+
+  /**
+   * @throws IllegalStateException if the report is segmented, see {@link #openTests(int)}
+   */
   @CheckForNull
   public File readTests(int testFileRef) {
+    checkNotSegmented();
     File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
     if (fileExists(file)) {
       return file;
@@ -152,8 +149,20 @@ public class ScannerReportReader {
     return null;
   }
 
+  /**
+   * Content of the file #{@code ref}, or {@code null} if the report does not have it. Supports both layouts of the report.
+   */
+  @CheckForNull
+  public InputStream openTests(int testFileRef) {
+    return openComponentData(FileStructure.Domain.TESTS, testFileRef);
+  }
+
+  /**
+   * @throws IllegalStateException if the report is segmented, see {@link #openCoverageDetails(int)}
+   */
   @CheckForNull
   public File readCoverageDetails(int testFileRef) {
+    checkNotSegmented();
     File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
     if (fileExists(file)) {
       return file;
@@ -162,6 +171,14 @@ public class ScannerReportReader {
     return null;
   }
 
+  /**
+   * Content of the file #{@code ref}, or {@code null} if the report does not have it. Supports both layouts of the report.
+   */
+  @CheckForNull
+  public InputStream openCoverageDetails(int testFileRef) {
+    return openComponentData(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  }
+
   public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
     File file = fileStructure.contextProperties();
     if (!fileExists(file)) {
@@ -170,6 +187,75 @@ public class ScannerReportReader {
     return Protobuf.readStream(file, ScannerReport.ContextProperty.parser());
   }
 
+  private <T extends Message> CloseableIterator<T> readStream(FileStructure.Domain domain, int componentRef, Parser<T> parser) {
+    ReportSegments reportSegments = segments();
+    if (reportSegments == null) {
+      File file = fileStructure.fileFor(domain, componentRef);
+      if (fileExists(file)) {
+        return Protobuf.readStream(file, parser);
+      }
+      return emptyCloseableIterator();
+    }
+    InputStream input = reportSegments.open(domain, componentRef);
+    if (input != null) {
+      return Protobuf.readStream(input, parser);
+    }
+    return emptyCloseableIterator();
+  }
+
+  @CheckForNull
+  private InputStream openComponentData(FileStructure.Domain domain, int componentRef) {
+    ReportSegments reportSegments = segments();
+    if (reportSegments != null) {
+      return reportSegments.open(domain, componentRef);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (!fileExists(file)) {
+      return null;
+    }
+    try {
+      return new BufferedInputStream(new FileInputStream(file));
+    } catch (FileNotFoundException e) {
+      throw new IllegalStateException("Fail to open " + file, e);
+    }
+  }
+
+  private boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    ReportSegments reportSegments = segments();
+    if (reportSegments != null) {
+      return reportSegments.hasData(domain, componentRef);
+    }
+    return fileStructure.fileFor(domain, componentRef).exists();
+  }
+
+  private void checkNotSegmented() {
+    if (segments() != null) {
+      throw new IllegalStateException("Report is segmented, data of components are not available as files: " + fileStructure.root());
+    }
+  }
+
+  /**
+   * The layout of the report is checked on first access, so that the reader can be created before the report is written.
+   */
+  @CheckForNull
+  private synchronized ReportSegments segments() {
+    if (!segmentsChecked) {
+      segments = ReportSegments.isSegmented(fileStructure) ? ReportSegments.load(fileStructure) : null;
+      segmentsChecked = true;
+    }
+    return segments;
+  }
+
+  /**
+   * Releases the memory mappings of a segmented report. Data of components must not be read anymore.
+   */
+  @Override
+  public synchronized void close() {
+    if (segments != null) {
+      segments.close();
+    }
+  }
+
   private static boolean fileExists(File file) {
     return file.exists() && file.isFile();
   }
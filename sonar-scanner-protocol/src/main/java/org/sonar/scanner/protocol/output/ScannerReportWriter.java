@@ -146,4 +146,14 @@ public class ScannerReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  /**
+   * Packs the files of components into one segment per domain. Must be called once all data is written,
+   * the report can't be written anymore afterwards.
+   *
+   * @see ReportSegments
+   */
+  public void writeSegments() {
+    ReportSegments.pack(fileStructure);
+  }
+
 }
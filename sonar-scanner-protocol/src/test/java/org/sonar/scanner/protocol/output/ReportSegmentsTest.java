@@ -0,0 +1,173 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.InputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.scanner.protocol.output.FileStructure.Domain;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReportSegmentsTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private File dir;
+  private FileStructure fileStructure;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder();
+    fileStructure = new FileStructure(dir);
+  }
+
+  @Test
+  public void report_is_not_segmented_by_default() {
+    assertThat(ReportSegments.isSegmented(fileStructure)).isFalse();
+  }
+
+  @Test
+  public void pack_component_files_in_one_segment_per_domain() throws Exception {
+    write(Domain.SOURCE, 1, "foo");
+    write(Domain.SOURCE, 12, "bar\nbaz");
+    write(Domain.ISSUES, 3, "issues");
+    File metadata = fileStructure.metadataFile();
+    FileUtils.write(metadata, "metadata", UTF_8);
+
+    ReportSegments.pack(fileStructure);
+
+    assertThat(ReportSegments.isSegmented(fileStructure)).isTrue();
+    assertThat(fileStructure.fileFor(Domain.SOURCE, 1)).doesNotExist();
+    assertThat(fileStructure.fileFor(Domain.SOURCE, 12)).doesNotExist();
+    assertThat(fileStructure.fileFor(Domain.ISSUES, 3)).doesNotExist();
+    assertThat(fileStructure.segmentFile(Domain.SOURCE)).exists();
+    assertThat(fileStructure.segmentFile(Domain.ISSUES)).exists();
+    assertThat(fileStructure.segmentFile(Domain.COVERAGES)).doesNotExist();
+    // files which are not related to a component are kept
+    assertThat(metadata).exists();
+
+    ReportSegments underTest = ReportSegments.load(fileStructure);
+    assertThat(read(underTest, Domain.SOURCE, 1)).isEqualTo("foo");
+    assertThat(read(underTest, Domain.SOURCE, 12)).isEqualTo("bar\nbaz");
+    assertThat(read(underTest, Domain.ISSUES, 3)).isEqualTo("issues");
+  }
+
+  @Test
+  public void no_data_for_unknown_component_or_domain() throws Exception {
+    write(Domain.SOURCE, 1, "foo");
+    ReportSegments.pack(fileStructure);
+
+    ReportSegments underTest = ReportSegments.load(fileStructure);
+    assertThat(underTest.hasData(Domain.SOURCE, 1)).isTrue();
+    assertThat(underTest.hasData(Domain.SOURCE, 2)).isFalse();
+    assertThat(underTest.hasData(Domain.COVERAGES, 1)).isFalse();
+    assertThat(underTest.open(Domain.SOURCE, 2)).isNull();
+    assertThat(underTest.open(Domain.COVERAGES, 1)).isNull();
+  }
+
+  @Test
+  public void empty_component_file_is_kept_in_segment() throws Exception {
+    write(Domain.SOURCE, 1, "");
+    write(Domain.SOURCE, 2, "foo");
+    ReportSegments.pack(fileStructure);
+
+    ReportSegments underTest = ReportSegments.load(fileStructure);
+    assertThat(underTest.hasData(Domain.SOURCE, 1)).isTrue();
+    assertThat(read(underTest, Domain.SOURCE, 1)).isEmpty();
+    assertThat(read(underTest, Domain.SOURCE, 2)).isEqualTo("foo");
+  }
+
+  @Test
+  public void pack_empty_report() {
+    ReportSegments.pack(fileStructure);
+
+    assertThat(ReportSegments.isSegmented(fileStructure)).isTrue();
+    assertThat(ReportSegments.load(fileStructure).hasData(Domain.SOURCE, 1)).isFalse();
+  }
+
+  @Test
+  public void fail_to_load_unsupported_format() throws Exception {
+    FileUtils.writeByteArrayToFile(fileStructure.segmentsIndex(), new byte[] {0, 0, 0, 42});
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Unsupported version of report segments: 42");
+
+    ReportSegments.load(fileStructure);
+  }
+
+  @Test
+  public void segment_files_can_be_deleted_once_closed() throws Exception {
+    write(Domain.SOURCE, 1, "foo");
+    ReportSegments.pack(fileStructure);
+    ReportSegments underTest = ReportSegments.load(fileStructure);
+    assertThat(read(underTest, Domain.SOURCE, 1)).isEqualTo("foo");
+
+    underTest.close();
+
+    assertThat(fileStructure.segmentFile(Domain.SOURCE).delete()).isTrue();
+    // index is still available
+    assertThat(underTest.hasData(Domain.SOURCE, 1)).isTrue();
+  }
+
+  @Test
+  public void fail_to_read_once_closed() throws Exception {
+    write(Domain.SOURCE, 1, "foo");
+    ReportSegments.pack(fileStructure);
+    ReportSegments underTest = ReportSegments.load(fileStructure);
+    underTest.close();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Report segments are closed");
+
+    underTest.open(Domain.SOURCE, 1);
+  }
+
+  @Test
+  public void close_is_idempotent() throws Exception {
+    write(Domain.SOURCE, 1, "foo");
+    ReportSegments.pack(fileStructure);
+    ReportSegments underTest = ReportSegments.load(fileStructure);
+    read(underTest, Domain.SOURCE, 1);
+
+    underTest.close();
+    underTest.close();
+  }
+
+  private void write(Domain domain, int ref, String content) throws Exception {
+    FileUtils.write(fileStructure.fileFor(domain, ref), content, UTF_8);
+  }
+
+  private static String read(ReportSegments segments, Domain domain, int ref) throws Exception {
+    try (InputStream input = segments.open(domain, ref)) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+}
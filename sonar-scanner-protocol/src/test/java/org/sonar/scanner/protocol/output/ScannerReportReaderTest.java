@@ -377,4 +377,67 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_segmented_report() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src/main/java/Foo.java").build());
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("msg").build()));
+    writer.writeComponentCoverage(1, asList(ScannerReport.LineCoverage.newBuilder().setLine(2).build()));
+    writer.writeComponentChangesets(ScannerReport.Changesets.newBuilder().setComponentRef(1).build());
+    try (FileOutputStream outputStream = new FileOutputStream(writer.getSourceFile(1))) {
+      IOUtils.write("line1\nline2", outputStream);
+    }
+    writer.writeSegments();
+
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/main/java/Foo.java");
+    assertThat(underTest.readComponentIssues(1)).extracting("msg").containsExactly("msg");
+    assertThat(underTest.readComponentIssues(UNKNOWN_COMPONENT_REF)).isEmpty();
+    assertThat(underTest.hasCoverage(1)).isTrue();
+    assertThat(underTest.hasSyntaxHighlighting(1)).isFalse();
+    assertThat(underTest.readChangesets(1).getComponentRef()).isEqualTo(1);
+    assertThat(underTest.readChangesets(UNKNOWN_COMPONENT_REF)).isNull();
+    try (InputStream inputStream = underTest.openFileSource(1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsOnly("line1", "line2");
+    }
+    assertThat(underTest.openFileSource(UNKNOWN_COMPONENT_REF)).isNull();
+  }
+
+  @Test
+  public void close_releases_segments() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("msg").build()));
+    writer.writeSegments();
+    assertThat(underTest.readComponentIssues(1)).extracting("msg").containsExactly("msg");
+
+    underTest.close();
+
+    assertThat(writer.getFileStructure().segmentFile(FileStructure.Domain.ISSUES).delete()).isTrue();
+  }
+
+  @Test
+  public void close_non_segmented_report() {
+    underTest.close();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_to_get_file_source_as_file_if_report_is_segmented() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeSegments();
+
+    underTest.readFileSource(1);
+  }
+
+  @Test
+  public void open_file_source_of_non_segmented_report() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    try (FileOutputStream outputStream = new FileOutputStream(writer.getSourceFile(1))) {
+      IOUtils.write("line1\nline2", outputStream);
+    }
+
+    try (InputStream inputStream = underTest.openFileSource(1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsOnly("line1", "line2");
+    }
+    assertThat(underTest.openFileSource(UNKNOWN_COMPONENT_REF)).isNull();
+  }
 }